@@ -0,0 +1,47 @@
+package com.swp.evchargingstation.configuration;
+
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Hàng đợi hết hạn booking (BookingExpiryService).
+ *
+ * - bookingExpiryExecutor: 1 thread consumer, các booking đến hạn được xử lý tuần tự
+ * - bookingExpiryTimingWheel: fire đúng deadline expires_at của booking
+ */
+@Configuration
+@Slf4j
+public class BookingExpiryConfig {
+
+    @Bean(name = "bookingExpiryExecutor")
+    public ThreadPoolTaskExecutor bookingExpiryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("booking-expiry-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("Initialized booking expiry executor - single consumer, Queue: 10000");
+        return executor;
+    }
+
+    /**
+     * Tick 1 giây: booking hết hạn trễ tối đa ~1 giây (trước đây tới 5 phút).
+     * 512 bucket × 1 giây ≈ 8.5 phút mỗi vòng; hạn xa hơn (tối đa ~24 giờ) dùng remainingRounds.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public HashedTimingWheel<Long> bookingExpiryTimingWheel(
+            @Qualifier("bookingExpiryExecutor") ThreadPoolTaskExecutor bookingExpiryExecutor,
+            @Value("${booking.expiry.wheel-tick-ms:1000}") long tickMillis,
+            @Value("${booking.expiry.wheel-size:512}") int wheelSize) {
+        return new HashedTimingWheel<>("booking-expiry-wheel", tickMillis, wheelSize, bookingExpiryExecutor);
+    }
+}
@@ -0,0 +1,46 @@
+package com.swp.evchargingstation.configuration;
+
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Chuyển trạng thái hiển thị theo thời gian của ChargingPoint (ChargingPointStatusService).
+ *
+ * - chargingPointStatusExecutor: 1 thread, mỗi task chỉ tính lại trạng thái một trụ từ dữ liệu in-memory
+ * - chargingPointStatusTimingWheel: mỗi trụ tối đa 1 mốc (booking vào / ra khỏi cửa sổ RESERVED)
+ */
+@Configuration
+@Slf4j
+public class ChargingPointStatusConfig {
+
+    @Bean(name = "chargingPointStatusExecutor")
+    public ThreadPoolTaskExecutor chargingPointStatusExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("point-status-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("Initialized charging point status executor - single consumer, Queue: 10000");
+        return executor;
+    }
+
+    /**
+     * Tick 1 giây: trụ chuyển AVAILABLE → RESERVED trễ tối đa ~1 giây so với mốc 30 phút trước giờ booking
+     * (trước đây tới 5 phút).
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public HashedTimingWheel<String> chargingPointStatusTimingWheel(
+            @Qualifier("chargingPointStatusExecutor") ThreadPoolTaskExecutor chargingPointStatusExecutor,
+            @Value("${charging-point.display-status.wheel-tick-ms:1000}") long tickMillis,
+            @Value("${charging-point.display-status.wheel-size:512}") int wheelSize) {
+        return new HashedTimingWheel<>("charging-point-status-wheel", tickMillis, wheelSize, chargingPointStatusExecutor);
+    }
+}
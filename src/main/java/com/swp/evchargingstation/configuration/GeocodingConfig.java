@@ -0,0 +1,54 @@
+package com.swp.evchargingstation.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Worker queue geocoding (GeocodingService).
+ *
+ * 1 thread: các lần gọi provider chạy tuần tự, nhịp gọi do token bucket trong GeocodingService quyết định
+ * (Nominatim cho phép tối đa 1 request/giây).
+ * Ghi tọa độ vào DB + refresh spatial index chạy trên pool riêng để worker chỉ chờ provider.
+ */
+@Configuration
+@Slf4j
+public class GeocodingConfig {
+
+    @Bean(name = "geocodingExecutor")
+    public ThreadPoolTaskExecutor geocodingExecutor(
+            @Value("${geocoding.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("geocoding-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("Initialized geocoding executor - single worker, Queue: {}", queueCapacity);
+        return executor;
+    }
+
+    @Bean(name = "geocodingResultExecutor")
+    public ThreadPoolTaskExecutor geocodingResultExecutor(
+            @Value("${geocoding.result.pool-size:2}") int poolSize,
+            @Value("${geocoding.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("geocoding-result-");
+        // Hàng đợi đầy: thread hoàn thành future tự ghi (back-pressure thay vì mất kết quả)
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("Initialized geocoding result executor - Pool: {}, Queue: {}", poolSize, queueCapacity);
+        return executor;
+    }
+}
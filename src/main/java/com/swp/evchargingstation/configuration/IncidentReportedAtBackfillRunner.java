@@ -0,0 +1,32 @@
+package com.swp.evchargingstation.configuration;
+
+import com.swp.evchargingstation.repository.IncidentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Điền reported_at cho incident cũ còn null. reported_at là khóa seek của phân trang keyset
+ * (so sánh với null không bao giờ đúng nên các dòng này sẽ không xuất hiện ở trang nào).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IncidentReportedAtBackfillRunner implements ApplicationRunner {
+
+    private final IncidentRepository incidentRepository;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        int updated = incidentRepository.backfillMissingReportedAt(LocalDateTime.now());
+        if (updated > 0) {
+            log.info("Backfilled reported_at for {} incidents", updated);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.swp.evchargingstation.configuration;
+
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Đưa trụ còn RESERVED vật lý (do job đặt trạng thái cũ để lại) về AVAILABLE. RESERVED giờ chỉ là trạng thái
+ * hiển thị tính từ booking (ChargingPointStatusService), không còn code nào ghi RESERVED vào DB nên sau lần chạy
+ * đầu tiên UPDATE này không còn dòng nào. Chạy trước ApplicationReadyEvent, tức là trước khi cache trạng thái
+ * hiển thị được nạp.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LegacyReservedPointReleaseRunner implements ApplicationRunner {
+
+    private final ChargingPointRepository chargingPointRepository;
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        int released = chargingPointRepository.releaseReservedPoints(
+                ChargingPointStatus.RESERVED, ChargingPointStatus.AVAILABLE);
+        if (released > 0) {
+            log.info("Released {} charging points from legacy physical RESERVED status", released);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.swp.evchargingstation.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Cấu hình load simulation (profile "loadsim").
+ * Cùng seed + cùng cấu hình → cùng bộ driver/xe/trụ/booking/lịch sử.
+ */
+@Configuration
+@Profile("loadsim")
+@ConfigurationProperties(prefix = "simulator.loadsim")
+@Data
+public class LoadSimulationConfig {
+    private long seed = 42L;
+    private int drivers = 12000;
+    private int stations = 1200;
+    private int pointsPerStation = 10;
+    private int activeSessions = 10000;
+    private int bookings = 2000;
+    private int historyDays = 30;
+    private int historySessionsPerDriver = 8;
+    private int concurrency = 8;
+    private int batchSize = 1000;
+    private int durationSeconds = 300;
+    private String reportPath = "target/loadsim-report.txt";
+    private boolean exitOnFinish = true;
+}
@@ -0,0 +1,34 @@
+package com.swp.evchargingstation.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Worker pool render báo cáo PDF (ReportExportService).
+ *
+ * Pool và hàng đợi đều giới hạn: export nặng không chiếm thread Tomcat, hàng đợi đầy thì từ chối job mới
+ * thay vì dồn bộ nhớ.
+ */
+@Configuration
+@Slf4j
+public class ReportExportConfig {
+
+    @Bean(name = "reportExportExecutor")
+    public ThreadPoolTaskExecutor reportExportExecutor(
+            @Value("${report.export.workers:2}") int workers,
+            @Value("${report.export.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("report-export-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+
+        log.info("Initialized report export executor - Workers: {}, Queue: {}", workers, queueCapacity);
+        return executor;
+    }
+}
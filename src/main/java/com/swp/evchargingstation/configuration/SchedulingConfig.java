@@ -13,15 +13,13 @@ import org.springframework.scheduling.annotation.EnableScheduling;
  *
  * Các Scheduled Jobs đang hoạt động trong hệ thống:
  *
- * 1. BookingService:
- *    - processExpiredBookings(): Chạy mỗi 5 phút (0 *\/5 * * * *)
- *      → Tự động hủy các booking quá hạn không check-in
+ * 1. BookingExpiryService:
+ *    - sweep(): Chạy mỗi booking.expiry.sweep-interval-ms
+ *      → Expire hàng loạt booking quá hạn, nạp các hạn sắp tới vào timing wheel
  *
  * 2. ChargingPointStatusService:
- *    - updateReservedStatus(): Chạy mỗi 5 phút (0 *\/5 * * * *)
- *      → Set trạng thái RESERVED cho trụ có booking trong vòng 15 phút
- *    - releaseExpiredReservations(): Chạy mỗi 5 phút (0 *\/5 * * * *)
- *      → Release trạng thái RESERVED về AVAILABLE sau khi booking hết hạn
+ *    - rebuild(): Chạy mỗi charging-point.display-status.rebuild-interval-ms
+ *      → Đồng bộ lại cache trạng thái hiển thị (RESERVED theo thời gian chạy trên timing wheel)
  *
  * 3. ChargingSimulatorService (nếu có):
  *    - Các job mô phỏng quá trình sạc pin
@@ -29,9 +27,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
  * QUAN TRỌNG: Nếu xóa @EnableScheduling, tất cả scheduled jobs sẽ KHÔNG chạy!
  *
  * @see org.springframework.scheduling.annotation.Scheduled
- * @see com.swp.evchargingstation.service.BookingService#processExpiredBookings()
- * @see com.swp.evchargingstation.service.ChargingPointStatusService#updateReservedStatus()
- * @see com.swp.evchargingstation.service.ChargingPointStatusService#releaseExpiredReservations()
+ * @see com.swp.evchargingstation.service.BookingExpiryService#sweep()
+ * @see com.swp.evchargingstation.service.ChargingPointStatusService#rebuild()
  */
 @Configuration
 @EnableScheduling
@@ -0,0 +1,67 @@
+package com.swp.evchargingstation.configuration;
+
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Cấu hình hạ tầng cho ChargingSimulatorService.
+ *
+ * - completionExecutor: thread pool riêng chạy completeSession, không dùng scheduler thread
+ * - completionTimingWheel: hashed timing wheel fire completion đúng thời điểm session đạt target
+ * - progressStreamExecutor: ghi frame SSE progress ra socket, tách khỏi tick của simulator
+ */
+@Configuration
+@Slf4j
+public class SimulatorConfig {
+
+    @Bean(name = "completionExecutor")
+    public ThreadPoolTaskExecutor completionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10000);
+        executor.setThreadNamePrefix("completion-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+
+        log.info("Initialized charging completion executor - Core: 2, Max: 4, Queue: 10000");
+        return executor;
+    }
+
+    /**
+     * Queue nhỏ có chủ đích: mỗi client tối đa một task đang chờ, frame dồn lại trong slot của client.
+     * Queue đầy → task bị từ chối, frame được gửi ở lượt publish sau (không block tick).
+     */
+    @Bean(name = "progressStreamExecutor")
+    public ThreadPoolTaskExecutor progressStreamExecutor(
+            @Value("${simulator.stream.pool-size:4}") int poolSize,
+            @Value("${simulator.stream.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("progress-stream-");
+        executor.initialize();
+
+        log.info("Initialized progress stream executor - Pool: {}, Queue: {}", poolSize, queueCapacity);
+        return executor;
+    }
+
+    /**
+     * Tick 100ms: độ trễ complete tối đa ~100ms, không phụ thuộc tick 1 giây của simulator.
+     * 512 bucket × 100ms = 51.2 giây mỗi vòng; session dài hơn dùng remainingRounds.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public HashedTimingWheel<String> completionTimingWheel(
+            @Qualifier("completionExecutor") ThreadPoolTaskExecutor completionExecutor,
+            @Value("${simulator.completion-wheel.tick-ms:100}") long tickMillis,
+            @Value("${simulator.completion-wheel.size:512}") int wheelSize) {
+        return new HashedTimingWheel<>("completion-wheel", tickMillis, wheelSize, completionExecutor);
+    }
+}
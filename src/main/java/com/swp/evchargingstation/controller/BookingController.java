@@ -3,8 +3,11 @@ package com.swp.evchargingstation.controller;
 import com.swp.evchargingstation.dto.response.BookingAvailabilityDto;
 import com.swp.evchargingstation.dto.request.BookingRequest;
 import com.swp.evchargingstation.dto.response.BookingResponse;
+import com.swp.evchargingstation.dto.response.BookingSlotSearchResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.service.BookingService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -39,6 +42,21 @@ public class BookingController {
         return ResponseEntity.ok(bookingService.checkAvailability(chargingPointId, bookingTime, vehicleId));
     }
 
+    @Operation(summary = "Find free booking slots at stations",
+               description = "Return free windows of every charging point at the given stations within [from, to] "
+                       + "(max 24h ahead) and the earliest start that leaves enough time to charge the vehicle to targetSocPercent, "
+                       + "including the 15-minute buffer between bookings")
+    @GetMapping("/slots")
+    @PreAuthorize("hasRole('DRIVER')")
+    public ResponseEntity<BookingSlotSearchResponse> findAvailableSlots(
+            @RequestParam List<String> stationIds,
+            @RequestParam String vehicleId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer targetSocPercent) {
+        return ResponseEntity.ok(bookingService.findAvailableSlots(stationIds, vehicleId, from, to, targetSocPercent));
+    }
+
     @Operation(summary = "Create new booking",
                description = "Create a new charging station booking with deposit payment")
     @PostMapping
@@ -62,13 +80,18 @@ public class BookingController {
     }
 
     @Operation(summary = "Get user's bookings",
-               description = "Get all bookings for the authenticated user")
+               description = "Get the authenticated user's bookings one page at a time (newest first). " +
+                       "Pass after = nextCursor of the previous page to get the next page")
     @GetMapping("/my-bookings")
     @PreAuthorize("hasRole('DRIVER')")
-    public ResponseEntity<List<BookingResponse>> getMyBookings(
-            @AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<CursorPageResponse<BookingResponse>> getMyBookings(
+            @AuthenticationPrincipal Jwt jwt,
+            @Parameter(description = "Page size (default 20, max 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor of the previous page (empty = first page)")
+            @RequestParam(required = false) String after) {
         String email = jwt.getSubject();
-        return ResponseEntity.ok(bookingService.getUserBookings(email));
+        return ResponseEntity.ok(bookingService.getUserBookings(email, limit, after));
     }
 
     @Operation(summary = "Cancel booking",
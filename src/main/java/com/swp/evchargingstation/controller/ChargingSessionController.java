@@ -2,8 +2,10 @@ package com.swp.evchargingstation.controller;
 
 import com.swp.evchargingstation.dto.response.*;
 import com.swp.evchargingstation.dto.request.StartChargingRequest;
+import com.swp.evchargingstation.service.ChargingProgressStreamService;
 import com.swp.evchargingstation.service.ChargingSessionService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
@@ -11,12 +13,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/sessions")
@@ -27,17 +29,23 @@ import java.util.List;
 public class ChargingSessionController {
 
     ChargingSessionService chargingSessionService;
+    ChargingProgressStreamService progressStreamService;
 
     @GetMapping
     @PreAuthorize("hasRole('DRIVER')")
     @Operation(
             summary = "[DRIVER] Lấy danh sách lịch sử phiên sạc của tôi",
-            description = "Trả về danh sách tất cả các phiên sạc của driver đã đăng nhập, sắp xếp theo thời gian bắt đầu giảm dần (mới nhất trước)"
+            description = "Trả về các phiên sạc của driver đã đăng nhập theo trang, sắp xếp theo thời gian bắt đầu giảm dần (mới nhất trước). " +
+                    "Trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<ChargingSessionResponse>> getMySessions() {
+    public ApiResponse<CursorPageResponse<ChargingSessionResponse>> getMySessions(
+            @Parameter(description = "Số phiên mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Driver requesting charging sessions history");
-        return ApiResponse.<List<ChargingSessionResponse>>builder()
-                .result(chargingSessionService.getMySessions())
+        return ApiResponse.<CursorPageResponse<ChargingSessionResponse>>builder()
+                .result(chargingSessionService.getMySessions(limit, after))
                 .build();
     }
 
@@ -54,6 +62,17 @@ public class ChargingSessionController {
                 .build();
     }
 
+    @GetMapping(value = "/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('STAFF', 'DRIVER')")
+    @Operation(
+            summary = "[DRIVER] Theo dõi progress phiên sạc realtime (SSE)",
+            description = "Server-Sent Events: event 'progress' chứa SOC, năng lượng, thời gian, chi phí và thời gian còn lại, gửi khi số liệu thay đổi sau mỗi tick. Client chậm chỉ nhận frame mới nhất. Stream đóng sau frame COMPLETED"
+    )
+    public SseEmitter streamSessionProgress(@PathVariable String sessionId) {
+        log.info("Subscribing to progress stream of session: {}", sessionId);
+        return progressStreamService.subscribeSession(sessionId);
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping
     @PreAuthorize("hasRole('DRIVER')")
@@ -90,15 +109,31 @@ public class ChargingSessionController {
     @PreAuthorize("hasRole('STAFF')")
     @Operation(
             summary = "[STAFF] Lấy danh sách phiên sạc tại trạm của tôi",
-            description = "Trả về danh sách tất cả các phiên sạc tại trạm mà staff quản lý, sắp xếp theo thời gian bắt đầu giảm dần (mới nhất trước)"
+            description = "Trả về các phiên sạc tại trạm mà staff quản lý theo trang, sắp xếp theo thời gian bắt đầu giảm dần (mới nhất trước). " +
+                    "Trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<ChargingSessionResponse>> getMyStationSessions() {
+    public ApiResponse<CursorPageResponse<ChargingSessionResponse>> getMyStationSessions(
+            @Parameter(description = "Số phiên mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Staff requesting charging sessions at their station");
-        return ApiResponse.<List<ChargingSessionResponse>>builder()
-                .result(chargingSessionService.getMyStationSessions())
+        return ApiResponse.<CursorPageResponse<ChargingSessionResponse>>builder()
+                .result(chargingSessionService.getMyStationSessions(limit, after))
                 .build();
     }
 
+    @GetMapping(value = "/my-station/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('STAFF')")
+    @Operation(
+            summary = "[STAFF] Theo dõi progress các phiên sạc tại trạm của tôi realtime (SSE)",
+            description = "Server-Sent Events: event 'progress' cho mọi phiên sạc đang diễn ra tại trạm mà staff quản lý, kể cả frame COMPLETED khi phiên sạc kết thúc"
+    )
+    public SseEmitter streamMyStationProgress() {
+        log.info("Staff subscribing to progress stream of their station");
+        return progressStreamService.subscribeMyStation();
+    }
+
     @GetMapping("/my-station/{sessionId}")
     @PreAuthorize("hasRole('STAFF')")
     @Operation(
@@ -0,0 +1,135 @@
+package com.swp.evchargingstation.controller;
+
+import com.swp.evchargingstation.enums.ExportDataset;
+import com.swp.evchargingstation.enums.ExportFormat;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.service.DataExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/api/exports")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+@Tag(name = "Data Export", description = "RESTful API export dữ liệu đối soát (stream CSV / NDJSON) - Admin only")
+public class DataExportController {
+
+    DataExportService dataExportService;
+
+    @GetMapping("/charging-sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Export phiên sạc",
+            description = "Stream toàn bộ phiên sạc (lọc theo start_time) dạng CSV hoặc NDJSON, tùy chọn gzip"
+    )
+    public ResponseEntity<StreamingResponseBody> exportChargingSessions(
+            @Parameter(description = "csv hoặc ndjson", example = "csv")
+            @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Từ ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Đến ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-30")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String stationId,
+            @Parameter(description = "Nén gzip (file .gz)")
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export(ExportDataset.CHARGING_SESSIONS, format, from, to, stationId, gzip);
+    }
+
+    @GetMapping("/payments")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Export payment",
+            description = "Stream toàn bộ payment (lọc theo created_at, gồm cả payment chưa thanh toán) dạng CSV hoặc NDJSON, " +
+                    "tùy chọn gzip. Lọc theo trạm dựa trên phiên sạc của payment"
+    )
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @Parameter(description = "csv hoặc ndjson", example = "csv")
+            @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Từ ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Đến ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-30")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String stationId,
+            @Parameter(description = "Nén gzip (file .gz)")
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export(ExportDataset.PAYMENTS, format, from, to, stationId, gzip);
+    }
+
+    @GetMapping("/wallet-transactions")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Export giao dịch ví",
+            description = "Stream toàn bộ giao dịch ví (lọc theo timestamp) dạng CSV hoặc NDJSON, tùy chọn gzip. " +
+                    "Khi lọc theo trạm chỉ còn giao dịch gắn với phiên sạc của trạm đó (nạp / rút tiền bị loại)"
+    )
+    public ResponseEntity<StreamingResponseBody> exportWalletTransactions(
+            @Parameter(description = "csv hoặc ndjson", example = "csv")
+            @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Từ ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-01")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Đến ngày (yyyy-MM-dd, bao gồm)", example = "2025-11-30")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String stationId,
+            @Parameter(description = "Nén gzip (file .gz)")
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export(ExportDataset.WALLET_TRANSACTIONS, format, from, to, stationId, gzip);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(ExportDataset dataset, String format, LocalDate from,
+                                                         LocalDate to, String stationId, boolean gzip) {
+        // Validate trước khi stream: sau khi bắt đầu ghi body không trả lỗi JSON được nữa
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new AppException(ErrorCode.DATA_EXPORT_FORMAT_INVALID);
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new AppException(ErrorCode.DATA_EXPORT_RANGE_INVALID);
+        }
+
+        log.info("Admin exporting {} as {} (from={}, to={}, station={}, gzip={})",
+                dataset, exportFormat, from, to, stationId, gzip);
+
+        String extension = exportFormat == ExportFormat.CSV ? "csv" : "ndjson";
+        String fileName = fileName(dataset, from, to) + "." + extension + (gzip ? ".gz" : "");
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : exportFormat == ExportFormat.CSV
+                        ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                        : MediaType.parseMediaType("application/x-ndjson"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(fileName).build());
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(dataExportService.export(dataset, exportFormat, from, to, stationId, gzip));
+    }
+
+    private static String fileName(ExportDataset dataset, LocalDate from, LocalDate to) {
+        DateTimeFormatter formatter = DateTimeFormatter.BASIC_ISO_DATE;
+        return dataset.name().toLowerCase(Locale.ROOT)
+                + "_" + (from != null ? from.format(formatter) : "begin")
+                + "_" + (to != null ? to.format(formatter) : "now");
+    }
+}
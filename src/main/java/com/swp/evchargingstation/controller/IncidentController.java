@@ -3,6 +3,7 @@ package com.swp.evchargingstation.controller;
 import com.swp.evchargingstation.dto.request.IncidentCreationRequest;
 import com.swp.evchargingstation.dto.request.IncidentUpdateRequest;
 import com.swp.evchargingstation.dto.response.ApiResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.IncidentResponse;
 import com.swp.evchargingstation.service.IncidentService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -17,8 +18,6 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/incidents")
 @RequiredArgsConstructor
@@ -69,12 +68,17 @@ public class IncidentController {
     @PreAuthorize("hasRole('STAFF')")
     @Operation(
             summary = "[STAFF] Lấy danh sách sự cố tại trạm của tôi",
-            description = "Staff có thể xem tất cả sự cố được báo cáo tại trạm của họ"
+            description = "Staff có thể xem tất cả sự cố được báo cáo tại trạm của họ, theo trang (mới nhất trước). " +
+                    "Trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<IncidentResponse>> getMyStationIncidents() {
+    public ApiResponse<CursorPageResponse<IncidentResponse>> getMyStationIncidents(
+            @Parameter(description = "Số sự cố mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Staff requesting incidents of their station");
-        return ApiResponse.<List<IncidentResponse>>builder()
-                .result(incidentService.getMyStationIncidents())
+        return ApiResponse.<CursorPageResponse<IncidentResponse>>builder()
+                .result(incidentService.getMyStationIncidents(limit, after))
                 .build();
     }
 
@@ -100,12 +104,17 @@ public class IncidentController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "[ADMIN] Lấy tất cả sự cố",
-            description = "Admin có thể xem tất cả sự cố từ tất cả các trạm"
+            description = "Admin có thể xem tất cả sự cố từ tất cả các trạm, theo trang (mới nhất trước). " +
+                    "Trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<IncidentResponse>> getAllIncidents() {
+    public ApiResponse<CursorPageResponse<IncidentResponse>> getAllIncidents(
+            @Parameter(description = "Số sự cố mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Admin requesting all incidents");
-        return ApiResponse.<List<IncidentResponse>>builder()
-                .result(incidentService.getAllIncidents())
+        return ApiResponse.<CursorPageResponse<IncidentResponse>>builder()
+                .result(incidentService.getAllIncidents(limit, after))
                 .build();
     }
 
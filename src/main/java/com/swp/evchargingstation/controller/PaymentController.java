@@ -130,16 +130,21 @@ public class PaymentController {
     @Operation(
             summary = "[STAFF] Lấy danh sách phiên sạc theo trạng thái thanh toán",
             description = "Staff lấy danh sách các phiên sạc tại trạm của mình theo trạng thái. " +
-                    "Status: UNPAID (chưa thanh toán), PAID (đã thanh toán)"
+                    "Status: UNPAID (chưa thanh toán), PAID (đã thanh toán). " +
+                    "Trả về theo trang (mới nhất trước), trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<StaffTransactionResponse>> getSessions(
+    public ApiResponse<CursorPageResponse<StaffTransactionResponse>> getSessions(
             @Parameter(description = "Trạng thái thanh toán", example = "UNPAID")
-            @RequestParam(defaultValue = "UNPAID") String status) {
+            @RequestParam(defaultValue = "UNPAID") String status,
+            @Parameter(description = "Số phiên mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Staff requesting sessions at their station with status: {}", status);
 
         if ("UNPAID".equalsIgnoreCase(status)) {
-            return ApiResponse.<List<StaffTransactionResponse>>builder()
-                    .result(staffDashboardService.getStaffTransactions())
+            return ApiResponse.<CursorPageResponse<StaffTransactionResponse>>builder()
+                    .result(staffDashboardService.getStaffTransactions(limit, after))
                     .build();
         }
 
@@ -208,9 +213,10 @@ public class PaymentController {
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     @Operation(
             summary = "[ADMIN/STAFF] Lấy lịch sử thanh toán của trạm sạc",
-            description = "Trả về lịch sử thanh toán của một trạm sạc. ADMIN có thể xem lịch sử của bất kỳ trạm nào, STAFF chỉ xem trạm mình quản lý. Có thể lọc theo ngày và phương thức thanh toán"
+            description = "Trả về lịch sử thanh toán của một trạm sạc. ADMIN có thể xem lịch sử của bất kỳ trạm nào, STAFF chỉ xem trạm mình quản lý. Có thể lọc theo ngày và phương thức thanh toán. " +
+                    "Trả về theo trang (mới nhất trước), trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<PaymentHistoryResponse>> getPaymentHistory(
+    public ApiResponse<CursorPageResponse<PaymentHistoryResponse>> getPaymentHistory(
             @Parameter(description = "ID của trạm sạc", example = "STATION_123")
             @PathVariable String stationId,
             @Parameter(description = "Ngày bắt đầu (định dạng: yyyy-MM-dd)", example = "2025-11-01")
@@ -218,13 +224,17 @@ public class PaymentController {
             @Parameter(description = "Ngày kết thúc (định dạng: yyyy-MM-dd)", example = "2025-11-04")
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @Parameter(description = "Phương thức thanh toán", example = "CASH")
-            @RequestParam(required = false) Payment.PaymentMethod paymentMethod) {
+            @RequestParam(required = false) Payment.PaymentMethod paymentMethod,
+            @Parameter(description = "Số giao dịch mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
 
         log.info("Fetching payment history for station {} - startDate: {}, endDate: {}, paymentMethod: {}",
                 stationId, startDate, endDate, paymentMethod);
 
-        return ApiResponse.<List<PaymentHistoryResponse>>builder()
-                .result(stationService.getPaymentHistory(stationId, startDate, endDate, paymentMethod))
+        return ApiResponse.<CursorPageResponse<PaymentHistoryResponse>>builder()
+                .result(stationService.getPaymentHistory(stationId, startDate, endDate, paymentMethod, limit, after))
                 .build();
     }
 }
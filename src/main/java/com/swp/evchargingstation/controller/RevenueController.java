@@ -1,13 +1,19 @@
 package com.swp.evchargingstation.controller;
 
 import com.swp.evchargingstation.dto.response.ApiResponse;
+import com.swp.evchargingstation.dto.response.ReportExportJobResponse;
 import com.swp.evchargingstation.dto.response.RevenueReportResponse;
 import com.swp.evchargingstation.dto.response.StationRevenueResponse;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.service.PdfExportService;
+import com.swp.evchargingstation.service.ReportExportService;
 import com.swp.evchargingstation.service.RevenueService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -20,6 +26,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -33,6 +44,7 @@ public class RevenueController {
 
     RevenueService revenueService;
     PdfExportService pdfExportService;
+    ReportExportService reportExportService;
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -270,4 +282,120 @@ public class RevenueController {
                 .headers(headers)
                 .body(pdfBytes);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/reports/jobs")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Tạo job xuất báo cáo PDF doanh thu (bất đồng bộ)",
+            description = "Trả về jobId ngay, báo cáo được render trên worker nền. " +
+                    "Theo dõi bằng GET /api/revenues/reports/jobs/{jobId}, tải file khi status = COMPLETED. " +
+                    "- daily: year, month, day " +
+                    "- weekly: year, week " +
+                    "- monthly: year, month " +
+                    "- custom: startDate, endDate (yyyy-MM-dd). " +
+                    "Tham số thời gian không truyền sẽ lấy theo hôm nay."
+    )
+    public ApiResponse<ReportExportJobResponse> submitReportJob(
+            @Parameter(description = "Loại báo cáo (daily, weekly, monthly, custom)", example = "monthly")
+            @RequestParam(defaultValue = "daily") String type,
+            @RequestParam(required = false) Integer year,
+            @RequestParam(required = false) Integer month,
+            @RequestParam(required = false) Integer day,
+            @RequestParam(required = false) Integer week,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        LocalDate today = LocalDate.now();
+        int y = year != null ? year : today.getYear();
+        String reportType = type.toLowerCase();
+
+        ReportExportJobResponse job = switch (reportType) {
+            case "daily" -> {
+                int m = month != null ? month : today.getMonthValue();
+                int d = day != null ? day : today.getDayOfMonth();
+                yield reportExportService.submit(reportType,
+                        String.format("revenue_report_daily_%04d%02d%02d.pdf", y, m, d),
+                        () -> revenueService.generateDailyReport(y, m, d));
+            }
+            case "weekly" -> {
+                int w = week != null ? week : today.get(java.time.temporal.WeekFields.ISO.weekOfYear());
+                yield reportExportService.submit(reportType,
+                        String.format("revenue_report_weekly_%04d_W%02d.pdf", y, w),
+                        () -> revenueService.generateWeeklyReport(y, w));
+            }
+            case "monthly" -> {
+                int m = month != null ? month : today.getMonthValue();
+                if (m < 1 || m > 12) {
+                    throw new IllegalArgumentException("month must be between 1 and 12");
+                }
+                yield reportExportService.submit(reportType,
+                        String.format("revenue_report_monthly_%04d%02d.pdf", y, m),
+                        () -> revenueService.generateMonthlyReport(y, m));
+            }
+            case "custom" -> {
+                if (startDate == null || endDate == null) {
+                    throw new IllegalArgumentException("type=custom requires startDate and endDate parameters");
+                }
+                if (endDate.isBefore(startDate)) {
+                    throw new IllegalArgumentException("endDate must be after or equal to startDate");
+                }
+                yield reportExportService.submit(reportType,
+                        String.format("revenue_report_custom_%s_to_%s.pdf", startDate, endDate),
+                        () -> revenueService.generateCustomRangeReport(startDate, endDate));
+            }
+            default -> throw new AppException(ErrorCode.REPORT_EXPORT_TYPE_INVALID);
+        };
+
+        log.info("Admin submitted {} revenue report export job {}", reportType, job.getJobId());
+
+        return ApiResponse.<ReportExportJobResponse>builder()
+                .result(job)
+                .build();
+    }
+
+    @GetMapping("/reports/jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Trạng thái job xuất báo cáo PDF",
+            description = "Trạng thái, thời gian chờ / render, kích thước file, số trang và throughput của job"
+    )
+    public ApiResponse<ReportExportJobResponse> getReportJob(@PathVariable String jobId) {
+        return ApiResponse.<ReportExportJobResponse>builder()
+                .result(reportExportService.getJob(jobId))
+                .build();
+    }
+
+    @GetMapping("/reports/jobs/{jobId}/file")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Tải file PDF của job xuất báo cáo",
+            description = "Chỉ tải được khi job đã COMPLETED"
+    )
+    public void downloadReportJobFile(@PathVariable String jobId,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        ReportExportService.ExportFile file = reportExportService.getFile(jobId);
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.fileName()).build().toString());
+        response.setContentLengthLong(file.size());
+
+        // Tomcat NIO hỗ trợ sendfile: connector tự gửi file từ kernel sau khi request kết thúc (không copy qua heap)
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.path().toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", file.size());
+            return;
+        }
+
+        // Không có sendfile: FileChannel.transferTo sang output stream của response
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < file.size()) {
+                position += channel.transferTo(position, file.size() - position, out);
+            }
+        }
+    }
+}
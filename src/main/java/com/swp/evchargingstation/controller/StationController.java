@@ -5,8 +5,10 @@ import com.swp.evchargingstation.dto.request.ChargingPointUpdateRequest;
 import com.swp.evchargingstation.dto.request.StationCreationRequest;
 import com.swp.evchargingstation.dto.request.StationUpdateRequest;
 import com.swp.evchargingstation.dto.response.*;
+import com.swp.evchargingstation.enums.ChargingPower;
 import com.swp.evchargingstation.enums.StationStatus;
 import com.swp.evchargingstation.service.StaffDashboardService;
+import com.swp.evchargingstation.service.StationImportService;
 import com.swp.evchargingstation.service.StationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,10 +18,12 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -31,6 +35,7 @@ import java.util.List;
 public class StationController {
     StationService stationService;
     StaffDashboardService staffDashboardService;
+    StationImportService stationImportService;
 
     @GetMapping
     @Operation(
@@ -62,6 +67,31 @@ public class StationController {
         };
     }
 
+    @GetMapping("/nearby")
+    @Operation(
+            summary = "[ALL] Tìm trạm sạc gần nhất",
+            description = "Trả về tối đa limit trạm trong bán kính radius (km, tối đa 100) quanh vị trí (lat, lon), " +
+                    "sắp theo khoảng cách tăng dần, kèm số trụ đang AVAILABLE. " +
+                    "Có thể lọc theo công suất trụ và chỉ lấy trạm còn trụ trống"
+    )
+    public ApiResponse<List<NearbyStationResponse>> nearby(
+            @Parameter(description = "Vĩ độ", example = "10.7769")
+            @RequestParam("lat") Double latitude,
+            @Parameter(description = "Kinh độ", example = "106.7009")
+            @RequestParam("lon") Double longitude,
+            @Parameter(description = "Bán kính tìm kiếm (km)", example = "10")
+            @RequestParam(value = "radius", defaultValue = "10") double radiusKm,
+            @Parameter(description = "Lọc theo công suất trụ", example = "POWER_50KW")
+            @RequestParam(value = "power", required = false) ChargingPower power,
+            @Parameter(description = "Chỉ lấy trạm đang hoạt động còn trụ trống")
+            @RequestParam(value = "availableOnly", defaultValue = "false") boolean availableOnly,
+            @Parameter(description = "Số trạm tối đa (tối đa 100)", example = "20")
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ApiResponse.<List<NearbyStationResponse>>builder()
+                .result(stationService.findNearbyStations(latitude, longitude, radiusKm, power, availableOnly, limit))
+                .build();
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @PostMapping
     @Operation(
@@ -75,6 +105,24 @@ public class StationController {
                 .build();
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(
+            summary = "[ADMIN] Import trạm sạc hàng loạt",
+            description = "Nhận file CSV (text/csv, dòng đầu là header) hoặc NDJSON (application/x-ndjson) trong body, " +
+                    "mỗi dòng một trạm với các field giống API tạo trạm: name, address, numberOfChargingPoints, powerOutput, " +
+                    "operatorName, contactPhone, latitude, longitude. Dữ liệu được đọc dạng stream và ghi theo chunk; " +
+                    "dòng lỗi bị bỏ qua và trả về trong báo cáo. Trạm không có tọa độ sẽ được geocode bất đồng bộ"
+    )
+    public ApiResponse<StationImportResponse> importStations(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        log.info("Admin importing stations ({})", contentType);
+        return ApiResponse.<StationImportResponse>builder()
+                .result(stationImportService.importStations(body, StationImportService.Format.fromContentType(contentType)))
+                .build();
+    }
+
     @PutMapping("/{stationId}")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
@@ -7,6 +7,7 @@ import com.swp.evchargingstation.dto.response.*;
 import com.swp.evchargingstation.service.StationService;
 import com.swp.evchargingstation.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -100,12 +101,17 @@ public class UserController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(
             summary = "[ADMIN] Lấy danh sách tất cả driver",
-            description = "Trả về danh sách tất cả các driver trong hệ thống với thông tin cơ bản"
+            description = "Trả về các driver trong hệ thống với thông tin cơ bản theo trang (thứ tự userId). " +
+                    "Trang kế tiếp: truyền after = nextCursor của trang trước"
     )
-    public ApiResponse<List<AdminUserResponse>> getAllDrivers() {
+    public ApiResponse<CursorPageResponse<AdminUserResponse>> getAllDrivers(
+            @Parameter(description = "Số driver mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         log.info("Admin fetching all drivers");
-        return ApiResponse.<List<AdminUserResponse>>builder()
-                .result(userService.getDriversForAdmin())
+        return ApiResponse.<CursorPageResponse<AdminUserResponse>>builder()
+                .result(userService.getDriversForAdmin(limit, after))
                 .build();
     }
 
@@ -3,6 +3,7 @@ package com.swp.evchargingstation.controller;
 import com.swp.evchargingstation.dto.request.TopUpCashRequest;
 import com.swp.evchargingstation.dto.request.TopUpZaloPayRequest;
 import com.swp.evchargingstation.dto.response.ApiResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.TopUpZaloPayResponse;
 import com.swp.evchargingstation.dto.response.WalletBalanceResponse;
 import com.swp.evchargingstation.dto.response.WalletDashboardResponse;
@@ -23,8 +24,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/wallet")
 @RequiredArgsConstructor
@@ -75,23 +74,28 @@ public class WalletController {
     @Operation(
             summary = "[DRIVER] Lấy lịch sử giao dịch ví",
             description = "Lấy danh sách các giao dịch trong ví của người dùng với tùy chọn lọc theo loại giao dịch. " +
-                    "Có thể lọc theo: TOPUP (Nạp tiền), CHARGING (Thanh toán sạc xe), REFUND (Hoàn tiền), hoặc ALL để xem tất cả."
+                    "Có thể lọc theo: TOPUP (Nạp tiền), CHARGING (Thanh toán sạc xe), REFUND (Hoàn tiền), hoặc ALL để xem tất cả. " +
+                    "Trả về theo trang (mới nhất trước), trang kế tiếp: truyền after = nextCursor của trang trước."
     )
-    public ApiResponse<List<WalletTransactionResponse>> getHistory(
+    public ApiResponse<CursorPageResponse<WalletTransactionResponse>> getHistory(
             Authentication authentication,
             @Parameter(description = "Loại giao dịch cần lọc: TOPUP, CHARGING, REFUND, hoặc ALL", example = "ALL")
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @Parameter(description = "Số giao dịch mỗi trang (mặc định 20, tối đa 100)", example = "20")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = "nextCursor của trang trước (bỏ trống = trang đầu)")
+            @RequestParam(required = false) String after) {
         String userId = getUserIdFromAuth(authentication);
         log.info("Getting wallet history for user: {}, filter: {}", userId, type);
 
-        List<WalletTransactionResponse> history;
+        CursorPageResponse<WalletTransactionResponse> history;
         if (type != null && !type.equalsIgnoreCase("ALL")) {
-            history = walletService.getTransactionHistoryByType(userId, type);
+            history = walletService.getTransactionHistoryByType(userId, type, limit, after);
         } else {
-            history = walletService.getTransactionHistory(userId);
+            history = walletService.getTransactionHistory(userId, limit, after);
         }
 
-        return ApiResponse.<List<WalletTransactionResponse>>builder()
+        return ApiResponse.<CursorPageResponse<WalletTransactionResponse>>builder()
                 .result(history)
                 .build();
     }
@@ -0,0 +1,44 @@
+package com.swp.evchargingstation.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Kết quả tìm khung giờ trống cho một xe trên toàn bộ trụ của một hoặc nhiều trạm.
+ */
+@Data
+@Builder
+public class BookingSlotSearchResponse {
+    private String vehicleId;
+    private int currentSocPercent;
+    private int targetSocPercent;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private List<PointSlots> points;
+
+    @Data
+    @Builder
+    public static class PointSlots {
+        private String stationId;
+        private String stationName;
+        private String chargingPointId;
+        private String chargingPointName;
+        private String chargingPower;
+        private boolean bookable;                     // Có khung giờ đủ để sạc tới target SOC
+        private Integer requiredMinutes;              // Thời gian sạc current SOC -> target SOC tại trụ này
+        private LocalDateTime earliestFeasibleStart;  // Giờ bắt đầu sớm nhất đủ thời gian sạc tới target
+        private String message;
+        private List<FreeWindow> freeWindows;
+    }
+
+    @Data
+    @Builder
+    public static class FreeWindow {
+        private LocalDateTime start;
+        private LocalDateTime end;                    // Booking kế tiếp (trừ buffer), tối đa là cuối khoảng tìm (to)
+        private double maxChargePercentage;           // % pin tối đa sạc được nếu bắt đầu lúc start (kể cả sau to)
+    }
+}
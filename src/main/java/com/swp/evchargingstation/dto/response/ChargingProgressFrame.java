@@ -0,0 +1,43 @@
+package com.swp.evchargingstation.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Objects;
+
+/**
+ * Frame progress gọn gửi qua SSE (/api/sessions/{id}/stream, /api/sessions/my-station/stream).
+ *
+ * Chỉ chứa các số liệu thay đổi theo tick; thông tin tĩnh (trạm, trụ, xe, giá) client lấy
+ * một lần qua GET /api/sessions/{id}. Số liệu được làm tròn theo độ phân giải hiển thị
+ * để frame chỉ được gửi khi giá trị client nhìn thấy thực sự đổi.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ChargingProgressFrame {
+    String sessionId;
+    String stationId;
+    String status; // IN_PROGRESS, COMPLETED
+    int socPercent;
+    int targetSocPercent;
+    float energyKwh; // làm tròn 0.01 kWh
+    int durationMin; // phút giả lập đã sạc
+    long costTotal; // VND
+    Integer estimatedTimeRemainingMinutes; // theo charging curve, null nếu không tính được
+
+    /**
+     * Cùng số liệu hiển thị với frame trước → không cần gửi lại.
+     */
+    public boolean hasSameProgressAs(ChargingProgressFrame other) {
+        return other != null
+                && socPercent == other.socPercent
+                && Float.compare(energyKwh, other.energyKwh) == 0
+                && durationMin == other.durationMin
+                && costTotal == other.costTotal
+                && Objects.equals(status, other.status)
+                && Objects.equals(estimatedTimeRemainingMinutes, other.estimatedTimeRemainingMinutes);
+    }
+}
@@ -0,0 +1,22 @@
+package com.swp.evchargingstation.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Một trang của danh sách phân trang keyset.
+ * Trang kế tiếp: gọi lại cùng endpoint với after = nextCursor (nextCursor null khi đã hết).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CursorPageResponse<T> {
+    List<T> items;
+    String nextCursor;
+    boolean hasMore;
+    int limit;
+}
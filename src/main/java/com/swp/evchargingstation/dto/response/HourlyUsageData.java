@@ -11,8 +11,9 @@ import lombok.experimental.FieldDefaults;
 public class HourlyUsageData {
     Integer hour; // 0-23
     Integer sessionCount; // Số session trong giờ này
-    Integer activePoints; // Số điểm đang sạc trong giờ này
-    Double usagePercent; // % sử dụng trong giờ này
+    Integer activePoints; // Số điểm sạc đồng thời cao nhất trong giờ này
+    Double usagePercent; // % sử dụng trong giờ này (phút-trụ đang sạc / (số trụ × 60))
+    Double pointMinutesInUse; // Tổng số phút-trụ đang sạc trong giờ này
     Double energyConsumed; // kWh tiêu thụ trong giờ này
     Double revenue; // Doanh thu trong giờ này
 }
\ No newline at end of file
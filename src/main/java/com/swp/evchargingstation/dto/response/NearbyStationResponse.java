@@ -0,0 +1,29 @@
+package com.swp.evchargingstation.dto.response;
+
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.StationStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Set;
+
+/**
+ * Trạm trong kết quả tìm trạm gần nhất (GET /api/stations/nearby), sắp theo khoảng cách tăng dần.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NearbyStationResponse {
+    String stationId;
+    String name;
+    String address;
+    Double latitude;
+    Double longitude;
+    StationStatus status;
+    double distanceKm; // khoảng cách đường chim bay tới vị trí tìm kiếm
+    int totalChargingPoints;
+    int availableChargingPoints; // số trụ AVAILABLE hiện tại
+    Set<ChargingPower> chargingPowers; // các mức công suất trụ của trạm
+}
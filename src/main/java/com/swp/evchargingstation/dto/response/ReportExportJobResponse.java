@@ -0,0 +1,38 @@
+package com.swp.evchargingstation.dto.response;
+
+import com.swp.evchargingstation.enums.ReportExportStatus;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái một job xuất báo cáo PDF (POST /api/revenues/reports/jobs).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReportExportJobResponse {
+    String jobId;
+    String reportType;          // daily, weekly, monthly, custom
+    ReportExportStatus status;
+    String fileName;
+    String downloadUrl;         // chỉ có khi COMPLETED
+
+    LocalDateTime createdAt;
+    LocalDateTime startedAt;
+    LocalDateTime finishedAt;
+
+    // Throughput của job
+    Long queueWaitMs;           // thời gian chờ worker
+    Long renderMs;              // lấy số liệu + render PDF
+    Long fileSizeBytes;
+    Integer pages;
+    Integer stationRows;
+    Double bytesPerSecond;
+    Double rowsPerSecond;
+
+    String error;               // chỉ có khi FAILED
+}
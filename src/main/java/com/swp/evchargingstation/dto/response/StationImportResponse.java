@@ -0,0 +1,41 @@
+package com.swp.evchargingstation.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Kết quả import trạm hàng loạt (POST /api/stations/import).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StationImportResponse {
+    int totalRows;
+    int importedStations;
+    int importedChargingPoints;
+    int failedRows;
+    int geocodingQueued; // số trạm không có tọa độ, đã xếp hàng geocoding
+    int geocodingDeferred; // số trạm không có tọa độ bị drop vì hàng đợi đầy, sweep định kỳ sẽ geocode lại
+    boolean errorsTruncated; // true nếu số lỗi vượt giới hạn, chỉ trả về các lỗi đầu tiên
+    long durationMs;
+    List<RowError> errors;
+
+    /**
+     * Lỗi của một dòng dữ liệu. line: số dòng trong file (tính cả dòng header của CSV).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class RowError {
+        long line;
+        String stationName;
+        String code;
+        String message;
+    }
+}
@@ -35,4 +35,6 @@ public class StationUsageResponse {
     List<HourlyUsageData> hourlyUsage; // Mức độ sử dụng theo từng giờ
     Integer peakHour; // Giờ cao điểm (giờ có nhiều session nhất)
     Double peakUsagePercent; // % sử dụng cao nhất trong ngày
+    Integer peakConcurrentPoints; // Số trụ sạc đồng thời cao nhất trong ngày
+    Double utilizationPercent; // % thời gian-trụ được sử dụng trong ngày (tính tới hiện tại nếu là hôm nay)
 }
\ No newline at end of file
@@ -13,6 +13,8 @@ public class WalletBalanceResponse {
     private String walletId; // Changed from Long to String (UUID)
     private String userId;
     private Double balance;
+    private Double heldAmount;        // Đang giữ cho phiên sạc đang chạy
+    private Double availableBalance;  // balance - heldAmount
     private String updatedAt;
 }
 
@@ -0,0 +1,28 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Ngày đã được rollup đầy đủ (station_hourly_rollups). Báo cáo của ngày này chỉ đọc từ rollup.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "analytics_rollup_days")
+public class AnalyticsRollupDay {
+    @Id
+    @Column(name = "rollup_day")
+    LocalDate day;
+
+    @Column(name = "finalized_at")
+    LocalDateTime finalizedAt;
+}
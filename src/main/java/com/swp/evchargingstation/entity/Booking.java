@@ -14,7 +14,11 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        @Index(name = "idx_bookings_expires_at", columnList = "expires_at"),
+        // Phân trang keyset booking của user: seek (created_at, id)
+        @Index(name = "idx_bookings_user_created", columnList = "user_id, created_at, id")
+})
 public class Booking {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -51,6 +55,9 @@ public class Booking {
 
     // Thời điểm user check-in (để track timeout)
     private LocalDateTime checkedInAt;
+
+    // Hạn tự động EXPIRED (chưa check-in / check-in mà chưa start session), null = không còn hạn
+    private LocalDateTime expiresAt;
 }
 
 
@@ -15,7 +15,10 @@ import org.hibernate.annotations.GenericGenerator;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "charging_points")
+@Table(name = "charging_points", indexes = {
+        // Join session → trụ → trạm chỉ đọc index
+        @Index(name = "idx_charging_points_point_station", columnList = "point_id, station_id")
+})
 public class ChargingPoint {
     @Id
     @GeneratedValue(generator = "uuid2")
@@ -15,7 +15,13 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "charging_sessions")
+@Table(name = "charging_sessions", indexes = {
+        // Join payments → session → trụ chỉ đọc index, không đọc cả row phiên sạc
+        @Index(name = "idx_charging_sessions_session_point", columnList = "session_id, point_id"),
+        // Phân trang keyset lịch sử phiên sạc: seek (start_time, session_id) theo driver / đọc ngược theo thời gian
+        @Index(name = "idx_charging_sessions_driver_start", columnList = "driver_id, start_time, session_id"),
+        @Index(name = "idx_charging_sessions_start", columnList = "start_time, session_id")
+})
 public class ChargingSession {
     @Id
     @GeneratedValue(generator = "uuid2")
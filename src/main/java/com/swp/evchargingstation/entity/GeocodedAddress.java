@@ -0,0 +1,40 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cache bền của kết quả geocoding theo địa chỉ đã chuẩn hóa (dùng chung giữa các instance, giữ qua restart).
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "geocoded_addresses")
+public class GeocodedAddress {
+    // SHA-256 (hex) của địa chỉ đã chuẩn hóa
+    @Id
+    @Column(name = "address_hash", length = 64)
+    String addressHash;
+
+    @Column(name = "normalized_address", nullable = false, columnDefinition = "TEXT")
+    String normalizedAddress;
+
+    @Column(name = "latitude", nullable = false)
+    Double latitude;
+
+    @Column(name = "longitude", nullable = false)
+    Double longitude;
+
+    @Column(name = "provider", length = 50)
+    String provider;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+}
@@ -16,7 +16,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "incidents")
+@Table(name = "incidents", indexes = {
+        // Phân trang keyset danh sách sự cố: seek (reported_at, incident_id), toàn hệ thống hoặc theo trạm
+        @Index(name = "idx_incidents_reported", columnList = "reported_at, incident_id"),
+        @Index(name = "idx_incidents_station_reported", columnList = "station_id, reported_at, incident_id")
+})
 public class Incident {
     @Id
     @GeneratedValue(generator = "uuid2")
@@ -36,7 +40,8 @@ public class Incident {
     @JoinColumn(name = "point_id")
     ChargingPoint chargingPoint;
 
-    @Column(name = "reported_at")
+    // Khóa seek của phân trang keyset: không được null (dữ liệu cũ do IncidentReportedAtBackfillRunner điền)
+    @Column(name = "reported_at", nullable = false)
     LocalDateTime reportedAt;
 
     @Column(name = "description")
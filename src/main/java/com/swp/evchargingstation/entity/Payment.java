@@ -15,7 +15,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        // Báo cáo doanh thu lọc status + range paid_at rồi join session; amount để index phủ luôn SUM
+        @Index(name = "idx_payments_status_paid_at", columnList = "status, paid_at, session_id, amount")
+})
 public class Payment {
     @Id
     @GeneratedValue(generator = "uuid2")
@@ -0,0 +1,66 @@
+package com.swp.evchargingstation.entity;
+
+import com.swp.evchargingstation.enums.ReportExportStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job xuất báo cáo PDF (ReportExportService). Lưu trong DB để mọi node đều trả được trạng thái / file của job,
+ * không chỉ node đã nhận request tạo job.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "report_export_jobs",
+        indexes = @Index(name = "idx_report_export_jobs_created_at", columnList = "created_at"))
+public class ReportExportJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "job_id")
+    String jobId;
+
+    @Column(name = "report_type", nullable = false, length = 20)
+    String reportType;
+
+    @Column(name = "file_name", nullable = false)
+    String fileName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    ReportExportStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    LocalDateTime finishedAt;
+
+    @Column(name = "render_nanos")
+    Long renderNanos;
+
+    @Column(name = "file_size_bytes")
+    Long fileSizeBytes;
+
+    @Column(name = "pages")
+    Integer pages;
+
+    @Column(name = "station_rows")
+    Integer stationRows;
+
+    // Tên file trong report.export.dir (thư mục dùng chung giữa các node)
+    @Column(name = "stored_file")
+    String storedFile;
+
+    @Column(name = "error", length = 1000)
+    String error;
+}
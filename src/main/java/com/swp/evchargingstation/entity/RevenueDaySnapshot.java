@@ -0,0 +1,42 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Doanh thu theo trạm của một ngày đã qua. Backing bền của RevenueReportCache, giữ qua restart và dùng chung
+ * giữa các instance.
+ *
+ * Ngày đã qua gần như bất biến (paid_at là thời điểm thanh toán), trừ payment commit sau nửa đêm:
+ * khi đó invalidated_at được set (row rỗng làm tombstone nếu chưa có snapshot) và bản tính bắt đầu trước
+ * thời điểm đó không được ghi đè lên.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "revenue_day_snapshots")
+public class RevenueDaySnapshot {
+    @Id
+    @Column(name = "revenue_day")
+    LocalDate day;
+
+    // JSON: [{"stationId": ..., "revenue": ..., "paymentCount": ...}]
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    String payload;
+
+    // Thời điểm bắt đầu query tính payload
+    @Column(name = "computed_at")
+    LocalDateTime computedAt;
+
+    // != null: payload đã cũ, phải tính lại
+    @Column(name = "invalidated_at")
+    LocalDateTime invalidatedAt;
+}
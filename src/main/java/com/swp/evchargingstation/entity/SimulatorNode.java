@@ -0,0 +1,31 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Node (instance ứng dụng) đang chạy charging simulator ở chế độ sharded.
+ * Dùng để tính số node còn sống khi chia đều shard.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "simulator_nodes")
+public class SimulatorNode {
+    @Id
+    @Column(name = "node_id", length = 100)
+    String nodeId;
+
+    @Column(name = "started_at")
+    LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at")
+    LocalDateTime heartbeatAt;
+}
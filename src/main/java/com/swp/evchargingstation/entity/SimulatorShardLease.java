@@ -0,0 +1,34 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease của một shard charging simulator (shard = hash(pointId) mod shardCount).
+ * Node nào giữ lease còn hạn thì chỉ node đó được tick các session trên các trụ thuộc shard.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "simulator_shard_leases")
+public class SimulatorShardLease {
+    @Id
+    @Column(name = "shard_id")
+    Integer shardId;
+
+    @Column(name = "owner_node_id", length = 100)
+    String ownerNodeId;
+
+    @Column(name = "lease_expires_at")
+    LocalDateTime leaseExpiresAt;
+
+    @Column(name = "heartbeat_at")
+    LocalDateTime heartbeatAt;
+}
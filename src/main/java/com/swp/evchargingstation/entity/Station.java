@@ -6,6 +6,7 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 import org.hibernate.annotations.GenericGenerator;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
@@ -42,6 +43,14 @@ public class Station {
     @Column(name = "longitude")
     Double longitude;
 
+    // Số lần geocoding địa chỉ hiện tại thất bại liên tiếp (không tìm thấy / provider lỗi)
+    @Column(name = "geocoding_failures")
+    Integer geocodingFailures;
+
+    // Sweep geocoding bỏ qua trạm tới thời điểm này (backoff theo geocodingFailures)
+    @Column(name = "geocoding_retry_at")
+    LocalDateTime geocodingRetryAt;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status")
     StationStatus status;
@@ -0,0 +1,78 @@
+package com.swp.evchargingstation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu đã gộp sẵn theo trạm × trụ × giờ (analytics đọc bucket thay vì quét charging_sessions / payments).
+ *
+ * Được ghi bởi StationRollupService (tính lại cả bucket từ dữ liệu gốc nên idempotent).
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "station_hourly_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_station_hourly_rollups_bucket",
+                columnNames = {"station_id", "point_id", "bucket_start"}),
+        indexes = @Index(name = "idx_station_hourly_rollups_bucket_start", columnList = "bucket_start"))
+public class StationHourlyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    Long id;
+
+    @Column(name = "station_id", nullable = false, length = 36)
+    String stationId;
+
+    @Column(name = "point_id", nullable = false, length = 36)
+    String pointId;
+
+    // Đầu giờ của bucket
+    @Column(name = "bucket_start", nullable = false)
+    LocalDateTime bucketStart;
+
+    // Phiên sạc bắt đầu trong giờ
+    @Column(name = "session_count", nullable = false)
+    int sessionCount;
+
+    @Column(name = "completed_session_count", nullable = false)
+    int completedSessionCount;
+
+    @Column(name = "active_session_count", nullable = false)
+    int activeSessionCount;
+
+    @Column(name = "energy_kwh", nullable = false)
+    double energyKwh;
+
+    // Tổng cost_total của các phiên bắt đầu trong giờ
+    @Column(name = "session_revenue", nullable = false)
+    double sessionRevenue;
+
+    // Số phút trụ đang sạc trong giờ (phiên IN_PROGRESS tính tới lúc rollup)
+    @Column(name = "minutes_in_use", nullable = false)
+    double minutesInUse;
+
+    @Column(name = "distinct_drivers", nullable = false)
+    int distinctDrivers;
+
+    // Thanh toán COMPLETED có paid_at trong giờ
+    @Column(name = "paid_revenue", nullable = false)
+    double paidRevenue;
+
+    @Column(name = "paid_count", nullable = false)
+    int paidCount;
+
+    // Số trụ sạc đồng thời cao nhất của cả trạm trong giờ (lặp lại trên mọi dòng trụ của trạm - đọc bằng MAX)
+    @Column(name = "station_peak_concurrency", nullable = false)
+    int stationPeakConcurrency;
+
+    @Column(name = "updated_at")
+    LocalDateTime updatedAt;
+}
@@ -0,0 +1,71 @@
+package com.swp.evchargingstation.entity;
+
+import com.swp.evchargingstation.enums.WalletHoldStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Khoản tiền được giữ (reserve) trong ví cho một phiên sạc đang chạy.
+ * Số dư khả dụng = balance - tổng amount của các hold ACTIVE.
+ * Deposit của booking (đã trừ khỏi ví khi đặt chỗ) được cộng vào trần chi phí, không giữ thêm.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "wallet_holds")
+public class WalletHold {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "wallet_id", nullable = false)
+    Wallet wallet;
+
+    @Column(name = "session_id", length = 36, nullable = false, unique = true)
+    String sessionId;
+
+    @Column(name = "amount", nullable = false)
+    @Builder.Default
+    Double amount = 0.0;
+
+    @Column(name = "deposit_amount", nullable = false)
+    @Builder.Default
+    Double depositAmount = 0.0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    WalletHoldStatus status;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    LocalDateTime updatedAt;
+
+    /**
+     * Trần chi phí phiên sạc được phép chạm tới: deposit + tiền đang giữ
+     */
+    public double getCeiling() {
+        return depositAmount + amount;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -15,7 +15,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
-@Table(name = "wallet_transactions")
+@Table(name = "wallet_transactions", indexes = {
+        // Phân trang keyset lịch sử giao dịch ví: seek (timestamp, id) trong một ví
+        @Index(name = "idx_wallet_transactions_wallet_time", columnList = "wallet_id, timestamp, id")
+})
 public class WalletTransaction {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,7 @@
+package com.swp.evchargingstation.enums;
+
+public enum ExportDataset {
+    CHARGING_SESSIONS,      // Lọc theo start_time
+    PAYMENTS,               // Lọc theo created_at (gồm cả payment chưa thanh toán)
+    WALLET_TRANSACTIONS     // Lọc theo timestamp
+}
@@ -0,0 +1,6 @@
+package com.swp.evchargingstation.enums;
+
+public enum ExportFormat {
+    CSV,    // Dòng đầu là header
+    NDJSON  // Mỗi dòng một JSON object
+}
@@ -0,0 +1,8 @@
+package com.swp.evchargingstation.enums;
+
+public enum ReportExportStatus {
+    QUEUED,     // Đang chờ worker
+    RUNNING,    // Đang render
+    COMPLETED,  // File sẵn sàng để tải
+    FAILED      // Render lỗi, xem error
+}
@@ -0,0 +1,6 @@
+package com.swp.evchargingstation.enums;
+
+public enum WalletHoldStatus {
+    ACTIVE,       // Đang giữ tiền cho phiên sạc
+    RELEASED      // Đã giải phóng (phiên sạc kết thúc)
+}
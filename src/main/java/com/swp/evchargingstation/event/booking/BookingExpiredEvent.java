@@ -0,0 +1,34 @@
+package com.swp.evchargingstation.event.booking;
+
+import com.swp.evchargingstation.entity.Booking;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event được publish khi booking bị EXPIRED (không check-in đúng hạn,
+ * hoặc check-in rồi nhưng không start session).
+ *
+ * Use cases:
+ * - Bỏ booking khỏi BookingIntervalIndex (trụ không còn bị giữ)
+ *
+ * Listeners:
+ * - BookingEventListener: Cập nhật interval index (SYNC, sau commit)
+ */
+@Getter
+public class BookingExpiredEvent extends ApplicationEvent {
+
+    private final Long bookingId;
+    private final String chargingPointId;
+
+    public BookingExpiredEvent(Object source, Booking booking) {
+        super(source);
+        this.bookingId = booking.getId();
+        this.chargingPointId = booking.getChargingPoint().getPointId();
+    }
+
+    public BookingExpiredEvent(Object source, Long bookingId, String chargingPointId) {
+        super(source);
+        this.bookingId = bookingId;
+        this.chargingPointId = chargingPointId;
+    }
+}
@@ -0,0 +1,32 @@
+package com.swp.evchargingstation.event.chargingpoint;
+
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event được publish khi trạng thái vật lý của trụ sạc được thay đổi ngoài vòng đời phiên sạc
+ * (thêm trụ, staff cập nhật trạng thái, xóa trụ).
+ *
+ * Use cases:
+ * - Cập nhật cache trạng thái hiển thị của ChargingPointStatusService
+ * - Cập nhật counters theo trạm của StationReadModel
+ *
+ * Listeners:
+ * - ChargingPointEventListener: Cập nhật cache + read model (SYNC, sau commit)
+ */
+@Getter
+public class ChargingPointStatusChangedEvent extends ApplicationEvent {
+
+    private final String stationId;
+    private final String chargingPointId;
+    private final ChargingPointStatus status; // null = trụ đã bị xóa
+
+    public ChargingPointStatusChangedEvent(Object source, String stationId, String chargingPointId,
+                                           ChargingPointStatus status) {
+        super(source);
+        this.stationId = stationId;
+        this.chargingPointId = chargingPointId;
+        this.status = status;
+    }
+}
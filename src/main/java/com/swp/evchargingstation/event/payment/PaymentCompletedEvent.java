@@ -0,0 +1,35 @@
+package com.swp.evchargingstation.event.payment;
+
+import com.swp.evchargingstation.entity.Payment;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.time.LocalDateTime;
+
+/**
+ * Event được publish khi payment chuyển sang COMPLETED (ví, tiền mặt, ZaloPay).
+ *
+ * Use cases:
+ * - Cập nhật doanh thu đã thu trong station_hourly_rollups (giờ paid_at của trụ)
+ *
+ * Listeners:
+ * - PaymentEventListener: đánh dấu bucket rollup cần tính lại (SYNC, sau commit)
+ */
+@Getter
+public class PaymentCompletedEvent extends ApplicationEvent {
+
+    private final String paymentId;
+    private final String chargingPointId;
+    private final float amount;
+    private final LocalDateTime paidAt;
+
+    public PaymentCompletedEvent(Object source, Payment payment) {
+        super(source);
+        this.paymentId = payment.getPaymentId();
+        this.chargingPointId = payment.getChargingSession() != null
+                ? payment.getChargingSession().getChargingPoint().getPointId()
+                : null;
+        this.amount = payment.getAmount();
+        this.paidAt = payment.getPaidAt();
+    }
+}
@@ -0,0 +1,35 @@
+package com.swp.evchargingstation.event.simulator;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Set;
+
+/**
+ * Event được publish khi node nhận thêm hoặc sắp trả shard của charging simulator.
+ *
+ * Listeners:
+ * - ChargingSessionLiveStateStore: flush + evict session của shard bị trả,
+ *   load session của shard mới nhận
+ *
+ * ⚠️ IMPORTANT:
+ * - lostShards được publish TRƯỚC khi release lease trong DB (SYNC, graceful = true),
+ *   để progress được flush trước khi node khác nhận shard
+ * - Lease hết hạn mà node không kịp gia hạn (graceful = false): shard có thể đã thuộc node khác,
+ *   session chỉ bị evict, không flush đè lên dữ liệu của chủ mới
+ */
+@Getter
+public class ShardOwnershipChangedEvent extends ApplicationEvent {
+
+    private final Set<Integer> gainedShards;
+    private final Set<Integer> lostShards;
+    private final boolean graceful;
+
+    public ShardOwnershipChangedEvent(Object source, Set<Integer> gainedShards, Set<Integer> lostShards,
+                                      boolean graceful) {
+        super(source);
+        this.gainedShards = gainedShards;
+        this.lostShards = lostShards;
+        this.graceful = graceful;
+    }
+}
@@ -0,0 +1,26 @@
+package com.swp.evchargingstation.event.station;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event được publish khi trạm được tạo / đổi địa chỉ mà không kèm tọa độ.
+ *
+ * Use cases:
+ * - Geocode địa chỉ bất đồng bộ rồi back-fill latitude / longitude của trạm
+ *
+ * Listeners:
+ * - StationEventListener: Xếp hàng geocoding trong GeocodingService (sau commit)
+ */
+@Getter
+public class StationAddressChangedEvent extends ApplicationEvent {
+
+    private final String stationId;
+    private final String address;
+
+    public StationAddressChangedEvent(Object source, String stationId, String address) {
+        super(source);
+        this.stationId = stationId;
+        this.address = address;
+    }
+}
@@ -0,0 +1,27 @@
+package com.swp.evchargingstation.event.station;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Event được publish khi thông tin trạm hoặc danh sách trụ của trạm thay đổi
+ * (tạo / cập nhật / đổi trạng thái / xóa trạm, thêm / sửa / xóa trụ).
+ *
+ * Use cases:
+ * - Cập nhật spatial index tìm trạm gần nhất
+ *
+ * Listeners:
+ * - StationEventListener: Cập nhật StationSpatialIndex, StationReadModel (SYNC, sau commit)
+ */
+@Getter
+public class StationChangedEvent extends ApplicationEvent {
+
+    private final String stationId;
+    private final boolean deleted;
+
+    public StationChangedEvent(Object source, String stationId, boolean deleted) {
+        super(source);
+        this.stationId = stationId;
+        this.deleted = deleted;
+    }
+}
@@ -111,7 +111,30 @@ public enum ErrorCode {
     INVALID_FILE(23001, "Tệp không hợp lệ"),
     INVALID_FILE_TYPE(23002, "Loại tệp không hợp lệ. Chỉ chấp nhận hình ảnh"),
     FILE_TOO_LARGE(23003, "Kích thước tệp vượt quá giới hạn 5MB"),
-    UPLOAD_FAILED(23004, "Tải tệp lên thất bại");
+    UPLOAD_FAILED(23004, "Tải tệp lên thất bại"),
+
+    // Station import related (24xxx)
+    STATION_IMPORT_UNSUPPORTED_FORMAT(24001, "Định dạng import không được hỗ trợ. Chỉ chấp nhận text/csv hoặc application/x-ndjson"),
+    STATION_IMPORT_HEADER_INVALID(24002, "Header CSV thiếu cột bắt buộc: name, address, numberOfChargingPoints, powerOutput"),
+    STATION_IMPORT_ROW_INVALID(24003, "Dòng dữ liệu không hợp lệ"),
+    STATION_IMPORT_TOO_MANY_POINTS(24004, "Số trụ sạc của một trạm vượt giới hạn import"),
+    STATION_IMPORT_STAFF_NOT_SUPPORTED(24005, "Import hàng loạt không hỗ trợ gán nhân viên, hãy gán sau khi import"),
+    STATION_IMPORT_WRITE_FAILED(24006, "Không thể ghi dữ liệu vào cơ sở dữ liệu"),
+    STATION_IMPORT_GEOCODING_DEFERRED(24007, "Trạm đã được import nhưng hàng đợi geocoding đầy, tọa độ sẽ được bổ sung sau"),
+
+    // Report export related (25xxx)
+    REPORT_EXPORT_JOB_NOT_FOUND(25001, "Không tìm thấy job xuất báo cáo hoặc job đã hết hạn"),
+    REPORT_EXPORT_QUEUE_FULL(25002, "Hàng đợi xuất báo cáo đang đầy, vui lòng thử lại sau"),
+    REPORT_EXPORT_NOT_READY(25003, "Báo cáo chưa sẵn sàng để tải"),
+    REPORT_EXPORT_TYPE_INVALID(25004, "Loại báo cáo không hợp lệ. Hỗ trợ: daily, weekly, monthly, custom"),
+
+    // Data export related (26xxx)
+    DATA_EXPORT_FORMAT_INVALID(26001, "Định dạng export không hợp lệ. Hỗ trợ: csv, ndjson"),
+    DATA_EXPORT_RANGE_INVALID(26002, "Khoảng thời gian export không hợp lệ: to phải sau hoặc bằng from"),
+
+    // Pagination related (27xxx)
+    PAGINATION_CURSOR_INVALID(27001, "Cursor phân trang không hợp lệ"),
+    PAGINATION_LIMIT_INVALID(27002, "limit phải lớn hơn 0");
 
     private int code;
     private String message;
@@ -3,6 +3,10 @@ package com.swp.evchargingstation.listener;
 import com.swp.evchargingstation.event.booking.BookingCancelledEvent;
 import com.swp.evchargingstation.event.booking.BookingCheckedInEvent;
 import com.swp.evchargingstation.event.booking.BookingCreatedEvent;
+import com.swp.evchargingstation.event.booking.BookingExpiredEvent;
+import com.swp.evchargingstation.service.BookingExpiryService;
+import com.swp.evchargingstation.service.BookingIntervalIndex;
+import com.swp.evchargingstation.service.ChargingPointStatusService;
 import com.swp.evchargingstation.service.EmailService;
 import com.swp.evchargingstation.service.WalletService;
 import com.swp.evchargingstation.enums.TransactionType;
@@ -21,6 +25,7 @@ import org.springframework.transaction.event.TransactionalEventListener;
  * Handles:
  * - Wallet deposit debit khi booking created
  * - Email notifications (async)
+ * - Cập nhật BookingIntervalIndex, hàng đợi hết hạn booking và cache trạng thái hiển thị trụ (sync, sau commit)
  *
  * Benefits:
  * - BookingService không phụ thuộc vào WalletService
@@ -34,6 +39,43 @@ public class BookingEventListener {
 
     private final WalletService walletService;
     private final EmailService emailService;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final BookingExpiryService bookingExpiryService;
+    private final ChargingPointStatusService chargingPointStatusService;
+
+    /**
+     * Đưa booking vừa tạo vào interval index và hàng đợi hết hạn (SYNC, sau commit) để availability check
+     * tiếp theo thấy ngay. Lỗi ở đây được rebuild định kỳ của index / sweep của hàng đợi nhặt lại.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void indexBooking(BookingCreatedEvent event) {
+        try {
+            bookingIntervalIndex.add(event.getBooking());
+            bookingExpiryService.schedule(event.getBookingId(), event.getBooking().getExpiresAt());
+            chargingPointStatusService.onBookingIndexed(event.getBooking());
+        } catch (Exception ex) {
+            log.error("[Event] Failed to index booking #{}: {}", event.getBookingId(), ex.getMessage(), ex);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void indexCheckIn(BookingCheckedInEvent event) {
+        bookingIntervalIndex.markCheckedIn(event.getChargingPointId(), event.getBookingId());
+        bookingExpiryService.schedule(event.getBookingId(), event.getBooking().getExpiresAt());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void unindexCancelledBooking(BookingCancelledEvent event) {
+        bookingIntervalIndex.remove(event.getChargingPointId(), event.getBookingId());
+        bookingExpiryService.cancel(event.getBookingId());
+        chargingPointStatusService.onBookingReleased(event.getChargingPointId(), event.getBookingId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void unindexExpiredBooking(BookingExpiredEvent event) {
+        bookingIntervalIndex.remove(event.getChargingPointId(), event.getBookingId());
+        chargingPointStatusService.onBookingReleased(event.getChargingPointId(), event.getBookingId());
+    }
 
     /**
      * Debit deposit from wallet when booking is created (SYNC, SEPARATE TRANSACTION).
@@ -0,0 +1,39 @@
+package com.swp.evchargingstation.listener;
+
+import com.swp.evchargingstation.event.chargingpoint.ChargingPointStatusChangedEvent;
+import com.swp.evchargingstation.service.ChargingPointStatusService;
+import com.swp.evchargingstation.service.StationReadModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Event listener cho thay đổi trạng thái vật lý của ChargingPoint.
+ *
+ * Handles:
+ * - Cập nhật cache trạng thái hiển thị và counters theo trạm (sync, sau commit)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChargingPointEventListener {
+
+    private final ChargingPointStatusService chargingPointStatusService;
+    private final StationReadModel stationReadModel;
+
+    /**
+     * Lỗi ở đây được rebuild / đối soát định kỳ nhặt lại.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void updateDisplayStatus(ChargingPointStatusChangedEvent event) {
+        try {
+            chargingPointStatusService.onPhysicalStatusChanged(event.getChargingPointId(), event.getStatus());
+            stationReadModel.onPointStatusChanged(event.getStationId(), event.getChargingPointId(), event.getStatus());
+        } catch (Exception ex) {
+            log.error("[Event] Failed to update display status of charging point {}: {}",
+                    event.getChargingPointId(), ex.getMessage(), ex);
+        }
+    }
+}
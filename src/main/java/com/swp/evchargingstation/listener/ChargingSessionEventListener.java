@@ -1,9 +1,19 @@
 package com.swp.evchargingstation.listener;
 
+import com.swp.evchargingstation.enums.ChargingPointStatus;
 import com.swp.evchargingstation.event.session.ChargingSessionCompletedEvent;
 import com.swp.evchargingstation.event.session.ChargingSessionStartedEvent;
+import com.swp.evchargingstation.service.BookingExpiryService;
+import com.swp.evchargingstation.service.BookingIntervalIndex;
+import com.swp.evchargingstation.service.ChargingPointStatusService;
+import com.swp.evchargingstation.service.ChargingProgressStreamService;
+import com.swp.evchargingstation.service.ChargingSessionLiveStateStore;
 import com.swp.evchargingstation.service.EmailService;
 import com.swp.evchargingstation.service.PaymentSettlementService;
+import com.swp.evchargingstation.service.StationReadModel;
+import com.swp.evchargingstation.service.StationRollupService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
@@ -32,6 +42,50 @@ public class ChargingSessionEventListener {
 
     private final EmailService emailService;
     private final PaymentSettlementService paymentSettlementService;
+    private final ChargingSessionLiveStateStore liveStateStore;
+    private final ChargingProgressStreamService progressStreamService;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final BookingExpiryService bookingExpiryService;
+    private final ChargingPointStatusService chargingPointStatusService;
+    private final StationReadModel stationReadModel;
+    private final StationRollupService stationRollupService;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Đưa session vừa start vào live state store (SYNC, sau commit).
+     *
+     * Từ đây simulator tính progress trong bộ nhớ, DB được cập nhật write-behind.
+     * Nếu bước này lỗi, reconcile định kỳ của store sẽ nhặt lại session.
+     */
+    /**
+     * Phiên sạc của booking đã bắt đầu → bỏ hạn check-in timeout khỏi hàng đợi (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void cancelBookingExpiry(ChargingSessionStartedEvent event) {
+        if (event.getSession().getBooking() != null) {
+            bookingExpiryService.cancel(event.getSession().getBooking().getId());
+        }
+    }
+
+    /**
+     * Trụ đã chuyển CHARGING → cập nhật cache trạng thái hiển thị và counters của trạm (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void markPointCharging(ChargingSessionStartedEvent event) {
+        chargingPointStatusService.onPhysicalStatusChanged(event.getChargingPointId(), ChargingPointStatus.CHARGING);
+        stationReadModel.onPointStatusChanged(null, event.getChargingPointId(), ChargingPointStatus.CHARGING);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void trackLiveState(ChargingSessionStartedEvent event) {
+        try {
+            liveStateStore.track(event.getSessionId());
+            log.info("[Event] Tracking live state for session: {}", event.getSessionId());
+        } catch (Exception ex) {
+            log.error("[Event] Failed to track live state for session {}: {}",
+                    event.getSessionId(), ex.getMessage(), ex);
+        }
+    }
 
     /**
      * Send email notification when session starts (ASYNC).
@@ -55,6 +109,51 @@ public class ChargingSessionEventListener {
         }
     }
 
+    /**
+     * Gửi frame COMPLETED cho client đang theo dõi progress qua SSE (SYNC, sau commit).
+     * Chỉ đặt frame vào hàng đợi của subscriber, việc ghi ra socket chạy trên stream executor.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void pushCompletedProgress(ChargingSessionCompletedEvent event) {
+        try {
+            progressStreamService.publishCompleted(event.getSession());
+        } catch (Exception ex) {
+            log.error("[Event] Failed to push completed progress for session {}: {}",
+                    event.getSessionId(), ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Booking của session đã COMPLETED → trụ không còn bị giữ, bỏ khỏi interval index;
+     * trụ về AVAILABLE (RESERVED nếu có booking sắp tới) trong cache trạng thái hiển thị (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void releaseBookingInterval(ChargingSessionCompletedEvent event) {
+        if (event.getSession().getBooking() != null) {
+            bookingIntervalIndex.remove(event.getChargingPointId(), event.getSession().getBooking().getId());
+        }
+        chargingPointStatusService.onPhysicalStatusChanged(event.getChargingPointId(), ChargingPointStatus.AVAILABLE);
+    }
+
+    /**
+     * Trụ về AVAILABLE, cộng doanh thu phiên vào counters của trạm (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void updateStationStats(ChargingSessionCompletedEvent event) {
+        stationReadModel.onPointStatusChanged(null, event.getChargingPointId(), ChargingPointStatus.AVAILABLE);
+        stationReadModel.onSessionCompleted(event.getChargingPointId(), event.getTotalCost(),
+                event.getSession().getEndTime());
+    }
+
+    /**
+     * Các giờ của phiên (bắt đầu → kết thúc) trong station_hourly_rollups cần tính lại (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void markRollupDirty(ChargingSessionCompletedEvent event) {
+        stationRollupService.onSessionCompleted(event.getChargingPointId(),
+                event.getSession().getStartTime(), event.getSession().getEndTime());
+    }
+
     /**
      * Send email notification when session completes (ASYNC).
      *
@@ -94,6 +193,7 @@ public class ChargingSessionEventListener {
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void settlePayment(ChargingSessionCompletedEvent event) {
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             log.info("[Event] Settling payment for session: {} (cost: {} VND)",
                     event.getSessionId(), event.getTotalCost());
@@ -110,6 +210,8 @@ public class ChargingSessionEventListener {
             // Payment failure is logged but doesn't affect session completion
             // User will see UNPAID status in their dashboard
             // Admin can manually resolve or user can top-up and retry
+        } finally {
+            sample.stop(meterRegistry.timer("charging.settlement"));
         }
     }
 }
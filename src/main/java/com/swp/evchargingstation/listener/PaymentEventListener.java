@@ -0,0 +1,41 @@
+package com.swp.evchargingstation.listener;
+
+import com.swp.evchargingstation.event.payment.PaymentCompletedEvent;
+import com.swp.evchargingstation.service.RevenueReportCache;
+import com.swp.evchargingstation.service.StationRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Event listener cho Payment events.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentEventListener {
+
+    private final StationRollupService stationRollupService;
+    private final RevenueReportCache revenueReportCache;
+
+    /**
+     * Doanh thu đã thu của giờ paid_at thay đổi → đánh dấu bucket rollup của trụ cần tính lại (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void markRollupDirty(PaymentCompletedEvent event) {
+        log.debug("[Event] Payment {} completed at {} - marking rollup dirty", event.getPaymentId(), event.getPaidAt());
+        stationRollupService.onPaymentCompleted(event.getChargingPointId(), event.getPaidAt());
+    }
+
+    /**
+     * Doanh thu của ngày paid_at thay đổi → bỏ bản cache báo cáo của ngày đó (SYNC, sau commit).
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void invalidateRevenueReport(PaymentCompletedEvent event) {
+        if (event.getPaidAt() != null) {
+            revenueReportCache.invalidate(event.getPaidAt().toLocalDate());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.swp.evchargingstation.listener;
+
+import com.swp.evchargingstation.event.station.StationAddressChangedEvent;
+import com.swp.evchargingstation.event.station.StationChangedEvent;
+import com.swp.evchargingstation.service.GeocodingService;
+import com.swp.evchargingstation.service.StationReadModel;
+import com.swp.evchargingstation.service.StationSpatialIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Event listener cho thay đổi của Station.
+ *
+ * Handles:
+ * - Cập nhật spatial index tìm trạm gần nhất (sync, sau commit)
+ * - Bỏ counters của trạm đã xóa khỏi StationReadModel
+ * - Xếp hàng geocoding cho trạm chưa có tọa độ (back-fill bất đồng bộ)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StationEventListener {
+
+    private final StationSpatialIndex stationSpatialIndex;
+    private final StationReadModel stationReadModel;
+    private final GeocodingService geocodingService;
+
+    /**
+     * Lỗi ở đây được rebuild định kỳ của index nhặt lại.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void updateSpatialIndex(StationChangedEvent event) {
+        try {
+            if (event.isDeleted()) {
+                stationSpatialIndex.remove(event.getStationId());
+                stationReadModel.onStationDeleted(event.getStationId());
+            } else {
+                stationSpatialIndex.refresh(event.getStationId());
+            }
+        } catch (Exception ex) {
+            log.error("[Event] Failed to update spatial index for station {}: {}",
+                    event.getStationId(), ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Chỉ xếp hàng (không chặn request). Địa chỉ chưa geocode được thì trạm giữ tọa độ rỗng.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void geocodeAddress(StationAddressChangedEvent event) {
+        try {
+            geocodingService.backfillStationCoordinates(event.getStationId(), event.getAddress());
+        } catch (Exception ex) {
+            log.error("[Event] Failed to queue geocoding for station {}: {}",
+                    event.getStationId(), ex.getMessage(), ex);
+        }
+    }
+}
@@ -1,14 +1,11 @@
 package com.swp.evchargingstation.mapper;
 
 import com.swp.evchargingstation.dto.response.ChargingPointResponse;
-import com.swp.evchargingstation.entity.Booking;
 import com.swp.evchargingstation.entity.ChargingPoint;
 import com.swp.evchargingstation.service.ChargingPointStatusService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.Optional;
-
 @Component
 @RequiredArgsConstructor
 public class ChargingPointMapper {
@@ -16,11 +13,8 @@ public class ChargingPointMapper {
     private final ChargingPointStatusService chargingPointStatusService;
 
     public ChargingPointResponse toChargingPointResponse(ChargingPoint chargingPoint) {
-        // Tính toán trạng thái hiển thị động
-        var displayStatus = chargingPointStatusService.calculateDisplayStatus(chargingPoint.getPointId());
-
-        // Lấy thông tin booking sắp tới (nếu có)
-        Optional<Booking> upcomingBooking = chargingPointStatusService.getUpcomingBooking(chargingPoint.getPointId());
+        // Trạng thái hiển thị động + booking sắp tới (nếu có), đọc từ cache không query DB
+        var displayState = chargingPointStatusService.getDisplayState(chargingPoint);
 
         var builder = ChargingPointResponse.builder()
                 .pointId(chargingPoint.getPointId())
@@ -29,15 +23,14 @@ public class ChargingPointMapper {
                 .stationName(chargingPoint.getStation() != null ? chargingPoint.getStation().getName() : null)
                 .chargingPower(chargingPoint.getChargingPower())
                 .status(chargingPoint.getStatus()) // Trạng thái vật lý thực tế
-                .displayStatus(displayStatus) // Trạng thái hiển thị động
+                .displayStatus(displayState.displayStatus()) // Trạng thái hiển thị động
                 .currentSessionId(chargingPoint.getCurrentSession() != null ? chargingPoint.getCurrentSession().getSessionId() : null);
 
         // Thêm thông tin booking sắp tới nếu có
-        if (upcomingBooking.isPresent()) {
-            Booking booking = upcomingBooking.get();
-            builder.upcomingBookingId(booking.getId())
-                   .upcomingBookingTime(booking.getBookingTime())
-                   .upcomingBookingUserName(booking.getUser() != null ? booking.getUser().getFullName() : null);
+        if (displayState.hasUpcomingBooking()) {
+            builder.upcomingBookingId(displayState.upcomingBookingId())
+                   .upcomingBookingTime(displayState.upcomingBookingTime())
+                   .upcomingBookingUserName(displayState.upcomingBookingUserName());
         }
 
         return builder.build();
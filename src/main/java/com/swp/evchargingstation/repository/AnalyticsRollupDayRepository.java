@@ -0,0 +1,16 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.AnalyticsRollupDay;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AnalyticsRollupDayRepository extends JpaRepository<AnalyticsRollupDay, LocalDate> {
+
+    @Query("SELECT d.day FROM AnalyticsRollupDay d")
+    List<LocalDate> findAllDays();
+}
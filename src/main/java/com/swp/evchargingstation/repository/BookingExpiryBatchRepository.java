@@ -0,0 +1,205 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.enums.BookingStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC set-based writer cho việc expire booking quá hạn hàng loạt.
+ *
+ * Mỗi chunk chỉ tốn vài round trip: 1 select khóa row, 1 update trạng thái theo điều kiện,
+ * 1 update trả trụ, 1 batch insert giao dịch hoàn cọc, 1 batch cộng số dư ví (gộp theo user)
+ * thay vì load / save từng entity qua JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class BookingExpiryBatchRepository {
+
+    // Trụ của booking đang có phiên sạc chạy
+    private static final String ACTIVE_SESSION_CONDITION =
+            "EXISTS (SELECT 1 FROM charging_points cp " +
+            "JOIN charging_sessions s ON s.session_id = cp.current_session_id " +
+            "WHERE cp.point_id = b.charging_point_id AND s.status = 'IN_PROGRESS')";
+
+    // Check-in rồi nhưng trụ đã có phiên sạc đang chạy → không expire
+    private static final String NO_ACTIVE_SESSION_CONDITION = "NOT " + ACTIVE_SESSION_CONDITION;
+
+    private static final String SELECT_OVERDUE_IDS_SQL =
+            "SELECT b.id FROM bookings b " +
+            "WHERE b.booking_status = ? AND b.expires_at < ? AND b.id > ? " +
+            "ORDER BY b.id LIMIT ?";
+
+    private static final String CLEAR_SUPERSEDED_CHECK_INS_SQL =
+            "UPDATE bookings b SET b.expires_at = NULL " +
+            "WHERE b.booking_status = 'IN_PROGRESS' AND b.expires_at < ? AND " + ACTIVE_SESSION_CONDITION;
+
+    private static final String INSERT_REFUND_TRANSACTION_SQL =
+            "INSERT INTO wallet_transactions " +
+            "(wallet_id, amount, transaction_type, status, timestamp, description, related_booking_id) " +
+            "SELECT w.wallet_id, ?, 'BOOKING_REFUND', 'COMPLETED', ?, ?, ? FROM wallets w WHERE w.user_id = ?";
+
+    private static final String CREDIT_WALLET_SQL =
+            "UPDATE wallets SET balance = balance + ?, updated_at = ? WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Booking quá hạn đã bị khóa trong chunk hiện tại.
+     */
+    public record OverdueBooking(Long bookingId, String pointId, String userId, double depositAmount) {
+    }
+
+    /**
+     * Một khoản hoàn cọc (1 dòng wallet_transactions).
+     */
+    public record Refund(Long bookingId, String userId, double amount, String description) {
+    }
+
+    /**
+     * Trang id kế tiếp (keyset theo id) của booking quá hạn. Không khóa: chỉ dùng để chia chunk,
+     * chunk lỗi bị bỏ qua thay vì bị chọn lại mãi.
+     */
+    public List<Long> findOverdueIds(BookingStatus status, LocalDateTime now, long afterId, int limit) {
+        return jdbcTemplate.queryForList(SELECT_OVERDUE_IDS_SQL, Long.class,
+                status.name(), Timestamp.valueOf(now), afterId, limit);
+    }
+
+    /**
+     * Khóa (FOR UPDATE) các booking trong chunk còn đúng trạng thái và vẫn quá hạn.
+     * Booking đã check-in mà trụ đang có phiên sạc bị loại.
+     */
+    public List<OverdueBooking> lockOverdue(Collection<Long> ids, BookingStatus status, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = "SELECT b.id, b.charging_point_id, b.user_id, b.deposit_amount FROM bookings b " +
+                "WHERE b.id IN (" + placeholders(ids.size()) + ") " +
+                "AND b.booking_status = ? AND b.expires_at < ?" +
+                (status == BookingStatus.IN_PROGRESS ? " AND " + NO_ACTIVE_SESSION_CONDITION : "") +
+                " FOR UPDATE";
+
+        List<Object> args = new ArrayList<>(ids);
+        args.add(status.name());
+        args.add(Timestamp.valueOf(now));
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new OverdueBooking(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getDouble(4)), args.toArray());
+    }
+
+    /**
+     * Chuyển sang EXPIRED bằng 1 câu UPDATE có điều kiện (status + hạn vẫn còn đúng).
+     * MySQL không có UPDATE ... RETURNING: id bị ảnh hưởng chính là các id đã khóa ở lockOverdue.
+     *
+     * @return số booking được expire
+     */
+    public int markExpired(Collection<Long> ids, BookingStatus fromStatus, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "UPDATE bookings SET booking_status = 'EXPIRED', expires_at = NULL " +
+                "WHERE id IN (" + placeholders(ids.size()) + ") AND booking_status = ? AND expires_at < ?";
+
+        List<Object> args = new ArrayList<>(ids);
+        args.add(fromStatus.name());
+        args.add(Timestamp.valueOf(now));
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+
+    /**
+     * Trả trụ đang RESERVED (không có phiên sạc) về AVAILABLE.
+     */
+    public int freeReservedPoints(Collection<String> pointIds) {
+        if (pointIds.isEmpty()) {
+            return 0;
+        }
+
+        String sql = "UPDATE charging_points SET status = 'AVAILABLE' " +
+                "WHERE point_id IN (" + placeholders(pointIds.size()) + ") " +
+                "AND status = 'RESERVED' AND current_session_id IS NULL";
+        return jdbcTemplate.update(sql, pointIds.toArray());
+    }
+
+    /**
+     * Booking đã check-in, quá hạn nhưng trụ đang có phiên sạc → bỏ hạn (không expire).
+     */
+    public int clearSupersededCheckIns(LocalDateTime now) {
+        return jdbcTemplate.update(CLEAR_SUPERSEDED_CHECK_INS_SQL, Timestamp.valueOf(now));
+    }
+
+    /**
+     * Bulk insert giao dịch hoàn cọc (COMPLETED).
+     *
+     * @return số row insert theo thứ tự danh sách đầu vào (0 = user chưa có ví)
+     */
+    public int[] insertRefundTransactions(List<Refund> refunds, LocalDateTime timestamp) {
+        if (refunds.isEmpty()) {
+            return new int[0];
+        }
+
+        Timestamp ts = Timestamp.valueOf(timestamp);
+        return jdbcTemplate.batchUpdate(INSERT_REFUND_TRANSACTION_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Refund refund = refunds.get(i);
+                ps.setDouble(1, refund.amount());
+                ps.setTimestamp(2, ts);
+                ps.setString(3, refund.description());
+                ps.setLong(4, refund.bookingId());
+                ps.setString(5, refund.userId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return refunds.size();
+            }
+        });
+    }
+
+    /**
+     * Cộng số dư ví, mỗi user 1 câu update (đã gộp tổng các khoản hoàn của user).
+     *
+     * @return số row update theo thứ tự duyệt của amountByUserId
+     */
+    public int[] creditWallets(Map<String, Double> amountByUserId, LocalDateTime updatedAt) {
+        if (amountByUserId.isEmpty()) {
+            return new int[0];
+        }
+
+        List<Map.Entry<String, Double>> credits = new ArrayList<>(amountByUserId.entrySet());
+        Timestamp ts = Timestamp.valueOf(updatedAt);
+        return jdbcTemplate.batchUpdate(CREDIT_WALLET_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<String, Double> credit = credits.get(i);
+                ps.setDouble(1, credit.getValue());
+                ps.setTimestamp(2, ts);
+                ps.setString(3, credit.getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return credits.size();
+            }
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -2,7 +2,10 @@ package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.Booking;
 import com.swp.evchargingstation.enums.BookingStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -35,7 +38,15 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
            "ORDER BY b.bookingTime DESC")
     Optional<Booking> findActiveBookingByUser(@Param("userId") String userId);
 
-    List<Booking> findByUserUserIdOrderByCreatedAtDesc(String userId);
+    // Một trang booking của user (mới nhất trước), seek sau vị trí (afterTime, afterId)
+    @Query("SELECT b FROM Booking b WHERE b.user.userId = :userId " +
+           "AND (:afterTime IS NULL OR b.createdAt < :afterTime " +
+           "OR (b.createdAt = :afterTime AND b.id < :afterId)) " +
+           "ORDER BY b.createdAt DESC, b.id DESC")
+    List<Booking> findPageByUserId(@Param("userId") String userId,
+                                   @Param("afterTime") LocalDateTime afterTime,
+                                   @Param("afterId") Long afterId,
+                                   Pageable pageable);
 
     @Query("SELECT b FROM Booking b WHERE b.bookingStatus = :status " +
            "AND b.bookingTime < :expiryTime")
@@ -53,28 +64,6 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             @Param("chargingPointId") String chargingPointId,
             @Param("status") BookingStatus status);
 
-    /**
-     * Tìm booking sắp tới cho một charging point trong khoảng thời gian
-     * (để hiển thị trạng thái RESERVED động)
-     */
-    @Query("SELECT b FROM Booking b WHERE b.chargingPoint.pointId = :chargingPointId " +
-           "AND b.bookingStatus IN ('CONFIRMED', 'IN_PROGRESS') " +
-           "AND b.bookingTime BETWEEN :startTime AND :endTime " +
-           "ORDER BY b.bookingTime ASC")
-    Optional<Booking> findUpcomingBookingInTimeWindow(
-            @Param("chargingPointId") String chargingPointId,
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
-
-    /**
-     * Tìm tất cả booking cần được đặt thành RESERVED (gần đến giờ booking)
-     */
-    @Query("SELECT b FROM Booking b WHERE b.bookingStatus = 'CONFIRMED' " +
-           "AND b.bookingTime BETWEEN :startTime AND :endTime")
-    List<Booking> findBookingsNearStartTime(
-            @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime);
-
     /**
      * Tìm booking cuối cùng trước một thời điểm (để kiểm tra buffer time)
      */
@@ -112,6 +101,44 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
+    /**
+     * Khoảng thời gian của mọi booking đang giữ trụ (rebuild BookingIntervalIndex).
+     * Trả về [bookingId, pointId, bookingTime, estimatedEndTime, bookingStatus]
+     */
+    @Query("SELECT b.id, b.chargingPoint.pointId, b.bookingTime, b.estimatedEndTime, b.bookingStatus " +
+           "FROM Booking b WHERE b.bookingStatus IN ('CONFIRMED', 'IN_PROGRESS')")
+    List<Object[]> findActiveBookingIntervals();
+
+    /**
+     * Tên người đặt của mọi booking đang giữ trụ (hiển thị booking sắp tới trên trụ).
+     * Trả về [bookingId, userFullName]
+     */
+    @Query("SELECT b.id, CONCAT(b.user.firstName, ' ', b.user.lastName) FROM Booking b WHERE b.bookingStatus IN ('CONFIRMED', 'IN_PROGRESS')")
+    List<Object[]> findActiveBookingUserNames();
+
+    /**
+     * Khóa row booking khi xử lý hết hạn (nhiều instance có thể cùng fire một deadline)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.id = :bookingId")
+    Optional<Booking> findByIdForUpdate(@Param("bookingId") Long bookingId);
+
+    /**
+     * Hạn expire của các booking còn hiệu lực đến hạn trước :until (range scan trên idx_bookings_expires_at).
+     * Trả về [bookingId, expiresAt]
+     */
+    @Query("SELECT b.id, b.expiresAt FROM Booking b " +
+           "WHERE b.expiresAt <= :until " +
+           "AND b.bookingStatus IN ('CONFIRMED', 'IN_PROGRESS')")
+    List<Object[]> findExpiryDeadlinesBefore(@Param("until") LocalDateTime until);
+
+    /**
+     * Booking còn hiệu lực chưa có hạn expire (dữ liệu trước khi có cột expires_at)
+     */
+    @Query("SELECT b FROM Booking b WHERE b.expiresAt IS NULL " +
+           "AND b.bookingStatus IN ('CONFIRMED', 'IN_PROGRESS')")
+    List<Booking> findActiveBookingsWithoutExpiry();
+
     /**
      * Tìm tất cả bookings theo status (để check timeout)
      */
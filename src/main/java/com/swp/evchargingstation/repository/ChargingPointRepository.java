@@ -3,10 +3,12 @@ package com.swp.evchargingstation.repository;
 import com.swp.evchargingstation.entity.ChargingPoint;
 import com.swp.evchargingstation.enums.ChargingPointStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -19,6 +21,39 @@ public interface ChargingPointRepository extends JpaRepository<ChargingPoint, St
 
     List<ChargingPoint> findByStation_StationId(String stationId);
 
+    // Tất cả trụ của nhiều trạm trong 1 query (tìm khung giờ trống khi đặt lịch)
+    @Query("SELECT cp FROM ChargingPoint cp JOIN FETCH cp.station s " +
+           "WHERE s.stationId IN :stationIds ORDER BY s.stationId, cp.name")
+    List<ChargingPoint> findByStationIdsWithStation(@Param("stationIds") Collection<String> stationIds);
+
     // Đếm số lượng charging point theo status
     long countByStatus(ChargingPointStatus status);
+
+    // Trạng thái vật lý của mọi trụ (rebuild cache trạng thái hiển thị). Trả về [pointId, status]
+    @Query("SELECT cp.pointId, cp.status FROM ChargingPoint cp")
+    List<Object[]> findAllPointStatuses();
+
+    // Số trụ theo trạm và trạng thái (báo cáo sử dụng tất cả trạm). Trả về [stationId, status, count]
+    @Query("SELECT cp.station.stationId, cp.status, COUNT(cp) FROM ChargingPoint cp " +
+           "GROUP BY cp.station.stationId, cp.status")
+    List<Object[]> countGroupByStationAndStatus();
+
+    // Trạm + trạng thái của mọi trụ (đối soát StationReadModel). Trả về [pointId, stationId, status]
+    @Query("SELECT cp.pointId, cp.station.stationId, cp.status FROM ChargingPoint cp")
+    List<Object[]> findAllPointStationStatuses();
+
+    // Các mức công suất có ở mỗi trạm (rebuild StationSpatialIndex). Trả về [stationId, chargingPower]
+    @Query("SELECT DISTINCT cp.station.stationId, cp.chargingPower FROM ChargingPoint cp")
+    List<Object[]> findAllStationPowers();
+
+    // Trạm của các trụ (gộp giờ bẩn của rollup theo trạm). Trả về [pointId, stationId]
+    @Query("SELECT cp.pointId, cp.station.stationId FROM ChargingPoint cp WHERE cp.pointId IN :pointIds")
+    List<Object[]> findStationIdsByPointIds(@Param("pointIds") Collection<String> pointIds);
+
+    // RESERVED vật lý cũ (do job 5 phút set trước đây) → trả về trạng thái gốc, RESERVED giờ chỉ là trạng thái hiển thị
+    @Modifying
+    @Query("UPDATE ChargingPoint cp SET cp.status = :available " +
+           "WHERE cp.status = :reserved AND cp.currentSession IS NULL")
+    int releaseReservedPoints(@Param("reserved") ChargingPointStatus reserved,
+                              @Param("available") ChargingPointStatus available);
 }
@@ -0,0 +1,98 @@
+package com.swp.evchargingstation.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * JDBC batch writer cho charging simulator.
+ *
+ * Mỗi tick chỉ cần 2 round trip (1 batch cho charging_sessions, 1 batch cho vehicles)
+ * thay vì save từng entity qua JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class ChargingSessionBatchRepository {
+
+    private static final String UPDATE_SESSION_PROGRESS_SQL =
+            "UPDATE charging_sessions " +
+            "SET energy_kwh = ?, duration_min = ?, end_soc_percent = ?, cost_total = ? " +
+            "WHERE session_id = ? AND status = 'IN_PROGRESS'";
+
+    private static final String UPDATE_VEHICLE_SOC_SQL =
+            "UPDATE vehicles SET current_soc_percent = ? WHERE vehicle_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Progress của một session sau một tick.
+     */
+    public record SessionProgress(String sessionId, float energyKwh, float durationMin,
+                                  int endSocPercent, float costTotal) {
+    }
+
+    /**
+     * SOC mới của một xe sau một tick.
+     */
+    public record VehicleSoc(String vehicleId, int socPercent) {
+    }
+
+    /**
+     * Bulk update progress. Chỉ update session còn IN_PROGRESS
+     * (session đã bị stop ở nơi khác sẽ không bị ghi đè).
+     *
+     * @return số row bị ảnh hưởng theo thứ tự của danh sách đầu vào
+     */
+    public int[] updateSessionProgress(List<SessionProgress> updates) {
+        if (updates.isEmpty()) {
+            return new int[0];
+        }
+
+        return jdbcTemplate.batchUpdate(UPDATE_SESSION_PROGRESS_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                SessionProgress update = updates.get(i);
+                ps.setFloat(1, update.energyKwh());
+                ps.setFloat(2, update.durationMin());
+                ps.setInt(3, update.endSocPercent());
+                ps.setFloat(4, update.costTotal());
+                ps.setString(5, update.sessionId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+    }
+
+    /**
+     * Bulk update SOC hiện tại của xe.
+     */
+    public int[] updateVehicleSoc(List<VehicleSoc> updates) {
+        if (updates.isEmpty()) {
+            return new int[0];
+        }
+
+        return jdbcTemplate.batchUpdate(UPDATE_VEHICLE_SOC_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                VehicleSoc update = updates.get(i);
+                ps.setInt(1, update.socPercent());
+                ps.setString(2, update.vehicleId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+    }
+}
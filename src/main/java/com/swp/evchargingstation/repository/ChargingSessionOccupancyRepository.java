@@ -0,0 +1,92 @@
+package com.swp.evchargingstation.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Stream sự kiện bắt đầu / kết thúc chiếm trụ của các phiên sạc (tính occupancy theo giờ).
+ *
+ * Mỗi phiên giao với cửa sổ [from, to) sinh 2 sự kiện: +1 tại max(start, from), -1 tại min(end, to).
+ * Phiên IN_PROGRESS được cắt tại now. Sự kiện đã sắp xếp sẵn trên DB theo (trạm, thời điểm, delta)
+ * — kết thúc trước bắt đầu khi trùng thời điểm, vì khoảng là [start, end) — và được đọc dạng stream
+ * (không load toàn bộ vào bộ nhớ).
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class ChargingSessionOccupancyRepository {
+
+    private static final String EFFECTIVE_END = "CASE WHEN s.status = 'IN_PROGRESS' THEN ? ELSE s.end_time END";
+
+    // Tham số: to, now, from
+    private static final String OVERLAP_CONDITION =
+            "FROM charging_sessions s JOIN charging_points cp ON cp.point_id = s.point_id " +
+            "WHERE s.status IN ('IN_PROGRESS', 'COMPLETED', 'CANCELLED', 'FAILED') " +
+            "AND s.start_time < ? AND " + EFFECTIVE_END + " > GREATEST(s.start_time, ?)";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @FunctionalInterface
+    public interface IntervalEventHandler {
+        /**
+         * @param delta +1 khi một phiên bắt đầu chiếm trụ, -1 khi nhả trụ
+         */
+        void onEvent(String stationId, LocalDateTime time, int delta);
+    }
+
+    /**
+     * @param stationId chỉ lấy sự kiện của trạm này (null = mọi trạm)
+     */
+    public void streamIntervalEvents(String stationId, LocalDateTime from, LocalDateTime to, LocalDateTime now,
+                                     IntervalEventHandler handler) {
+        String stationFilter = stationId != null ? " AND cp.station_id = ?" : "";
+        String sql = "SELECT e.station_id, e.ts, e.delta FROM (" +
+                "SELECT cp.station_id, GREATEST(s.start_time, ?) AS ts, 1 AS delta " +
+                OVERLAP_CONDITION + stationFilter +
+                " UNION ALL " +
+                "SELECT cp.station_id, LEAST(" + EFFECTIVE_END + ", ?) AS ts, -1 AS delta " +
+                OVERLAP_CONDITION + stationFilter +
+                ") e ORDER BY e.station_id, e.ts, e.delta";
+
+        Timestamp fromTs = Timestamp.valueOf(from);
+        Timestamp toTs = Timestamp.valueOf(to);
+        Timestamp nowTs = Timestamp.valueOf(now);
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL Connector/J chỉ stream từng row khi fetch size = Integer.MIN_VALUE
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+
+            int i = 1;
+            ps.setTimestamp(i++, fromTs);
+            i = setOverlapParameters(ps, i, toTs, nowTs, fromTs, stationId);
+            ps.setTimestamp(i++, nowTs);
+            ps.setTimestamp(i++, toTs);
+            setOverlapParameters(ps, i, toTs, nowTs, fromTs, stationId);
+            return ps;
+        }, (RowCallbackHandler) rs -> handler.onEvent(rs.getString(1), rs.getTimestamp(2).toLocalDateTime(), rs.getInt(3)));
+    }
+
+    private static int setOverlapParameters(PreparedStatement ps, int index, Timestamp to, Timestamp now,
+                                            Timestamp from, String stationId) throws SQLException {
+        ps.setTimestamp(index++, to);
+        ps.setTimestamp(index++, now);
+        ps.setTimestamp(index++, from);
+        if (stationId != null) {
+            ps.setString(index++, stationId);
+        }
+        return index;
+    }
+}
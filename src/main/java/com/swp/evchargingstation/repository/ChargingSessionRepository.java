@@ -2,7 +2,10 @@ package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.ChargingSession;
 import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -22,14 +25,23 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     @Query("SELECT COALESCE(SUM(cs.energyKwh), 0) FROM ChargingSession cs WHERE cs.driver.userId = :driverId")
     Double sumTotalEnergyByDriverId(@Param("driverId") String driverId);
 
-    @Query("SELECT DISTINCT cs FROM ChargingSession cs " +
+    /**
+     * Một trang lịch sử phiên sạc của driver (mới nhất trước), seek sau vị trí (afterTime, afterId).
+     * afterTime = null: trang đầu. Chỉ fetch quan hệ to-one nên LIMIT chạy trên DB.
+     */
+    @Query("SELECT cs FROM ChargingSession cs " +
             "LEFT JOIN FETCH cs.chargingPoint cp " +
             "LEFT JOIN FETCH cp.station " +
             "LEFT JOIN FETCH cs.vehicle " +
             "LEFT JOIN FETCH cs.driver " +
             "WHERE cs.driver.userId = :driverId " +
-            "ORDER BY cs.startTime DESC")
-    List<ChargingSession> findByDriverIdOrderByStartTimeDesc(@Param("driverId") String driverId);
+            "AND (:afterTime IS NULL OR cs.startTime < :afterTime " +
+            "OR (cs.startTime = :afterTime AND cs.sessionId < :afterId)) " +
+            "ORDER BY cs.startTime DESC, cs.sessionId DESC")
+    List<ChargingSession> findPageByDriverId(@Param("driverId") String driverId,
+                                             @Param("afterTime") LocalDateTime afterTime,
+                                             @Param("afterId") String afterId,
+                                             Pageable pageable);
 
     @Query("SELECT cs.endSocPercent FROM ChargingSession cs WHERE cs.driver.userId = :driverId AND cs.endSocPercent IS NOT NULL ORDER BY cs.endTime DESC LIMIT 1")
     java.util.Optional<Integer> findLatestEndSocByDriverId(@Param("driverId") String driverId);
@@ -98,6 +110,13 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     @Query("SELECT COALESCE(SUM(cs.costTotal), 0) FROM ChargingSession cs WHERE cs.chargingPoint.station.stationId = :stationId")
     Double sumRevenueByStationId(@Param("stationId") String stationId);
 
+    // Doanh thu theo trạm trong 1 query (đối soát StationReadModel), phiên kết thúc trước endedBefore.
+    // Trả về [stationId, revenue]
+    @Query("SELECT cs.chargingPoint.station.stationId, COALESCE(SUM(cs.costTotal), 0) FROM ChargingSession cs " +
+           "WHERE cs.status = :status AND cs.endTime < :endedBefore GROUP BY cs.chargingPoint.station.stationId")
+    List<Object[]> sumRevenueGroupByStation(@Param("status") ChargingSessionStatus status,
+                                            @Param("endedBefore") LocalDateTime endedBefore);
+
     // ========== NEW QUERIES FOR USAGE ANALYTICS ==========
 
     /**
@@ -174,6 +193,27 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
             @Param("endTime") LocalDateTime endTime
     );
 
+    /**
+     * Thống kê theo trạm × giờ cho mọi trạm trong khoảng thời gian (báo cáo sử dụng tất cả trạm trong 1 query)
+     * Return: [stationId, giờ, số phiên, số phiên COMPLETED, số phiên IN_PROGRESS, tổng năng lượng, tổng doanh thu]
+     */
+    @Query("SELECT cs.chargingPoint.station.stationId, HOUR(cs.startTime), " +
+           "COUNT(cs), " +
+           "SUM(CASE WHEN cs.status = :completed THEN 1 ELSE 0 END), " +
+           "SUM(CASE WHEN cs.status = :inProgress THEN 1 ELSE 0 END), " +
+           "SUM(cs.energyKwh), " +
+           "SUM(cs.costTotal) " +
+           "FROM ChargingSession cs " +
+           "WHERE cs.startTime >= :startTime " +
+           "AND cs.startTime < :endTime " +
+           "GROUP BY cs.chargingPoint.station.stationId, HOUR(cs.startTime)")
+    List<Object[]> findHourlyUsageGroupByStation(
+            @Param("completed") ChargingSessionStatus completed,
+            @Param("inProgress") ChargingSessionStatus inProgress,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime
+    );
+
     // ========== DASHBOARD QUERIES ==========
 
     /**
@@ -246,25 +286,33 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     // ========== STAFF DASHBOARD QUERIES ==========
 
     /**
-     * Lấy sessions của một trạm trong khoảng thời gian
+     * Tổng hợp sessions của một trạm trong khoảng thời gian (theo startTime).
+     * Trả về 1 row [sessionCount, revenue, avgDurationMin (chỉ phiên có duration > 0, null nếu không có)]
      */
-    @Query("SELECT cs FROM ChargingSession cs " +
+    @Query("SELECT COUNT(cs), COALESCE(SUM(cs.costTotal), 0), " +
+            "AVG(CASE WHEN cs.durationMin > 0 THEN cs.durationMin ELSE NULL END) " +
+            "FROM ChargingSession cs " +
             "WHERE cs.chargingPoint.station.stationId = :stationId " +
             "AND cs.startTime >= :startTime " +
             "AND cs.startTime <= :endTime")
-    List<ChargingSession> findByStationIdAndDateRange(
+    List<Object[]> summarizeByStationIdAndDateRange(
             @Param("stationId") String stationId,
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime
     );
 
     /**
-     * Lấy tất cả sessions của một trạm, sắp xếp theo thời gian
+     * Một trang sessions của một trạm (mới nhất trước), seek sau vị trí (afterTime, afterId)
      */
     @Query("SELECT cs FROM ChargingSession cs " +
             "WHERE cs.chargingPoint.station.stationId = :stationId " +
-            "ORDER BY cs.startTime DESC")
-    List<ChargingSession> findByStationIdOrderByStartTimeDesc(@Param("stationId") String stationId);
+            "AND (:afterTime IS NULL OR cs.startTime < :afterTime " +
+            "OR (cs.startTime = :afterTime AND cs.sessionId < :afterId)) " +
+            "ORDER BY cs.startTime DESC, cs.sessionId DESC")
+    List<ChargingSession> findPageByStationId(@Param("stationId") String stationId,
+                                              @Param("afterTime") LocalDateTime afterTime,
+                                              @Param("afterId") String afterId,
+                                              Pageable pageable);
 
     /**
      * Lấy danh sách phiên sạc đang hoạt động theo trạng thái
@@ -272,12 +320,47 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
      */
     @Query("SELECT DISTINCT cs FROM ChargingSession cs " +
             "LEFT JOIN FETCH cs.chargingPoint cp " +
+            "LEFT JOIN FETCH cp.station " +
             "LEFT JOIN FETCH cs.vehicle v " +
             "LEFT JOIN FETCH cs.driver d " +
             "LEFT JOIN FETCH d.plan " +
             "WHERE cs.status = :status")
     List<ChargingSession> findByStatus(@Param("status") ChargingSessionStatus status);
 
+    /**
+     * Lấy danh sách sessions theo ID với relationships cần cho live state store
+     */
+    @Query("SELECT DISTINCT cs FROM ChargingSession cs " +
+            "LEFT JOIN FETCH cs.chargingPoint cp " +
+            "LEFT JOIN FETCH cp.station " +
+            "LEFT JOIN FETCH cs.vehicle v " +
+            "LEFT JOIN FETCH cs.driver d " +
+            "LEFT JOIN FETCH d.plan " +
+            "WHERE cs.sessionId IN :sessionIds")
+    List<ChargingSession> findByIdsWithRelationships(@Param("sessionIds") java.util.Collection<String> sessionIds);
+
+    /**
+     * Các session đang ở trạng thái status trong danh sách ID, kèm xe (tính giờ kết thúc dự kiến
+     * cho nhiều trụ trong 1 query khi tìm khung giờ trống)
+     */
+    @Query("SELECT cs FROM ChargingSession cs " +
+            "JOIN FETCH cs.vehicle " +
+            "WHERE cs.sessionId IN :sessionIds AND cs.status = :status")
+    List<ChargingSession> findByIdsAndStatusWithVehicle(@Param("sessionIds") java.util.Collection<String> sessionIds,
+                                                        @Param("status") ChargingSessionStatus status);
+
+    /**
+     * Chỉ lấy ID của các session theo trạng thái (query nhẹ để reconcile live state store)
+     */
+    @Query("SELECT cs.sessionId FROM ChargingSession cs WHERE cs.status = :status")
+    List<String> findSessionIdsByStatus(@Param("status") ChargingSessionStatus status);
+
+    /**
+     * Lấy [sessionId, pointId] của các session theo trạng thái (reconcile theo shard của trụ)
+     */
+    @Query("SELECT cs.sessionId, cs.chargingPoint.pointId FROM ChargingSession cs WHERE cs.status = :status")
+    List<Object[]> findSessionPointIdsByStatus(@Param("status") ChargingSessionStatus status);
+
     /**
      * Tìm session theo ID với tất cả relationships để tránh lazy loading exception
      */
@@ -292,6 +375,14 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
             "WHERE cs.sessionId = :sessionId")
     java.util.Optional<ChargingSession> findByIdWithRelationships(@Param("sessionId") String sessionId);
 
+    /**
+     * Khóa row session khi complete (auto complete, hết tiền và stop thủ công có thể chạy đồng thời).
+     * Chỉ khóa bảng charging_sessions, relationships load sau qua findByIdWithRelationships
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cs FROM ChargingSession cs WHERE cs.sessionId = :sessionId")
+    java.util.Optional<ChargingSession> findByIdForUpdate(@Param("sessionId") String sessionId);
+
     /**
      * Tìm session đang IN_PROGRESS của driver
      */
@@ -0,0 +1,147 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.enums.ExportDataset;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stream toàn bộ phiên sạc / payment / giao dịch ví (đối soát tài chính) bằng cursor forward-only.
+ *
+ * Row được chuyển thẳng cho ExportSink ngay khi đọc, không dựng entity hay list: bộ nhớ không phụ thuộc số row.
+ * Khoảng thời gian là [from, to), mọi filter đều tùy chọn (null = không lọc).
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class DataExportRepository {
+
+    private static final String SESSIONS_SQL =
+            "SELECT s.session_id, cp.station_id, s.point_id, s.driver_id, s.vehicle_id, s.booking_id, " +
+            "s.started_by_user_id, s.status, s.start_time, s.end_time, s.start_soc_percent, s.end_soc_percent, " +
+            "s.target_soc_percent, s.energy_kwh, s.duration_min, s.cost_total " +
+            "FROM charging_sessions s LEFT JOIN charging_points cp ON cp.point_id = s.point_id WHERE 1 = 1";
+
+    private static final String PAYMENTS_SQL =
+            "SELECT p.payment_id, p.session_id, cp.station_id, p.payer_id, p.payment_method, p.status, p.amount, " +
+            "p.created_at, p.paid_at, p.transaction_id, p.txn_reference, p.assigned_staff_id, " +
+            "p.confirmed_by_staff_id, p.confirmed_at " +
+            "FROM payments p " +
+            "LEFT JOIN charging_sessions s ON s.session_id = p.session_id " +
+            "LEFT JOIN charging_points cp ON cp.point_id = s.point_id WHERE 1 = 1";
+
+    // Giao dịch nạp / rút không gắn phiên sạc nên không có station_id (bị loại khi lọc theo trạm)
+    private static final String WALLET_TRANSACTIONS_SQL =
+            "SELECT t.id, t.wallet_id, w.user_id, t.transaction_type, t.status, t.amount, t.timestamp, " +
+            "t.description, t.external_transaction_id, t.related_session_id, t.related_booking_id, cp.station_id, " +
+            "t.processed_by_staff_id " +
+            "FROM wallet_transactions t JOIN wallets w ON w.wallet_id = t.wallet_id " +
+            "LEFT JOIN charging_sessions s ON s.session_id = t.related_session_id " +
+            "LEFT JOIN charging_points cp ON cp.point_id = s.point_id WHERE 1 = 1";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public interface ExportSink {
+        /**
+         * Gọi 1 lần trước row đầu tiên (kể cả khi không có row nào).
+         */
+        void start(List<String> columns) throws IOException;
+
+        void row(ResultSet rs) throws SQLException, IOException;
+    }
+
+    /**
+     * @return số row đã ghi
+     * @throws UncheckedIOException nếu sink không ghi được (thường là client ngắt kết nối)
+     */
+    public long stream(ExportDataset dataset, LocalDateTime from, LocalDateTime to, String stationId,
+                       ExportSink sink) {
+        String timeColumn = switch (dataset) {
+            case CHARGING_SESSIONS -> "s.start_time";
+            case PAYMENTS -> "p.created_at";
+            case WALLET_TRANSACTIONS -> "t.timestamp";
+        };
+        String idColumn = switch (dataset) {
+            case CHARGING_SESSIONS -> "s.session_id";
+            case PAYMENTS -> "p.payment_id";
+            case WALLET_TRANSACTIONS -> "t.id";
+        };
+
+        StringBuilder sql = new StringBuilder(switch (dataset) {
+            case CHARGING_SESSIONS -> SESSIONS_SQL;
+            case PAYMENTS -> PAYMENTS_SQL;
+            case WALLET_TRANSACTIONS -> WALLET_TRANSACTIONS_SQL;
+        });
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND ").append(timeColumn).append(" >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND ").append(timeColumn).append(" < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        if (stationId != null) {
+            sql.append(" AND cp.station_id = ?");
+            params.add(stationId);
+        }
+        sql.append(" ORDER BY ").append(timeColumn).append(", ").append(idColumn);
+
+        PreparedStatement[] statement = new PreparedStatement[1];
+        Long rows = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            // MySQL Connector/J chỉ stream từng row khi fetch size = Integer.MIN_VALUE
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            statement[0] = ps;
+            return ps;
+        }, (ResultSetExtractor<Long>) rs -> {
+            ResultSetMetaData meta = rs.getMetaData();
+            List<String> columns = new ArrayList<>(meta.getColumnCount());
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                columns.add(meta.getColumnLabel(i));
+            }
+            long count = 0;
+            try {
+                sink.start(columns);
+                while (rs.next()) {
+                    sink.row(rs);
+                    count++;
+                }
+                return count;
+            } catch (IOException e) {
+                // Đóng result set đang stream trên MySQL sẽ đọc nốt mọi row còn lại: hủy query trước
+                cancelQuietly(statement[0]);
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    private static void cancelQuietly(PreparedStatement ps) {
+        try {
+            ps.cancel();
+        } catch (SQLException e) {
+            log.warn("Failed to cancel export query: {}", e.getMessage());
+        }
+    }
+}
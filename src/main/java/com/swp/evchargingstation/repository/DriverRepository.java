@@ -1,8 +1,10 @@
 package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.Driver;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -12,8 +14,11 @@ import java.util.Optional;
 public interface DriverRepository extends JpaRepository<Driver, String> {
     Optional<Driver> findByUserId(String userId);
 
-    @Query("SELECT d FROM Driver d JOIN FETCH d.user")
-    List<Driver> findAllWithUser();
+    // Một trang driver theo userId (không có cột thời gian bắt buộc để seek), afterId = null: trang đầu
+    @Query("SELECT d FROM Driver d JOIN FETCH d.user " +
+           "WHERE :afterId IS NULL OR d.userId > :afterId " +
+           "ORDER BY d.userId")
+    List<Driver> findPageWithUser(@Param("afterId") String afterId, Pageable pageable);
 
     @Query("SELECT d FROM Driver d LEFT JOIN FETCH d.plan WHERE d.userId = :userId")
     Optional<Driver> findByUserIdWithPlan(String userId);
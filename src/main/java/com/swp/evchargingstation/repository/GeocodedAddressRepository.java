@@ -0,0 +1,9 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.GeocodedAddress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GeocodedAddressRepository extends JpaRepository<GeocodedAddress, String> {
+}
@@ -2,11 +2,14 @@ package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.Incident;
 import com.swp.evchargingstation.enums.IncidentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -30,16 +33,30 @@ public interface IncidentRepository extends JpaRepository<Incident, String> {
            "LEFT JOIN FETCH i.assignedStaff s " +
            "LEFT JOIN FETCH s.user " +
            "WHERE i.station.stationId = :stationId " +
-           "ORDER BY i.reportedAt DESC")
-    List<Incident> findByStationIdOrderByReportedAtDesc(@Param("stationId") String stationId);
-
-    // Tìm TẤT CẢ incidents (dành cho ADMIN)
+           "AND (:afterTime IS NULL OR i.reportedAt < :afterTime " +
+           "OR (i.reportedAt = :afterTime AND i.incidentId < :afterId)) " +
+           "ORDER BY i.reportedAt DESC, i.incidentId DESC")
+    List<Incident> findPageByStationId(@Param("stationId") String stationId,
+                                       @Param("afterTime") LocalDateTime afterTime,
+                                       @Param("afterId") String afterId,
+                                       Pageable pageable);
+
+    // Tìm TẤT CẢ incidents (dành cho ADMIN), từng trang seek sau vị trí (afterTime, afterId)
     @Query("SELECT i FROM Incident i " +
            "LEFT JOIN FETCH i.reporter " +
            "LEFT JOIN FETCH i.station " +
            "LEFT JOIN FETCH i.chargingPoint " +
            "LEFT JOIN FETCH i.assignedStaff s " +
            "LEFT JOIN FETCH s.user " +
-           "ORDER BY i.reportedAt DESC")
-    List<Incident> findAllByOrderByReportedAtDesc();
+           "WHERE :afterTime IS NULL OR i.reportedAt < :afterTime " +
+           "OR (i.reportedAt = :afterTime AND i.incidentId < :afterId) " +
+           "ORDER BY i.reportedAt DESC, i.incidentId DESC")
+    List<Incident> findPage(@Param("afterTime") LocalDateTime afterTime,
+                            @Param("afterId") String afterId,
+                            Pageable pageable);
+
+    // Dữ liệu cũ chưa có reported_at: lấy resolved_at, không có thì lấy thời điểm backfill
+    @Modifying
+    @Query("UPDATE Incident i SET i.reportedAt = COALESCE(i.resolvedAt, :now) WHERE i.reportedAt IS NULL")
+    int backfillMissingReportedAt(@Param("now") LocalDateTime now);
 }
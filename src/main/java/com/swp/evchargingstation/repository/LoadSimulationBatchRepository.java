@@ -0,0 +1,122 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.enums.Role;
+import com.swp.evchargingstation.enums.VehicleModel;
+import com.swp.evchargingstation.enums.VehicleRegistrationStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * JDBC batch writer cho workload của load simulation (profile "loadsim").
+ *
+ * Id được sinh sẵn từ Random seed của workload (JPA save luôn sinh UUID ngẫu nhiên qua uuid2 / @PrePersist),
+ * nên cùng seed cho ra đúng cùng bộ id → shard, thứ tự theo khóa chính... lặp lại được giữa các lần chạy.
+ */
+@Repository
+@Profile("loadsim")
+@RequiredArgsConstructor
+public class LoadSimulationBatchRepository {
+
+    private static final String INSERT_USER_SQL =
+            "INSERT INTO users (user_id, email, password, first_name, last_name, role) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DRIVER_SQL =
+            "INSERT INTO drivers (user_id, join_date, plan_id, plan_auto_renew) VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_WALLET_SQL =
+            "INSERT INTO wallets (wallet_id, user_id, balance, updated_at) VALUES (?, ?, ?, ?)";
+
+    private static final String INSERT_VEHICLE_SQL =
+            "INSERT INTO vehicles " +
+            "(vehicle_id, license_plate, model, current_soc_percent, owner_id, approval_status, " +
+            "battery_capacity_kwh, max_charging_power_kw) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_SESSION_SQL =
+            "INSERT INTO charging_sessions " +
+            "(session_id, driver_id, vehicle_id, point_id, start_time, end_time, start_soc_percent, end_soc_percent, " +
+            "target_soc_percent, energy_kwh, duration_min, cost_total, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Một driver kèm user, ví và 1 xe.
+     */
+    public record DriverRow(String userId, String email, String password, String firstName, String lastName,
+                            LocalDateTime joinDate, String planId, String walletId, double balance,
+                            String vehicleId, String licensePlate, VehicleModel model, int socPercent) {
+    }
+
+    /**
+     * Một phiên sạc lịch sử (COMPLETED).
+     */
+    public record HistorySessionRow(String sessionId, String driverId, String vehicleId, String pointId,
+                                    LocalDateTime startTime, LocalDateTime endTime, int startSocPercent,
+                                    int endSocPercent, float energyKwh, float durationMin, float costTotal) {
+    }
+
+    public void insertDrivers(List<DriverRow> drivers, LocalDateTime now) {
+        if (drivers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, drivers, drivers.size(), (ps, driver) -> {
+            ps.setString(1, driver.userId());
+            ps.setString(2, driver.email());
+            ps.setString(3, driver.password());
+            ps.setString(4, driver.firstName());
+            ps.setString(5, driver.lastName());
+            ps.setString(6, Role.DRIVER.name());
+        });
+        jdbcTemplate.batchUpdate(INSERT_DRIVER_SQL, drivers, drivers.size(), (ps, driver) -> {
+            ps.setString(1, driver.userId());
+            ps.setTimestamp(2, Timestamp.valueOf(driver.joinDate()));
+            ps.setString(3, driver.planId());
+            ps.setBoolean(4, true);
+        });
+        jdbcTemplate.batchUpdate(INSERT_WALLET_SQL, drivers, drivers.size(), (ps, driver) -> {
+            ps.setString(1, driver.walletId());
+            ps.setString(2, driver.userId());
+            ps.setDouble(3, driver.balance());
+            ps.setTimestamp(4, Timestamp.valueOf(now));
+        });
+        jdbcTemplate.batchUpdate(INSERT_VEHICLE_SQL, drivers, drivers.size(), (ps, driver) -> {
+            ps.setString(1, driver.vehicleId());
+            ps.setString(2, driver.licensePlate());
+            ps.setString(3, driver.model().name());
+            ps.setInt(4, driver.socPercent());
+            ps.setString(5, driver.userId());
+            ps.setString(6, VehicleRegistrationStatus.APPROVED.name());
+            ps.setFloat(7, driver.model().getBatteryCapacityKwh());
+            ps.setFloat(8, driver.model().getMaxChargingPowerKw());
+        });
+    }
+
+    public void insertHistorySessions(List<HistorySessionRow> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SESSION_SQL, sessions, sessions.size(), (ps, session) -> {
+            ps.setString(1, session.sessionId());
+            ps.setString(2, session.driverId());
+            ps.setString(3, session.vehicleId());
+            ps.setString(4, session.pointId());
+            ps.setTimestamp(5, Timestamp.valueOf(session.startTime()));
+            ps.setTimestamp(6, Timestamp.valueOf(session.endTime()));
+            ps.setInt(7, session.startSocPercent());
+            ps.setInt(8, session.endSocPercent());
+            ps.setInt(9, session.endSocPercent());
+            ps.setFloat(10, session.energyKwh());
+            ps.setFloat(11, session.durationMin());
+            ps.setFloat(12, session.costTotal());
+            ps.setString(13, ChargingSessionStatus.COMPLETED.name());
+        });
+    }
+}
@@ -3,6 +3,7 @@ package com.swp.evchargingstation.repository;
 import com.swp.evchargingstation.entity.ChargingSession;
 import com.swp.evchargingstation.entity.Payment;
 import com.swp.evchargingstation.enums.PaymentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -22,78 +23,27 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     // Tìm payment theo transaction ID (cho ZaloPay callback)
     Optional<Payment> findByTransactionId(String transactionId);
 
-    // Query lấy doanh thu theo ngày của từng trạm
-    @Query("SELECT s.stationId, s.name, s.address, " +
-            "DAY(p.paidAt), MONTH(p.paidAt), YEAR(p.paidAt), " +
+    // Doanh thu theo trạm × ngày trong [from, to) (nạp cache báo cáo doanh thu theo ngày).
+    // Lọc range trực tiếp trên paid_at (không YEAR()/MONTH()/DAY() trong WHERE) để dùng idx_payments_status_paid_at.
+    // Trả về [stationId, year, month, day, revenue, count]
+    @Query("SELECT cp.station.stationId, YEAR(p.paidAt), MONTH(p.paidAt), DAY(p.paidAt), " +
             "SUM(p.amount), COUNT(p.paymentId) " +
             "FROM Payment p " +
             "JOIN p.chargingSession cs " +
             "JOIN cs.chargingPoint cp " +
-            "JOIN cp.station s " +
-            "WHERE YEAR(p.paidAt) = :year " +
-            "AND MONTH(p.paidAt) = :month " +
-            "AND DAY(p.paidAt) = :day " +
-            "AND p.status = 'COMPLETED' " +
-            "GROUP BY s.stationId, s.name, s.address, " +
-            "DAY(p.paidAt), MONTH(p.paidAt), YEAR(p.paidAt) " +
-            "ORDER BY s.name")
-    List<Object[]> findDailyRevenueByStation(@Param("year") int year, @Param("month") int month, @Param("day") int day);
-
-    // Query lấy doanh thu theo tuần của từng trạm (Thứ 2 - Chủ Nhật)
-    // Sử dụng native query vì HQL không hỗ trợ WEEK() function với mode parameter
-    @Query(value = "SELECT s.station_id, s.name, s.address, " +
-            "WEEK(p.paid_at, 1) AS weekOfYear, " +
-            "YEAR(p.paid_at), " +
-            "SUM(p.amount), COUNT(p.payment_id) " +
-            "FROM payments p " +
-            "JOIN charging_sessions cs ON p.session_id = cs.session_id " +
-            "JOIN charging_points cp ON cs.point_id = cp.point_id " +
-            "JOIN stations s ON cp.station_id = s.station_id " +
-            "WHERE WEEK(p.paid_at, 1) = :week " +
-            "AND YEAR(p.paid_at) = :year " +
-            "AND p.status = 'COMPLETED' " +
-            "GROUP BY s.station_id, s.name, s.address, " +
-            "WEEK(p.paid_at, 1), YEAR(p.paid_at) " +
-            "ORDER BY s.name", nativeQuery = true)
-    List<Object[]> findWeeklyRevenueByStation(@Param("year") int year, @Param("week") int week);
+            "WHERE p.status = 'COMPLETED' " +
+            "AND p.paidAt >= :from " +
+            "AND p.paidAt < :to " +
+            "GROUP BY cp.station.stationId, YEAR(p.paidAt), MONTH(p.paidAt), DAY(p.paidAt)")
+    List<Object[]> findRevenueByStationAndDay(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
-    // Query lấy doanh thu theo tháng của từng trạm
-    @Query("SELECT s.stationId, s.name, s.address, " +
-            "MONTH(p.paidAt), YEAR(p.paidAt), " +
-            "SUM(p.amount), COUNT(p.paymentId) " +
-            "FROM Payment p " +
-            "JOIN p.chargingSession cs " +
-            "JOIN cs.chargingPoint cp " +
-            "JOIN cp.station s " +
-            "WHERE YEAR(p.paidAt) = :year " +
-            "AND MONTH(p.paidAt) = :month " +
-            "AND p.status = 'COMPLETED' " +
-            "GROUP BY s.stationId, s.name, s.address, " +
-            "MONTH(p.paidAt), YEAR(p.paidAt)")
-    List<Object[]> findMonthlyRevenueByStation(@Param("year") int year, @Param("month") int month);
-
-    // Query lấy doanh thu theo năm của từng trạm (tất cả các tháng)
-    @Query("SELECT s.stationId, s.name, s.address, " +
-            "MONTH(p.paidAt), YEAR(p.paidAt), " +
-            "SUM(p.amount), COUNT(p.paymentId) " +
-            "FROM Payment p " +
-            "JOIN p.chargingSession cs " +
-            "JOIN cs.chargingPoint cp " +
-            "JOIN cp.station s " +
-            "WHERE YEAR(p.paidAt) = :year " +
-            "AND p.status = 'COMPLETED' " +
-            "GROUP BY s.stationId, s.name, s.address, " +
-            "MONTH(p.paidAt), YEAR(p.paidAt) " +
-            "ORDER BY MONTH(p.paidAt), s.name")
-    List<Object[]> findYearlyRevenueByStation(@Param("year") int year);
-
-    // Query tính tổng doanh thu trong tháng hiện tại (cho overview)
+    // Tổng doanh thu trong [from, to) (overview tháng hiện tại)
     @Query("SELECT SUM(p.amount) " +
             "FROM Payment p " +
-            "WHERE YEAR(p.paidAt) = :year " +
-            "AND MONTH(p.paidAt) = :month " +
-            "AND p.status = 'COMPLETED'")
-    Float findCurrentMonthRevenue(@Param("year") int year, @Param("month") int month);
+            "WHERE p.status = 'COMPLETED' " +
+            "AND p.paidAt >= :from " +
+            "AND p.paidAt < :to")
+    Float sumRevenue(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
     // Tìm payments theo status và station
     @Query("SELECT p FROM Payment p " +
@@ -128,7 +78,7 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
 
     boolean existsByChargingSessionAndStatus(ChargingSession chargingSession, PaymentStatus status);
 
-    // Lấy lịch sử thanh toán của một trạm (đã hoàn thành) với filter
+    // Lấy lịch sử thanh toán của một trạm (đã hoàn thành) với filter, từng trang seek sau vị trí (afterTime, afterId)
     @Query("SELECT p FROM Payment p " +
             "JOIN p.chargingSession cs " +
             "JOIN cs.chargingPoint cp " +
@@ -137,26 +87,16 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
             "AND (:startDate IS NULL OR p.paidAt >= :startDate) " +
             "AND (:endDate IS NULL OR p.paidAt <= :endDate) " +
             "AND (:paymentMethod IS NULL OR p.paymentMethod = :paymentMethod) " +
-            "ORDER BY p.paidAt DESC")
+            "AND (:afterTime IS NULL OR p.paidAt < :afterTime " +
+            "OR (p.paidAt = :afterTime AND p.paymentId < :afterId)) " +
+            "ORDER BY p.paidAt DESC, p.paymentId DESC")
     List<Payment> findPaymentHistoryByStationId(
             @Param("stationId") String stationId,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate,
-            @Param("paymentMethod") Payment.PaymentMethod paymentMethod
+            @Param("paymentMethod") Payment.PaymentMethod paymentMethod,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") String afterId,
+            Pageable pageable
     );
-
-    // Query lấy doanh thu theo khoảng thời gian tùy chỉnh của từng trạm
-    @Query("SELECT s.stationId, s.name, s.address, " +
-            "SUM(p.amount), COUNT(p.paymentId) " +
-            "FROM Payment p " +
-            "JOIN p.chargingSession cs " +
-            "JOIN cs.chargingPoint cp " +
-            "JOIN cp.station s " +
-            "WHERE p.paidAt >= :startDate " +
-            "AND p.paidAt <= :endDate " +
-            "AND p.status = 'COMPLETED' " +
-            "GROUP BY s.stationId, s.name, s.address " +
-            "ORDER BY s.name")
-    List<Object[]> findCustomRangeRevenueByStation(@Param("startDate") LocalDateTime startDate,
-                                                    @Param("endDate") LocalDateTime endDate);
 }
\ No newline at end of file
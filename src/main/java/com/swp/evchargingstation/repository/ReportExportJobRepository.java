@@ -0,0 +1,19 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.ReportExportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReportExportJobRepository extends JpaRepository<ReportExportJob, String> {
+
+    // Job đã xong trước cutoff, hoặc chưa xong nhưng tạo trước cutoff (node render đã dừng giữa chừng)
+    @Query("SELECT j FROM ReportExportJob j " +
+           "WHERE j.finishedAt < :cutoff OR (j.finishedAt IS NULL AND j.createdAt < :cutoff)")
+    List<ReportExportJob> findExpired(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,50 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.RevenueDaySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevenueDaySnapshotRepository extends JpaRepository<RevenueDaySnapshot, LocalDate> {
+
+    // Cả 2 đầu đều tính; bỏ qua snapshot đã bị invalidate
+    List<RevenueDaySnapshot> findByDayBetweenAndInvalidatedAtIsNull(LocalDate from, LocalDate to);
+
+    /**
+     * Ghi snapshot cho ngày chưa có row. Trùng khóa (instance khác vừa ghi / tombstone) → DataIntegrityViolationException.
+     */
+    @Modifying
+    @Query("INSERT INTO RevenueDaySnapshot (day, payload, computedAt) VALUES (:day, :payload, :computedAt)")
+    int insertSnapshot(@Param("day") LocalDate day,
+                       @Param("payload") String payload,
+                       @Param("computedAt") LocalDateTime computedAt);
+
+    /**
+     * Ghi đè snapshot có điều kiện: chỉ khi ngày không bị invalidate sau lúc bắt đầu tính (computedAt).
+     */
+    @Modifying
+    @Query("UPDATE RevenueDaySnapshot s SET s.payload = :payload, s.computedAt = :computedAt, s.invalidatedAt = NULL " +
+           "WHERE s.day = :day AND (s.invalidatedAt IS NULL OR s.invalidatedAt < :computedAt)")
+    int replaceIfNotInvalidatedSince(@Param("day") LocalDate day,
+                                     @Param("payload") String payload,
+                                     @Param("computedAt") LocalDateTime computedAt);
+
+    @Modifying
+    @Query("UPDATE RevenueDaySnapshot s SET s.invalidatedAt = :invalidatedAt WHERE s.day = :day")
+    int markInvalidated(@Param("day") LocalDate day, @Param("invalidatedAt") LocalDateTime invalidatedAt);
+
+    /**
+     * Tombstone cho ngày chưa có snapshot: chặn instance đang tính dở ghi bản cũ vào sau.
+     */
+    @Modifying
+    @Query("INSERT INTO RevenueDaySnapshot (day, payload, computedAt, invalidatedAt) " +
+           "VALUES (:day, '[]', :invalidatedAt, :invalidatedAt)")
+    int insertTombstone(@Param("day") LocalDate day, @Param("invalidatedAt") LocalDateTime invalidatedAt);
+}
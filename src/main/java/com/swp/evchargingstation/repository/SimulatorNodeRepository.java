@@ -0,0 +1,27 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.SimulatorNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SimulatorNodeRepository extends JpaRepository<SimulatorNode, String> {
+
+    /**
+     * Đếm số node còn heartbeat sau mốc thời gian
+     */
+    @Query("SELECT COUNT(n) FROM SimulatorNode n WHERE n.heartbeatAt >= :since")
+    long countAlive(@Param("since") LocalDateTime since);
+
+    /**
+     * Xóa các node đã chết quá lâu
+     */
+    @Modifying
+    @Query("DELETE FROM SimulatorNode n WHERE n.heartbeatAt < :before")
+    int deleteDead(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,64 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.SimulatorShardLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SimulatorShardLeaseRepository extends JpaRepository<SimulatorShardLease, Integer> {
+
+    @Query("SELECT l.shardId FROM SimulatorShardLease l")
+    List<Integer> findAllShardIds();
+
+    /**
+     * Shard mà node đang giữ lease còn hạn
+     */
+    @Query("SELECT l.shardId FROM SimulatorShardLease l " +
+           "WHERE l.ownerNodeId = :nodeId AND l.leaseExpiresAt >= :now " +
+           "ORDER BY l.shardId")
+    List<Integer> findOwnedShardIds(@Param("nodeId") String nodeId, @Param("now") LocalDateTime now);
+
+    /**
+     * Shard chưa có chủ hoặc lease đã hết hạn (node chết)
+     */
+    @Query("SELECT l.shardId FROM SimulatorShardLease l " +
+           "WHERE l.ownerNodeId IS NULL OR l.leaseExpiresAt < :now " +
+           "ORDER BY l.shardId")
+    List<Integer> findClaimableShardIds(@Param("now") LocalDateTime now);
+
+    /**
+     * Gia hạn tất cả lease của node (heartbeat)
+     */
+    @Modifying
+    @Query("UPDATE SimulatorShardLease l SET l.leaseExpiresAt = :expiresAt, l.heartbeatAt = :now " +
+           "WHERE l.ownerNodeId = :nodeId AND l.leaseExpiresAt >= :now")
+    int renewLeases(@Param("nodeId") String nodeId,
+                    @Param("now") LocalDateTime now,
+                    @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Claim có điều kiện: chỉ thành công nếu shard chưa có chủ hoặc lease đã hết hạn.
+     * Hai node claim cùng lúc → chỉ một UPDATE match row.
+     */
+    @Modifying
+    @Query("UPDATE SimulatorShardLease l SET l.ownerNodeId = :nodeId, l.leaseExpiresAt = :expiresAt, l.heartbeatAt = :now " +
+           "WHERE l.shardId = :shardId AND (l.ownerNodeId IS NULL OR l.leaseExpiresAt < :now)")
+    int claim(@Param("shardId") Integer shardId,
+              @Param("nodeId") String nodeId,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Trả shard (rebalance khi có node mới)
+     */
+    @Modifying
+    @Query("UPDATE SimulatorShardLease l SET l.ownerNodeId = NULL, l.leaseExpiresAt = NULL " +
+           "WHERE l.shardId = :shardId AND l.ownerNodeId = :nodeId")
+    int release(@Param("shardId") Integer shardId, @Param("nodeId") String nodeId);
+}
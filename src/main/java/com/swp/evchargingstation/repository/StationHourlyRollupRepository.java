@@ -0,0 +1,48 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.StationHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Đọc rollup theo trạm × giờ. Khoảng thời gian luôn là [from, to) theo đầu giờ của bucket.
+ */
+@Repository
+public interface StationHourlyRollupRepository extends JpaRepository<StationHourlyRollup, Long> {
+
+    // Doanh thu thanh toán theo trạm × ngày. Trả về [stationId, year, month, day, paidRevenue, paidCount]
+    @Query("SELECT r.stationId, YEAR(r.bucketStart), MONTH(r.bucketStart), DAY(r.bucketStart), " +
+           "SUM(r.paidRevenue), SUM(r.paidCount) " +
+           "FROM StationHourlyRollup r " +
+           "WHERE r.bucketStart >= :from AND r.bucketStart < :to " +
+           "GROUP BY r.stationId, YEAR(r.bucketStart), MONTH(r.bucketStart), DAY(r.bucketStart) " +
+           "HAVING SUM(r.paidCount) > 0")
+    List<Object[]> sumPaidRevenueByStationAndDay(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Thống kê sử dụng theo trạm × giờ.
+     * Trả về [stationId, giờ, số phiên, số phiên COMPLETED, số phiên IN_PROGRESS, năng lượng, doanh thu phiên,
+     * phút-trụ đang sạc, số trụ đồng thời cao nhất]
+     */
+    @Query("SELECT r.stationId, HOUR(r.bucketStart), SUM(r.sessionCount), SUM(r.completedSessionCount), " +
+           "SUM(r.activeSessionCount), SUM(r.energyKwh), SUM(r.sessionRevenue), SUM(r.minutesInUse), " +
+           "MAX(r.stationPeakConcurrency) " +
+           "FROM StationHourlyRollup r " +
+           "WHERE r.bucketStart >= :from AND r.bucketStart < :to " +
+           "GROUP BY r.stationId, HOUR(r.bucketStart)")
+    List<Object[]> findHourlyUsageGroupByStation(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT r.stationId, HOUR(r.bucketStart), SUM(r.sessionCount), SUM(r.completedSessionCount), " +
+           "SUM(r.activeSessionCount), SUM(r.energyKwh), SUM(r.sessionRevenue), SUM(r.minutesInUse), " +
+           "MAX(r.stationPeakConcurrency) " +
+           "FROM StationHourlyRollup r " +
+           "WHERE r.stationId = :stationId AND r.bucketStart >= :from AND r.bucketStart < :to " +
+           "GROUP BY r.stationId, HOUR(r.bucketStart)")
+    List<Object[]> findHourlyUsageByStation(@Param("stationId") String stationId,
+                                            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
@@ -0,0 +1,109 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.StationStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC batch writer cho import trạm / trụ sạc hàng loạt.
+ *
+ * Mỗi chunk chỉ tốn 2 batch insert (stations, charging_points) thay vì save từng entity qua JPA.
+ * Id (UUID) được sinh sẵn ở tầng service, giống định dạng uuid2 của entity.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class StationImportBatchRepository {
+
+    private static final String INSERT_STATION_SQL =
+            "INSERT INTO stations " +
+            "(station_id, name, address, operator_name, contact_phone, latitude, longitude, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_CHARGING_POINT_SQL =
+            "INSERT INTO charging_points (point_id, name, station_id, max_power_kw, status) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Một trạm cần insert. latitude / longitude null nếu chờ geocoding.
+     */
+    public record StationRow(String stationId, String name, String address, String operatorName,
+                             String contactPhone, Double latitude, Double longitude, StationStatus status) {
+    }
+
+    /**
+     * Một trụ sạc cần insert.
+     */
+    public record ChargingPointRow(String pointId, String name, String stationId, ChargingPower chargingPower,
+                                   ChargingPointStatus status) {
+    }
+
+    public int[] insertStations(List<StationRow> stations) {
+        if (stations.isEmpty()) {
+            return new int[0];
+        }
+
+        return jdbcTemplate.batchUpdate(INSERT_STATION_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                StationRow station = stations.get(i);
+                ps.setString(1, station.stationId());
+                ps.setString(2, station.name());
+                ps.setString(3, station.address());
+                ps.setString(4, station.operatorName());
+                ps.setString(5, station.contactPhone());
+                setNullableDouble(ps, 6, station.latitude());
+                setNullableDouble(ps, 7, station.longitude());
+                ps.setString(8, station.status().name());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return stations.size();
+            }
+        });
+    }
+
+    public int[] insertChargingPoints(List<ChargingPointRow> points) {
+        if (points.isEmpty()) {
+            return new int[0];
+        }
+
+        return jdbcTemplate.batchUpdate(INSERT_CHARGING_POINT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ChargingPointRow point = points.get(i);
+                ps.setString(1, point.pointId());
+                ps.setString(2, point.name());
+                ps.setString(3, point.stationId());
+                ps.setString(4, point.chargingPower().name());
+                ps.setString(5, point.status().name());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return points.size();
+            }
+        });
+    }
+
+    private static void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value != null) {
+            ps.setDouble(index, value);
+        } else {
+            ps.setNull(index, Types.DOUBLE);
+        }
+    }
+}
@@ -2,13 +2,57 @@ package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.Station;
 import com.swp.evchargingstation.enums.StationStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface StationRepository extends JpaRepository<Station, String> {
     List<Station> findByStatus(StationStatus status);
 
+    // Trạm kèm staff quản lý trong 1 query (danh sách trạm chi tiết)
+    @Query("SELECT s FROM Station s LEFT JOIN FETCH s.staff st LEFT JOIN FETCH st.user")
+    List<Station> findAllWithStaff();
+
+    @Query("SELECT s FROM Station s LEFT JOIN FETCH s.staff st LEFT JOIN FETCH st.user WHERE s.status = :status")
+    List<Station> findByStatusWithStaff(@Param("status") StationStatus status);
+
+    // Vị trí mọi trạm (rebuild StationSpatialIndex). Trả về [stationId, name, address, latitude, longitude, status]
+    @Query("SELECT s.stationId, s.name, s.address, s.latitude, s.longitude, s.status FROM Station s")
+    List<Object[]> findAllLocations();
+
+    // Trạm chưa có tọa độ (geocoding bị drop / lỗi / mất khi restart) đã hết backoff, keyset theo stationId.
+    // Trả về [stationId, address, geocodingFailures]
+    @Query("SELECT s.stationId, s.address, s.geocodingFailures FROM Station s " +
+           "WHERE (s.latitude IS NULL OR s.longitude IS NULL) AND s.address IS NOT NULL AND s.address <> '' " +
+           "AND (s.geocodingRetryAt IS NULL OR s.geocodingRetryAt <= :now) AND s.stationId > :afterStationId " +
+           "ORDER BY s.stationId")
+    List<Object[]> findMissingCoordinates(@Param("afterStationId") String afterStationId,
+                                          @Param("now") LocalDateTime now,
+                                          Pageable pageable);
+
+    // Geocoding thất bại: lùi lần thử sau (bỏ qua nếu địa chỉ đã đổi)
+    @Modifying
+    @Query("UPDATE Station s SET s.geocodingFailures = :failures, s.geocodingRetryAt = :retryAt " +
+           "WHERE s.stationId = :stationId AND s.address = :address")
+    int recordGeocodingFailure(@Param("stationId") String stationId,
+                               @Param("address") String address,
+                               @Param("failures") Integer failures,
+                               @Param("retryAt") LocalDateTime retryAt);
+
+    // Back-fill tọa độ từ geocoding bất đồng bộ: bỏ qua nếu địa chỉ đã đổi tiếp hoặc tọa độ đã được nhập tay
+    @Modifying
+    @Query("UPDATE Station s SET s.latitude = :latitude, s.longitude = :longitude " +
+           "WHERE s.stationId = :stationId AND s.address = :address " +
+           "AND (s.latitude IS NULL OR s.longitude IS NULL)")
+    int updateCoordinatesIfAddressMatches(@Param("stationId") String stationId,
+                                          @Param("address") String address,
+                                          @Param("latitude") Double latitude,
+                                          @Param("longitude") Double longitude);
 }
@@ -0,0 +1,176 @@
+package com.swp.evchargingstation.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JDBC cho việc tính lại station_hourly_rollups: đọc dạng stream phiên sạc / thanh toán của một khoảng giờ,
+ * xóa bucket cũ và batch upsert bucket mới.
+ *
+ * Upsert (ON DUPLICATE KEY UPDATE theo uk_station_hourly_rollups_bucket) thay vì insert: hai node cùng tính lại
+ * một khoảng giờ (sự kiện ở node này, job định kỳ ở node kia) không còn lỗi trùng khóa, node ghi sau thắng —
+ * cả hai tính từ cùng dữ liệu gốc nên kết quả như nhau.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class StationRollupBatchRepository {
+
+    // Phiên bắt đầu trong khoảng hoặc còn chiếm trụ trong khoảng. Tham số: to, from, from
+    private static final String SELECT_SESSIONS_SQL =
+            "SELECT cp.station_id, s.point_id, s.driver_id, s.start_time, s.end_time, " +
+            "s.energy_kwh, s.cost_total, s.status " +
+            "FROM charging_sessions s JOIN charging_points cp ON cp.point_id = s.point_id " +
+            "WHERE s.start_time < ? AND (s.start_time >= ? OR s.end_time > ? OR s.status = 'IN_PROGRESS')";
+
+    // Tham số: from, to. Package-private cho PaymentRepositoryQueryPlanTest (EXPLAIN)
+    static final String SELECT_PAYMENTS_SQL =
+            "SELECT cp.station_id, cs.point_id, p.paid_at, p.amount " +
+            "FROM payments p " +
+            "JOIN charging_sessions cs ON cs.session_id = p.session_id " +
+            "JOIN charging_points cp ON cp.point_id = cs.point_id " +
+            "WHERE p.status = 'COMPLETED' AND p.paid_at >= ? AND p.paid_at < ?";
+
+    private static final String DELETE_RANGE_SQL =
+            "DELETE FROM station_hourly_rollups WHERE bucket_start >= ? AND bucket_start < ?";
+
+    private static final String UPSERT_ROLLUP_SQL =
+            "INSERT INTO station_hourly_rollups " +
+            "(station_id, point_id, bucket_start, session_count, completed_session_count, active_session_count, " +
+            "energy_kwh, session_revenue, minutes_in_use, distinct_drivers, paid_revenue, paid_count, " +
+            "station_peak_concurrency, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE session_count = VALUES(session_count), " +
+            "completed_session_count = VALUES(completed_session_count), " +
+            "active_session_count = VALUES(active_session_count), energy_kwh = VALUES(energy_kwh), " +
+            "session_revenue = VALUES(session_revenue), minutes_in_use = VALUES(minutes_in_use), " +
+            "distinct_drivers = VALUES(distinct_drivers), paid_revenue = VALUES(paid_revenue), " +
+            "paid_count = VALUES(paid_count), station_peak_concurrency = VALUES(station_peak_concurrency), " +
+            "updated_at = VALUES(updated_at)";
+
+    private static final String SELECT_EARLIEST_SESSION_SQL =
+            "SELECT MIN(start_time) FROM charging_sessions";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record SessionRow(String stationId, String pointId, String driverId, LocalDateTime startTime,
+                             LocalDateTime endTime, double energyKwh, double costTotal, String status) {
+    }
+
+    public record PaymentRow(String stationId, String pointId, LocalDateTime paidAt, double amount) {
+    }
+
+    /**
+     * Một bucket trạm × trụ × giờ cần ghi.
+     */
+    public record RollupRow(String stationId, String pointId, LocalDateTime bucketStart, int sessionCount,
+                            int completedSessionCount, int activeSessionCount, double energyKwh,
+                            double sessionRevenue, double minutesInUse, int distinctDrivers,
+                            double paidRevenue, int paidCount, int stationPeakConcurrency) {
+    }
+
+    /**
+     * @param stationId chỉ lấy phiên của trạm này (null = mọi trạm)
+     */
+    public void streamSessions(String stationId, LocalDateTime from, LocalDateTime to, Consumer<SessionRow> consumer) {
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(to), Timestamp.valueOf(from), Timestamp.valueOf(from)));
+        String sql = SELECT_SESSIONS_SQL + stationFilter(stationId, args);
+        stream(sql, args, rs -> consumer.accept(new SessionRow(
+                rs.getString(1), rs.getString(2), rs.getString(3),
+                toLocalDateTime(rs.getTimestamp(4)), toLocalDateTime(rs.getTimestamp(5)),
+                rs.getDouble(6), rs.getDouble(7), rs.getString(8))));
+    }
+
+    public void streamPayments(String stationId, LocalDateTime from, LocalDateTime to, Consumer<PaymentRow> consumer) {
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        String sql = SELECT_PAYMENTS_SQL + stationFilter(stationId, args);
+        stream(sql, args, rs -> consumer.accept(new PaymentRow(
+                rs.getString(1), rs.getString(2), toLocalDateTime(rs.getTimestamp(3)), rs.getDouble(4))));
+    }
+
+    public int deleteRange(String stationId, LocalDateTime from, LocalDateTime to) {
+        List<Object> args = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        String sql = DELETE_RANGE_SQL + (stationId != null ? " AND station_id = ?" : "");
+        if (stationId != null) {
+            args.add(stationId);
+        }
+        return jdbcTemplate.update(sql, args.toArray());
+    }
+
+    public int[] upsertRollups(List<RollupRow> rows, LocalDateTime updatedAt) {
+        if (rows.isEmpty()) {
+            return new int[0];
+        }
+
+        Timestamp ts = Timestamp.valueOf(updatedAt);
+        return jdbcTemplate.batchUpdate(UPSERT_ROLLUP_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RollupRow row = rows.get(i);
+                ps.setString(1, row.stationId());
+                ps.setString(2, row.pointId());
+                ps.setTimestamp(3, Timestamp.valueOf(row.bucketStart()));
+                ps.setInt(4, row.sessionCount());
+                ps.setInt(5, row.completedSessionCount());
+                ps.setInt(6, row.activeSessionCount());
+                ps.setDouble(7, row.energyKwh());
+                ps.setDouble(8, row.sessionRevenue());
+                ps.setDouble(9, row.minutesInUse());
+                ps.setInt(10, row.distinctDrivers());
+                ps.setDouble(11, row.paidRevenue());
+                ps.setInt(12, row.paidCount());
+                ps.setInt(13, row.stationPeakConcurrency());
+                ps.setTimestamp(14, ts);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    public LocalDateTime findEarliestSessionStart() {
+        return toLocalDateTime(jdbcTemplate.queryForObject(SELECT_EARLIEST_SESSION_SQL, Timestamp.class));
+    }
+
+    private void stream(String sql, List<Object> args, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // MySQL Connector/J chỉ stream từng row khi fetch size = Integer.MIN_VALUE
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+            for (int i = 0; i < args.size(); i++) {
+                ps.setObject(i + 1, args.get(i));
+            }
+            return ps;
+        }, handler);
+    }
+
+    private static String stationFilter(String stationId, List<Object> args) {
+        if (stationId == null) {
+            return "";
+        }
+        args.add(stationId);
+        return " AND cp.station_id = ?";
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -1,9 +1,13 @@
 package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,8 @@ public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
     Optional<User> findByGoogleId(String googleId);
     Optional<User> findByPhone(String phone);
+
+    // Một trang user theo userId (bảng users không có cột thời gian), afterId = null: trang đầu
+    @Query("SELECT u FROM User u WHERE :afterId IS NULL OR u.userId > :afterId ORDER BY u.userId")
+    List<User> findPage(@Param("afterId") String afterId, Pageable pageable);
 }
@@ -0,0 +1,33 @@
+package com.swp.evchargingstation.repository;
+
+import com.swp.evchargingstation.entity.WalletHold;
+import com.swp.evchargingstation.enums.WalletHoldStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WalletHoldRepository extends JpaRepository<WalletHold, Long> {
+
+    Optional<WalletHold> findBySessionId(String sessionId);
+
+    /**
+     * Lấy hold ACTIVE của nhiều session trong 1 query (load live state store)
+     */
+    @Query("SELECT h FROM WalletHold h WHERE h.sessionId IN :sessionIds AND h.status = :status")
+    List<WalletHold> findBySessionIdsAndStatus(@Param("sessionIds") Collection<String> sessionIds,
+                                               @Param("status") WalletHoldStatus status);
+
+    /**
+     * Tổng tiền đang giữ trong ví
+     */
+    @Query("SELECT COALESCE(SUM(h.amount), 0) FROM WalletHold h " +
+           "WHERE h.wallet.walletId = :walletId AND h.status = :status")
+    Double sumAmountByWalletIdAndStatus(@Param("walletId") String walletId,
+                                        @Param("status") WalletHoldStatus status);
+}
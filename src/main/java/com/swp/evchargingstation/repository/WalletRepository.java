@@ -2,7 +2,9 @@ package com.swp.evchargingstation.repository;
 
 import com.swp.evchargingstation.entity.User;
 import com.swp.evchargingstation.entity.Wallet;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -16,5 +18,20 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     // Use custom query because User entity has 'userId' field, not 'id'
     @Query("SELECT w FROM Wallet w WHERE w.user.userId = :userId")
     Optional<Wallet> findByUserId(@Param("userId") String userId);
+
+    /**
+     * Khóa row ví (SELECT ... FOR UPDATE) khi đặt/gia hạn hold,
+     * để các phiên sạc đồng thời không giữ trùng cùng một khoản số dư
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.user.userId = :userId")
+    Optional<Wallet> findByUserIdForUpdate(@Param("userId") String userId);
+
+    /**
+     * Khóa row ví theo walletId (callback top-up chỉ có ví qua giao dịch PENDING)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.walletId = :walletId")
+    Optional<Wallet> findByWalletIdForUpdate(@Param("walletId") String walletId);
 }
 
@@ -3,16 +3,39 @@ package com.swp.evchargingstation.repository;
 import com.swp.evchargingstation.entity.Wallet;
 import com.swp.evchargingstation.entity.WalletTransaction;
 import com.swp.evchargingstation.enums.TransactionStatus;
+import com.swp.evchargingstation.enums.TransactionType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface WalletTransactionRepository extends JpaRepository<WalletTransaction, Long> {
-    List<WalletTransaction> findByWalletOrderByTimestampDesc(Wallet wallet);
+    /**
+     * Một trang lịch sử giao dịch của ví (mới nhất trước), seek sau vị trí (afterTime, afterId).
+     * filterTypes = false: mọi loại giao dịch; ngược lại chỉ các loại trong types,
+     * cộng giao dịch có mô tả chứa "refund" nếu matchRefundDescription = true.
+     */
+    @Query("SELECT t FROM WalletTransaction t " +
+           "WHERE t.wallet.walletId = :walletId " +
+           "AND (:filterTypes = false OR t.transactionType IN :types " +
+           "OR (:matchRefundDescription = true AND LOWER(t.description) LIKE '%refund%')) " +
+           "AND (:afterTime IS NULL OR t.timestamp < :afterTime " +
+           "OR (t.timestamp = :afterTime AND t.id < :afterId)) " +
+           "ORDER BY t.timestamp DESC, t.id DESC")
+    List<WalletTransaction> findPageByWalletId(@Param("walletId") String walletId,
+                                               @Param("filterTypes") boolean filterTypes,
+                                               @Param("types") Collection<TransactionType> types,
+                                               @Param("matchRefundDescription") boolean matchRefundDescription,
+                                               @Param("afterTime") LocalDateTime afterTime,
+                                               @Param("afterId") Long afterId,
+                                               Pageable pageable);
 
     // Query by wallet's UUID using underscore notation to navigate nested property
     List<WalletTransaction> findByWallet_WalletIdOrderByTimestampDesc(String walletId);
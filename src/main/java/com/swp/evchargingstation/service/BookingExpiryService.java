@@ -0,0 +1,379 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Booking;
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.enums.BookingStatus;
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.enums.TransactionType;
+import com.swp.evchargingstation.event.booking.BookingExpiredEvent;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository.OverdueBooking;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository.Refund;
+import com.swp.evchargingstation.repository.BookingRepository;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tự động EXPIRED booking đúng hạn (thay cho cron quét 5 phút / 2 phút).
+ *
+ * - Hạn được lưu trên booking (cột expires_at, có index):
+ *   CONFIRMED: bookingTime + 15 phút không check-in; IN_PROGRESS: checkedInAt + 10 phút không start session
+ * - Hàng đợi theo thời gian: bookingExpiryTimingWheel, consumer 1 thread fire đúng deadline,
+ *   mỗi booking xử lý trong transaction ngắn riêng (khóa row, kiểm tra lại trạng thái/hạn)
+ * - Seed khi tạo booking / check-in (BookingEventListener), hủy khi booking bị cancel / phiên sạc bắt đầu
+ * - Catch-up: khi khởi động và định kỳ, nạp các hạn sắp tới bằng range query trên expires_at
+ *   (booking tạo từ instance khác, deadline bị lỡ khi restart)
+ * - Backlog đã quá hạn (vd: sau downtime) không đi qua hàng đợi từng booking mà được expire
+ *   set-based theo chunk (BookingExpiryBatchRepository), mỗi chunk 1 transaction riêng,
+ *   chunk lỗi được log và bỏ qua để các chunk sau vẫn chạy
+ */
+@Service
+@Slf4j
+public class BookingExpiryService {
+
+    private final BookingRepository bookingRepository;
+    private final BookingExpiryBatchRepository expiryBatchRepository;
+    private final ChargingPointRepository chargingPointRepository;
+    private final WalletService walletService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final HashedTimingWheel<Long> expiryTimingWheel;
+    private final long sweepIntervalMillis;
+    private final int bulkChunkSize;
+
+    public BookingExpiryService(BookingRepository bookingRepository,
+                                BookingExpiryBatchRepository expiryBatchRepository,
+                                ChargingPointRepository chargingPointRepository,
+                                WalletService walletService,
+                                ApplicationEventPublisher eventPublisher,
+                                TransactionTemplate transactionTemplate,
+                                @Qualifier("bookingExpiryTimingWheel") HashedTimingWheel<Long> expiryTimingWheel,
+                                @Value("${booking.expiry.sweep-interval-ms:300000}") long sweepIntervalMillis,
+                                @Value("${booking.expiry.bulk-chunk-size:1000}") int bulkChunkSize) {
+        this.bookingRepository = bookingRepository;
+        this.expiryBatchRepository = expiryBatchRepository;
+        this.chargingPointRepository = chargingPointRepository;
+        this.walletService = walletService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.expiryTimingWheel = expiryTimingWheel;
+        this.sweepIntervalMillis = sweepIntervalMillis;
+        this.bulkChunkSize = bulkChunkSize;
+    }
+
+    /**
+     * Hạn của booking vừa tạo: không check-in trong BOOKING_EXPIRY_MINUTES sau giờ đặt.
+     */
+    public static LocalDateTime confirmedDeadline(Booking booking) {
+        return booking.getBookingTime().plusMinutes(BookingService.BOOKING_EXPIRY_MINUTES);
+    }
+
+    /**
+     * Hạn của booking đã check-in: không start session trong CHECK_IN_TIMEOUT_MINUTES.
+     */
+    public static LocalDateTime checkedInDeadline(Booking booking) {
+        return booking.getCheckedInAt().plusMinutes(BookingService.CHECK_IN_TIMEOUT_MINUTES);
+    }
+
+    /**
+     * Đưa (hoặc cập nhật) hạn của booking vào hàng đợi. Gọi sau khi transaction ghi expiresAt commit.
+     */
+    public void schedule(Long bookingId, LocalDateTime expiresAt) {
+        if (expiresAt == null) {
+            cancel(bookingId);
+            return;
+        }
+        long deadlineMillis = expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        expiryTimingWheel.schedule(bookingId, deadlineMillis, () -> expire(bookingId));
+    }
+
+    public void cancel(Long bookingId) {
+        expiryTimingWheel.cancel(bookingId);
+    }
+
+    /**
+     * Khởi động: gán hạn cho booking cũ chưa có expires_at rồi nạp hàng đợi.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Booking> legacy = bookingRepository.findActiveBookingsWithoutExpiry();
+            int backfilled = 0;
+            for (Booking booking : legacy) {
+                if (booking.getBookingStatus() == BookingStatus.CONFIRMED) {
+                    booking.setExpiresAt(confirmedDeadline(booking));
+                } else if (booking.getCheckedInAt() != null && !hasActiveSession(booking.getChargingPoint())) {
+                    booking.setExpiresAt(checkedInDeadline(booking));
+                } else {
+                    continue;
+                }
+                bookingRepository.save(booking);
+                backfilled++;
+            }
+            if (backfilled > 0) {
+                log.info("Backfilled expiry deadline for {} bookings", backfilled);
+            }
+        });
+        sweep();
+    }
+
+    /**
+     * CATCH-UP: expire hàng loạt các hạn đã qua, rồi nạp các hạn đến trước lần sweep kế tiếp.
+     * Schedule lại cùng booking chỉ thay thế timeout cũ nên chạy lặp lại an toàn.
+     */
+    @Scheduled(initialDelayString = "${booking.expiry.sweep-interval-ms:300000}",
+            fixedDelayString = "${booking.expiry.sweep-interval-ms:300000}")
+    public void sweep() {
+        drainOverdue();
+
+        LocalDateTime until = LocalDateTime.now().plus(Duration.ofMillis(sweepIntervalMillis));
+        List<Object[]> deadlines = bookingRepository.findExpiryDeadlinesBefore(until);
+        for (Object[] row : deadlines) {
+            schedule((Long) row[0], (LocalDateTime) row[1]);
+        }
+        log.debug("Booking expiry sweep queued {} deadlines before {}", deadlines.size(), until);
+    }
+
+    /**
+     * Expire set-based toàn bộ booking đã quá hạn: CONFIRMED (mất cọc) rồi IN_PROGRESS (hoàn 50%).
+     * Chunk theo keyset id; chunk lỗi giữ nguyên expiresAt → sweep kế tiếp (hoặc timing wheel) thử lại.
+     *
+     * @return số booking được expire
+     */
+    int drainOverdue() {
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        int failedChunks = 0;
+
+        try {
+            int cleared = expiryBatchRepository.clearSupersededCheckIns(now);
+            if (cleared > 0) {
+                log.info("Cleared expiry deadline of {} checked-in bookings with an active session", cleared);
+            }
+        } catch (Exception e) {
+            log.error("Failed to clear superseded check-in deadlines: {}", e.getMessage(), e);
+        }
+
+        for (BookingStatus status : List.of(BookingStatus.CONFIRMED, BookingStatus.IN_PROGRESS)) {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = expiryBatchRepository.findOverdueIds(status, now, afterId, bulkChunkSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1);
+
+                try {
+                    Integer count = transactionTemplate.execute(tx -> expireChunk(ids, status, now));
+                    expired += count != null ? count : 0;
+                } catch (Exception e) {
+                    failedChunks++;
+                    log.error("Failed to expire {} booking chunk ({} bookings, up to #{}): {}",
+                            status, ids.size(), afterId, e.getMessage(), e);
+                }
+
+                if (ids.size() < bulkChunkSize) {
+                    break;
+                }
+            }
+        }
+
+        if (expired > 0 || failedChunks > 0) {
+            log.info("Bulk expired {} overdue bookings ({} failed chunks)", expired, failedChunks);
+        }
+        return expired;
+    }
+
+    /**
+     * Một chunk trong 1 transaction: khóa row → UPDATE có điều kiện → trả trụ → hoàn cọc
+     * (batch insert giao dịch + cộng ví gộp theo user).
+     */
+    private int expireChunk(List<Long> ids, BookingStatus status, LocalDateTime now) {
+        List<OverdueBooking> locked = expiryBatchRepository.lockOverdue(ids, status, now);
+        if (locked.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> lockedIds = locked.stream().map(OverdueBooking::bookingId).toList();
+        int updated = expiryBatchRepository.markExpired(lockedIds, status, now);
+
+        Set<String> pointIds = new LinkedHashSet<>();
+        locked.forEach(booking -> pointIds.add(booking.pointId()));
+        expiryBatchRepository.freeReservedPoints(pointIds);
+
+        if (status == BookingStatus.IN_PROGRESS) {
+            // Refund 50% deposit (penalty for not starting)
+            List<Refund> refunds = locked.stream()
+                    .filter(booking -> booking.depositAmount() > 0)
+                    .map(booking -> new Refund(booking.bookingId(), booking.userId(), booking.depositAmount() * 0.5,
+                            String.format("Partial refund (50%%) for booking #%d - check-in timeout", booking.bookingId())))
+                    .toList();
+
+            int[] inserted = expiryBatchRepository.insertRefundTransactions(refunds, now);
+
+            // User chưa có ví → INSERT ... SELECT không match row nào, khoản hoàn đi đường WalletService
+            List<Refund> walletless = new ArrayList<>();
+            Map<String, Double> amountByUserId = new LinkedHashMap<>();
+            for (int i = 0; i < refunds.size(); i++) {
+                Refund refund = refunds.get(i);
+                if (inserted[i] == 0) {
+                    walletless.add(refund);
+                } else {
+                    amountByUserId.merge(refund.userId(), refund.amount(), Double::sum);
+                }
+            }
+
+            int[] credited = expiryBatchRepository.creditWallets(amountByUserId, now);
+            List<String> creditedUserIds = new ArrayList<>(amountByUserId.keySet());
+            for (int i = 0; i < credited.length; i++) {
+                if (credited[i] == 0) {
+                    // Không xảy ra khi ví còn đó (INSERT cùng transaction vừa match) → chỉ log để đối soát
+                    log.error("Refund transaction recorded but wallet of user {} was not credited ({} VND)",
+                            creditedUserIds.get(i), amountByUserId.get(creditedUserIds.get(i)));
+                }
+            }
+
+            Set<String> createdWallets = new HashSet<>();
+            for (Refund refund : walletless) {
+                if (createdWallets.add(refund.userId())) {
+                    walletService.createWalletByUserId(refund.userId());
+                    log.warn("User {} had no wallet, created one to receive refund for booking #{}",
+                            refund.userId(), refund.bookingId());
+                }
+                walletService.credit(refund.userId(), refund.amount(), TransactionType.BOOKING_REFUND,
+                        refund.description(), null, null, refund.bookingId(), null);
+            }
+        }
+
+        for (OverdueBooking booking : locked) {
+            expiryTimingWheel.cancel(booking.bookingId());
+            eventPublisher.publishEvent(new BookingExpiredEvent(this, booking.bookingId(), booking.pointId()));
+        }
+
+        log.debug("Expired {} {} bookings in chunk, freed up to {} charging points",
+                updated, status, pointIds.size());
+        return updated;
+    }
+
+    /**
+     * CONSUMER: chạy trên booking expiry executor khi tới hạn, transaction riêng cho từng booking.
+     */
+    void expire(Long bookingId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> expireInTransaction(bookingId));
+        } catch (Exception e) {
+            // Booking vẫn giữ expiresAt → sweep kế tiếp sẽ thử lại
+            log.error("Failed to expire booking #{}: {}", bookingId, e.getMessage(), e);
+        }
+    }
+
+    private void expireInTransaction(Long bookingId) {
+        Booking booking = bookingRepository.findByIdForUpdate(bookingId).orElse(null);
+        if (booking == null || booking.getExpiresAt() == null) {
+            return;
+        }
+
+        // Hạn đã được dời (vd: check-in trên instance khác) → xếp lại theo hạn mới
+        if (booking.getExpiresAt().isAfter(LocalDateTime.now())) {
+            schedule(bookingId, booking.getExpiresAt());
+            return;
+        }
+
+        switch (booking.getBookingStatus()) {
+            case CONFIRMED -> expireUnclaimed(booking);
+            case IN_PROGRESS -> expireCheckedIn(booking);
+            default -> {
+                // COMPLETED / CANCELLED / EXPIRED: không còn gì để xử lý
+                booking.setExpiresAt(null);
+                bookingRepository.save(booking);
+            }
+        }
+    }
+
+    /**
+     * Không check-in trong cửa sổ cho phép → EXPIRED, mất cọc.
+     */
+    private void expireUnclaimed(Booking booking) {
+        markExpired(booking);
+
+        // FIX BUG #3: Free up the charging point
+        ChargingPoint point = booking.getChargingPoint();
+        if (point.getStatus() == ChargingPointStatus.RESERVED && point.getCurrentSession() == null) {
+            point.setStatus(ChargingPointStatus.AVAILABLE);
+            chargingPointRepository.save(point);
+            log.info("Freed up charging point {} after booking #{} expired",
+                    point.getName(), booking.getId());
+        }
+
+        // No refund for expired bookings - deposit is forfeited
+        log.info("Booking expired - ID: {}, User: {}, Deposit forfeited",
+                booking.getId(), booking.getUser().getEmail());
+    }
+
+    /**
+     * Check-in rồi nhưng không start session trong CHECK_IN_TIMEOUT_MINUTES → EXPIRED, hoàn 50% cọc.
+     */
+    private void expireCheckedIn(Booking booking) {
+        ChargingPoint point = booking.getChargingPoint();
+        if (hasActiveSession(point)) {
+            // Đã có phiên sạc → booking không còn hạn
+            booking.setExpiresAt(null);
+            bookingRepository.save(booking);
+            return;
+        }
+
+        markExpired(booking);
+
+        // Free up charging point
+        if (point.getStatus() == ChargingPointStatus.RESERVED && point.getCurrentSession() == null) {
+            point.setStatus(ChargingPointStatus.AVAILABLE);
+            chargingPointRepository.save(point);
+        }
+
+        // Refund 50% deposit (penalty for not starting)
+        double refundAmount = booking.getDepositAmount() * 0.5;
+        walletService.credit(
+                booking.getUser().getUserId(),
+                refundAmount,
+                TransactionType.BOOKING_REFUND,
+                String.format("Partial refund (50%%) for booking #%d - check-in timeout", booking.getId()),
+                null, null, booking.getId(), null
+        );
+
+        log.warn("⚠️ Booking #{} check-in timeout - User: {}, Point: {}, Refunded: {} VND (50%)",
+                booking.getId(), booking.getUser().getEmail(), point.getName(), refundAmount);
+    }
+
+    private void markExpired(Booking booking) {
+        booking.setBookingStatus(BookingStatus.EXPIRED);
+        booking.setExpiresAt(null);
+        bookingRepository.save(booking);
+        eventPublisher.publishEvent(new BookingExpiredEvent(this, booking));
+    }
+
+    private boolean hasActiveSession(ChargingPoint point) {
+        return point.getCurrentSession() != null
+                && point.getCurrentSession().getStatus() == ChargingSessionStatus.IN_PROGRESS;
+    }
+}
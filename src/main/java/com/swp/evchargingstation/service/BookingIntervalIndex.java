@@ -0,0 +1,278 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Booking;
+import com.swp.evchargingstation.enums.BookingStatus;
+import com.swp.evchargingstation.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index in-memory các booking đang giữ trụ (CONFIRMED / IN_PROGRESS), theo từng ChargingPoint.
+ *
+ * - Mỗi trụ: TreeSet sắp theo giờ bắt đầu → booking trước/sau một thời điểm và kiểm tra trùng
+ *   trả lời trong O(log n), không query DB
+ * - Kiểm tra trùng quét ngược từ booking cuối cùng bắt đầu trước giờ kết thúc, dừng khi
+ *   giờ bắt đầu + thời lượng dài nhất của trụ không còn chạm tới giờ bắt đầu cần kiểm tra
+ *   (booking của một trụ không chồng nhau nên thực tế chỉ xét 1-2 phần tử)
+ * - Rebuild từ DB khi khởi động và định kỳ (booking tạo từ instance khác, sự kiện bị lỡ);
+ *   giữa hai lần rebuild được cập nhật bởi BookingEventListener / ChargingSessionEventListener
+ * - Sự kiện đến trong lúc rebuild (sau khi query projection chạy, trước khi swap map) được
+ *   ghi lại và áp dụng lên map mới ngay trước khi swap, nên không bị mất
+ *
+ * Index chỉ là lớp đọc nhanh: createBooking vẫn kiểm tra trùng trên DB trước khi ghi.
+ */
+@Service
+@Slf4j
+public class BookingIntervalIndex {
+
+    private final BookingRepository bookingRepository;
+
+    private volatile Map<String, PointIntervals> byPoint;
+
+    // Khóa giữa cập nhật theo sự kiện và bước swap của rebuild
+    private final Object eventLock = new Object();
+    // Khác null khi đang rebuild: sự kiện cần replay lên map mới (các thao tác đều idempotent)
+    private List<Consumer<Map<String, PointIntervals>>> pendingEvents;
+
+    public BookingIntervalIndex(BookingRepository bookingRepository) {
+        this.bookingRepository = bookingRepository;
+    }
+
+    /**
+     * Khoảng thời gian [start, end) một booking giữ trụ.
+     */
+    public record BookingInterval(Long bookingId, String pointId, LocalDateTime start, LocalDateTime end,
+                                  BookingStatus status) {
+
+        static final Comparator<BookingInterval> BY_START =
+                Comparator.comparing(BookingInterval::start).thenComparing(BookingInterval::bookingId);
+
+        static BookingInterval of(Booking booking) {
+            return of(booking.getId(), booking.getChargingPoint().getPointId(),
+                    booking.getBookingTime(), booking.getEstimatedEndTime(), booking.getBookingStatus());
+        }
+
+        static BookingInterval of(Long bookingId, String pointId, LocalDateTime start, LocalDateTime end,
+                                  BookingStatus status) {
+            // Booking cũ chưa có estimatedEndTime: không chiếm thời gian (giống điều kiện trùng trên DB)
+            return new BookingInterval(bookingId, pointId, start, end != null ? end : start, status);
+        }
+
+        static BookingInterval probe(LocalDateTime time, long bookingId) {
+            return new BookingInterval(bookingId, null, time, time, null);
+        }
+
+        boolean overlaps(LocalDateTime from, LocalDateTime to) {
+            // Khoảng rỗng (booking chưa có estimatedEndTime) không trùng với gì
+            return start.isBefore(end) && from.isBefore(end) && to.isAfter(start);
+        }
+
+        BookingInterval withStatus(BookingStatus newStatus) {
+            return new BookingInterval(bookingId, pointId, start, end, newStatus);
+        }
+    }
+
+    /**
+     * Booking gần nhất bắt đầu trước time (kiểm tra buffer sau booking trước).
+     */
+    public Optional<BookingInterval> findLastBefore(String pointId, LocalDateTime time) {
+        PointIntervals intervals = points().get(pointId);
+        return intervals != null ? intervals.lastBefore(time) : Optional.empty();
+    }
+
+    /**
+     * Booking đầu tiên bắt đầu sau time (giới hạn % pin có thể sạc).
+     */
+    public Optional<BookingInterval> findFirstAfter(String pointId, LocalDateTime time) {
+        PointIntervals intervals = points().get(pointId);
+        return intervals != null ? intervals.firstAfter(time) : Optional.empty();
+    }
+
+    /**
+     * Booking chồng lên khoảng [start, end) nếu có.
+     */
+    public Optional<BookingInterval> findConflict(String pointId, LocalDateTime start, LocalDateTime end) {
+        PointIntervals intervals = points().get(pointId);
+        return intervals != null ? intervals.conflict(start, end) : Optional.empty();
+    }
+
+    /**
+     * Các booking của trụ còn giữ trụ sau time (end > time), sắp theo giờ bắt đầu.
+     */
+    public List<BookingInterval> findEndingAfter(String pointId, LocalDateTime time) {
+        PointIntervals intervals = points().get(pointId);
+        return intervals != null ? intervals.endingAfter(time) : List.of();
+    }
+
+    public void add(Booking booking) {
+        BookingInterval interval = BookingInterval.of(booking);
+        apply(points -> points.computeIfAbsent(interval.pointId(), id -> new PointIntervals()).add(interval));
+        log.debug("Indexed booking #{} at point {}: {} - {}",
+                interval.bookingId(), interval.pointId(), interval.start(), interval.end());
+    }
+
+    public void markCheckedIn(String pointId, Long bookingId) {
+        apply(points -> {
+            PointIntervals intervals = points.get(pointId);
+            if (intervals != null) {
+                intervals.updateStatus(bookingId, BookingStatus.IN_PROGRESS);
+            }
+        });
+    }
+
+    /**
+     * Bỏ booking không còn giữ trụ (cancel, expire, complete). Idempotent.
+     */
+    public void remove(String pointId, Long bookingId) {
+        apply(points -> {
+            PointIntervals intervals = points.get(pointId);
+            if (intervals != null) {
+                intervals.remove(bookingId);
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Đồng bộ lại toàn bộ index với DB (1 query projection).
+     */
+    @Scheduled(initialDelayString = "${booking.interval-index.rebuild-interval-ms:300000}",
+            fixedDelayString = "${booking.interval-index.rebuild-interval-ms:300000}")
+    public synchronized void rebuild() {
+        // Bắt đầu ghi sự kiện trước khi query: sự kiện commit sau snapshot sẽ được replay
+        synchronized (eventLock) {
+            pendingEvents = new ArrayList<>();
+        }
+        Map<String, PointIntervals> rebuilt = new ConcurrentHashMap<>();
+        List<Object[]> rows;
+        try {
+            rows = bookingRepository.findActiveBookingIntervals();
+        } catch (RuntimeException e) {
+            synchronized (eventLock) {
+                pendingEvents = null;
+            }
+            throw e;
+        }
+        for (Object[] row : rows) {
+            BookingInterval interval = BookingInterval.of((Long) row[0], (String) row[1],
+                    (LocalDateTime) row[2], (LocalDateTime) row[3], (BookingStatus) row[4]);
+            rebuilt.computeIfAbsent(interval.pointId(), id -> new PointIntervals()).add(interval);
+        }
+        int replayed;
+        synchronized (eventLock) {
+            replayed = pendingEvents.size();
+            pendingEvents.forEach(event -> event.accept(rebuilt));
+            pendingEvents = null;
+            byPoint = rebuilt;
+        }
+        log.info("Booking interval index rebuilt: {} active bookings on {} charging points ({} events replayed)",
+                rows.size(), rebuilt.size(), replayed);
+    }
+
+    /**
+     * Áp dụng sự kiện lên index hiện tại; nếu đang rebuild thì ghi lại để replay lên map mới.
+     */
+    private void apply(Consumer<Map<String, PointIntervals>> event) {
+        points();
+        synchronized (eventLock) {
+            event.accept(byPoint);
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+        }
+    }
+
+    private Map<String, PointIntervals> points() {
+        Map<String, PointIntervals> current = byPoint;
+        if (current == null) {
+            rebuild();
+            current = byPoint;
+        }
+        return current;
+    }
+
+    /**
+     * Booking của một trụ. Thao tác đồng bộ trên từng trụ, các trụ khác nhau không tranh chấp.
+     */
+    private static final class PointIntervals {
+
+        private final NavigableSet<BookingInterval> byStart = new TreeSet<>(BookingInterval.BY_START);
+        private final Map<Long, BookingInterval> byId = new HashMap<>();
+        // Thời lượng dài nhất từng có trong trụ: chặn phạm vi quét khi kiểm tra trùng (chỉ tăng, reset khi rebuild)
+        private Duration maxDuration = Duration.ZERO;
+
+        synchronized void add(BookingInterval interval) {
+            BookingInterval previous = byId.put(interval.bookingId(), interval);
+            if (previous != null) {
+                byStart.remove(previous);
+            }
+            byStart.add(interval);
+            Duration duration = Duration.between(interval.start(), interval.end());
+            if (duration.compareTo(maxDuration) > 0) {
+                maxDuration = duration;
+            }
+        }
+
+        synchronized void remove(Long bookingId) {
+            BookingInterval removed = byId.remove(bookingId);
+            if (removed != null) {
+                byStart.remove(removed);
+            }
+        }
+
+        synchronized void updateStatus(Long bookingId, BookingStatus status) {
+            BookingInterval current = byId.get(bookingId);
+            if (current != null) {
+                BookingInterval updated = current.withStatus(status);
+                byStart.remove(current);
+                byStart.add(updated);
+                byId.put(bookingId, updated);
+            }
+        }
+
+        synchronized Optional<BookingInterval> lastBefore(LocalDateTime time) {
+            return Optional.ofNullable(byStart.lower(BookingInterval.probe(time, Long.MIN_VALUE)));
+        }
+
+        synchronized Optional<BookingInterval> firstAfter(LocalDateTime time) {
+            return Optional.ofNullable(byStart.higher(BookingInterval.probe(time, Long.MAX_VALUE)));
+        }
+
+        synchronized List<BookingInterval> endingAfter(LocalDateTime time) {
+            List<BookingInterval> result = new ArrayList<>();
+            for (BookingInterval interval : byStart.tailSet(BookingInterval.probe(time.minus(maxDuration), Long.MIN_VALUE))) {
+                if (interval.end().isAfter(time)) {
+                    result.add(interval);
+                }
+            }
+            return result;
+        }
+
+        synchronized Optional<BookingInterval> conflict(LocalDateTime start, LocalDateTime end) {
+            LocalDateTime scanFloor = start.minus(maxDuration);
+            for (BookingInterval interval : byStart.headSet(BookingInterval.probe(end, Long.MIN_VALUE), false)
+                    .descendingSet()) {
+                if (interval.overlaps(start, end)) {
+                    return Optional.of(interval);
+                }
+                if (!interval.start().isAfter(scanFloor)) {
+                    break;
+                }
+            }
+            return Optional.empty();
+        }
+    }
+}
@@ -3,27 +3,32 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.dto.response.BookingAvailabilityDto;
 import com.swp.evchargingstation.dto.request.BookingRequest;
 import com.swp.evchargingstation.dto.response.BookingResponse;
+import com.swp.evchargingstation.dto.response.BookingSlotSearchResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.entity.*;
 import com.swp.evchargingstation.enums.BookingStatus;
 import com.swp.evchargingstation.enums.ChargingPointStatus;
-import com.swp.evchargingstation.enums.TransactionType;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
 import com.swp.evchargingstation.event.booking.BookingCancelledEvent;
 import com.swp.evchargingstation.event.booking.BookingCheckedInEvent;
 import com.swp.evchargingstation.event.booking.BookingCreatedEvent;
 import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -33,6 +38,7 @@ public class BookingService {
 
     private final BookingRepository bookingRepository;
     private final ChargingPointRepository chargingPointRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
     private final VehicleRepository vehicleRepository;
     private final UserRepository userRepository;
 
@@ -40,13 +46,22 @@ public class BookingService {
     // WalletService walletService; // ← Will be removed after refactor complete
     private final WalletService walletService; // ← Keep for now (other methods may use it)
     private final ApplicationEventPublisher eventPublisher; // ← NEW
+    private final ChargingCurveService chargingCurveService;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final ChargingSessionLiveStateStore liveStateStore;
 
     private static final double DEPOSIT_AMOUNT = 50000;
     private static final int CHECK_IN_WINDOW_MINUTES = 15; // Người dùng phải check-in trong vòng 15 phút
-    private static final int BOOKING_EXPIRY_MINUTES = 15; // Booking tự động expire sau 15 phút nếu không check-in
+    static final int BOOKING_EXPIRY_MINUTES = 15; // Booking tự động expire sau 15 phút nếu không check-in
+    static final int CHECK_IN_TIMEOUT_MINUTES = 10; // Check-in rồi mà không start session trong 10 phút → expire
     private static final int BUFFER_BETWEEN_BOOKINGS_MINUTES = 15; // Buffer time giữa các booking
     private static final int MIN_BOOKING_DURATION_MINUTES = 15; // Thời gian booking tối thiểu
 
+    /**
+     * Kiểm tra trụ có thể đặt lúc bookingTime không và % pin tối đa có thể sạc.
+     * Booking trước/sau/trùng được tra trên BookingIntervalIndex, phiên sạc đang chạy trên live state store
+     * → không query DB ngoài việc load trụ và xe.
+     */
     public BookingAvailabilityDto checkAvailability(String chargingPointId, LocalDateTime bookingTime, String vehicleId) {
         // Validate booking time (must be in future and within 24 hours)
         if (bookingTime.isBefore(LocalDateTime.now())) {
@@ -68,10 +83,9 @@ public class BookingService {
                 .orElseThrow(() -> new AppException(ErrorCode.VEHICLE_NOT_FOUND));
 
         // SOLUTION 1: Kiểm tra xem có active session đang chạy không
-        ChargingSession activeSession = chargingPoint.getCurrentSession();
-        if (activeSession != null && activeSession.getStatus() == com.swp.evchargingstation.enums.ChargingSessionStatus.IN_PROGRESS) {
-            // Ước tính thời gian kết thúc session
-            LocalDateTime estimatedEndTime = calculateEstimatedEndTime(activeSession);
+        Optional<LocalDateTime> activeSessionEndTime = estimateActiveSessionEndTime(chargingPoint);
+        if (activeSessionEndTime.isPresent()) {
+            LocalDateTime estimatedEndTime = activeSessionEndTime.get();
 
             // Thêm buffer 15 phút để an toàn
             LocalDateTime safeAvailableTime = estimatedEndTime.plusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES);
@@ -88,11 +102,11 @@ public class BookingService {
         }
 
         // SOLUTION 2: Kiểm tra buffer time với booking trước đó
-        Optional<Booking> previousBooking = bookingRepository.findLastBookingBefore(
+        Optional<BookingIntervalIndex.BookingInterval> previousBooking = bookingIntervalIndex.findLastBefore(
                 chargingPoint.getPointId(), bookingTime);
 
         if (previousBooking.isPresent()) {
-            LocalDateTime prevEndTime = previousBooking.get().getEstimatedEndTime();
+            LocalDateTime prevEndTime = previousBooking.get().end();
             LocalDateTime minStartTime = prevEndTime.plusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES);
 
             if (bookingTime.isBefore(minStartTime)) {
@@ -107,54 +121,39 @@ public class BookingService {
             }
         }
 
-        // Tính estimated end time cho booking mới
-        // Công suất thực tế = MIN(công suất trụ, công suất tối đa xe)
-        double stationPowerKw = chargingPoint.getChargingPower().getPowerKw();
-        double vehicleMaxPowerKw = vehicle.getMaxChargingPowerKw();
-        double actualChargingPowerKw = Math.min(stationPowerKw, vehicleMaxPowerKw);
-
-        // Năng lượng cần sạc từ current SOC -> 100%
-        int currentSoc = vehicle.getCurrentSocPercent();
-        double energyNeeded = ((100.0 - currentSoc) / 100.0) * vehicle.getBatteryCapacityKwh();
-
-        // Thời gian sạc (giờ)
-        double chargingTimeHours = energyNeeded / actualChargingPowerKw;
-
-        // Giới hạn thời gian booking tối đa là 12 giờ (để tránh block trụ quá lâu)
-        chargingTimeHours = Math.min(chargingTimeHours, 12.0);
-
-        LocalDateTime maxEstimatedEndTime = bookingTime.plusMinutes((long) (chargingTimeHours * 60));
-
-        // Check if there's any conflicting booking at the requested time
-        Optional<Booking> conflictingBooking = bookingRepository.findConflictingBooking(
+        // Check if there's any booking at the requested time
+        // Chỉ cần kiểm tra khoảng tối thiểu (MIN + buffer): booking phía sau giới hạn % pin qua maxChargePercentage,
+        // không chặn cả khung sạc tới 100% (nếu không, desiredPercentage < 100 không bao giờ được dùng tới)
+        Optional<BookingIntervalIndex.BookingInterval> conflictingBooking = bookingIntervalIndex.findConflict(
                 chargingPoint.getPointId(),
                 bookingTime,
-                maxEstimatedEndTime
+                bookingTime.plusMinutes(MIN_BOOKING_DURATION_MINUTES + BUFFER_BETWEEN_BOOKINGS_MINUTES)
         );
 
         if (conflictingBooking.isPresent()) {
-            Booking conflict = conflictingBooking.get();
+            BookingIntervalIndex.BookingInterval conflict = conflictingBooking.get();
             return BookingAvailabilityDto.builder()
                     .available(false)
                     .maxChargePercentage(0.0)
                     .message(String.format("Thời gian bạn chọn trùng với booking khác (%02d:%02d ngày %02d/%02d - %02d:%02d ngày %02d/%02d). Vui lòng chọn thời gian khác.",
-                            conflict.getBookingTime().getHour(), conflict.getBookingTime().getMinute(),
-                            conflict.getBookingTime().getDayOfMonth(), conflict.getBookingTime().getMonthValue(),
-                            conflict.getEstimatedEndTime().getHour(), conflict.getEstimatedEndTime().getMinute(),
-                            conflict.getEstimatedEndTime().getDayOfMonth(), conflict.getEstimatedEndTime().getMonthValue()))
+                            conflict.start().getHour(), conflict.start().getMinute(),
+                            conflict.start().getDayOfMonth(), conflict.start().getMonthValue(),
+                            conflict.end().getHour(), conflict.end().getMinute(),
+                            conflict.end().getDayOfMonth(), conflict.end().getMonthValue()))
                     .build();
         }
 
         // Find next booking to calculate max charge percentage
-        Optional<Booking> nextBookingOpt = bookingRepository.findFirstByChargingPointPointIdAndBookingTimeAfterOrderByBookingTimeAsc(
+        int currentSoc = vehicle.getCurrentSocPercent();
+        Optional<BookingIntervalIndex.BookingInterval> nextBookingOpt = bookingIntervalIndex.findFirstAfter(
                 chargingPoint.getPointId(), bookingTime);
 
         double maxChargePercentage = 100.0;
         String message = "Bạn có thể sạc tối đa đến 100%.";
 
         if (nextBookingOpt.isPresent()) {
-            Booking nextBooking = nextBookingOpt.get();
-            Duration timeSlot = Duration.between(bookingTime, nextBooking.getBookingTime());
+            BookingIntervalIndex.BookingInterval nextBooking = nextBookingOpt.get();
+            Duration timeSlot = Duration.between(bookingTime, nextBooking.start());
 
             // SOLUTION 2: Trừ đi buffer time
             long availableMinutes = timeSlot.toMinutes() - BUFFER_BETWEEN_BOOKINGS_MINUTES;
@@ -168,23 +167,14 @@ public class BookingService {
                         .build();
             }
 
-            // Tính công suất thực tế = MIN(trụ, xe)
-            double actualPowerKw = Math.min(
-                chargingPoint.getChargingPower().getPowerKw(),
-                vehicle.getMaxChargingPowerKw()
-            );
-
-            // Năng lượng có thể sạc trong thời gian available
-            double availableEnergy = actualPowerKw * (availableMinutes / 60.0);
-
-            // % pin có thể sạc (từ current SOC đã khai báo ở trên)
-            double maxSocIncrease = (availableEnergy / vehicle.getBatteryCapacityKwh()) * 100;
-            maxChargePercentage = Math.min(100.0, currentSoc + maxSocIncrease);
+            // % pin có thể sạc trong thời gian available (từ current SOC đã khai báo ở trên), tra charging curve
+            maxChargePercentage = Math.min(100.0,
+                    chargingCurveService.socReachableWithin(vehicle, chargingPoint, currentSoc, availableMinutes));
 
             if (maxChargePercentage < 100.0) {
                 message = String.format("Bạn có tối đa %d phút sạc (đến %.1f%%). Booking tiếp theo: %02d:%02d",
                         availableMinutes, maxChargePercentage,
-                        nextBooking.getBookingTime().getHour(), nextBooking.getBookingTime().getMinute());
+                        nextBooking.start().getHour(), nextBooking.start().getMinute());
             }
         }
 
@@ -195,6 +185,137 @@ public class BookingService {
                 .build();
     }
 
+    /**
+     * Tìm khung giờ trống của mọi trụ thuộc các trạm trong [from, to] cho một xe (1 request thay cho
+     * nhiều lần gọi checkAvailability).
+     *
+     * - Trụ: 1 query kèm station; booking: BookingIntervalIndex; phiên sạc đang chạy: live state store,
+     *   session không có trong store (shard của instance khác): 1 query cho mọi trụ
+     * - Mỗi trụ quét một lượt các khoảng bị chiếm (phiên sạc đang chạy rồi booking theo giờ bắt đầu):
+     *   khoảng trống = [kết thúc khoảng trước + buffer, bắt đầu khoảng sau - buffer]
+     * - Khung giờ trả về nằm trong [from, to] (sau khi giới hạn theo bây giờ / 24 giờ tới);
+     *   maxChargePercentage và earliestFeasibleStart vẫn tính theo cả khoảng trống thật vì booking
+     *   chỉ cần bắt đầu trong khoảng, phiên sạc được phép kéo dài qua to
+     * - earliestFeasibleStart: đầu khoảng trống đầu tiên đủ thời gian sạc tới target SOC,
+     *   cùng điều kiện với checkAvailability/createBooking
+     *
+     * @param targetSocPercent null = 100%
+     */
+    @Transactional(readOnly = true)
+    public BookingSlotSearchResponse findAvailableSlots(List<String> stationIds, String vehicleId,
+                                                        LocalDateTime from, LocalDateTime to, Integer targetSocPercent) {
+        // Cùng giới hạn với checkAvailability: từ bây giờ tới tối đa 24 giờ tới
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime rangeStart = from.isBefore(now) ? now : from;
+        LocalDateTime rangeEnd = to.isAfter(now.plusHours(24)) ? now.plusHours(24) : to;
+        if (stationIds == null || stationIds.isEmpty() || !rangeStart.isBefore(rangeEnd)) {
+            throw new AppException(ErrorCode.VALIDATION_FAILED);
+        }
+
+        Vehicle vehicle = vehicleRepository.findById(vehicleId)
+                .orElseThrow(() -> new AppException(ErrorCode.VEHICLE_NOT_FOUND));
+        int currentSoc = vehicle.getCurrentSocPercent();
+        int targetSoc = targetSocPercent != null ? targetSocPercent : 100;
+        if (targetSoc <= currentSoc || targetSoc > 100) {
+            throw new AppException(ErrorCode.VALIDATION_FAILED);
+        }
+
+        List<ChargingPoint> chargingPoints = chargingPointRepository.findByStationIdsWithStation(stationIds);
+        Map<String, ChargingSession> sessionsOutsideStore = findActiveSessionsOutsideLiveStore(chargingPoints);
+
+        List<BookingSlotSearchResponse.PointSlots> points = chargingPoints.stream()
+                .map(point -> findPointSlots(point, vehicle, currentSoc, targetSoc, rangeStart, rangeEnd,
+                        sessionsOutsideStore))
+                .collect(Collectors.toList());
+
+        return BookingSlotSearchResponse.builder()
+                .vehicleId(vehicleId)
+                .currentSocPercent(currentSoc)
+                .targetSocPercent(targetSoc)
+                .from(rangeStart)
+                .to(rangeEnd)
+                .points(points)
+                .build();
+    }
+
+    private BookingSlotSearchResponse.PointSlots findPointSlots(ChargingPoint point, Vehicle vehicle, int currentSoc,
+                                                                int targetSoc, LocalDateTime rangeStart,
+                                                                LocalDateTime rangeEnd,
+                                                                Map<String, ChargingSession> sessionsOutsideStore) {
+        BookingSlotSearchResponse.PointSlots.PointSlotsBuilder slots = BookingSlotSearchResponse.PointSlots.builder()
+                .stationId(point.getStation().getStationId())
+                .stationName(point.getStation().getName())
+                .chargingPointId(point.getPointId())
+                .chargingPointName(point.getName())
+                .chargingPower(point.getChargingPower() != null ? point.getChargingPower().name() : null);
+
+        if (point.getStatus() == ChargingPointStatus.OUT_OF_SERVICE) {
+            return slots.bookable(false)
+                    .freeWindows(List.of())
+                    .message("Trụ đang ngừng hoạt động")
+                    .build();
+        }
+
+        long requiredMinutes = (long) Math.ceil(
+                chargingCurveService.minutesToTarget(vehicle, point, currentSoc, targetSoc));
+
+        // Phiên sạc đang chạy chiếm trụ tới giờ dự kiến kết thúc
+        LocalDateTime cursor = rangeStart;
+        Optional<LocalDateTime> activeSessionEndTime = estimateActiveSessionEndTime(point, sessionsOutsideStore::get);
+        if (activeSessionEndTime.isPresent()) {
+            LocalDateTime safeAvailableTime = activeSessionEndTime.get().plusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES);
+            cursor = safeAvailableTime.isAfter(cursor) ? safeAvailableTime : cursor;
+        }
+
+        List<BookingSlotSearchResponse.FreeWindow> freeWindows = new ArrayList<>();
+        LocalDateTime earliestFeasibleStart = null;
+        for (BookingIntervalIndex.BookingInterval booking : bookingIntervalIndex.findEndingAfter(
+                point.getPointId(), rangeStart.minusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES))) {
+            if (cursor.isAfter(rangeEnd)) {
+                break;
+            }
+
+            LocalDateTime windowEnd = booking.start().minusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES);
+            long windowMinutes = Duration.between(cursor, windowEnd).toMinutes();
+            if (windowMinutes >= MIN_BOOKING_DURATION_MINUTES) {
+                freeWindows.add(BookingSlotSearchResponse.FreeWindow.builder()
+                        .start(cursor)
+                        .end(windowEnd.isAfter(rangeEnd) ? rangeEnd : windowEnd)
+                        .maxChargePercentage(Math.min(100.0,
+                                chargingCurveService.socReachableWithin(vehicle, point, currentSoc, windowMinutes)))
+                        .build());
+                if (earliestFeasibleStart == null && windowMinutes >= requiredMinutes) {
+                    earliestFeasibleStart = cursor;
+                }
+            }
+
+            LocalDateTime afterBooking = booking.end().plusMinutes(BUFFER_BETWEEN_BOOKINGS_MINUTES);
+            cursor = afterBooking.isAfter(cursor) ? afterBooking : cursor;
+        }
+
+        // Sau booking cuối cùng: trống không giới hạn, khung giờ trả về dừng ở cuối khoảng tìm
+        if (!cursor.isAfter(rangeEnd)) {
+            freeWindows.add(BookingSlotSearchResponse.FreeWindow.builder()
+                    .start(cursor)
+                    .end(rangeEnd)
+                    .maxChargePercentage(100.0)
+                    .build());
+            if (earliestFeasibleStart == null) {
+                earliestFeasibleStart = cursor;
+            }
+        }
+
+        return slots.bookable(earliestFeasibleStart != null)
+                .requiredMinutes((int) requiredMinutes)
+                .earliestFeasibleStart(earliestFeasibleStart)
+                .freeWindows(freeWindows)
+                .message(earliestFeasibleStart != null
+                        ? String.format("Cần %d phút để sạc từ %d%% đến %d%%", requiredMinutes, currentSoc, targetSoc)
+                        : String.format("Không có khung giờ đủ %d phút để sạc đến %d%% trong khoảng đã chọn",
+                                requiredMinutes, targetSoc))
+                .build();
+    }
+
     @Transactional
     public BookingResponse createBooking(BookingRequest bookingRequest, String email) {
         User user = userRepository.findByEmail(email)
@@ -238,20 +359,19 @@ public class BookingService {
         }
 
         // Calculate estimated end time
-        // Công suất thực tế = MIN(trụ, xe)
-        double actualPowerKw = Math.min(
-            chargingPoint.getChargingPower().getPowerKw(),
-            vehicle.getMaxChargingPowerKw()
-        );
-
-        // Năng lượng cần sạc từ current SOC -> desired SOC
+        // Thời gian sạc current SOC -> desired SOC theo charging curve
         int currentSoc = vehicle.getCurrentSocPercent();
-        double socIncrease = bookingRequest.getDesiredPercentage() - currentSoc;
-        double requiredEnergy = (socIncrease / 100.0) * vehicle.getBatteryCapacityKwh();
-
-        // Thời gian sạc
-        double chargingTimeHours = requiredEnergy / actualPowerKw;
-        LocalDateTime estimatedEndTime = bookingRequest.getBookingTime().plusMinutes((long) (chargingTimeHours * 60));
+        double chargingMinutes = chargingCurveService.minutesToTarget(
+                vehicle, chargingPoint, currentSoc, bookingRequest.getDesiredPercentage());
+        LocalDateTime estimatedEndTime = bookingRequest.getBookingTime().plusMinutes((long) Math.ceil(chargingMinutes));
+
+        // Chốt chặn cuối trên DB: index có thể chưa thấy booking vừa tạo từ request/instance khác
+        if (bookingRepository.findConflictingBooking(
+                chargingPoint.getPointId(), bookingRequest.getBookingTime(), estimatedEndTime).isPresent()) {
+            log.warn("Booking conflict detected by DB guard - Point: {}, Time: {}",
+                    chargingPoint.getPointId(), bookingRequest.getBookingTime());
+            throw new AppException(ErrorCode.VALIDATION_FAILED);
+        }
 
         // ===== CORE BUSINESS LOGIC =====
         // Create booking
@@ -265,6 +385,7 @@ public class BookingService {
         booking.setDepositAmount(DEPOSIT_AMOUNT);
         booking.setBookingStatus(BookingStatus.CONFIRMED);
         booking.setCreatedAt(LocalDateTime.now());
+        booking.setExpiresAt(BookingExpiryService.confirmedDeadline(booking));
 
         Booking savedBooking = bookingRepository.save(booking);
 
@@ -317,15 +438,24 @@ public class BookingService {
         return convertToDto(booking);
     }
 
+    /**
+     * Booking của user theo trang (mới nhất trước)
+     * @param after nextCursor của trang trước (null = trang đầu)
+     */
     @Transactional(readOnly = true)
-    public List<BookingResponse> getUserBookings(String email) {
+    public CursorPageResponse<BookingResponse> getUserBookings(String email, Integer limit, String after) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
 
-        List<Booking> bookings = bookingRepository.findByUserUserIdOrderByCreatedAtDesc(user.getUserId());
-        return bookings.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<Booking> bookings = bookingRepository.findPageByUserId(user.getUserId(),
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.numericId() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+
+        return KeysetCursor.page(bookings, pageSize,
+                booking -> new KeysetCursor(booking.getCreatedAt(), String.valueOf(booking.getId())),
+                this::convertToDto);
     }
 
     @Transactional
@@ -353,6 +483,7 @@ public class BookingService {
 
         // Update booking status
         booking.setBookingStatus(BookingStatus.CANCELLED_BY_USER);
+        booking.setExpiresAt(null);
         Booking savedBooking = bookingRepository.save(booking);
 
         // KHÔNG HOÀN TIỀN CỌC - User mất cọc khi hủy booking
@@ -360,6 +491,13 @@ public class BookingService {
         log.info("Booking cancelled by user - ID: {}, User: {} - Deposit FORFEITED (no refund)",
                 bookingId, email);
 
+        try {
+            eventPublisher.publishEvent(new BookingCancelledEvent(this, savedBooking));
+        } catch (Exception ex) {
+            log.error("❌ [Event] Failed to publish BookingCancelledEvent for booking #{}: {}",
+                    bookingId, ex.getMessage(), ex);
+        }
+
         return convertToDto(savedBooking);
     }
 
@@ -404,6 +542,7 @@ public class BookingService {
         // ChargingPoint status will be updated when charging session starts
         booking.setBookingStatus(BookingStatus.IN_PROGRESS);
         booking.setCheckedInAt(LocalDateTime.now()); // Track check-in time
+        booking.setExpiresAt(BookingExpiryService.checkedInDeadline(booking));
         Booking savedBooking = bookingRepository.save(booking);
 
         log.info("✅ Booking checked in - ID: {}, User: {}, Point: {}, Time: {}",
@@ -423,103 +562,6 @@ public class BookingService {
         return convertToDto(savedBooking);
     }
 
-    @Scheduled(cron = "0 */5 * * * *") // Run every 5 minutes
-    @Transactional
-    public void processExpiredBookings() {
-        LocalDateTime expiryThreshold = LocalDateTime.now().minusMinutes(BOOKING_EXPIRY_MINUTES);
-
-        // Find bookings that are CONFIRMED but past their check-in window
-        List<Booking> expiredBookings = bookingRepository.findExpiredBookings(
-                BookingStatus.CONFIRMED,
-                expiryThreshold
-        );
-
-        for (Booking booking : expiredBookings) {
-            booking.setBookingStatus(BookingStatus.EXPIRED);
-            bookingRepository.save(booking);
-
-            // FIX BUG #3: Free up the charging point
-            ChargingPoint point = booking.getChargingPoint();
-            if (point.getStatus() == ChargingPointStatus.RESERVED && point.getCurrentSession() == null) {
-                point.setStatus(ChargingPointStatus.AVAILABLE);
-                chargingPointRepository.save(point);
-                log.info("Freed up charging point {} after booking #{} expired",
-                         point.getName(), booking.getId());
-            }
-
-            // No refund for expired bookings - deposit is forfeited
-            log.info("Booking expired - ID: {}, User: {}, Deposit forfeited",
-                    booking.getId(), booking.getUser().getEmail());
-        }
-
-        if (!expiredBookings.isEmpty()) {
-            log.info("Processed {} expired bookings", expiredBookings.size());
-        }
-    }
-
-    /**
-     * NEW: Auto-cancel bookings đã check-in nhưng không start session trong 10 phút
-     * Chạy mỗi 2 phút để check timeout
-     */
-    @Scheduled(cron = "0 */2 * * * *") // Run every 2 minutes
-    @Transactional
-    public void processCheckedInTimeouts() {
-        LocalDateTime timeoutThreshold = LocalDateTime.now().minusMinutes(10);
-
-        // Tìm bookings đã check-in (IN_PROGRESS) nhưng chưa có session
-        List<Booking> checkedInBookings = bookingRepository.findByBookingStatus(BookingStatus.IN_PROGRESS);
-
-        int timeoutCount = 0;
-        for (Booking booking : checkedInBookings) {
-            // Skip nếu chưa có checkedInAt (dữ liệu cũ)
-            if (booking.getCheckedInAt() == null) {
-                continue;
-            }
-
-            // Check timeout: check-in > 10 phút mà chưa có session
-            if (booking.getCheckedInAt().isBefore(timeoutThreshold)) {
-                // Kiểm tra xem đã có session chưa bằng cách check ChargingPoint
-                ChargingPoint point = booking.getChargingPoint();
-                boolean hasActiveSession = point.getCurrentSession() != null &&
-                                          point.getCurrentSession().getStatus() == com.swp.evchargingstation.enums.ChargingSessionStatus.IN_PROGRESS;
-
-                if (!hasActiveSession) {
-                    // Timeout: Check-in rồi nhưng không start session
-                    booking.setBookingStatus(BookingStatus.EXPIRED);
-                    bookingRepository.save(booking);
-
-                    // Free up charging point
-                    if (point.getStatus() == ChargingPointStatus.RESERVED && point.getCurrentSession() == null) {
-                        point.setStatus(ChargingPointStatus.AVAILABLE);
-                        chargingPointRepository.save(point);
-                    }
-
-                    // Refund 50% deposit (penalty for not starting)
-                    double refundAmount = booking.getDepositAmount() * 0.5;
-                    walletService.credit(
-                        booking.getUser().getUserId(),
-                        refundAmount,
-                        TransactionType.BOOKING_REFUND,
-                        String.format("Partial refund (50%%) for booking #%d - check-in timeout", booking.getId()),
-                        null, null, booking.getId(), null
-                    );
-
-                    log.warn("⚠️ Booking #{} check-in timeout - User: {}, Point: {}, Refunded: {} VND (50%)",
-                            booking.getId(),
-                            booking.getUser().getEmail(),
-                            point.getName(),
-                            refundAmount);
-
-                    timeoutCount++;
-                }
-            }
-        }
-
-        if (timeoutCount > 0) {
-            log.info("Processed {} check-in timeouts (10 minutes)", timeoutCount);
-        }
-    }
-
     private BookingResponse convertToDto(Booking booking) {
         return BookingResponse.builder()
                 .id(booking.getId())
@@ -544,42 +586,85 @@ public class BookingService {
     }
 
     /**
-     * Tính toán thời gian dự kiến kết thúc session dựa trên:
-     * - SOC hiện tại và target SOC
-     * - Charging power của trụ
-     * - Battery capacity của xe
-     * - Safety margin 20% (charging curve, nhiệt độ, etc.)
+     * Thời điểm dự kiến phiên sạc đang chạy tại trụ kết thúc, empty nếu trụ không có phiên IN_PROGRESS.
+     * Session do instance này mô phỏng: tính từ live state (không load session từ DB).
      */
-    private LocalDateTime calculateEstimatedEndTime(ChargingSession session) {
-        double currentSoc = session.getStartSocPercent(); // SOC hiện tại
-        double targetSoc = session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100;
-        double remainingPercent = targetSoc - currentSoc;
+    private Optional<LocalDateTime> estimateActiveSessionEndTime(ChargingPoint chargingPoint) {
+        // Một trụ: session ngoài store load qua lazy proxy của trụ
+        return estimateActiveSessionEndTime(chargingPoint, sessionId -> chargingPoint.getCurrentSession());
+    }
 
-        if (remainingPercent <= 0) {
-            // Nếu đã đạt target hoặc target không hợp lệ, assume sẽ kết thúc trong 5 phút
-            return LocalDateTime.now().plusMinutes(5);
+    /**
+     * @param sessionOutsideStore session IN_PROGRESS (đã load từ DB) theo ID, null nếu session không còn chạy
+     */
+    private Optional<LocalDateTime> estimateActiveSessionEndTime(ChargingPoint chargingPoint,
+                                                                 Function<String, ChargingSession> sessionOutsideStore) {
+        String sessionId = currentSessionId(chargingPoint);
+        if (sessionId == null) {
+            return Optional.empty();
         }
 
-        Vehicle vehicle = session.getVehicle();
-        ChargingPoint point = session.getChargingPoint();
+        Optional<ChargingSessionLiveState> liveState = simulatableLiveState(sessionId);
+        if (liveState.isPresent()) {
+            ChargingSessionLiveState state = liveState.get();
+            double minutesNeeded = state.curve().minutesBetween(state.exactSocPercent(), state.targetSocPercent());
+            return Optional.of(minutesNeeded > 0
+                    ? LocalDateTime.now().plusMinutes((long) Math.ceil(minutesNeeded))
+                    : LocalDateTime.now().plusMinutes(5));
+        }
 
-        // Công suất thực tế = MIN(trụ, xe)
-        double actualPowerKw = Math.min(
-            point.getChargingPower().getPowerKw(),
-            vehicle.getMaxChargingPowerKw()
-        );
+        // Session thuộc shard của instance khác / chưa vào store → đọc từ DB như trước
+        ChargingSession currentSession = sessionOutsideStore.apply(sessionId);
+        if (currentSession == null || currentSession.getStatus() != ChargingSessionStatus.IN_PROGRESS) {
+            return Optional.empty();
+        }
+        return Optional.of(calculateEstimatedEndTime(currentSession, chargingPoint));
+    }
+
+    /**
+     * Load 1 lần các session đang chạy tại các trụ mà live state store của instance này không có,
+     * thay vì khởi tạo lazy currentSession (và xe của nó) từng trụ một.
+     */
+    private Map<String, ChargingSession> findActiveSessionsOutsideLiveStore(List<ChargingPoint> chargingPoints) {
+        List<String> sessionIds = chargingPoints.stream()
+                .map(this::currentSessionId)
+                .filter(sessionId -> sessionId != null && simulatableLiveState(sessionId).isEmpty())
+                .toList();
+        if (sessionIds.isEmpty()) {
+            return Map.of();
+        }
+        return chargingSessionRepository.findByIdsAndStatusWithVehicle(sessionIds, ChargingSessionStatus.IN_PROGRESS)
+                .stream()
+                .collect(Collectors.toMap(ChargingSession::getSessionId, Function.identity()));
+    }
 
-        double requiredEnergy = (remainingPercent / 100.0) * vehicle.getBatteryCapacityKwh();
+    private String currentSessionId(ChargingPoint chargingPoint) {
+        // getSessionId() trên lazy proxy không khởi tạo entity
+        ChargingSession currentSession = chargingPoint.getCurrentSession();
+        return currentSession != null ? currentSession.getSessionId() : null;
+    }
+
+    private Optional<ChargingSessionLiveState> simulatableLiveState(String sessionId) {
+        return liveStateStore.get(sessionId).filter(ChargingSessionLiveState::isSimulatable);
+    }
 
-        // Tính thời gian lý thuyết
-        double hoursNeeded = requiredEnergy / actualPowerKw;
+    /**
+     * Tính toán thời gian dự kiến kết thúc session dựa trên:
+     * - SOC hiện tại (endSocPercent được flush định kỳ từ live state) và target SOC
+     * - Charging curve của xe tại trụ (đã mô phỏng giảm công suất trên 80%, không cần safety margin)
+     */
+    private LocalDateTime calculateEstimatedEndTime(ChargingSession session, ChargingPoint chargingPoint) {
+        double currentSoc = Math.max(session.getStartSocPercent(), session.getEndSocPercent());
+        double targetSoc = session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100;
 
-        // Thêm 20% safety margin để tính đến charging curve (sạc chậm dần khi gần đầy)
-        double safetyFactor = 1.2;
-        double adjustedHours = hoursNeeded * safetyFactor;
+        if (targetSoc <= currentSoc) {
+            // Nếu đã đạt target hoặc target không hợp lệ, assume sẽ kết thúc trong 5 phút
+            return LocalDateTime.now().plusMinutes(5);
+        }
 
-        long minutesNeeded = (long) (adjustedHours * 60);
+        double minutesNeeded = chargingCurveService.minutesToTarget(
+                session.getVehicle(), chargingPoint, currentSoc, targetSoc);
 
-        return LocalDateTime.now().plusMinutes(minutesNeeded);
+        return LocalDateTime.now().plusMinutes((long) Math.ceil(minutesNeeded));
     }
-}
\ No newline at end of file
+}
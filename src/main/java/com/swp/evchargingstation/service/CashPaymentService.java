@@ -3,6 +3,7 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.dto.response.CashPaymentRequestResponse;
 import com.swp.evchargingstation.entity.*;
 import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.event.payment.PaymentCompletedEvent;
 import com.swp.evchargingstation.enums.PaymentStatus;
 import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
@@ -11,6 +12,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +31,7 @@ public class CashPaymentService {
     ChargingSessionRepository chargingSessionRepository;
     StaffRepository staffRepository;
     EmailService emailService;
+    ApplicationEventPublisher eventPublisher;
 
     /**
      * Driver yêu cầu thanh toán bằng tiền mặt cho một session đã hoàn thành
@@ -199,6 +202,7 @@ public class CashPaymentService {
         log.info("Payment after update - ID: {}, Status: {}, ConfirmedAt: {}, PaidAt: {}",
                 savedPayment.getPaymentId(), savedPayment.getStatus(),
                 savedPayment.getConfirmedAt(), savedPayment.getPaidAt());
+        eventPublisher.publishEvent(new PaymentCompletedEvent(this, savedPayment));
         // Gửi email xác nhận thanh toán
         emailService.sendPaymentConfirmationEmail(savedPayment);
 
@@ -0,0 +1,96 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.entity.Vehicle;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.VehicleModel;
+import com.swp.evchargingstation.util.ChargingCurve;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Nguồn duy nhất cho ước tính thời gian/năng lượng sạc (simulator, booking, walk-in check).
+ *
+ * - Khởi động: tính sẵn ChargingCurve cho mọi VehicleModel × ChargingPower
+ * - Curve được cache theo (dung lượng pin, công suất đỉnh), xe có thông số riêng
+ *   (batteryCapacityKwhValue / maxChargingPowerKwValue) dùng chung cơ chế, tính một lần rồi cache
+ * - Ước tính thời gian không bao giờ bằng 0: booking / phiên sạc dài 0 phút không chặn được booking trùng
+ */
+@Service
+@Slf4j
+public class ChargingCurveService {
+
+    // Khoảng chiếm trụ ngắn nhất được trả về (booking cần interval khác rỗng để kiểm tra trùng)
+    static final double MIN_MINUTES = 1.0;
+
+    private final Map<CurveKey, ChargingCurve> curves = new ConcurrentHashMap<>();
+    private final double fallbackMinutes;
+
+    private record CurveKey(float capacityKwh, float peakPowerKw) {
+    }
+
+    public ChargingCurveService(@Value("${charging-curve.fallback-minutes:240}") double fallbackMinutes) {
+        this.fallbackMinutes = Math.max(MIN_MINUTES, fallbackMinutes);
+    }
+
+    @PostConstruct
+    public void precompute() {
+        for (VehicleModel model : VehicleModel.values()) {
+            for (ChargingPower power : ChargingPower.values()) {
+                curveFor(model.getBatteryCapacityKwh(), model.getMaxChargingPowerKw(), power);
+            }
+        }
+        log.info("Precomputed {} charging curves ({} models × {} charging powers)",
+                curves.size(), VehicleModel.values().length, ChargingPower.values().length);
+    }
+
+    /**
+     * Curve cho xe sạc tại trụ, null nếu thiếu dữ liệu (không có công suất / dung lượng pin)
+     */
+    public ChargingCurve curveFor(Vehicle vehicle, ChargingPoint point) {
+        if (vehicle == null || point == null) {
+            return null;
+        }
+        return curveFor(vehicle.getBatteryCapacityKwh(), vehicle.getMaxChargingPowerKw(), point.getChargingPower());
+    }
+
+    public ChargingCurve curveFor(float capacityKwh, float vehicleMaxPowerKw, ChargingPower chargingPower) {
+        if (chargingPower == null) {
+            return null;
+        }
+        float peakPowerKw = Math.min(chargingPower.getPowerKw(), vehicleMaxPowerKw);
+        if (capacityKwh <= 0 || peakPowerKw <= 0) {
+            return null;
+        }
+        return curves.computeIfAbsent(new CurveKey(capacityKwh, peakPowerKw),
+                key -> new ChargingCurve(key.capacityKwh(), key.peakPowerKw()));
+    }
+
+    /**
+     * Số phút sạc từ fromSoc tới toSoc của xe tại trụ, tối thiểu MIN_MINUTES.
+     * Thiếu dữ liệu để dựng curve → fallbackMinutes (ước tính bảo thủ, thà giữ trụ lâu hơn còn hơn nhận booking trùng).
+     */
+    public double minutesToTarget(Vehicle vehicle, ChargingPoint point, double fromSocPercent, double toSocPercent) {
+        ChargingCurve curve = curveFor(vehicle, point);
+        if (curve == null) {
+            log.debug("No charging curve for vehicle {} at point {} - using fallback estimate of {} minutes",
+                    vehicle != null ? vehicle.getVehicleId() : null, point != null ? point.getPointId() : null,
+                    fallbackMinutes);
+            return fallbackMinutes;
+        }
+        return Math.max(MIN_MINUTES, curve.minutesBetween(fromSocPercent, toSocPercent));
+    }
+
+    /**
+     * SOC tối đa đạt được trong availableMinutes phút kể từ fromSoc
+     */
+    public double socReachableWithin(Vehicle vehicle, ChargingPoint point, double fromSocPercent, double availableMinutes) {
+        ChargingCurve curve = curveFor(vehicle, point);
+        return curve != null ? curve.socAfter(fromSocPercent, availableMinutes) : fromSocPercent;
+    }
+}
@@ -5,31 +5,48 @@ import com.swp.evchargingstation.entity.ChargingPoint;
 import com.swp.evchargingstation.enums.ChargingPointStatus;
 import com.swp.evchargingstation.repository.BookingRepository;
 import com.swp.evchargingstation.repository.ChargingPointRepository;
-import lombok.RequiredArgsConstructor;
+import com.swp.evchargingstation.service.BookingIntervalIndex.BookingInterval;
+import com.swp.evchargingstation.util.HashedTimingWheel;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service quản lý trạng thái động của ChargingPoint dựa trên Booking.
  *
  * Nguyên tắc hoạt động:
  * - ChargingPoint.status chỉ phản ánh trạng thái vật lý thực tế (AVAILABLE, CHARGING, OUT_OF_SERVICE, MAINTENANCE).
- * - Trạng thái RESERVED được tính toán động dựa trên booking sắp tới (trong vòng 15-30 phút).
+ * - Trạng thái RESERVED được tính toán động dựa trên booking sắp tới (trong vòng 30 phút tới, trễ tối đa 10 phút).
  * - Khi hiển thị cho client, sử dụng displayStatus (có thể là RESERVED nếu có booking sắp tới).
+ *
+ * Cache trạng thái hiển thị (materialized, mỗi trụ 1 entry):
+ * - Đọc: lookup ConcurrentHashMap, không query DB (trụ chưa có trong cache được nạp 1 lần)
+ * - Cập nhật theo sự kiện: phiên sạc start / complete, booking tạo / hủy / hết hạn / hoàn tất,
+ *   staff đổi trạng thái trụ (ChargingPointStatusChangedEvent); booking lấy từ BookingIntervalIndex
+ * - Chuyển theo thời gian (booking vào / ra khỏi cửa sổ RESERVED): mỗi trụ 1 mốc trên
+ *   chargingPointStatusTimingWheel thay cho 2 job quét 5 phút trước đây
+ * - Rebuild từ DB khi khởi động và định kỳ (thay đổi từ instance khác, sự kiện bị lỡ)
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ChargingPointStatusService {
 
     private final BookingRepository bookingRepository;
     private final ChargingPointRepository chargingPointRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final HashedTimingWheel<String> transitionTimingWheel;
 
     // Khoảng thời gian trước giờ booking để hiển thị trạng thái RESERVED
     private static final int RESERVE_WINDOW_MINUTES = 30; // 30 phút trước giờ booking
@@ -37,144 +54,222 @@ public class ChargingPointStatusService {
     // Khoảng thời gian sau giờ booking để vẫn giữ RESERVED (cho phép check-in muộn)
     private static final int RESERVE_GRACE_MINUTES = 10; // 10 phút sau giờ booking
 
+    private final Map<String, DisplayState> displayStates = new ConcurrentHashMap<>();
+    // Tính lại + ghi entry + đặt mốc của một lần refresh là một bước (đọc vẫn không khóa).
+    // Chỉ thao tác in-memory; schedule / cancel của timing wheel không chặn
+    private final Object refreshLock = new Object();
+    private volatile Map<Long, String> bookerNames = new ConcurrentHashMap<>();
+
+    public ChargingPointStatusService(BookingRepository bookingRepository,
+                                      ChargingPointRepository chargingPointRepository,
+                                      BookingIntervalIndex bookingIntervalIndex,
+                                      @Qualifier("chargingPointStatusTimingWheel") HashedTimingWheel<String> transitionTimingWheel) {
+        this.bookingRepository = bookingRepository;
+        this.chargingPointRepository = chargingPointRepository;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.transitionTimingWheel = transitionTimingWheel;
+    }
+
     /**
-     * Tính toán trạng thái hiển thị động cho một charging point.
-     *
-     * Logic:
-     * - Nếu trụ đang OUT_OF_SERVICE hoặc MAINTENANCE -> giữ nguyên
-     * - Nếu trụ đang CHARGING -> giữ nguyên
-     * - Nếu trụ AVAILABLE và có booking trong khoảng [now, now + 30 phút] -> trả về RESERVED
-     * - Còn lại -> trả về trạng thái hiện tại
-     *
-     * @param chargingPointId ID của charging point
-     * @return Trạng thái hiển thị (có thể là RESERVED nếu có booking sắp tới)
+     * Trạng thái hiển thị của một trụ cùng booking sắp tới (nếu có) đang khiến trụ RESERVED.
      */
-    public ChargingPointStatus calculateDisplayStatus(String chargingPointId) {
-        ChargingPoint chargingPoint = chargingPointRepository.findById(chargingPointId)
-                .orElse(null);
-
-        if (chargingPoint == null) {
-            return ChargingPointStatus.OUT_OF_SERVICE;
+    public record DisplayState(ChargingPointStatus physicalStatus, ChargingPointStatus displayStatus,
+                               Long upcomingBookingId, LocalDateTime upcomingBookingTime,
+                               String upcomingBookingUserName) {
+
+        static DisplayState of(ChargingPointStatus physicalStatus, BookingInterval upcoming, String userName) {
+            return upcoming == null
+                    ? new DisplayState(physicalStatus, derive(physicalStatus, false), null, null, null)
+                    : new DisplayState(physicalStatus, derive(physicalStatus, true),
+                            upcoming.bookingId(), upcoming.start(), userName);
         }
 
-        // Nếu trụ đang có vấn đề hoặc đang sạc, giữ nguyên trạng thái
-        if (chargingPoint.getStatus() == ChargingPointStatus.OUT_OF_SERVICE ||
-            chargingPoint.getStatus() == ChargingPointStatus.MAINTENANCE ||
-            chargingPoint.getStatus() == ChargingPointStatus.CHARGING ||
-            chargingPoint.getStatus() == ChargingPointStatus.OCCUPIED) {
-            return chargingPoint.getStatus();
+        /**
+         * Logic:
+         * - Nếu trụ không tồn tại -> OUT_OF_SERVICE
+         * - Nếu trụ đang OUT_OF_SERVICE, MAINTENANCE, CHARGING hoặc OCCUPIED -> giữ nguyên
+         * - Nếu có booking trong khoảng [now - 10 phút, now + 30 phút] -> RESERVED
+         * - Còn lại -> AVAILABLE (RESERVED vật lý cũ không còn booking cũng về AVAILABLE)
+         */
+        static ChargingPointStatus derive(ChargingPointStatus physicalStatus, boolean reserved) {
+            if (physicalStatus == null) {
+                return ChargingPointStatus.OUT_OF_SERVICE;
+            }
+            return switch (physicalStatus) {
+                case OUT_OF_SERVICE, MAINTENANCE, CHARGING, OCCUPIED -> physicalStatus;
+                case AVAILABLE, RESERVED -> reserved ? ChargingPointStatus.RESERVED : ChargingPointStatus.AVAILABLE;
+            };
         }
 
-        // Kiểm tra có booking sắp tới không
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime windowStart = now.minusMinutes(RESERVE_GRACE_MINUTES); // Cho phép check-in muộn
-        LocalDateTime windowEnd = now.plusMinutes(RESERVE_WINDOW_MINUTES);
-
-        Optional<Booking> upcomingBooking = bookingRepository.findUpcomingBookingInTimeWindow(
-                chargingPointId, windowStart, windowEnd);
-
-        if (upcomingBooking.isPresent()) {
-            // Có booking sắp tới -> hiển thị RESERVED
-            return ChargingPointStatus.RESERVED;
+        /**
+         * Cùng booking sắp tới nhưng trạng thái vật lý khác (entity vừa đổi, transaction chưa commit).
+         */
+        DisplayState withPhysicalStatus(ChargingPointStatus status) {
+            return new DisplayState(status, derive(status, upcomingBookingId != null),
+                    upcomingBookingId, upcomingBookingTime, upcomingBookingUserName);
         }
 
-        // Không có booking -> trả về trạng thái thực tế
-        return chargingPoint.getStatus();
+        public boolean hasUpcomingBooking() {
+            return upcomingBookingId != null;
+        }
     }
 
     /**
-     * Lấy thông tin booking sắp tới cho một charging point (nếu có).
+     * Trạng thái hiển thị động cho một charging point (có thể là RESERVED nếu có booking sắp tới).
      *
      * @param chargingPointId ID của charging point
-     * @return Optional booking sắp tới trong khoảng reserve window
+     * @return Trạng thái hiển thị
      */
-    public Optional<Booking> getUpcomingBooking(String chargingPointId) {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime windowStart = now.minusMinutes(RESERVE_GRACE_MINUTES);
-        LocalDateTime windowEnd = now.plusMinutes(RESERVE_WINDOW_MINUTES);
-
-        return bookingRepository.findUpcomingBookingInTimeWindow(
-                chargingPointId, windowStart, windowEnd);
+    public ChargingPointStatus calculateDisplayStatus(String chargingPointId) {
+        return getDisplayState(chargingPointId).displayStatus();
     }
 
     /**
-     * Scheduled job: Tự động cập nhật trạng thái RESERVED cho các trụ có booking sắp tới.
-     * Chạy mỗi 5 phút.
-     *
-     * QUAN TRỌNG: Đây là cách tiếp cận dự phòng. Trong thực tế, nên sử dụng displayStatus động
-     * thay vì thay đổi trạng thái vật lý của trụ.
-     *
-     * Job này CHỈ cập nhật trạng thái vật lý khi:
-     * - Booking trong vòng 15 phút tới
-     * - Trụ hiện đang AVAILABLE
-     * - Chưa có session đang chạy
+     * Trạng thái hiển thị dùng trạng thái vật lý của entity đang có trong tay
+     * (luôn khớp với dữ liệu trong transaction hiện tại, kể cả khi cache chưa nhận sự kiện).
      */
-    @Scheduled(cron = "0 */5 * * * *") // Mỗi 5 phút
-    @Transactional
-    public void updateReservedStatus() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime windowStart = now;
-        LocalDateTime windowEnd = now.plusMinutes(15); // Chỉ set RESERVED trong vòng 15 phút
+    public ChargingPointStatus calculateDisplayStatus(ChargingPoint chargingPoint) {
+        return getDisplayState(chargingPoint).displayStatus();
+    }
 
-        List<Booking> nearbyBookings = bookingRepository.findBookingsNearStartTime(windowStart, windowEnd);
+    public DisplayState getDisplayState(ChargingPoint chargingPoint) {
+        DisplayState state = getDisplayState(chargingPoint.getPointId());
+        return state.physicalStatus() == chargingPoint.getStatus()
+                ? state
+                : state.withPhysicalStatus(chargingPoint.getStatus());
+    }
 
-        int updatedCount = 0;
-        for (Booking booking : nearbyBookings) {
-            ChargingPoint point = booking.getChargingPoint();
+    public DisplayState getDisplayState(String chargingPointId) {
+        DisplayState state = displayStates.get(chargingPointId);
+        if (state != null) {
+            return state;
+        }
+        // Trụ mới tạo / chưa nạp: đọc trạng thái vật lý 1 lần
+        ChargingPointStatus physicalStatus = chargingPointRepository.findById(chargingPointId)
+                .map(ChargingPoint::getStatus)
+                .orElse(null);
+        if (physicalStatus == null) {
+            return DisplayState.of(null, null, null);
+        }
+        return refresh(chargingPointId, physicalStatus);
+    }
 
-            // Chỉ cập nhật nếu trụ đang AVAILABLE và không có session
-            if (point.getStatus() == ChargingPointStatus.AVAILABLE &&
-                point.getCurrentSession() == null) {
+    /**
+     * Trạng thái vật lý của trụ đã đổi (sau commit). status null = trụ đã bị xóa.
+     */
+    public void onPhysicalStatusChanged(String chargingPointId, ChargingPointStatus status) {
+        if (status == null) {
+            synchronized (refreshLock) {
+                displayStates.remove(chargingPointId);
+                transitionTimingWheel.cancel(chargingPointId);
+            }
+            return;
+        }
+        refresh(chargingPointId, status);
+    }
+
+    /**
+     * Booking mới đã vào BookingIntervalIndex → tính lại trụ của booking.
+     */
+    public void onBookingIndexed(Booking booking) {
+        if (booking.getUser() != null) {
+            bookerNames.put(booking.getId(), booking.getUser().getFullName());
+        }
+        refreshIfCached(booking.getChargingPoint().getPointId());
+    }
+
+    /**
+     * Booking đã rời BookingIntervalIndex (hủy, hết hạn, hoàn tất) → tính lại trụ của booking.
+     */
+    public void onBookingReleased(String chargingPointId, Long bookingId) {
+        bookerNames.remove(bookingId);
+        refreshIfCached(chargingPointId);
+    }
 
-                point.setStatus(ChargingPointStatus.RESERVED);
-                chargingPointRepository.save(point);
-                updatedCount++;
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        // RESERVED vật lý cũ đã được LegacyReservedPointReleaseRunner đưa về AVAILABLE
+        rebuild();
+    }
 
-                log.info("Set ChargingPoint {} to RESERVED for booking #{} (booking time: {})",
-                        point.getName(), booking.getId(), booking.getBookingTime());
+    /**
+     * Đồng bộ lại toàn bộ cache với DB (2 query projection) và lên lịch lại các mốc chuyển trạng thái.
+     */
+    @Scheduled(initialDelayString = "${charging-point.display-status.rebuild-interval-ms:300000}",
+            fixedDelayString = "${charging-point.display-status.rebuild-interval-ms:300000}")
+    public synchronized void rebuild() {
+        Map<Long, String> names = new ConcurrentHashMap<>();
+        for (Object[] row : bookingRepository.findActiveBookingUserNames()) {
+            names.put((Long) row[0], (String) row[1]);
+        }
+        bookerNames = names;
+
+        List<Object[]> points = chargingPointRepository.findAllPointStatuses();
+        Set<String> pointIds = new HashSet<>();
+        for (Object[] row : points) {
+            String pointId = (String) row[0];
+            pointIds.add(pointId);
+            refresh(pointId, (ChargingPointStatus) row[1]);
+        }
+        for (String pointId : displayStates.keySet()) {
+            if (!pointIds.contains(pointId)) {
+                synchronized (refreshLock) {
+                    displayStates.remove(pointId);
+                    transitionTimingWheel.cancel(pointId);
+                }
             }
         }
 
-        if (updatedCount > 0) {
-            log.info("Updated {} charging points to RESERVED status", updatedCount);
+        long reserved = displayStates.values().stream()
+                .filter(state -> state.displayStatus() == ChargingPointStatus.RESERVED)
+                .count();
+        log.info("Charging point display status cache rebuilt: {} points, {} reserved", points.size(), reserved);
+    }
+
+    private void refreshIfCached(String chargingPointId) {
+        DisplayState state = displayStates.get(chargingPointId);
+        if (state != null) {
+            refresh(chargingPointId, state.physicalStatus());
         }
     }
 
     /**
-     * Scheduled job: Tự động release trạng thái RESERVED về AVAILABLE sau khi booking expired.
-     * Chạy mỗi 5 phút.
+     * Tính lại entry của trụ từ trạng thái vật lý + BookingIntervalIndex (in-memory) và đặt mốc
+     * chuyển trạng thái kế tiếp: booking sắp tới ra khỏi cửa sổ, hoặc booking kế tiếp vào cửa sổ.
      */
-    @Scheduled(cron = "0 */5 * * * *") // Mỗi 5 phút
-    @Transactional
-    public void releaseExpiredReservations() {
-        // Tìm tất cả trụ đang RESERVED
-        List<ChargingPoint> reservedPoints = chargingPointRepository.findAll().stream()
-                .filter(cp -> cp.getStatus() == ChargingPointStatus.RESERVED)
-                .toList();
-
-        LocalDateTime now = LocalDateTime.now();
-        int releasedCount = 0;
-
-        for (ChargingPoint point : reservedPoints) {
-            // Kiểm tra xem còn booking active trong khoảng reserve window không
-            Optional<Booking> upcomingBooking = getUpcomingBooking(point.getPointId());
-
-            if (upcomingBooking.isEmpty()) {
-                // Không còn booking sắp tới -> release về AVAILABLE
-                point.setStatus(ChargingPointStatus.AVAILABLE);
-                chargingPointRepository.save(point);
-                releasedCount++;
-
-                log.info("Released ChargingPoint {} from RESERVED to AVAILABLE (no upcoming booking)",
-                        point.getName());
+    private DisplayState refresh(String chargingPointId, ChargingPointStatus physicalStatus) {
+        synchronized (refreshLock) {
+            LocalDateTime now = LocalDateTime.now();
+            Optional<BookingInterval> next = bookingIntervalIndex.findFirstAfter(
+                    chargingPointId, now.minusMinutes(RESERVE_GRACE_MINUTES)); // Cho phép check-in muộn
+            BookingInterval upcoming = next
+                    .filter(booking -> !booking.start().isAfter(now.plusMinutes(RESERVE_WINDOW_MINUTES)))
+                    .orElse(null);
+            DisplayState state = DisplayState.of(physicalStatus, upcoming,
+                    upcoming != null ? bookerNames.get(upcoming.bookingId()) : null);
+
+            DisplayState previous = displayStates.put(chargingPointId, state);
+            if (previous != null && previous.displayStatus() != state.displayStatus()) {
+                log.debug("ChargingPoint {} display status {} -> {}", chargingPointId,
+                        previous.displayStatus(), state.displayStatus());
             }
-        }
 
-        if (releasedCount > 0) {
-            log.info("Released {} charging points from RESERVED status", releasedCount);
+            if (upcoming != null) {
+                scheduleTransition(chargingPointId, upcoming.start().plusMinutes(RESERVE_GRACE_MINUTES));
+            } else if (next.isPresent()) {
+                scheduleTransition(chargingPointId, next.get().start().minusMinutes(RESERVE_WINDOW_MINUTES));
+            } else {
+                transitionTimingWheel.cancel(chargingPointId);
+            }
+            return state;
         }
     }
 
+    private void scheduleTransition(String chargingPointId, LocalDateTime at) {
+        long deadlineMillis = at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        transitionTimingWheel.schedule(chargingPointId, deadlineMillis, () -> refreshIfCached(chargingPointId));
+    }
+
     /**
      * Kiểm tra xem một charging point có thể booking được không trong khoảng thời gian nhất định.
      *
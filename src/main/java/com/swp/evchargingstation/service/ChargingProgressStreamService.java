@@ -0,0 +1,346 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.dto.response.ChargingProgressFrame;
+import com.swp.evchargingstation.entity.ChargingSession;
+import com.swp.evchargingstation.entity.Staff;
+import com.swp.evchargingstation.entity.Station;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.StaffRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đẩy progress live của phiên sạc tới client qua Server-Sent Events.
+ *
+ * - Client subscribe một session (driver chủ session hoặc staff) hoặc cả trạm (staff quản lý trạm)
+ * - Sau mỗi tick simulator gọi {@link #publish}: chỉ session có subscriber mới được dựng frame,
+ *   frame giống frame trước (cùng số liệu hiển thị) bị bỏ qua
+ * - Fan-out không block tick: frame được đặt vào slot "frame mới nhất theo session" của từng subscriber,
+ *   việc ghi ra socket chạy trên progressStreamExecutor, mỗi subscriber tối đa một lượt ghi đang chạy
+ * - Backpressure: client chậm chưa ghi xong thì frame mới ghi đè frame cũ trong slot,
+ *   client chỉ nhận frame mới nhất (bỏ frame trung gian), bộ nhớ bị chặn theo số session đang theo dõi
+ *
+ * Khi bật sharding, tick chỉ chạy trên node sở hữu shard của trụ: client cần được route về node đó
+ * (sticky theo trạm) để nhận frame progress; frame COMPLETED vẫn được gửi từ node complete session.
+ */
+@Service
+@Slf4j
+public class ChargingProgressStreamService {
+
+    static final String PROGRESS_EVENT = "progress";
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final StaffRepository staffRepository;
+    private final ChargingSessionLiveStateStore liveStateStore;
+    private final ThreadPoolTaskExecutor streamExecutor;
+    private final long emitterTimeoutMillis;
+
+    // sessionId -> subscriber theo dõi session, stationId -> subscriber theo dõi cả trạm
+    private final Map<String, Set<Subscriber>> sessionSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> stationSubscribers = new ConcurrentHashMap<>();
+
+    // Frame đã publish gần nhất của mỗi session có subscriber (delta check)
+    private final Map<String, ChargingProgressFrame> lastFrames = new ConcurrentHashMap<>();
+
+    public ChargingProgressStreamService(ChargingSessionRepository chargingSessionRepository,
+                                         StaffRepository staffRepository,
+                                         ChargingSessionLiveStateStore liveStateStore,
+                                         @Qualifier("progressStreamExecutor") ThreadPoolTaskExecutor streamExecutor,
+                                         @Value("${simulator.stream.emitter-timeout-ms:1800000}") long emitterTimeoutMillis) {
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.staffRepository = staffRepository;
+        this.liveStateStore = liveStateStore;
+        this.streamExecutor = streamExecutor;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+    }
+
+    /**
+     * [DRIVER/STAFF] Subscribe progress của một session.
+     * STAFF theo dõi được mọi session, DRIVER chỉ session của chính mình (giống GET /api/sessions/{id}).
+     * Session đã kết thúc: gửi ngay frame cuối rồi đóng stream.
+     */
+    @Transactional(readOnly = true)
+    public SseEmitter subscribeSession(String sessionId) {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        String userId = currentUserId();
+
+        ChargingSession session = chargingSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new AppException(ErrorCode.SESSION_NOT_FOUND));
+
+        boolean isStaff = authentication.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_STAFF"));
+        if (!isStaff && !session.getDriver().getUserId().equals(userId)) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+
+        Subscriber subscriber = register(sessionSubscribers, sessionId);
+        if (session.getStatus() == ChargingSessionStatus.IN_PROGRESS) {
+            liveStateStore.get(sessionId).ifPresent(state -> subscriber.offer(toFrame(state)));
+        } else {
+            subscriber.offerLast(toFinalFrame(session));
+        }
+        log.info("User {} subscribed to progress stream of session {}", userId, sessionId);
+        return subscriber.emitter;
+    }
+
+    /**
+     * [STAFF] Subscribe progress của mọi session tại trạm mà staff quản lý.
+     */
+    @Transactional(readOnly = true)
+    public SseEmitter subscribeMyStation() {
+        String userId = currentUserId();
+
+        Staff staff = staffRepository.findByIdWithStation(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND));
+        Station station = staff.getManagedStation();
+        if (station == null) {
+            throw new AppException(ErrorCode.STAFF_NO_MANAGED_STATION);
+        }
+
+        String stationId = station.getStationId();
+        Subscriber subscriber = register(stationSubscribers, stationId);
+        liveStateStore.snapshot().stream()
+                .filter(state -> stationId.equals(state.stationId()))
+                .forEach(state -> subscriber.offer(toFrame(state)));
+        log.info("Staff {} subscribed to progress stream of station {}", userId, stationId);
+        return subscriber.emitter;
+    }
+
+    /**
+     * Gọi sau mỗi tick của simulator. Không block: chỉ dựng frame và đặt vào slot của subscriber.
+     */
+    public void publish(Collection<ChargingSessionLiveState> states) {
+        if (!hasSubscribers()) {
+            return;
+        }
+
+        for (ChargingSessionLiveState state : states) {
+            Set<Subscriber> bySession = sessionSubscribers.get(state.sessionId());
+            Set<Subscriber> byStation = state.stationId() != null ? stationSubscribers.get(state.stationId()) : null;
+            if (bySession == null && byStation == null) {
+                lastFrames.remove(state.sessionId());
+                continue;
+            }
+
+            ChargingProgressFrame frame = toFrame(state);
+            if (frame.hasSameProgressAs(lastFrames.put(state.sessionId(), frame))) {
+                continue;
+            }
+            offerAll(bySession, frame);
+            offerAll(byStation, frame);
+        }
+    }
+
+    /**
+     * Frame cuối khi session COMPLETED (auto complete, hết tiền hoặc stop thủ công).
+     * Stream theo session được đóng sau khi gửi xong frame này.
+     */
+    public void publishCompleted(ChargingSession session) {
+        lastFrames.remove(session.getSessionId());
+        if (!hasSubscribers()) {
+            return;
+        }
+
+        ChargingProgressFrame frame = toFinalFrame(session);
+        Set<Subscriber> bySession = sessionSubscribers.get(session.getSessionId());
+        if (bySession != null) {
+            bySession.forEach(subscriber -> subscriber.offerLast(frame));
+        }
+        if (frame.getStationId() != null) {
+            offerAll(stationSubscribers.get(frame.getStationId()), frame);
+        }
+    }
+
+    /**
+     * Comment định kỳ giữ kết nối qua proxy khi không có frame (trạm không có phiên sạc),
+     * đồng thời phát hiện client đã ngắt để giải phóng emitter.
+     */
+    @Scheduled(fixedRateString = "${simulator.stream.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        sessionSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::ping));
+        stationSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::ping));
+    }
+
+    public boolean hasSubscribers() {
+        return !sessionSubscribers.isEmpty() || !stationSubscribers.isEmpty();
+    }
+
+    private Subscriber register(Map<String, Set<Subscriber>> registry, String key) {
+        Subscriber subscriber = new Subscriber(registry, key, new SseEmitter(emitterTimeoutMillis));
+        registry.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(error -> subscriber.close());
+        return subscriber;
+    }
+
+    private void offerAll(Set<Subscriber> subscribers, ChargingProgressFrame frame) {
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.offer(frame));
+        }
+    }
+
+    private String currentUserId() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        String userId = null;
+        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+            userId = jwt.getClaim("userId");
+        }
+        if (userId == null) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        return userId;
+    }
+
+    private static ChargingProgressFrame toFrame(ChargingSessionLiveState state) {
+        Integer remainingMinutes = null;
+        if (state.isSimulatable()) {
+            remainingMinutes = (int) Math.ceil(
+                    state.curve().minutesBetween(state.exactSocPercent(), state.targetSocPercent()));
+        }
+        return ChargingProgressFrame.builder()
+                .sessionId(state.sessionId())
+                .stationId(state.stationId())
+                .status(ChargingSessionStatus.IN_PROGRESS.name())
+                .socPercent(state.socPercent())
+                .targetSocPercent(state.targetSocPercent())
+                .energyKwh(Math.round(state.energyKwh() * 100f) / 100f)
+                .durationMin((int) state.durationMin())
+                .costTotal(Math.round(state.costTotal()))
+                .estimatedTimeRemainingMinutes(remainingMinutes)
+                .build();
+    }
+
+    private static ChargingProgressFrame toFinalFrame(ChargingSession session) {
+        return ChargingProgressFrame.builder()
+                .sessionId(session.getSessionId())
+                .stationId(session.getChargingPoint() != null && session.getChargingPoint().getStation() != null
+                        ? session.getChargingPoint().getStation().getStationId() : null)
+                .status(session.getStatus().name())
+                .socPercent(session.getEndSocPercent())
+                .targetSocPercent(session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100)
+                .energyKwh(Math.round(session.getEnergyKwh() * 100f) / 100f)
+                .durationMin((int) session.getDurationMin())
+                .costTotal(Math.round(session.getCostTotal()))
+                .estimatedTimeRemainingMinutes(0)
+                .build();
+    }
+
+    /**
+     * Một kết nối SSE. pending giữ frame mới nhất của từng session (ghi đè = bỏ frame trung gian),
+     * draining bảo đảm tối đa một lượt ghi trên executor cho mỗi client.
+     */
+    private final class Subscriber {
+
+        final Map<String, Set<Subscriber>> registry;
+        final String key;
+        final SseEmitter emitter;
+        final Map<String, ChargingProgressFrame> pending = new ConcurrentHashMap<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean pingDue;
+        volatile boolean completeAfterDrain;
+        volatile boolean closed;
+
+        Subscriber(Map<String, Set<Subscriber>> registry, String key, SseEmitter emitter) {
+            this.registry = registry;
+            this.key = key;
+            this.emitter = emitter;
+        }
+
+        void offer(ChargingProgressFrame frame) {
+            if (closed) {
+                return;
+            }
+            pending.put(frame.getSessionId(), frame);
+            scheduleDrain();
+        }
+
+        void offerLast(ChargingProgressFrame frame) {
+            completeAfterDrain = true;
+            offer(frame);
+        }
+
+        void ping() {
+            if (closed) {
+                return;
+            }
+            pingDue = true;
+            scheduleDrain();
+        }
+
+        void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                streamExecutor.execute(this::drain);
+            } catch (TaskRejectedException e) {
+                // Executor quá tải: frame vẫn nằm trong pending, gửi ở lượt publish/heartbeat sau
+                draining.set(false);
+            }
+        }
+
+        void drain() {
+            try {
+                if (pingDue) {
+                    pingDue = false;
+                    emitter.send(SseEmitter.event().comment("ping"));
+                }
+                for (String sessionId : pending.keySet()) {
+                    ChargingProgressFrame frame = pending.remove(sessionId);
+                    if (frame != null) {
+                        emitter.send(SseEmitter.event()
+                                .name(PROGRESS_EVENT)
+                                .data(frame, MediaType.APPLICATION_JSON));
+                    }
+                }
+                if (completeAfterDrain && pending.isEmpty()) {
+                    close();
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client đã ngắt kết nối / emitter đã đóng
+                log.debug("Progress stream {} closed: {}", key, e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+
+            if (!closed && (!pending.isEmpty() || pingDue)) {
+                scheduleDrain();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            registry.computeIfPresent(key, (k, subscribers) -> {
+                subscribers.remove(this);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+}
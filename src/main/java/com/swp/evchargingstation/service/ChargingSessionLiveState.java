@@ -0,0 +1,205 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.entity.ChargingSession;
+import com.swp.evchargingstation.entity.Plan;
+import com.swp.evchargingstation.entity.Vehicle;
+import com.swp.evchargingstation.util.ChargingCurve;
+
+import java.time.ZoneId;
+
+/**
+ * Trạng thái live của một phiên sạc IN_PROGRESS (không giữ JPA entity).
+ *
+ * Immutable: mỗi tick tạo một bản mới qua {@link #advanceTo}, store thay thế bản cũ.
+ * Thông tin tĩnh (charging curve, capacity, giá) được chụp một lần khi session bắt đầu.
+ * Energy/SOC tăng theo ChargingCurve (CC tới 80%, giảm công suất phía trên), không theo công suất hằng.
+ *
+ * Progress là hàm của thời gian thực đã trôi qua kể từ progressAtMillis, nên có thể tính
+ * chính xác tại bất kỳ thời điểm nào (tick, complete đúng hạn, stop thủ công).
+ *
+ * costCeiling: trần chi phí đã được bảo đảm bởi wallet hold (deposit + tiền giữ).
+ * Chi phí vượt trần mới cần gia hạn hold, không cần đọc số dư ví mỗi tick.
+ */
+public record ChargingSessionLiveState(
+        String sessionId,
+        String driverId,
+        String vehicleId,
+        String pointId,
+        String stationId,
+        int startSocPercent,
+        int targetSocPercent,
+        float capacityKwh,
+        ChargingCurve curve,
+        boolean priced,
+        float pricePerKwh,
+        float pricePerMinute,
+        float energyKwh,
+        float durationMin,
+        int socPercent,
+        float costTotal,
+        long progressAtMillis,
+        double costCeiling
+) {
+
+    /**
+     * Chụp trạng thái từ entity (session phải được fetch cùng vehicle, chargingPoint, driver).
+     *
+     * @param plan plan dùng để tính giá (plan của driver hoặc "Linh hoạt"), null nếu không có
+     * @param costCeiling trần chi phí từ wallet hold (0 nếu chưa có hold)
+     * @param nowMillis thời điểm hiện tại (SimulationClock.millis())
+     * @param simMinutesPerSecond số phút giả lập ứng với 1 giây thực
+     * @param curve charging curve của xe tại trụ (ChargingCurveService), null nếu thiếu dữ liệu
+     */
+    public static ChargingSessionLiveState from(ChargingSession session, Plan plan, double costCeiling, long nowMillis,
+                                                float simMinutesPerSecond, ChargingCurve curve) {
+        Vehicle vehicle = session.getVehicle();
+        ChargingPoint point = session.getChargingPoint();
+
+        int socPercent = session.getEndSocPercent() > 0 ? session.getEndSocPercent() : session.getStartSocPercent();
+
+        // Mốc progress = thời điểm ứng với progress đã lưu (startTime + durationMin), không phải lúc track:
+        // session start ở node khác / progress chưa kịp flush trước restart được tick đầu tiên nạp bù
+        long progressAtMillis = nowMillis;
+        if (session.getStartTime() != null && simMinutesPerSecond > 0) {
+            long startMillis = session.getStartTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long persistedAtMillis = startMillis + (long) (session.getDurationMin() / simMinutesPerSecond * 1000.0);
+            progressAtMillis = Math.min(nowMillis, persistedAtMillis);
+        }
+
+        return new ChargingSessionLiveState(
+                session.getSessionId(),
+                session.getDriver() != null ? session.getDriver().getUserId() : null,
+                vehicle != null ? vehicle.getVehicleId() : null,
+                point != null ? point.getPointId() : null,
+                point != null && point.getStation() != null ? point.getStation().getStationId() : null,
+                session.getStartSocPercent(),
+                session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100,
+                vehicle != null ? vehicle.getBatteryCapacityKwh() : 0f,
+                curve,
+                plan != null,
+                plan != null ? plan.getPricePerKwh() : 0f,
+                plan != null ? plan.getPricePerMinute() : 0f,
+                session.getEnergyKwh(),
+                session.getDurationMin(),
+                socPercent,
+                session.getCostTotal(),
+                progressAtMillis,
+                costCeiling
+        );
+    }
+
+    public ChargingSessionLiveState withProgress(float energyKwh, float durationMin, int socPercent,
+                                                 float costTotal, long progressAtMillis) {
+        return new ChargingSessionLiveState(sessionId, driverId, vehicleId, pointId, stationId,
+                startSocPercent, targetSocPercent, capacityKwh, curve,
+                priced, pricePerKwh, pricePerMinute,
+                energyKwh, durationMin, socPercent, costTotal, progressAtMillis, costCeiling);
+    }
+
+    public ChargingSessionLiveState withCurve(ChargingCurve newCurve) {
+        return new ChargingSessionLiveState(sessionId, driverId, vehicleId, pointId, stationId,
+                startSocPercent, targetSocPercent, capacityKwh, newCurve,
+                priced, pricePerKwh, pricePerMinute,
+                energyKwh, durationMin, socPercent, costTotal, progressAtMillis, costCeiling);
+    }
+
+    public ChargingSessionLiveState withCostCeiling(double newCostCeiling) {
+        return new ChargingSessionLiveState(sessionId, driverId, vehicleId, pointId, stationId,
+                startSocPercent, targetSocPercent, capacityKwh, curve,
+                priced, pricePerKwh, pricePerMinute,
+                energyKwh, durationMin, socPercent, costTotal, progressAtMillis, newCostCeiling);
+    }
+
+    /**
+     * Công suất đỉnh (kW) = MIN(trụ, xe)
+     */
+    public float powerKw() {
+        return curve != null ? curve.getPeakPowerKw() : 0f;
+    }
+
+    /**
+     * SOC chính xác (không làm tròn) suy ra từ năng lượng đã nạp
+     */
+    public double exactSocPercent() {
+        return startSocPercent + (double) energyKwh / capacityKwh * 100.0;
+    }
+
+    /**
+     * Năng lượng cần nạp (tính từ lúc bắt đầu) để đạt target SOC.
+     */
+    public float targetEnergyKwh() {
+        return Math.max(0f, (targetSocPercent - startSocPercent) / 100.0f * capacityKwh);
+    }
+
+    /**
+     * Tính progress tại thời điểm nowMillis. Năng lượng bị chặn ở target,
+     * thời gian chỉ cộng phần cần thiết để đạt target.
+     *
+     * @param simMinutesPerSecond số phút giả lập ứng với 1 giây thực
+     */
+    public ChargingSessionLiveState advanceTo(long nowMillis, float simMinutesPerSecond) {
+        if (!isSimulatable() || nowMillis <= progressAtMillis) {
+            return this;
+        }
+
+        float elapsedSimMinutes = (nowMillis - progressAtMillis) / 1000.0f * simMinutesPerSecond;
+        double currentSoc = exactSocPercent();
+        double remainingMinutes = curve.minutesBetween(currentSoc, targetSocPercent);
+
+        double newSocExact;
+        float newDuration;
+        if (elapsedSimMinutes >= remainingMinutes) {
+            newSocExact = Math.max(currentSoc, targetSocPercent);
+            newDuration = durationMin + (float) remainingMinutes;
+        } else {
+            newSocExact = curve.socAfter(currentSoc, elapsedSimMinutes);
+            newDuration = durationMin + elapsedSimMinutes;
+        }
+
+        float newEnergy = Math.max(energyKwh, (float) curve.energyBetween(startSocPercent, newSocExact));
+        int newSoc = Math.min(100, (int) Math.round(newSocExact));
+        float newCost = priced
+                ? (newEnergy * pricePerKwh) + (newDuration * pricePerMinute)
+                : costTotal;
+
+        return withProgress(newEnergy, newDuration, newSoc, newCost, nowMillis);
+    }
+
+    /**
+     * Dự đoán thời điểm (epoch millis, thời gian thực) session đạt target SOC
+     * theo charging curve hiện tại (tra bảng, O(1)).
+     */
+    public long predictTargetReachedAtMillis(float simMinutesPerSecond) {
+        if (!isSimulatable()) {
+            return progressAtMillis;
+        }
+        double simMinutes = curve.minutesBetween(exactSocPercent(), targetSocPercent);
+        if (simMinutes <= 0) {
+            return progressAtMillis;
+        }
+        double realMillis = simMinutes / simMinutesPerSecond * 1000.0;
+        return progressAtMillis + (long) Math.ceil(realMillis);
+    }
+
+    /**
+     * Chi phí đã vượt trần được bảo đảm bởi wallet hold
+     */
+    public boolean isOverCostCeiling() {
+        return priced && driverId != null && costTotal > costCeiling;
+    }
+
+    /**
+     * Đã đạt target SOC chưa
+     */
+    public boolean isTargetReached() {
+        return socPercent >= targetSocPercent;
+    }
+
+    /**
+     * Session có đủ dữ liệu để mô phỏng không (có xe, có trụ, dựng được charging curve)
+     */
+    public boolean isSimulatable() {
+        return vehicleId != null && pointId != null && curve != null && capacityKwh > 0;
+    }
+}
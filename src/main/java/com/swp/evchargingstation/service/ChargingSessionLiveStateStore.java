@@ -0,0 +1,266 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.ChargingSession;
+import com.swp.evchargingstation.entity.Plan;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.event.simulator.ShardOwnershipChangedEvent;
+import com.swp.evchargingstation.repository.ChargingSessionBatchRepository;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.PlanRepository;
+import com.swp.evchargingstation.util.SimulationClock;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Store in-memory, authoritative cho progress của các phiên sạc IN_PROGRESS.
+ *
+ * - Simulator đọc/ghi progress ở đây mỗi tick, không đụng DB
+ * - API đọc session đang sạc lấy số liệu live từ đây
+ * - Write-behind: progress được flush xuống DB theo batch mỗi N giây,
+ *   khi session complete (completeSession áp live state vào entity) và khi shutdown
+ *
+ * Sessions bị stop ở node/nguồn khác sẽ bị evict khi flush (UPDATE không match row IN_PROGRESS nào)
+ * hoặc khi reconcile định kỳ.
+ *
+ * Sharding: chỉ giữ session tại các trụ thuộc shard mà node này sở hữu (SimulatorShardCoordinator).
+ * Flush ghi giá trị tuyệt đối nên hai node chồng lấn một shard trong thời gian ngắn chỉ ghi đè, không cộng dồn.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ChargingSessionLiveStateStore {
+
+    ChargingSessionRepository chargingSessionRepository;
+    ChargingSessionBatchRepository batchRepository;
+    PlanRepository planRepository;
+    SimulatorShardCoordinator shardCoordinator;
+    WalletHoldService walletHoldService;
+    SimulationClock simulationClock;
+    ChargingCurveService chargingCurveService;
+
+    Map<String, ChargingSessionLiveState> states = new ConcurrentHashMap<>();
+    Set<String> dirtySessionIds = ConcurrentHashMap.newKeySet();
+
+    public Optional<ChargingSessionLiveState> get(String sessionId) {
+        return Optional.ofNullable(states.get(sessionId));
+    }
+
+    public Collection<ChargingSessionLiveState> snapshot() {
+        return List.copyOf(states.values());
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Cập nhật atomically live state của một session (đánh dấu dirty để flush sau).
+     * Bỏ qua nếu session đã bị remove (vd: vừa complete).
+     *
+     * @return state mới, hoặc empty nếu session không còn trong store
+     */
+    public Optional<ChargingSessionLiveState> update(String sessionId, UnaryOperator<ChargingSessionLiveState> updater) {
+        ChargingSessionLiveState updated = states.computeIfPresent(sessionId, (id, state) -> updater.apply(state));
+        if (updated != null) {
+            dirtySessionIds.add(sessionId);
+        }
+        return Optional.ofNullable(updated);
+    }
+
+    /**
+     * Tìm session đang sạc tại một trụ.
+     */
+    public Optional<ChargingSessionLiveState> findByPointId(String pointId) {
+        return states.values().stream()
+                .filter(state -> pointId.equals(state.pointId()))
+                .findFirst();
+    }
+
+    /**
+     * Bỏ session khỏi store (không flush). Trả về live state cuối cùng nếu có.
+     */
+    public Optional<ChargingSessionLiveState> remove(String sessionId) {
+        dirtySessionIds.remove(sessionId);
+        return Optional.ofNullable(states.remove(sessionId));
+    }
+
+    /**
+     * Bắt đầu theo dõi session vừa được start (gọi sau khi transaction start session commit).
+     */
+    public void track(String sessionId) {
+        trackAll(chargingSessionRepository.findByIdsWithRelationships(List.of(sessionId)));
+    }
+
+    /**
+     * Load toàn bộ session IN_PROGRESS khi ứng dụng khởi động.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void loadActiveSessions() {
+        List<ChargingSession> sessions = chargingSessionRepository.findByStatus(ChargingSessionStatus.IN_PROGRESS);
+        trackAll(sessions);
+        log.info("Live state store loaded {} active charging sessions", states.size());
+    }
+
+    /**
+     * FLUSH: Ghi progress của các session dirty xuống DB bằng JDBC batch.
+     */
+    @Scheduled(fixedDelayString = "${simulator.live-state.flush-interval-ms:5000}")
+    public void flush() {
+        if (dirtySessionIds.isEmpty()) {
+            return;
+        }
+
+        List<ChargingSessionBatchRepository.SessionProgress> sessionUpdates = new ArrayList<>();
+        List<String> vehicleIds = new ArrayList<>();
+
+        for (String sessionId : List.copyOf(dirtySessionIds)) {
+            // Xóa dirty flag TRƯỚC khi đọc state: update xảy ra sau đó sẽ được flush ở lần sau
+            dirtySessionIds.remove(sessionId);
+            ChargingSessionLiveState state = states.get(sessionId);
+            if (state == null) {
+                continue;
+            }
+            sessionUpdates.add(new ChargingSessionBatchRepository.SessionProgress(
+                    state.sessionId(), state.energyKwh(), state.durationMin(), state.socPercent(), state.costTotal()));
+            vehicleIds.add(state.vehicleId());
+        }
+
+        try {
+            int[] counts = batchRepository.updateSessionProgress(sessionUpdates);
+
+            // Session không còn IN_PROGRESS trong DB (bị stop ở nơi khác) → evict, không ghi SOC xe:
+            // completeSession đã chốt SOC cuối, SOC live cũ sẽ ghi đè lên
+            List<ChargingSessionBatchRepository.VehicleSoc> vehicleUpdates = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                ChargingSessionBatchRepository.SessionProgress update = sessionUpdates.get(i);
+                if (counts[i] == 0) {
+                    remove(update.sessionId());
+                    log.info("Evicted session {} from live state store (no longer IN_PROGRESS)", update.sessionId());
+                } else {
+                    vehicleUpdates.add(new ChargingSessionBatchRepository.VehicleSoc(vehicleIds.get(i), update.endSocPercent()));
+                }
+            }
+            batchRepository.updateVehicleSoc(vehicleUpdates);
+
+            log.debug("Flushed live state of {} sessions", sessionUpdates.size());
+        } catch (Exception e) {
+            // Flush lỗi → đánh dấu dirty lại để thử ở lần sau
+            sessionUpdates.forEach(update -> {
+                if (states.containsKey(update.sessionId())) {
+                    dirtySessionIds.add(update.sessionId());
+                }
+            });
+            log.error("Failed to flush live charging state: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * RECONCILE: Đồng bộ tập session với DB (session start ở instance khác, event bị miss,
+     * session bị complete mà store không biết).
+     */
+    @Scheduled(fixedDelayString = "${simulator.live-state.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        // Chỉ xét evict các session đã có TRƯỚC khi query (session vừa track sau query không bị evict nhầm)
+        Set<String> trackedBefore = Set.copyOf(states.keySet());
+        Set<String> activeIds = new HashSet<>();
+        for (Object[] row : chargingSessionRepository.findSessionPointIdsByStatus(ChargingSessionStatus.IN_PROGRESS)) {
+            if (shardCoordinator.owns((String) row[1])) {
+                activeIds.add((String) row[0]);
+            }
+        }
+
+        for (String sessionId : trackedBefore) {
+            if (!activeIds.contains(sessionId)) {
+                remove(sessionId);
+                log.info("Evicted session {} from live state store (not IN_PROGRESS in DB)", sessionId);
+            }
+        }
+
+        activeIds.removeAll(states.keySet());
+        if (!activeIds.isEmpty()) {
+            trackAll(chargingSessionRepository.findByIdsWithRelationships(activeIds));
+            log.info("Live state store picked up {} untracked active sessions", activeIds.size());
+        }
+    }
+
+    /**
+     * SHARD REBALANCE: Mất shard → flush (nếu graceful) rồi evict session của shard đó.
+     * Nhận shard mới → reconcile để load session IN_PROGRESS tại các trụ thuộc shard.
+     * Listener SYNC: chạy trong transaction heartbeat, trước khi lease được release.
+     */
+    @EventListener
+    public void onShardOwnershipChanged(ShardOwnershipChangedEvent event) {
+        if (!event.getLostShards().isEmpty()) {
+            if (event.isGraceful()) {
+                flush();
+            }
+            int evicted = 0;
+            for (ChargingSessionLiveState state : List.copyOf(states.values())) {
+                if (state.pointId() == null
+                        || event.getLostShards().contains(shardCoordinator.shardOf(state.pointId()))) {
+                    remove(state.sessionId());
+                    evicted++;
+                }
+            }
+            log.info("Evicted {} sessions after losing shards {}", evicted, event.getLostShards());
+        }
+
+        if (!event.getGainedShards().isEmpty()) {
+            reconcile();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing live charging state before shutdown ({} sessions)", states.size());
+        flush();
+    }
+
+    private void trackAll(List<ChargingSession> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+        Map<String, Double> ceilings = walletHoldService.findCeilings(
+                sessions.stream().map(ChargingSession::getSessionId).toList());
+        Plan fallbackPlan = null;
+        boolean fallbackLoaded = false;
+
+        for (ChargingSession session : sessions) {
+            if (session.getStatus() != ChargingSessionStatus.IN_PROGRESS) {
+                continue;
+            }
+            if (!shardCoordinator.owns(session.getChargingPoint() != null
+                    ? session.getChargingPoint().getPointId() : null)) {
+                continue;
+            }
+
+            Plan plan = session.getDriver() != null ? session.getDriver().getPlan() : null;
+            if (plan == null) {
+                if (!fallbackLoaded) {
+                    fallbackPlan = planRepository.findByNameIgnoreCase("Linh hoạt").orElse(null);
+                    fallbackLoaded = true;
+                }
+                plan = fallbackPlan;
+            }
+
+            states.putIfAbsent(session.getSessionId(), ChargingSessionLiveState.from(session, plan,
+                    ceilings.getOrDefault(session.getSessionId(), 0.0), simulationClock.millis(),
+                    simulationClock.simMinutesPerSecond(ChargingSimulatorService.TIME_PER_TICK_MINUTES),
+                    chargingCurveService.curveFor(session.getVehicle(), session.getChargingPoint())));
+        }
+    }
+}
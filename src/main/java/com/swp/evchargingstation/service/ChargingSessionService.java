@@ -2,6 +2,7 @@ package com.swp.evchargingstation.service;
 
 import com.swp.evchargingstation.dto.request.StartChargingRequest;
 import com.swp.evchargingstation.dto.response.ChargingSessionResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.DriverDashboardResponse;
 import com.swp.evchargingstation.dto.response.MonthlyAnalyticsResponse;
 import com.swp.evchargingstation.entity.*;
@@ -10,6 +11,7 @@ import com.swp.evchargingstation.event.session.ChargingSessionStartedEvent;
 import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -43,10 +45,13 @@ public class ChargingSessionService {
     StaffRepository staffRepository;
     BookingRepository bookingRepository;
     WalletService walletService;
+    WalletHoldService walletHoldService;
+    ChargingCurveService chargingCurveService;
     EmailService emailService;
     PaymentSettlementService paymentSettlementService;
     ChargingPointStatusService chargingPointStatusService;
     ChargingSimulatorService chargingSimulatorService;
+    ChargingSessionLiveStateStore liveStateStore;
 
     // ✅ Spring Events
     ApplicationEventPublisher eventPublisher;
@@ -111,9 +116,11 @@ public class ChargingSessionService {
     }
 
     /**
-     * Lấy danh sách lịch sử phiên sạc của driver
+     * Lấy lịch sử phiên sạc của driver theo trang (mới nhất trước)
+     * @param limit số phiên mỗi trang (null = mặc định)
+     * @param after nextCursor của trang trước (null = trang đầu)
      */
-    public List<ChargingSessionResponse> getMySessions() {
+    public CursorPageResponse<ChargingSessionResponse> getMySessions(Integer limit, String after) {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
 
         // Lấy userId từ JWT claims thay vì getName() (getName() trả về email)
@@ -128,11 +135,15 @@ public class ChargingSessionService {
 
         log.info("Getting charging sessions for driver: {}", userId);
 
-        List<ChargingSession> sessions = chargingSessionRepository.findByDriverIdOrderByStartTimeDesc(userId);
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<ChargingSession> sessions = chargingSessionRepository.findPageByDriverId(userId,
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
 
-        return sessions.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        return KeysetCursor.page(sessions, pageSize,
+                session -> new KeysetCursor(session.getStartTime(), session.getSessionId()),
+                this::convertToResponse);
     }
 
     /**
@@ -163,11 +174,7 @@ public class ChargingSessionService {
             throw new AppException(ErrorCode.UNAUTHORIZED);
         }
 
-        // Refresh the session entity from database to get latest updates
-        chargingSessionRepository.flush();
-        session = chargingSessionRepository.findById(sessionId)
-                .orElseThrow(() -> new AppException(ErrorCode.SESSION_NOT_FOUND));
-
+        // Progress live của session IN_PROGRESS được lấy từ live state store (không cần refresh DB)
         return convertToResponse(session);
     }
 
@@ -175,10 +182,10 @@ public class ChargingSessionService {
      * Chuyển đổi ChargingSession entity sang ChargingSessionResponse
      */
     private com.swp.evchargingstation.dto.response.ChargingSessionResponse convertToResponse(ChargingSession session) {
-        // Refresh session from database to get latest updates (important for IN_PROGRESS sessions)
-        if (session.getStatus() == ChargingSessionStatus.IN_PROGRESS) {
-            session = chargingSessionRepository.findById(session.getSessionId()).orElse(session);
-        }
+        // Session IN_PROGRESS: số liệu live nằm trong store (DB chỉ được flush write-behind)
+        ChargingSessionLiveState liveState = session.getStatus() == ChargingSessionStatus.IN_PROGRESS
+                ? liveStateStore.get(session.getSessionId()).orElse(null)
+                : null;
 
         String stationName = "";
         String stationAddress = "";
@@ -214,7 +221,6 @@ public class ChargingSessionService {
 
         // Realtime fields calculation
         int targetSoc = session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100;
-        int startSoc = session.getStartSocPercent();
         int currentSoc;
         float elapsedMinutes;
         Integer estimatedTimeRemaining = null;
@@ -255,34 +261,27 @@ public class ChargingSessionService {
         float energyPerPercent = batteryCapacity > 0 ? (batteryCapacity / 100f) : 0f;
 
         if (session.getStatus() == com.swp.evchargingstation.enums.ChargingSessionStatus.IN_PROGRESS) {
-            // For in-progress sessions, use real-time data from simulator
-            // Refresh vehicle data from database to get latest SOC (bypass cache)
-            Vehicle freshVehicle = vehicleRepository.findById(vehicle.getVehicleId())
-                .orElseThrow(() -> new AppException(ErrorCode.VEHICLE_NOT_FOUND));
-
-            currentSoc = freshVehicle.getCurrentSocPercent() != null
-                ? freshVehicle.getCurrentSocPercent()
-                : session.getEndSocPercent();
-
-            log.debug("Retrieved fresh vehicle SOC: {}% (session.endSocPercent: {}%)",
-                currentSoc, session.getEndSocPercent());
-
-            // Use simulated duration from session (updated by ChargingSimulatorService every tick)
-            elapsedMinutes = session.getDurationMin();
-
-            // Use simulated energy from session (updated by ChargingSimulatorService every tick)
-            energyConsumed = session.getEnergyKwh();
-
-            // Use simulated cost from session (updated by ChargingSimulatorService every tick)
-            currentCost = session.getCostTotal();
+            // For in-progress sessions, use real-time data from simulator (live state store)
+            if (liveState != null) {
+                currentSoc = liveState.socPercent();
+                elapsedMinutes = liveState.durationMin();
+                energyConsumed = liveState.energyKwh();
+                currentCost = liveState.costTotal();
+            } else {
+                // Chưa có trong store (vd: vừa start ở instance khác) → dùng dữ liệu đã flush
+                currentSoc = session.getEndSocPercent();
+                elapsedMinutes = session.getDurationMin();
+                energyConsumed = session.getEnergyKwh();
+                currentCost = session.getCostTotal();
+            }
 
-            // Estimate time remaining based on current progress
-            if (currentSoc < targetSoc && currentSoc > startSoc && elapsedMinutes > 0) {
-                int socGained = currentSoc - startSoc;
-                int remainingSoc = targetSoc - currentSoc;
-                float avgSocPerMinute = socGained / elapsedMinutes;
-                if (avgSocPerMinute > 0) {
-                    estimatedTimeRemaining = (int) Math.ceil(remainingSoc / avgSocPerMinute);
+            // Estimate time remaining theo charging curve (tra bảng, cùng mô hình với simulator)
+            if (currentSoc < targetSoc) {
+                double remainingMinutes = liveState != null && liveState.curve() != null
+                        ? liveState.curve().minutesBetween(liveState.exactSocPercent(), targetSoc)
+                        : chargingCurveService.minutesToTarget(vehicle, session.getChargingPoint(), currentSoc, targetSoc);
+                if (remainingMinutes > 0) {
+                    estimatedTimeRemaining = (int) Math.ceil(remainingMinutes);
                 }
             }
 
@@ -307,14 +306,14 @@ public class ChargingSessionService {
                 .sessionId(session.getSessionId())
                 .startTime(session.getStartTime())
                 .endTime(session.getEndTime())
-                .durationMin(session.getDurationMin())
+                .durationMin(elapsedMinutes)
                 .stationName(stationName)
                 .stationAddress(stationAddress)
                 .chargingPointName(chargingPointName)
                 .startSocPercent(session.getStartSocPercent())
                 .endSocPercent(currentSoc)  // Use currentSoc (refreshed from vehicle) for consistency
-                .energyKwh(session.getEnergyKwh())
-                .costTotal(session.getCostTotal())
+                .energyKwh(energyConsumed)
+                .costTotal(currentCost)
                 .status(session.getStatus())
                 .vehicleModel(session.getVehicle() != null && session.getVehicle().getModel() != null ? session.getVehicle().getModel().getModelName() : "")
                 .licensePlate(session.getVehicle() != null ? session.getVehicle().getLicensePlate() : "")
@@ -448,6 +447,10 @@ public class ChargingSessionService {
                 log.info("✅ Auto check-in booking #{} when starting session", booking.getId());
             }
 
+            // Phiên sạc bắt đầu → booking không còn hạn tự động expire
+            booking.setExpiresAt(null);
+            bookingRepository.save(booking);
+
             // ✅ User có booking hợp lệ → SKIP ALL OTHER CHECKS, cho phép start session ngay
             log.info("✅ User has valid booking #{} - BYPASSING all availability checks", booking.getId());
 
@@ -457,7 +460,7 @@ public class ChargingSessionService {
                      driver.getUser().getUserId(), chargingPoint.getPointId());
             // No booking, check if point is available (using dynamic status check)
             // Kiểm tra trạng thái hiển thị (có tính đến booking sắp tới)
-            ChargingPointStatus displayStatus = chargingPointStatusService.calculateDisplayStatus(chargingPoint.getPointId());
+            ChargingPointStatus displayStatus = chargingPointStatusService.calculateDisplayStatus(chargingPoint);
 
             if (displayStatus == ChargingPointStatus.RESERVED) {
                 // Trụ đang được reserved cho booking khác
@@ -480,14 +483,10 @@ public class ChargingSessionService {
                 Booking nextBooking = upcomingBookings.getFirst();
                 Duration timeUntilBooking = Duration.between(now, nextBooking.getBookingTime());
 
-                // Ước tính thời gian sạc cần thiết
-                double remainingPercent = target - (vehicle.getCurrentSocPercent() != null ? vehicle.getCurrentSocPercent() : 0);
-                double requiredEnergy = (remainingPercent / 100.0) * vehicle.getBatteryCapacityKwh();
-                double chargingPowerKw = chargingPoint.getChargingPower().getPowerKw() / 1000.0;
-                double hoursNeeded = requiredEnergy / chargingPowerKw;
-
-                // Thêm 20% safety margin
-                long estimatedMinutes = (long) (hoursNeeded * 60 * 1.2);
+                // Ước tính thời gian sạc cần thiết theo charging curve (công suất đỉnh = MIN(trụ, xe), giảm dần trên 80%)
+                int startSoc = vehicle.getCurrentSocPercent() != null ? vehicle.getCurrentSocPercent() : 0;
+                long estimatedMinutes = (long) Math.ceil(
+                        chargingCurveService.minutesToTarget(vehicle, chargingPoint, startSoc, target));
                 long availableMinutes = timeUntilBooking.toMinutes() - 15; // -15 phút buffer
 
                 if (estimatedMinutes > availableMinutes) {
@@ -548,6 +547,10 @@ public class ChargingSessionService {
 
         chargingSessionRepository.saveAndFlush(newSession);
 
+        // Giữ tiền trong ví cho phiên sạc (deposit của booking được tính sẵn vào trần chi phí)
+        walletHoldService.placeHold(driverId, newSession.getSessionId(),
+                linkedBooking != null ? linkedBooking.getDepositAmount() : null);
+
         log.info("Created charging session {} for driver {} at point {}. Start SOC: {}%, Target: {}%",
             newSession.getSessionId(), driverId, chargingPoint.getPointId(), currentSoc, target);
 
@@ -581,7 +584,8 @@ public class ChargingSessionService {
     @Transactional
     @PreAuthorize("hasRole('DRIVER')")
     public ChargingSessionResponse stopSessionByUser(String sessionId, String driverId) {
-        ChargingSession session = chargingSessionRepository.findById(sessionId)
+        // Khóa row trước khi kiểm tra status: auto complete có thể đang chốt cùng session
+        ChargingSession session = chargingSessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new AppException(ErrorCode.CHARGING_SESSION_NOT_FOUND));
 
         if (!session.getDriver().getUserId().equals(driverId)) {
@@ -607,10 +611,10 @@ public class ChargingSessionService {
     // ==================== STAFF - MY STATION SESSIONS MANAGEMENT ====================
 
     /**
-     * [STAFF] Lấy danh sách phiên sạc tại trạm của staff
+     * [STAFF] Lấy danh sách phiên sạc tại trạm của staff theo trang (mới nhất trước)
      */
     @PreAuthorize("hasRole('STAFF')")
-    public List<ChargingSessionResponse> getMyStationSessions() {
+    public CursorPageResponse<ChargingSessionResponse> getMyStationSessions(Integer limit, String after) {
         var authentication = SecurityContextHolder.getContext().getAuthentication();
 
         String userId = null;
@@ -634,11 +638,15 @@ public class ChargingSessionService {
         }
 
         String stationId = station.getStationId();
-        List<ChargingSession> sessions = chargingSessionRepository.findByStationIdOrderByStartTimeDesc(stationId);
-
-        return sessions.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<ChargingSession> sessions = chargingSessionRepository.findPageByStationId(stationId,
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+
+        return KeysetCursor.page(sessions, pageSize,
+                session -> new KeysetCursor(session.getStartTime(), session.getSessionId()),
+                this::convertToResponse);
     }
 
     /**
@@ -667,7 +675,7 @@ public class ChargingSessionService {
             throw new AppException(ErrorCode.STAFF_NO_MANAGED_STATION);
         }
 
-        ChargingSession session = chargingSessionRepository.findById(sessionId)
+        ChargingSession session = chargingSessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new AppException(ErrorCode.CHARGING_SESSION_NOT_FOUND));
 
         // Kiểm tra session có thuộc trạm của staff không
@@ -706,7 +714,7 @@ public class ChargingSessionService {
             throw new AppException(ErrorCode.STAFF_NO_MANAGED_STATION);
         }
 
-        ChargingSession session = chargingSessionRepository.findById(sessionId)
+        ChargingSession session = chargingSessionRepository.findByIdForUpdate(sessionId)
                 .orElseThrow(() -> new AppException(ErrorCode.CHARGING_SESSION_NOT_FOUND));
 
         // Kiểm tra session có thuộc trạm của staff không
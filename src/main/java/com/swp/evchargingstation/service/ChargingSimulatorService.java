@@ -3,10 +3,17 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.entity.*;
 import com.swp.evchargingstation.enums.BookingStatus;
 import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingPower;
 import com.swp.evchargingstation.enums.ChargingSessionStatus;
 import com.swp.evchargingstation.event.session.ChargingSessionCompletedEvent;
 import com.swp.evchargingstation.event.session.ChargingSessionStartedEvent;
 import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.ChargingCurve;
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import com.swp.evchargingstation.util.SimulationClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -15,12 +22,14 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * ĐƠN GIẢN HÓA: Charging Simulator với cơ chế flag-based stop + Spring Events
@@ -38,6 +47,14 @@ import java.util.concurrent.ConcurrentHashMap;
  * - ✅ ADDED: ApplicationEventPublisher (loose coupling)
  * - ✅ Transaction duration giảm từ ~500ms → ~100ms
  * - ✅ Email và payment không block main flow
+ *
+ * Batched tick:
+ * - ✅ Tính SOC/energy/cost cho tất cả session trong bộ nhớ
+ * - ✅ Ghi lại bằng JDBC batch (ChargingSessionBatchRepository)
+ * - ✅ Progress live nằm trong ChargingSessionLiveStateStore, flush write-behind
+ * - ✅ Tick duration: metric "charging.simulator.tick"
+ * - ✅ Complete đúng thời điểm dự đoán qua HashedTimingWheel (không Thread.sleep trên scheduler)
+ * - ✅ Progress sau mỗi tick được đẩy tới client SSE (ChargingProgressStreamService)
  */
 @Service
 @Slf4j
@@ -50,206 +67,207 @@ public class ChargingSimulatorService {
     ChargingPointRepository chargingPointRepository;
     PlanRepository planRepository;
     BookingRepository bookingRepository;
-    WalletService walletService;
+    WalletHoldService walletHoldService;
+    ChargingSessionLiveStateStore liveStateStore;
+    ChargingProgressStreamService progressStreamService;
 
     // ✅ Spring Events: Thay thế EmailService và PaymentSettlementService
     ApplicationEventPublisher eventPublisher;
 
-    // Track sessions being processed to avoid concurrent updates
-    private static final Set<String> PROCESSING_SESSIONS = ConcurrentHashMap.newKeySet();
+    MeterRegistry meterRegistry;
+
+    // Completion: fire đúng thời điểm đạt target trên completion executor
+    HashedTimingWheel<String> completionTimingWheel;
+    TransactionTemplate transactionTemplate;
+    SimulationClock simulationClock;
+    ChargingCurveService chargingCurveService;
+
+    AtomicInteger activeSessionCount = new AtomicInteger();
+
+    // Session đã có completion trên timing wheel hoặc đang chạy trên completion executor
+    // (timing wheel bỏ key ngay khi fire, task còn nằm trong queue) → tick không re-arm lại.
+    // Value = true nếu là stop ngay (hết tiền), false nếu là completion đạt target
+    Map<String, Boolean> pendingCompletions = new ConcurrentHashMap<>();
+
+    // Mỗi tick = 4 giây giả lập (nhân thêm speed factor của SimulationClock khi chạy load simulation)
+    static final float TIME_PER_TICK_MINUTES = 4.0f / 60.0f;
+
+    // Gauge đăng ký một lần, tick chỉ set giá trị (đăng ký lại mỗi tick bị Micrometer cảnh báo trùng)
+    @PostConstruct
+    void registerMetrics() {
+        meterRegistry.gauge("charging.simulator.active.sessions", activeSessionCount);
+    }
 
     /**
      * SCHEDULER: Chạy mỗi giây, update tất cả session IN_PROGRESS
      * Đơn giản: Chỉ UPDATE, không STOP. Stop do user hoặc auto complete trigger.
+     *
+     * BATCHED + WRITE-BEHIND: Progress được tính trên ChargingSessionLiveStateStore (in-memory),
+     * DB chỉ được ghi khi store flush. Tick không query DB: tiền được kiểm tra với trần wallet hold
+     * trong bộ nhớ, chỉ gia hạn hold (1 transaction) khi chi phí vượt trần.
+     * Complete (đạt target) do completion timing wheel fire đúng hạn, không phụ thuộc tick.
      */
     @Scheduled(fixedRate = 1000)
     public void simulateChargingTick() {
-        List<ChargingSession> activeSessions = chargingSessionRepository.findByStatus(ChargingSessionStatus.IN_PROGRESS);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            runTick();
+        } catch (Exception e) {
+            log.error("Charging simulator tick failed: {}", e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer("charging.simulator.tick"));
+        }
+    }
 
-        for (ChargingSession session : activeSessions) {
-            // Skip if already being processed
-            if (PROCESSING_SESSIONS.contains(session.getSessionId())) {
-                continue;
-            }
+    private void runTick() {
+        Collection<ChargingSessionLiveState> activeStates = liveStateStore.snapshot();
+        activeSessionCount.set(activeStates.size());
+        if (activeStates.isEmpty()) {
+            return;
+        }
 
+        long nowMillis = simulationClock.millis();
+        for (ChargingSessionLiveState state : activeStates) {
             try {
-                PROCESSING_SESSIONS.add(session.getSessionId());
-                updateSessionProgress(session.getSessionId());
+                advanceSession(state.sessionId(), nowMillis);
             } catch (Exception e) {
-                log.error("Error updating session {}: {}", session.getSessionId(), e.getMessage());
-            } finally {
-                PROCESSING_SESSIONS.remove(session.getSessionId());
+                log.error("Error updating session {}: {}", state.sessionId(), e.getMessage());
             }
         }
+
+        // Đẩy progress mới cho client SSE (không block: chỉ đặt frame vào slot của subscriber)
+        if (progressStreamService.hasSubscribers()) {
+            progressStreamService.publish(liveStateStore.snapshot());
+        }
+
+        log.debug("Tick updated {} sessions, {} completions scheduled", activeStates.size(), completionTimingWheel.size());
     }
 
     /**
-     * UPDATE SESSION: Transaction độc lập, chỉ update progress
+     * Tính progress của một session trong bộ nhớ (không truy cập DB).
+     * Đạt target được xử lý bởi completion timing wheel, tick chỉ kiểm tra tiền.
      */
-    @Transactional
-    public void updateSessionProgress(String sessionId) {
-        // Fetch session với tất cả relationships để tránh lazy loading exception
-        ChargingSession session = chargingSessionRepository.findByIdWithRelationships(sessionId).orElse(null);
-        if (session == null || session.getStatus() != ChargingSessionStatus.IN_PROGRESS) {
-            return; // Session đã bị stop từ nơi khác
+    private void advanceSession(String sessionId, long nowMillis) {
+        ChargingSessionLiveState state = liveStateStore
+                .update(sessionId, current -> current.advanceTo(nowMillis, simMinutesPerSecond()))
+                .orElse(null);
+        if (state == null || !state.isSimulatable()) {
+            return;
         }
 
-        Vehicle vehicle = session.getVehicle();
-        if (vehicle == null) {
+        // Session mới vào store (start / startup / reconcile) → dự đoán thời điểm đạt target
+        Boolean stopPending = pendingCompletions.get(sessionId);
+        if (stopPending == null) {
+            scheduleCompletion(state);
+        } else if (stopPending) {
+            // Đã hết tiền, đang chờ complete → không gia hạn hold nữa
             return;
         }
 
-        ChargingPoint point = session.getChargingPoint();
-        if (point == null || point.getChargingPower() == null) {
+        // ⚡ AUTO-STOP: Chi phí vượt trần đã giữ → gia hạn hold, không đủ tiền thì ngắt sạc
+        if (state.isOverCostCeiling() && !ensureFundsHeld(state)) {
+            completeSessionAsync(sessionId);
             return;
         }
 
-        // Tính toán tiến trình sạc
-        float actualPowerKw = Math.min(
-            point.getChargingPower().getPowerKw(),
-            vehicle.getMaxChargingPowerKw()
-        );
+        log.debug("Updated session {}: SOC {}%, Energy {} kWh, Cost {} VND",
+            sessionId, state.socPercent(), state.energyKwh(), state.costTotal());
+    }
 
-        float capacityKwh = vehicle.getBatteryCapacityKwh();
-        int targetSoc = session.getTargetSocPercent() != null ? session.getTargetSocPercent() : 100;
+    private float simMinutesPerSecond() {
+        return simulationClock.simMinutesPerSecond(TIME_PER_TICK_MINUTES);
+    }
 
-        if (capacityKwh <= 0) {
-            return;
+    /**
+     * Gia hạn wallet hold khi chi phí chạm trần (chỉ xảy ra mỗi chunk, không phải mỗi tick).
+     *
+     * @return false nếu số dư khả dụng không đủ để phủ chi phí hiện tại
+     */
+    private boolean ensureFundsHeld(ChargingSessionLiveState state) {
+        double ceiling;
+        try {
+            ceiling = walletHoldService.extendHold(state.driverId(), state.sessionId(), state.costTotal());
+        } catch (Exception e) {
+            // Lock timeout / DB lỗi → thử lại ở tick sau, không ngắt sạc oan
+            log.warn("Failed to extend wallet hold for session {}: {}", state.sessionId(), e.getMessage());
+            return true;
         }
 
-        // Init endSoc nếu chưa có
-        if (session.getEndSocPercent() == 0 && session.getStartSocPercent() > 0) {
-            session.setEndSocPercent(session.getStartSocPercent());
+        liveStateStore.update(state.sessionId(), current -> current.withCostCeiling(ceiling));
+        if (ceiling < state.costTotal()) {
+            log.warn("INSUFFICIENT FUNDS! Auto-stopping session {}. Ceiling: {}, Cost: {}",
+                    state.sessionId(), ceiling, state.costTotal());
+            return false;
         }
+        return true;
+    }
 
-        // Mỗi tick = 4 giây giả lập
-        float timePerTickMinutes = 4.0f / 60.0f;
-        float timePerTickHours = timePerTickMinutes / 60.0f;
-        float energyPerTick = actualPowerKw * timePerTickHours;
-
-        // Cập nhật session
-        session.setDurationMin(session.getDurationMin() + timePerTickMinutes);
-        session.setEnergyKwh(session.getEnergyKwh() + energyPerTick);
-
-        // Tính SOC mới
-        float energySinceStart = session.getEnergyKwh();
-        float socIncrease = (energySinceStart / capacityKwh) * 100.0f;
-        int newSoc = Math.min(100, Math.round(session.getStartSocPercent() + socIncrease));
-
-        session.setEndSocPercent(newSoc);
-        vehicle.setCurrentSocPercent(newSoc);
-
-        // Tính cost
-        Plan plan = getPlanForSession(session);
-        if (plan != null) {
-            float cost = (session.getEnergyKwh() * plan.getPricePerKwh())
-                       + (session.getDurationMin() * plan.getPricePerMinute());
-            session.setCostTotal(cost);
-
-            // ⚡ AUTO-STOP: Check insufficient funds - Ngắt sạc tự động khi hết tiền
-            try {
-                String userId = session.getDriver().getUserId();
-                double walletBalance = walletService.getBalance(userId);
-
-                // Tính số tiền cần thanh toán (cost - deposit nếu có booking)
-                double requiredAmount = cost;
-                Optional<Booking> bookingOpt = bookingRepository.findByUserIdAndChargingPointIdAndBookingStatus(
-                    userId,
-                    point.getPointId(),
-                    BookingStatus.IN_PROGRESS
-                );
-                if (bookingOpt.isPresent()) {
-                    double deposit = bookingOpt.get().getDepositAmount() != null
-                        ? bookingOpt.get().getDepositAmount() : 0.0;
-                    requiredAmount = Math.max(0, cost - deposit);
-                }
-
-                // Buffer 1000 VNĐ - Dừng sớm hơn để tránh nợ quá nhiều
-                final double SAFETY_BUFFER = 1000.0;
-                double availableBalance = walletBalance - SAFETY_BUFFER;
-
-                // Nếu không đủ tiền (sau khi trừ buffer) → NGẮT SẠC NGAY
-                if (availableBalance < requiredAmount) {
-                    log.warn("INSUFFICIENT FUNDS! Auto-stopping session {}. Balance: {}, Buffer: {}, Available: {}, Required: {}, Cost: {}",
-                            sessionId, walletBalance, SAFETY_BUFFER, availableBalance, requiredAmount, cost);
-
-                    // Load User entity data trước khi pass vào thread (tránh lazy loading)
-                    String userEmail = null;
-                    String userName = null;
-                    try {
-                        if (session.getDriver() != null && session.getDriver().getUser() != null) {
-                            User user = session.getDriver().getUser();
-                            // Force load lazy fields TRONG transaction
-                            userEmail = user.getEmail();
-                            userName = user.getFullName();
-                        }
-                    } catch (Exception e) {
-                        log.warn("Failed to load user data: {}", e.getMessage());
-                    }
-                    final String finalUserEmail = userEmail;
-                    final String finalUserName = userName;
-
-                    // Lưu trạng thái hiện tại trước khi ngắt
-                    chargingSessionRepository.save(session);
-                    vehicleRepository.save(vehicle);
-
-                    // Ngắt sạc ngay lập tức (payment settlement sẽ chạy)
-                    completeSessionAsync(sessionId);
-
-                    // Gửi email insufficient funds ASYNC sau khi complete (delay để đảm bảo payment đã settle)
-                    final double costCopy = cost;
-                    final double balanceCopy = walletBalance;
-                    final int socCopy = newSoc;
-                    final float energyCopy = session.getEnergyKwh();
-                    final float durationCopy = session.getDurationMin();
-
-                    // TODO: Convert to InsufficientFundsEvent
-                    // if (finalUserEmail != null) {
-                    //     new Thread(() -> {
-                    //         try {
-                    //             Thread.sleep(3000);
-                    //             emailService.sendInsufficientFundsEmail(...);
-                    //         } catch (Exception emailEx) {
-                    //             log.warn("Failed to send insufficient funds email: {}", emailEx.getMessage());
-                    //         }
-                    //     }).start();
-                    // }
-
-                    log.warn("❌ Insufficient funds for session {}: Balance {} < Cost {}",
-                            sessionId, balanceCopy, costCopy);
-
-                    return; // Exit ngay không tiếp tục
-                }
-            } catch (Exception e) {
-                log.error("Error checking wallet balance for session {}: {}", sessionId, e.getMessage());
-                // Không throw exception, để session tiếp tục
-            }
+    /**
+     * Đăng ký (hoặc đăng ký lại) thời điểm complete của session trên timing wheel,
+     * dự đoán từ charging curve (CC/CV) của xe tại trụ và target SOC.
+     */
+    private void scheduleCompletion(ChargingSessionLiveState state) {
+        long completeAtMillis = state.predictTargetReachedAtMillis(simMinutesPerSecond());
+        String sessionId = state.sessionId();
+        // Stop ngay (hết tiền) đang chờ → không thay bằng completion theo target
+        if (Boolean.TRUE.equals(pendingCompletions.putIfAbsent(sessionId, false))) {
+            return;
         }
+        completionTimingWheel.schedule(sessionId, completeAtMillis, () -> {
+            // Session đã chuyển sang node khác (mất shard) hoặc đã bị stop → node này không complete
+            if (liveStateStore.get(sessionId).isEmpty()) {
+                pendingCompletions.remove(sessionId);
+                return;
+            }
+            log.info("Session {} reached target {}%. Auto completing...", sessionId, state.targetSocPercent());
+            runCompletion(sessionId);
+        });
+        log.debug("Session {} scheduled to complete at {} (in {} ms)",
+                sessionId, completeAtMillis, completeAtMillis - simulationClock.millis());
+    }
 
-        // Lưu vào DB
-        chargingSessionRepository.save(session);
-        vehicleRepository.save(vehicle);
-
-        log.debug("Updated session {}: SOC {}%, Energy {} kWh, Cost {} VND",
-            sessionId, newSoc, session.getEnergyKwh(), session.getCostTotal());
-
-        // Kiểm tra đạt target → auto complete
-        if (newSoc >= targetSoc) {
-            log.info("Session {} reached target {}%. Auto completing...", sessionId, targetSoc);
-            // Gọi complete trong transaction mới để tránh conflict
-            completeSessionAsync(sessionId);
-        }
+    /**
+     * RE-ARM: Công suất trụ thay đổi khi đang sạc → chốt progress tới hiện tại với công suất cũ,
+     * áp công suất mới rồi dự đoán lại thời điểm complete.
+     */
+    public void onChargingPowerChanged(String pointId, ChargingPower chargingPower) {
+        liveStateStore.findByPointId(pointId).ifPresent(current -> {
+            Vehicle vehicle = vehicleRepository.findById(current.vehicleId()).orElse(null);
+            if (vehicle == null || chargingPower == null) {
+                return;
+            }
+            ChargingCurve newCurve = chargingCurveService.curveFor(
+                    vehicle.getBatteryCapacityKwh(), vehicle.getMaxChargingPowerKw(), chargingPower);
+            long nowMillis = simulationClock.millis();
+            liveStateStore.update(current.sessionId(),
+                            state -> state.advanceTo(nowMillis, simMinutesPerSecond()).withCurve(newCurve))
+                    .ifPresent(this::scheduleCompletion);
+            log.info("Re-armed completion of session {} after power change at point {} -> {} kW",
+                    current.sessionId(), pointId, newCurve != null ? newCurve.getPeakPowerKw() : 0f);
+        });
     }
 
     /**
-     * COMPLETE SESSION: Chạy async để không block scheduler
+     * COMPLETE SESSION: Chạy trên completion executor (qua timing wheel, deadline = ngay bây giờ)
+     * để không block scheduler thread.
      */
     public void completeSessionAsync(String sessionId) {
+        // Chỉ một stop ngay cho mỗi session, các tick sau không xếp thêm
+        if (Boolean.TRUE.equals(pendingCompletions.put(sessionId, true))) {
+            return;
+        }
+        completionTimingWheel.schedule(sessionId, simulationClock.millis(), () -> runCompletion(sessionId));
+    }
+
+    private void runCompletion(String sessionId) {
         try {
-            Thread.sleep(100); // Đợi scheduler transaction commit
-            completeSession(sessionId);
+            // Gọi qua TransactionTemplate: self-invocation không đi qua proxy @Transactional
+            transactionTemplate.executeWithoutResult(status -> completeSession(sessionId));
         } catch (Exception e) {
-            log.error("Error completing session {}: {}", sessionId, e.getMessage());
+            log.error("Error completing session {}: {}", sessionId, e.getMessage(), e);
+        } finally {
+            // Lỗi (vd: lock timeout) → session còn trong store, tick sau re-arm và thử lại
+            pendingCompletions.remove(sessionId);
         }
     }
 
@@ -259,19 +277,40 @@ public class ChargingSimulatorService {
      */
     @Transactional
     public void completeSession(String sessionId) {
-        ChargingSession session = chargingSessionRepository.findByIdWithRelationships(sessionId).orElse(null);
-        if (session == null) {
+        // Khóa row session: completion executor chạy nhiều thread, stop thủ công chạy trên request thread
+        // → chỉ một transaction chốt COMPLETED, các lần sau thấy status khác IN_PROGRESS và bỏ qua
+        ChargingSession locked = chargingSessionRepository.findByIdForUpdate(sessionId).orElse(null);
+        if (locked == null) {
+            afterCommit(() -> forget(sessionId));
             return;
         }
 
-        // Nếu đã COMPLETED rồi thì thôi
-        if (session.getStatus() == ChargingSessionStatus.COMPLETED) {
-            log.info("Session {} already completed", sessionId);
+        // Đã COMPLETED (hoặc không còn sạc) thì thôi
+        if (locked.getStatus() != ChargingSessionStatus.IN_PROGRESS) {
+            afterCommit(() -> forget(sessionId));
+            log.info("Session {} already {}", sessionId, locked.getStatus());
             return;
         }
 
+        // Load relationships vào cùng persistence context (listener AFTER_COMMIT đọc driver/user/point)
+        ChargingSession session = chargingSessionRepository.findByIdWithRelationships(sessionId).orElse(locked);
+
         log.info("Completing session {}", sessionId);
 
+        // Áp progress live (write-behind), tính chính xác tới thời điểm complete, vào entity trước khi chốt.
+        // State chỉ bị bỏ khỏi store sau commit: rollback (lock timeout, lỗi DB) → tick tiếp tục và thử complete lại
+        walletHoldService.releaseHold(sessionId);
+        long completedAtMillis = simulationClock.millis();
+        afterCommit(() -> forget(sessionId));
+        liveStateStore.get(sessionId)
+                .map(state -> state.advanceTo(completedAtMillis, simMinutesPerSecond()))
+                .ifPresent(state -> {
+                    session.setEnergyKwh(state.energyKwh());
+                    session.setDurationMin(state.durationMin());
+                    session.setEndSocPercent(state.socPercent());
+                    session.setCostTotal(state.costTotal());
+                });
+
         // Set status = COMPLETED
         session.setStatus(ChargingSessionStatus.COMPLETED);
         session.setEndTime(LocalDateTime.now());
@@ -295,24 +334,9 @@ public class ChargingSimulatorService {
         // Release charging point
         ChargingPoint point = session.getChargingPoint();
         if (point != null) {
-            // FIX BUG #2: Kiểm tra upcoming booking trước khi set AVAILABLE
-            LocalDateTime now = LocalDateTime.now();
-            List<Booking> upcomingBookings = bookingRepository.findUpcomingBookingsForPoint(
-                point.getPointId(),
-                now,
-                now.plusMinutes(30) // Check booking trong 30 phút tới
-            );
-
-            if (!upcomingBookings.isEmpty()) {
-                // Có booking sắp tới → Giữ RESERVED thay vì AVAILABLE
-                point.setStatus(ChargingPointStatus.RESERVED);
-                log.info("Keeping point {} RESERVED due to upcoming booking at {}",
-                         point.getName(), upcomingBookings.getFirst().getBookingTime());
-            } else {
-                // Không có booking gần → Set AVAILABLE
-                point.setStatus(ChargingPointStatus.AVAILABLE);
-            }
-
+            // FIX BUG #2: booking sắp tới → trụ hiển thị RESERVED qua ChargingPointStatusService
+            // (trạng thái vật lý chỉ còn AVAILABLE, không cần job release RESERVED)
+            point.setStatus(ChargingPointStatus.AVAILABLE);
             point.setCurrentSession(null);
             chargingPointRepository.save(point);
         }
@@ -358,6 +382,31 @@ public class ChargingSimulatorService {
         // }
     }
 
+    /**
+     * Bỏ session khỏi store / timing wheel (không còn tick, không còn completion chờ).
+     */
+    private void forget(String sessionId) {
+        completionTimingWheel.cancel(sessionId);
+        pendingCompletions.remove(sessionId);
+        liveStateStore.remove(sessionId);
+    }
+
+    /**
+     * Chạy action sau khi transaction hiện tại commit (ngay lập tức nếu không có transaction).
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     /**
      * Helper: Lấy plan cho session
      */
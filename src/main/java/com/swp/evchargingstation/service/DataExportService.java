@@ -0,0 +1,186 @@
+package com.swp.evchargingstation.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp.evchargingstation.enums.ExportDataset;
+import com.swp.evchargingstation.enums.ExportFormat;
+import com.swp.evchargingstation.repository.DataExportRepository;
+import com.swp.evchargingstation.util.CsvRecordWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export dữ liệu đối soát (phiên sạc, payment, giao dịch ví) dạng CSV / NDJSON, tùy chọn gzip.
+ *
+ * Row đi thẳng từ cursor JDBC (DataExportRepository) qua buffer cố định ra response: heap không tăng theo
+ * kích thước export. Lỗi giữa chừng không trả JSON được nữa (header đã gửi) — client nhận file bị cắt.
+ * Text trong CSV được chống formula injection (neutralizeFormula).
+ */
+@Service
+@Slf4j
+public class DataExportService {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final DataExportRepository dataExportRepository;
+    private final ObjectMapper objectMapper;
+
+    public DataExportService(DataExportRepository dataExportRepository, ObjectMapper objectMapper) {
+        this.dataExportRepository = dataExportRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param from ngày bắt đầu (bao gồm), null = không giới hạn
+     * @param to ngày kết thúc (bao gồm), null = không giới hạn
+     * @param stationId chỉ lấy dữ liệu của trạm này (null = mọi trạm)
+     */
+    public StreamingResponseBody export(ExportDataset dataset, ExportFormat format, LocalDate from, LocalDate to,
+                                        String stationId, boolean gzip) {
+        LocalDateTime fromTime = from != null ? from.atStartOfDay() : null;
+        LocalDateTime toTime = to != null ? to.plusDays(1).atStartOfDay() : null;
+
+        return out -> {
+            long startedAt = System.currentTimeMillis();
+            GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : null;
+            OutputStream target = gzipOut != null ? gzipOut : out;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_BYTES);
+
+            DataExportRepository.ExportSink sink = format == ExportFormat.CSV
+                    ? csvSink(writer)
+                    : ndjsonSink(writer);
+            long rows;
+            try {
+                rows = dataExportRepository.stream(dataset, fromTime, toTime, stationId, sink);
+            } catch (UncheckedIOException e) {
+                log.warn("{} export aborted: {}", dataset, e.getCause().getMessage());
+                throw e.getCause();
+            }
+
+            writer.flush();
+            if (gzipOut != null) {
+                gzipOut.finish();
+            }
+            log.info("Exported {} {} rows as {}{} (from={}, to={}, station={}) in {} ms",
+                    rows, dataset, format, gzip ? "+gzip" : "", from, to, stationId,
+                    System.currentTimeMillis() - startedAt);
+        };
+    }
+
+    private static DataExportRepository.ExportSink csvSink(Writer writer) {
+        CsvRecordWriter csv = new CsvRecordWriter(writer, ',');
+        return new DataExportRepository.ExportSink() {
+            int columnCount;
+
+            @Override
+            public void start(List<String> columns) throws IOException {
+                columnCount = columns.size();
+                for (String column : columns) {
+                    csv.field(column);
+                }
+                csv.endRecord();
+            }
+
+            @Override
+            public void row(ResultSet rs) throws SQLException, IOException {
+                for (int i = 1; i <= columnCount; i++) {
+                    Object value = toExportValue(rs.getObject(i));
+                    csv.field(value instanceof BigDecimal number ? number.toPlainString()
+                            : value instanceof Number number ? number.toString()
+                            : neutralizeFormula((String) value));
+                }
+                csv.endRecord();
+            }
+        };
+    }
+
+    private DataExportRepository.ExportSink ndjsonSink(Writer writer) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        // Không đóng / flush writer thay cho service (flush mỗi row chỉ đẩy buffer của generator xuống writer);
+        // tự xuống dòng sau mỗi object
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        generator.setRootValueSeparator(null);
+        return new DataExportRepository.ExportSink() {
+            String[] columns;
+
+            @Override
+            public void start(List<String> columnNames) {
+                columns = columnNames.toArray(String[]::new);
+            }
+
+            @Override
+            public void row(ResultSet rs) throws SQLException, IOException {
+                generator.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = toExportValue(rs.getObject(i + 1));
+                    generator.writeFieldName(columns[i]);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else if (value instanceof BigDecimal number) {
+                        generator.writeNumber(number.toPlainString());
+                    } else if (value instanceof Number number) {
+                        generator.writeNumber(number.longValue());
+                    } else {
+                        generator.writeString(value.toString());
+                    }
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                generator.flush();
+            }
+        };
+    }
+
+    /**
+     * Chống CSV / formula injection khi mở file bằng Excel / Sheets: text (tên trạm, địa chỉ, mô tả giao dịch...)
+     * bắt đầu bằng = + - @ hoặc tab / CR được thêm dấu ' ở đầu để hiển thị như chữ. Số không đi qua đây
+     * nên số âm vẫn giữ nguyên.
+     */
+    static String neutralizeFormula(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        return switch (value.charAt(0)) {
+            case '=', '+', '-', '@', '\t', '\r' -> "'" + value;
+            default -> value;
+        };
+    }
+
+    /**
+     * Thời gian → ISO-8601 (LocalDateTime, không timezone); số thực → số thập phân thường (không dạng 1.5E7);
+     * còn lại giữ nguyên.
+     */
+    private static Object toExportValue(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toString();
+        }
+        if (value instanceof Float || value instanceof Double) {
+            return Double.isFinite(((Number) value).doubleValue()) ? new BigDecimal(value.toString()) : value.toString();
+        }
+        if (value instanceof BigDecimal || value instanceof Number) {
+            return value;
+        }
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,92 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.util.AddressNormalizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Geocoding offline từ file gazetteer (local / test / loadsim, không gọi mạng).
+ *
+ * Mỗi dòng: địa chỉ;vĩ độ;kinh độ (dòng bắt đầu bằng # là comment). Tra cứu theo địa chỉ đã chuẩn hóa;
+ * không khớp nguyên văn thì lấy mục dài nhất nằm trong địa chỉ (vd: quận / thành phố).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "geocoding.provider", havingValue = "gazetteer")
+public class GazetteerGeocodingProvider implements GeocodingProvider {
+
+    private final Map<String, Coordinates> entries;
+    // Khóa sắp theo độ dài giảm dần để khớp mục cụ thể nhất trước
+    private final List<String> keysByLength;
+
+    public GazetteerGeocodingProvider(ResourceLoader resourceLoader,
+                                      @Value("${geocoding.gazetteer.location:classpath:geocoding/gazetteer.csv}") String location) {
+        this.entries = load(resourceLoader.getResource(location));
+        this.keysByLength = entries.keySet().stream()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .toList();
+        log.info("Loaded {} gazetteer entries from {}", entries.size(), location);
+    }
+
+    @Override
+    public String name() {
+        return "gazetteer";
+    }
+
+    @Override
+    public Optional<Coordinates> geocode(String address) {
+        String normalized = AddressNormalizer.normalize(address);
+        Coordinates exact = entries.get(normalized);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        for (String key : keysByLength) {
+            if (normalized.contains(key)) {
+                return Optional.of(entries.get(key));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean rateLimited() {
+        return false;
+    }
+
+    private static Map<String, Coordinates> load(Resource resource) {
+        Map<String, Coordinates> loaded = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(";");
+                if (parts.length != 3) {
+                    log.warn("Skipping malformed gazetteer line {}: {}", lineNumber, line);
+                    continue;
+                }
+                loaded.put(AddressNormalizer.normalize(parts[0]), Coordinates.rounded(
+                        Double.parseDouble(parts[1].trim()), Double.parseDouble(parts[2].trim())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read gazetteer " + resource.getDescription(), e);
+        }
+        return loaded;
+    }
+}
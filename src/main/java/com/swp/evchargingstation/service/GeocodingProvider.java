@@ -0,0 +1,41 @@
+package com.swp.evchargingstation.service;
+
+import java.util.Optional;
+
+/**
+ * SPI nguồn geocoding (địa chỉ → tọa độ). Chọn implementation qua geocoding.provider:
+ * - nominatim (mặc định): Nominatim API của OpenStreetMap, bị giới hạn tốc độ bởi GeocodingService
+ * - gazetteer: file tra cứu offline cho môi trường local / test / loadsim
+ */
+public interface GeocodingProvider {
+
+    /**
+     * Tọa độ đã làm tròn 6 chữ số thập phân (chính xác ~11cm).
+     */
+    record Coordinates(double latitude, double longitude) {
+
+        public static Coordinates rounded(double latitude, double longitude) {
+            return new Coordinates(Math.round(latitude * 1000000.0) / 1000000.0,
+                    Math.round(longitude * 1000000.0) / 1000000.0);
+        }
+    }
+
+    /**
+     * Tên provider (lưu cùng kết quả trong cache bền).
+     */
+    String name();
+
+    /**
+     * @param address địa chỉ gốc do người dùng nhập
+     * @return tọa độ, rỗng nếu provider không tìm thấy địa chỉ
+     * @throws RuntimeException nếu lỗi kết nối (kết quả không được cache, có thể thử lại)
+     */
+    Optional<Coordinates> geocode(String address);
+
+    /**
+     * Provider có cần giới hạn tốc độ gọi (API bên ngoài) hay không.
+     */
+    default boolean rateLimited() {
+        return true;
+    }
+}
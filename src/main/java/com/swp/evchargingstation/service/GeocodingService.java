@@ -1,95 +1,248 @@
 package com.swp.evchargingstation.service;
 
-import com.swp.evchargingstation.exception.AppException;
-import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.entity.GeocodedAddress;
+import com.swp.evchargingstation.repository.GeocodedAddressRepository;
+import com.swp.evchargingstation.repository.StationRepository;
+import com.swp.evchargingstation.service.GeocodingProvider.Coordinates;
+import com.swp.evchargingstation.util.AddressNormalizer;
+import com.swp.evchargingstation.util.TokenBucket;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.net.URI;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Service để chuyển đổi địa chỉ thành tọa độ (Geocoding) sử dụng Nominatim API (OpenStreetMap)
- * API này miễn phí và không cần API key
+ * Service để chuyển đổi địa chỉ thành tọa độ (Geocoding), không chặn request thread.
+ *
+ * Pipeline:
+ * 1. Chuẩn hóa địa chỉ (AddressNormalizer) làm khóa cache
+ * 2. Cache LRU in-memory → bảng geocoded_addresses (dùng chung giữa các instance)
+ * 3. Single-flight: các yêu cầu cùng địa chỉ đang chờ dùng chung 1 lần gọi provider
+ * 4. Worker queue 1 thread + token bucket (Nominatim: tối đa 1 request/giây) gọi GeocodingProvider
+ *
+ * Trạm tạo / đổi địa chỉ không kèm tọa độ được lưu ngay, tọa độ được back-fill khi geocoding xong
+ * (ghi DB + refresh spatial index trên geocodingResultExecutor, worker chỉ gọi provider).
+ * Hàng đợi chỉ nằm trong bộ nhớ: sweep định kỳ xếp lại các trạm còn thiếu tọa độ
+ * (yêu cầu bị drop khi hàng đợi đầy, provider lỗi, mất khi restart). Sweep chỉ chạy trên leader,
+ * duyệt keyset theo stationId; địa chỉ thất bại được lùi lần thử theo backoff lũy thừa.
  */
 @Slf4j
 @Service
 public class GeocodingService {
-    private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search";
-    private static final String USER_AGENT = "EVChargingStationManagementSystem/1.0";
 
-    private final RestTemplate restTemplate;
+    private final GeocodingProvider provider;
+    private final GeocodedAddressRepository geocodedAddressRepository;
+    private final StationRepository stationRepository;
+    private final StationSpatialIndex stationSpatialIndex;
+    private final SimulatorShardCoordinator shardCoordinator;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor geocodingExecutor;
+    private final ThreadPoolTaskExecutor geocodingResultExecutor;
+    private final TokenBucket rateLimiter;
+    private final int backfillBatchSize;
+    private final long retryBaseMs;
+    private final long retryMaxMs;
 
-    public GeocodingService() {
-        this.restTemplate = new RestTemplate();
+    // Keyset: stationId cuối cùng đã xếp hàng ở lần sweep trước ("" = quét từ đầu)
+    private volatile String sweepCursor = "";
+
+    private final Map<String, Coordinates> lruCache;
+    private final Map<String, CompletableFuture<Optional<Coordinates>>> inFlight = new ConcurrentHashMap<>();
+
+    public GeocodingService(GeocodingProvider provider,
+                            GeocodedAddressRepository geocodedAddressRepository,
+                            StationRepository stationRepository,
+                            StationSpatialIndex stationSpatialIndex,
+                            SimulatorShardCoordinator shardCoordinator,
+                            TransactionTemplate transactionTemplate,
+                            @Qualifier("geocodingExecutor") ThreadPoolTaskExecutor geocodingExecutor,
+                            @Qualifier("geocodingResultExecutor") ThreadPoolTaskExecutor geocodingResultExecutor,
+                            @Value("${geocoding.rate-limit.permits-per-second:1.0}") double permitsPerSecond,
+                            @Value("${geocoding.cache.max-entries:10000}") int maxCacheEntries,
+                            @Value("${geocoding.backfill.batch-size:500}") int backfillBatchSize,
+                            @Value("${geocoding.backfill.retry-base-ms:3600000}") long retryBaseMs,
+                            @Value("${geocoding.backfill.retry-max-ms:604800000}") long retryMaxMs) {
+        this.provider = provider;
+        this.geocodedAddressRepository = geocodedAddressRepository;
+        this.stationRepository = stationRepository;
+        this.stationSpatialIndex = stationSpatialIndex;
+        this.shardCoordinator = shardCoordinator;
+        this.transactionTemplate = transactionTemplate;
+        this.geocodingExecutor = geocodingExecutor;
+        this.geocodingResultExecutor = geocodingResultExecutor;
+        this.rateLimiter = new TokenBucket(permitsPerSecond, 1);
+        this.backfillBatchSize = backfillBatchSize;
+        this.retryBaseMs = retryBaseMs;
+        this.retryMaxMs = retryMaxMs;
+        this.lruCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Coordinates> eldest) {
+                return size() > maxCacheEntries;
+            }
+        });
+        log.info("Geocoding provider: {} (rate limited: {})", provider.name(), provider.rateLimited());
     }
 
     /**
-     * Chuyển đổi địa chỉ thành tọa độ (latitude, longitude)
+     * Chuyển đổi địa chỉ thành tọa độ.
      * @param address Địa chỉ cần chuyển đổi
-     * @return Map chứa "latitude" và "longitude"
-     * @throws AppException nếu không tìm thấy địa chỉ hoặc có lỗi kết nối
+     * @return future hoàn thành với tọa độ (rỗng nếu không tìm thấy địa chỉ);
+     *         hoàn thành lỗi nếu provider lỗi kết nối hoặc hàng đợi đầy
+     */
+    public CompletableFuture<Optional<Coordinates>> geocodeAsync(String address) {
+        String key = AddressNormalizer.normalize(address);
+        if (key.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        Optional<Coordinates> cached = findCached(key);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return enqueue(key, address);
+    }
+
+    /**
+     * Xếp hàng gọi provider cho địa chỉ chưa có trong cache.
+     * Single-flight: chỉ yêu cầu đầu tiên cho địa chỉ này được xếp hàng gọi provider.
      */
-    @SuppressWarnings("unchecked")
-    public Map<String, Double> geocodeAddress(String address) {
+    private CompletableFuture<Optional<Coordinates>> enqueue(String key, String address) {
+        CompletableFuture<Optional<Coordinates>> future = new CompletableFuture<>();
+        CompletableFuture<Optional<Coordinates>> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        future.whenComplete((result, error) -> inFlight.remove(key, future));
+
         try {
-            log.info("Geocoding address: {}", address);
-
-            // Xây dựng URL với các tham số
-            URI uri = UriComponentsBuilder.fromUriString(NOMINATIM_URL)
-                    .queryParam("q", address)
-                    .queryParam("format", "json")
-                    .queryParam("limit", "1")
-                    .queryParam("addressdetails", "1")
-                    .build()
-                    .toUri();
-
-            // Gửi request với User-Agent header (bắt buộc theo chính sách của Nominatim)
-            org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-            headers.set("User-Agent", USER_AGENT);
-            org.springframework.http.HttpEntity<?> entity = new org.springframework.http.HttpEntity<>(headers);
-
-            // Gọi API
-            var response = restTemplate.exchange(
-                    uri,
-                    org.springframework.http.HttpMethod.GET,
-                    entity,
-                    List.class
-            );
-
-            List<Map<String, Object>> results = (List<Map<String, Object>>) response.getBody();
-
-            // Kiểm tra kết quả
-            if (results == null || results.isEmpty()) {
-                log.error("No geocoding results found for address: {}", address);
-                // Sử dụng error code đã có trong hệ thống
-                throw new AppException(ErrorCode.VALIDATION_FAILED);
-            }
+            geocodingExecutor.execute(() -> resolve(key, address, future));
+        } catch (TaskRejectedException e) {
+            log.warn("Geocoding queue full, dropping request for address: {}", address);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Geocode địa chỉ của trạm rồi ghi tọa độ vào trạm (chỉ khi trạm vẫn giữ đúng địa chỉ này).
+     * Gọi sau khi transaction tạo / cập nhật trạm đã commit.
+     *
+     * @return false nếu hàng đợi đầy và yêu cầu bị drop (sweep backfillMissingCoordinates sẽ thử lại)
+     */
+    public boolean backfillStationCoordinates(String stationId, String address) {
+        return backfillStationCoordinates(stationId, address, 0);
+    }
+
+    /**
+     * Như backfillStationCoordinates cho nhiều trạm (import hàng loạt): cache bền được tra 1 query cho cả lô
+     * thay vì 1 query mỗi trạm trên thread gọi.
+     *
+     * @param addressByStationId địa chỉ theo stationId
+     * @return stationId của các trạm bị drop vì hàng đợi đầy (sweep sẽ thử lại)
+     */
+    public Set<String> backfillStationCoordinates(Map<String, String> addressByStationId) {
+        Map<String, String> keyByStationId = new LinkedHashMap<>();
+        addressByStationId.forEach((stationId, address) ->
+                keyByStationId.put(stationId, AddressNormalizer.normalize(address)));
+        Map<String, Coordinates> cached = findCached(new HashSet<>(keyByStationId.values()));
 
-            // Lấy tọa độ từ kết quả đầu tiên
-            Map<String, Object> firstResult = results.get(0);
-            double latitude = Double.parseDouble(firstResult.get("lat").toString());
-            double longitude = Double.parseDouble(firstResult.get("lon").toString());
+        Set<String> dropped = new LinkedHashSet<>();
+        keyByStationId.forEach((stationId, key) -> {
+            String address = addressByStationId.get(stationId);
+            CompletableFuture<Optional<Coordinates>> future;
+            if (key.isEmpty()) {
+                future = CompletableFuture.completedFuture(Optional.empty());
+            } else if (cached.containsKey(key)) {
+                future = CompletableFuture.completedFuture(Optional.of(cached.get(key)));
+            } else {
+                future = enqueue(key, address);
+            }
+            if (!applyWhenDone(stationId, address, 0, future)) {
+                dropped.add(stationId);
+            }
+        });
+        return dropped;
+    }
 
-            // Làm tròn đến 6 chữ số thập phân (chính xác ~11cm)
-            latitude = Math.round(latitude * 1000000.0) / 1000000.0;
-            longitude = Math.round(longitude * 1000000.0) / 1000000.0;
+    /**
+     * @param previousFailures số lần địa chỉ này đã thất bại (quyết định backoff nếu lần này cũng thất bại)
+     */
+    private boolean backfillStationCoordinates(String stationId, String address, int previousFailures) {
+        return applyWhenDone(stationId, address, previousFailures, geocodeAsync(address));
+    }
 
-            log.info("Geocoded successfully: lat={}, lon={}", latitude, longitude);
+    /**
+     * Ghi kết quả geocoding vào trạm trên geocodingResultExecutor.
+     * @return false nếu yêu cầu đã bị drop vì hàng đợi đầy
+     */
+    private boolean applyWhenDone(String stationId, String address, int previousFailures,
+                                  CompletableFuture<Optional<Coordinates>> future) {
+        if (future.isCompletedExceptionally() && future.exceptionNow() instanceof TaskRejectedException) {
+            return false;
+        }
+        future.whenCompleteAsync((result, error) -> {
+            try {
+                applyResult(stationId, address, previousFailures, result, error);
+            } catch (Exception e) {
+                // Sweep sẽ thử lại (kết quả đã nằm trong cache nên không gọi provider lần nữa)
+                log.error("Failed to back-fill coordinates of station {}: {}", stationId, e.getMessage(), e);
+            }
+        }, geocodingResultExecutor);
+        return true;
+    }
 
-            return Map.of(
-                    "latitude", latitude,
-                    "longitude", longitude
-            );
+    /**
+     * SWEEP: xếp lại geocoding cho các trạm còn thiếu tọa độ đã hết backoff, tối đa backfillBatchSize trạm mỗi lần,
+     * tiếp tục từ stationId của lần trước (hết danh sách thì quay lại đầu).
+     * Chỉ chạy trên leader để cả cluster dùng chung 1 giới hạn gọi provider.
+     * Địa chỉ đang chờ trong hàng đợi dùng chung future (single-flight) nên không bị gọi provider 2 lần.
+     */
+    @Scheduled(initialDelayString = "${geocoding.backfill.initial-delay-ms:60000}",
+            fixedDelayString = "${geocoding.backfill.sweep-interval-ms:900000}")
+    public void backfillMissingCoordinates() {
+        if (!shardCoordinator.isLeader()) {
+            return;
+        }
 
-        } catch (AppException e) {
-            throw e;
+        String cursor = sweepCursor;
+        List<Object[]> stations;
+        try {
+            stations = stationRepository.findMissingCoordinates(cursor, LocalDateTime.now(),
+                    PageRequest.of(0, backfillBatchSize));
         } catch (Exception e) {
-            log.error("Error during geocoding: {}", e.getMessage(), e);
-            throw new AppException(ErrorCode.VALIDATION_FAILED);
+            log.error("Failed to load stations missing coordinates: {}", e.getMessage(), e);
+            return;
+        }
+
+        int queued = 0;
+        for (Object[] row : stations) {
+            Integer failures = (Integer) row[2];
+            if (!backfillStationCoordinates((String) row[0], (String) row[1], failures == null ? 0 : failures)) {
+                // Hàng đợi đầy: lần sau tiếp tục từ trạm này
+                break;
+            }
+            cursor = (String) row[0];
+            queued++;
+        }
+        boolean reachedEnd = queued == stations.size() && stations.size() < backfillBatchSize;
+        sweepCursor = reachedEnd ? "" : cursor;
+        if (queued > 0) {
+            log.info("Re-queued geocoding for {} stations missing coordinates (next sweep from '{}')",
+                    queued, sweepCursor);
         }
     }
 
@@ -105,4 +258,129 @@ public class GeocodingService {
         }
         return latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180;
     }
+
+    private void applyResult(String stationId, String address, int previousFailures,
+                             Optional<Coordinates> result, Throwable error) {
+        if (error != null || result.isEmpty()) {
+            if (error != null) {
+                log.warn("Geocoding failed for station {} ({}): {}", stationId, address, error.getMessage());
+            } else {
+                log.warn("No geocoding result for station {} address '{}' - coordinates stay empty", stationId, address);
+            }
+            int failures = previousFailures + 1;
+            LocalDateTime retryAt = LocalDateTime.now().plus(retryDelayMs(failures), ChronoUnit.MILLIS);
+            transactionTemplate.execute(status ->
+                    stationRepository.recordGeocodingFailure(stationId, address, failures, retryAt));
+            return;
+        }
+        Coordinates coordinates = result.get();
+        Integer updated = transactionTemplate.execute(status -> stationRepository.updateCoordinatesIfAddressMatches(
+                stationId, address, coordinates.latitude(), coordinates.longitude()));
+        if (updated != null && updated > 0) {
+            stationSpatialIndex.refresh(stationId);
+            log.info("Back-filled coordinates of station {}: lat={}, lon={}",
+                    stationId, coordinates.latitude(), coordinates.longitude());
+        }
+    }
+
+    // retryBaseMs × 2^(failures - 1), tối đa retryMaxMs
+    long retryDelayMs(int failures) {
+        int doublings = Math.min(failures - 1, 30);
+        return Math.min(retryMaxMs, retryBaseMs << doublings);
+    }
+
+    private Optional<Coordinates> findCached(String key) {
+        Coordinates cached = lruCache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Coordinates> persisted = geocodedAddressRepository.findById(hash(key))
+                .map(row -> new Coordinates(row.getLatitude(), row.getLongitude()));
+        persisted.ifPresent(coordinates -> lruCache.put(key, coordinates));
+        return persisted;
+    }
+
+    /**
+     * Tra cache cho nhiều địa chỉ đã chuẩn hóa: LRU trước, phần còn lại 1 query findAllById.
+     * @return tọa độ theo khóa (chỉ các khóa có trong cache)
+     */
+    private Map<String, Coordinates> findCached(Set<String> keys) {
+        Map<String, Coordinates> found = new HashMap<>();
+        Map<String, String> keyByHash = new HashMap<>();
+        for (String key : keys) {
+            if (key.isEmpty()) {
+                continue;
+            }
+            Coordinates cached = lruCache.get(key);
+            if (cached != null) {
+                found.put(key, cached);
+            } else {
+                keyByHash.put(hash(key), key);
+            }
+        }
+        if (!keyByHash.isEmpty()) {
+            for (GeocodedAddress row : geocodedAddressRepository.findAllById(keyByHash.keySet())) {
+                String key = keyByHash.get(row.getAddressHash());
+                Coordinates coordinates = new Coordinates(row.getLatitude(), row.getLongitude());
+                lruCache.put(key, coordinates);
+                found.put(key, coordinates);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * WORKER: chạy trên geocodingExecutor (1 thread), chờ token trước mỗi lần gọi provider.
+     */
+    private void resolve(String key, String address, CompletableFuture<Optional<Coordinates>> future) {
+        try {
+            // Có thể đã được instance khác geocode trong lúc chờ trong hàng đợi
+            Optional<Coordinates> cached = findCached(key);
+            if (cached.isPresent()) {
+                future.complete(cached);
+                return;
+            }
+
+            if (provider.rateLimited()) {
+                rateLimiter.acquire();
+            }
+            log.info("Geocoding address via {}: {}", provider.name(), address);
+            Optional<Coordinates> result = provider.geocode(address);
+            result.ifPresent(coordinates -> store(key, coordinates));
+            future.complete(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } catch (Exception e) {
+            log.error("Error during geocoding of '{}': {}", address, e.getMessage());
+            future.completeExceptionally(e);
+        }
+    }
+
+    private void store(String key, Coordinates coordinates) {
+        lruCache.put(key, coordinates);
+        try {
+            geocodedAddressRepository.save(GeocodedAddress.builder()
+                    .addressHash(hash(key))
+                    .normalizedAddress(key)
+                    .latitude(coordinates.latitude())
+                    .longitude(coordinates.longitude())
+                    .provider(provider.name())
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        } catch (Exception e) {
+            // Cache bền chỉ là tối ưu: instance khác có thể vừa ghi cùng địa chỉ
+            log.debug("Could not persist geocoding result for '{}': {}", key, e.getMessage());
+        }
+    }
+
+    private static String hash(String normalizedAddress) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(normalizedAddress.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
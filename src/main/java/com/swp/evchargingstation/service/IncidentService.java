@@ -3,6 +3,7 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.dto.request.IncidentCreationRequest;
 import com.swp.evchargingstation.dto.request.IncidentUpdateRequest;
 import com.swp.evchargingstation.dto.response.ApiResponse;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.IncidentResponse;
 import com.swp.evchargingstation.entity.*;
 import com.swp.evchargingstation.enums.IncidentStatus;
@@ -10,6 +11,7 @@ import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.mapper.StaffDashboardMapper;
 import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -21,7 +23,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -120,9 +121,9 @@ public class IncidentService {
     }
 
     /**
-     * STAFF: Xem danh sách incidents của station mình quản lý
+     * STAFF: Xem danh sách incidents của station mình quản lý theo trang (mới nhất trước)
      */
-    public List<IncidentResponse> getMyStationIncidents() {
+    public CursorPageResponse<IncidentResponse> getMyStationIncidents(Integer limit, String after) {
         String staffUserId = getCurrentUserId();
 
         Staff staff = staffRepository.findByIdWithStation(staffUserId)
@@ -133,11 +134,15 @@ public class IncidentService {
             throw new AppException(ErrorCode.STATION_NOT_FOUND);
         }
 
-        List<Incident> incidents = incidentRepository.findByStationIdOrderByReportedAtDesc(station.getStationId());
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<Incident> incidents = incidentRepository.findPageByStationId(station.getStationId(),
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
 
-        return incidents.stream()
-                .map(staffDashboardMapper::toIncidentResponse)
-                .collect(Collectors.toList());
+        return KeysetCursor.page(incidents, pageSize,
+                incident -> new KeysetCursor(incident.getReportedAt(), incident.getIncidentId()),
+                staffDashboardMapper::toIncidentResponse);
     }
 
     /**
@@ -215,14 +220,18 @@ public class IncidentService {
     //=====================================================ADMIN============================================================
 
     /**
-     * ADMIN: Xem tất cả incidents của tất cả stations
+     * ADMIN: Xem tất cả incidents của tất cả stations theo trang (mới nhất trước)
      */
-    public List<IncidentResponse> getAllIncidents() {
-        List<Incident> incidents = incidentRepository.findAllByOrderByReportedAtDesc();
-
-        return incidents.stream()
-                .map(staffDashboardMapper::toIncidentResponse)
-                .collect(Collectors.toList());
+    public CursorPageResponse<IncidentResponse> getAllIncidents(Integer limit, String after) {
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<Incident> incidents = incidentRepository.findPage(
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+
+        return KeysetCursor.page(incidents, pageSize,
+                incident -> new KeysetCursor(incident.getReportedAt(), incident.getIncidentId()),
+                staffDashboardMapper::toIncidentResponse);
     }
 
     /**
@@ -0,0 +1,261 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.configuration.LoadSimulationConfig;
+import com.swp.evchargingstation.dto.request.BookingRequest;
+import com.swp.evchargingstation.dto.request.StartChargingRequest;
+import com.swp.evchargingstation.util.SimulationClock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load simulation (soak test) cho charging simulator - chỉ chạy với profile "loadsim".
+ *
+ * Flow:
+ * 1. Sinh workload deterministic (LoadSimulationWorkloadGenerator)
+ * 2. Booking admission: tạo booking qua BookingService cho một nhóm driver (timer loadsim.booking.admission)
+ * 3. Start activeSessions phiên sạc walk-in qua ChargingSessionService (timer loadsim.session.start)
+ * 4. Để simulator chạy durationSeconds với SimulationClock tua nhanh (sessions complete + settle thật)
+ * 5. Ghi report throughput/latency: tick loop, booking admission, session start, settlement
+ *
+ * Chạy trên thread riêng (loadsim-runner) khi app chuyển sang ACCEPTING_TRAFFIC, tức là sau mọi listener
+ * ApplicationReadyEvent (rebuild index, live state, shard...). Thời gian lấy từ SimulationClock, id từ Random seed.
+ *
+ * Chạy: mvn -Ploadsim spring-boot:run -Dspring-boot.run.profiles=loadsim
+ */
+@Service
+@Profile("loadsim")
+@RequiredArgsConstructor
+@Slf4j
+public class LoadSimulationService {
+
+    static final String[] REPORTED_TIMERS = {
+            "charging.simulator.tick",
+            "loadsim.booking.admission",
+            "loadsim.session.start",
+            "charging.settlement"
+    };
+
+    static final String RUNNER_THREAD_NAME = "loadsim-runner";
+
+    private final LoadSimulationConfig config;
+    private final LoadSimulationWorkloadGenerator workloadGenerator;
+    private final BookingService bookingService;
+    private final ChargingSessionService chargingSessionService;
+    private final ChargingSessionLiveStateStore liveStateStore;
+    private final SimulationClock simulationClock;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationContext applicationContext;
+
+    private final AtomicBoolean launched = new AtomicBoolean();
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> new Thread(r, RUNNER_THREAD_NAME));
+
+    /**
+     * ReadinessState.ACCEPTING_TRAFFIC được publish sau khi tất cả listener ApplicationReadyEvent chạy xong,
+     * không chặn startup thread.
+     */
+    @EventListener
+    public void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && launched.compareAndSet(false, true)) {
+            runner.submit(this::run);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Thread.currentThread().getName().equals(RUNNER_THREAD_NAME)) {
+            // Đang đóng context từ chính runner (exitOnFinish): không tự interrupt
+            runner.shutdown();
+        } else {
+            runner.shutdownNow();
+        }
+    }
+
+    void run() {
+        log.info("[LoadSim] Starting load simulation - seed: {}, drivers: {}, points: {}, sessions: {}, bookings: {}, speed x{}",
+                config.getSeed(), config.getDrivers(), config.getStations() * config.getPointsPerStation(),
+                config.getActiveSessions(), config.getBookings(), simulationClock.getSpeedFactor());
+
+        long generateStartedAt = System.currentTimeMillis();
+        LoadSimulationWorkloadGenerator.Workload workload = workloadGenerator.generate();
+        long generateMillis = System.currentTimeMillis() - generateStartedAt;
+
+        // Trụ [0, sessions) cho phiên sạc walk-in, trụ phía sau cho booking (tránh xung đột upcoming booking)
+        int sessions = Math.min(config.getActiveSessions(), Math.min(workload.drivers().size(), workload.pointIds().size()));
+        int bookings = Math.min(config.getBookings(),
+                Math.min(workload.drivers().size() - sessions, workload.pointIds().size() - sessions));
+
+        Random random = new Random(config.getSeed() + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(config.getConcurrency());
+        long runStartedAt = System.currentTimeMillis();
+        try {
+            AtomicInteger admitted = new AtomicInteger();
+            List<Runnable> bookingTasks = new ArrayList<>();
+            for (int i = 0; i < Math.max(0, bookings); i++) {
+                LoadSimulationWorkloadGenerator.SimDriver driver = workload.drivers().get(sessions + i);
+                BookingRequest request = new BookingRequest();
+                request.setVehicleId(driver.vehicleId());
+                request.setChargingPointId(workload.pointIds().get(sessions + i));
+                request.setBookingTime(simulationClock.now().plusHours(1 + random.nextInt(6)));
+                request.setDesiredPercentage((float) Math.min(100, driver.socPercent() + 20 + random.nextInt(40)));
+                bookingTasks.add(() -> timed("loadsim.booking.admission", driver.email(), admitted,
+                        () -> bookingService.createBooking(request, driver.email())));
+            }
+            runAll(executor, bookingTasks);
+            log.info("[LoadSim] Booking admission done - admitted {}/{}", admitted.get(), bookingTasks.size());
+
+            AtomicInteger started = new AtomicInteger();
+            List<Runnable> sessionTasks = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                LoadSimulationWorkloadGenerator.SimDriver driver = workload.drivers().get(i);
+                StartChargingRequest request = StartChargingRequest.builder()
+                        .vehicleId(driver.vehicleId())
+                        .chargingPointId(workload.pointIds().get(i))
+                        .targetSocPercent(Math.min(100, driver.socPercent() + 30 + random.nextInt(40)))
+                        .build();
+                sessionTasks.add(() -> timed("loadsim.session.start", driver.email(), started,
+                        () -> chargingSessionService.startSession(request, driver.userId())));
+            }
+            runAll(executor, sessionTasks);
+            log.info("[LoadSim] Session start done - started {}/{}", started.get(), sessionTasks.size());
+
+            long measureUntil = System.currentTimeMillis() + config.getDurationSeconds() * 1000L;
+            while (System.currentTimeMillis() < measureUntil) {
+                Thread.sleep(Math.min(30_000L, Math.max(0L, measureUntil - System.currentTimeMillis())));
+                log.info("[LoadSim] Active sessions: {}, settled: {}", liveStateStore.size(),
+                        meterRegistry.timer("charging.settlement").count());
+            }
+
+            String report = buildReport(workload, generateMillis, System.currentTimeMillis() - runStartedAt,
+                    admitted.get(), bookingTasks.size(), started.get(), sessionTasks.size());
+            log.info("[LoadSim] Report:\n{}", report);
+            writeReport(report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("[LoadSim] Load simulation interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (config.isExitOnFinish()) {
+            int exitCode = SpringApplication.exit(applicationContext, () -> 0);
+            log.info("[LoadSim] Application context closed (exit code {})", exitCode);
+        }
+    }
+
+    /**
+     * Chạy action dưới quyền DRIVER (service có @PreAuthorize), ghi latency vào timer.
+     */
+    private void timed(String timerName, String email, AtomicInteger successCount, Runnable action) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                email, null, List.of(new SimpleGrantedAuthority("ROLE_DRIVER"))));
+        Timer timer = Timer.builder(timerName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            action.run();
+            successCount.incrementAndGet();
+        } catch (Exception e) {
+            log.debug("[LoadSim] {} rejected for {}: {}", timerName, email, e.getMessage());
+        } finally {
+            sample.stop(timer);
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void runAll(ExecutorService executor, List<Runnable> tasks) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("[LoadSim] Task failed: {}", e.getCause().getMessage());
+            }
+        }
+    }
+
+    private String buildReport(LoadSimulationWorkloadGenerator.Workload workload, long generateMillis, long runMillis,
+                               int admitted, int bookingAttempts, int started, int sessionAttempts) {
+        StringBuilder report = new StringBuilder();
+        report.append("=== Charging load simulation report ===\n");
+        report.append(String.format("seed=%d speedFactor=%.1f duration=%ds concurrency=%d%n",
+                config.getSeed(), simulationClock.getSpeedFactor(), config.getDurationSeconds(), config.getConcurrency()));
+        report.append(String.format("workload: drivers=%d points=%d historySessions=%d generated in %d ms%n",
+                workload.drivers().size(), workload.pointIds().size(), workload.historySessions(), generateMillis));
+        report.append(String.format("bookings admitted: %d/%d, sessions started: %d/%d, still active: %d%n",
+                admitted, bookingAttempts, started, sessionAttempts, liveStateStore.size()));
+        report.append(String.format("run wall time: %d ms%n%n", runMillis));
+        report.append(String.format("%-28s %8s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "ops/s", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+
+        double runSeconds = Math.max(1.0, runMillis / 1000.0);
+        for (String name : REPORTED_TIMERS) {
+            Timer timer = meterRegistry.find(name).timer();
+            if (timer == null) {
+                report.append(String.format("%-28s %8s%n", name, "-"));
+                continue;
+            }
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            report.append(String.format("%-28s %8d %10.1f %10.2f %10s %10s %10s %10.2f%n",
+                    name, snapshot.count(), snapshot.count() / runSeconds,
+                    snapshot.mean(TimeUnit.MILLISECONDS),
+                    percentile(snapshot, 0.5), percentile(snapshot, 0.95), percentile(snapshot, 0.99),
+                    snapshot.max(TimeUnit.MILLISECONDS)));
+        }
+        return report.toString();
+    }
+
+    private String percentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (Math.abs(value.percentile() - percentile) < 1e-6) {
+                return String.format("%.2f", value.value(TimeUnit.MILLISECONDS));
+            }
+        }
+        return "-";
+    }
+
+    private void writeReport(String report) {
+        try {
+            Path path = Path.of(config.getReportPath());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, report);
+            log.info("[LoadSim] Report written to {}", path.toAbsolutePath());
+        } catch (IOException e) {
+            log.warn("[LoadSim] Failed to write report: {}", e.getMessage());
+        }
+    }
+}
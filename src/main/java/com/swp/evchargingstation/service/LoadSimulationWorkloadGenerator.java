@@ -0,0 +1,180 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.configuration.LoadSimulationConfig;
+import com.swp.evchargingstation.entity.Plan;
+import com.swp.evchargingstation.enums.*;
+import com.swp.evchargingstation.repository.LoadSimulationBatchRepository;
+import com.swp.evchargingstation.repository.LoadSimulationBatchRepository.DriverRow;
+import com.swp.evchargingstation.repository.LoadSimulationBatchRepository.HistorySessionRow;
+import com.swp.evchargingstation.repository.PlanRepository;
+import com.swp.evchargingstation.repository.StationImportBatchRepository;
+import com.swp.evchargingstation.repository.StationImportBatchRepository.ChargingPointRow;
+import com.swp.evchargingstation.repository.StationImportBatchRepository.StationRow;
+import com.swp.evchargingstation.util.SimulationClock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Sinh workload tổng hợp cho load simulation (profile "loadsim").
+ *
+ * - Driver + ví + xe (VehicleModel ngẫu nhiên), trạm + trụ (ChargingPower ngẫu nhiên)
+ * - Lịch sử phiên sạc COMPLETED trải đều historyDays ngày gần nhất (tính từ SimulationClock)
+ * - Toàn bộ lựa chọn ngẫu nhiên, kể cả id, đi qua một Random seed cố định → chạy lại cho cùng dữ liệu
+ *
+ * Ghi bằng JDBC batch theo chunk batchSize, mỗi chunk một transaction (id sinh sẵn, không qua JPA).
+ */
+@Service
+@Profile("loadsim")
+@RequiredArgsConstructor
+@Slf4j
+public class LoadSimulationWorkloadGenerator {
+
+    static final String DRIVER_EMAIL_FORMAT = "loadsim-driver-%d@loadsim.local";
+    static final String DEFAULT_PLAN_NAME = "Linh hoạt";
+
+    private final LoadSimulationConfig config;
+    private final StationImportBatchRepository stationImportBatchRepository;
+    private final LoadSimulationBatchRepository loadSimulationBatchRepository;
+    private final PlanRepository planRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SimulationClock simulationClock;
+
+    /**
+     * Driver sinh ra: dùng để gọi BookingService (email) và ChargingSessionService (driverId)
+     */
+    public record SimDriver(String userId, String email, String vehicleId, int socPercent) {
+    }
+
+    public record Workload(List<SimDriver> drivers, List<String> pointIds, long historySessions) {
+    }
+
+    public Workload generate() {
+        Random random = new Random(config.getSeed());
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime now = simulationClock.now();
+
+        Plan plan = transactionTemplate.execute(status -> planRepository.findByNameIgnoreCase(DEFAULT_PLAN_NAME)
+                .orElseGet(() -> planRepository.save(Plan.builder()
+                        .name(DEFAULT_PLAN_NAME)
+                        .billingType(BillingType.PAY_AS_YOU_GO)
+                        .pricePerKwh(3800f)
+                        .pricePerMinute(0f)
+                        .monthlyFee(0f)
+                        .build())));
+
+        List<String> pointIds = generateStations(random);
+        List<SimDriver> drivers = generateDrivers(random, plan, now);
+        long historySessions = generateHistory(random, drivers, pointIds, now);
+
+        log.info("[LoadSim] Generated workload in {} ms - drivers: {}, points: {}, history sessions: {}",
+                System.currentTimeMillis() - startedAt, drivers.size(), pointIds.size(), historySessions);
+        return new Workload(drivers, pointIds, historySessions);
+    }
+
+    /**
+     * UUID (version 4) lấy bit từ Random của workload thay vì SecureRandom.
+     */
+    static String seededUuid(Random random) {
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    private List<String> generateStations(Random random) {
+        ChargingPower[] powers = ChargingPower.values();
+        List<String> pointIds = new ArrayList<>();
+
+        for (int from = 0; from < config.getStations(); from += config.getBatchSize()) {
+            int to = Math.min(config.getStations(), from + config.getBatchSize());
+            List<StationRow> stations = new ArrayList<>();
+            List<ChargingPointRow> points = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                String stationId = seededUuid(random);
+                stations.add(new StationRow(stationId, "LoadSim Station " + i, "LoadSim Address " + i, "LoadSim",
+                        null, 10.0 + random.nextDouble(), 106.0 + random.nextDouble(), StationStatus.OPERATIONAL));
+                for (int p = 0; p < config.getPointsPerStation(); p++) {
+                    String pointId = seededUuid(random);
+                    points.add(new ChargingPointRow(pointId, "TS" + (p + 1), stationId,
+                            powers[random.nextInt(powers.length)], ChargingPointStatus.AVAILABLE));
+                    pointIds.add(pointId);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                stationImportBatchRepository.insertStations(stations);
+                stationImportBatchRepository.insertChargingPoints(points);
+            });
+        }
+        return pointIds;
+    }
+
+    private List<SimDriver> generateDrivers(Random random, Plan plan, LocalDateTime now) {
+        VehicleModel[] models = VehicleModel.values();
+        List<SimDriver> drivers = new ArrayList<>();
+
+        for (int from = 0; from < config.getDrivers(); from += config.getBatchSize()) {
+            int to = Math.min(config.getDrivers(), from + config.getBatchSize());
+            List<DriverRow> rows = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                String email = String.format(DRIVER_EMAIL_FORMAT, i);
+                String userId = seededUuid(random);
+                String walletId = seededUuid(random);
+                String vehicleId = seededUuid(random);
+                double balance = 200_000.0 + random.nextInt(1_800_000);
+                VehicleModel model = models[random.nextInt(models.length)];
+                int socPercent = 10 + random.nextInt(50);
+
+                rows.add(new DriverRow(userId, email, "{noop}loadsim", "LoadSim", "Driver " + i,
+                        now.minusDays(config.getHistoryDays()), plan.getPlanId(), walletId, balance,
+                        vehicleId, String.format("LS-%06d", i), model, socPercent));
+                drivers.add(new SimDriver(userId, email, vehicleId, socPercent));
+            }
+            transactionTemplate.executeWithoutResult(status -> loadSimulationBatchRepository.insertDrivers(rows, now));
+        }
+        return drivers;
+    }
+
+    /**
+     * Lịch sử: historySessionsPerDriver phiên COMPLETED mỗi driver, thời điểm ngẫu nhiên trong historyDays ngày.
+     */
+    private long generateHistory(Random random, List<SimDriver> drivers, List<String> pointIds, LocalDateTime now) {
+        if (config.getHistorySessionsPerDriver() <= 0 || pointIds.isEmpty()) {
+            return 0;
+        }
+
+        long total = 0;
+        long historyMinutes = config.getHistoryDays() * 24L * 60L;
+        int driversPerChunk = Math.max(1, config.getBatchSize() / config.getHistorySessionsPerDriver());
+
+        for (int from = 0; from < drivers.size(); from += driversPerChunk) {
+            List<SimDriver> chunk = drivers.subList(from, Math.min(drivers.size(), from + driversPerChunk));
+            List<HistorySessionRow> sessions = new ArrayList<>();
+            for (SimDriver driver : chunk) {
+                for (int s = 0; s < config.getHistorySessionsPerDriver(); s++) {
+                    String pointId = pointIds.get(random.nextInt(pointIds.size()));
+                    int startSoc = 10 + random.nextInt(40);
+                    int endSoc = Math.min(100, startSoc + 20 + random.nextInt(50));
+                    float energyKwh = 0.6f * (endSoc - startSoc);
+                    float durationMin = 15 + random.nextInt(90);
+                    LocalDateTime startTime = now.minusMinutes(1 + (long) (random.nextDouble() * historyMinutes));
+
+                    sessions.add(new HistorySessionRow(seededUuid(random), driver.userId(), driver.vehicleId(),
+                            pointId, startTime, startTime.plusMinutes((long) durationMin), startSoc, endSoc,
+                            energyKwh, durationMin, energyKwh * 3800f));
+                }
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    loadSimulationBatchRepository.insertHistorySessions(sessions));
+            total += sessions.size();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,75 @@
+package com.swp.evchargingstation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Geocoding qua Nominatim API (OpenStreetMap). API miễn phí, không cần API key,
+ * nhưng chính sách sử dụng giới hạn 1 request/giây (GeocodingService áp token bucket).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "geocoding.provider", havingValue = "nominatim", matchIfMissing = true)
+public class NominatimGeocodingProvider implements GeocodingProvider {
+    private static final String NOMINATIM_URL = "https://nominatim.openstreetmap.org/search";
+    private static final String USER_AGENT = "EVChargingStationManagementSystem/1.0";
+
+    private final RestTemplate restTemplate;
+
+    public NominatimGeocodingProvider(@Value("${geocoding.nominatim.connect-timeout-ms:3000}") int connectTimeoutMillis,
+                                      @Value("${geocoding.nominatim.read-timeout-ms:5000}") int readTimeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        this.restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @Override
+    public String name() {
+        return "nominatim";
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<Coordinates> geocode(String address) {
+        // Xây dựng URL với các tham số
+        URI uri = UriComponentsBuilder.fromUriString(NOMINATIM_URL)
+                .queryParam("q", address)
+                .queryParam("format", "json")
+                .queryParam("limit", "1")
+                .queryParam("addressdetails", "1")
+                .build()
+                .toUri();
+
+        // Gửi request với User-Agent header (bắt buộc theo chính sách của Nominatim)
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Agent", USER_AGENT);
+
+        var response = restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), List.class);
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.getBody();
+
+        if (results == null || results.isEmpty()) {
+            log.warn("No geocoding results found for address: {}", address);
+            return Optional.empty();
+        }
+
+        // Lấy tọa độ từ kết quả đầu tiên
+        Map<String, Object> firstResult = results.get(0);
+        return Optional.of(Coordinates.rounded(
+                Double.parseDouble(firstResult.get("lat").toString()),
+                Double.parseDouble(firstResult.get("lon").toString())));
+    }
+}
@@ -49,9 +49,10 @@ public class OverviewService {
 
         // 4. Doanh thu tháng hiện tại (từ ngày 1 đến hiện tại)
         LocalDate now = LocalDate.now();
-        Float currentMonthRevenue = paymentRepository.findCurrentMonthRevenue(
-                now.getYear(),
-                now.getMonthValue()
+        LocalDate monthStart = now.withDayOfMonth(1);
+        Float currentMonthRevenue = paymentRepository.sumRevenue(
+                monthStart.atStartOfDay(),
+                monthStart.plusMonths(1).atStartOfDay()
         );
         // Nếu chưa có doanh thu thì trả về 0
         float revenue = currentMonthRevenue != null ? currentMonthRevenue : 0f;
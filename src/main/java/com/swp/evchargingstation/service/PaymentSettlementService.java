@@ -3,6 +3,7 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.entity.Booking;
 import com.swp.evchargingstation.entity.ChargingSession;
 import com.swp.evchargingstation.entity.Payment;
+import com.swp.evchargingstation.event.payment.PaymentCompletedEvent;
 import com.swp.evchargingstation.enums.BookingStatus;
 import com.swp.evchargingstation.enums.PaymentStatus;
 import com.swp.evchargingstation.enums.TransactionType;
@@ -10,6 +11,7 @@ import com.swp.evchargingstation.repository.BookingRepository;
 import com.swp.evchargingstation.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,6 +28,7 @@ public class PaymentSettlementService {
     private final BookingRepository bookingRepository;
     private final WalletService walletService;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Settle payment for a COMPLETED charging session using wallet only.
@@ -100,7 +103,7 @@ public class PaymentSettlementService {
                     String userId = session.getDriver().getUserId();
 
                     double deposit = booking.getDepositAmount() != null ? booking.getDepositAmount() : 0.0;
-                    double currentBalance = walletService.getBalance(userId);
+                    double currentBalance = walletService.getAvailableBalanceForUpdate(userId);
 
                     if (cost > deposit) {
                         double amountToDebit = cost - deposit;
@@ -176,7 +179,7 @@ public class PaymentSettlementService {
                 } else {
                     // No booking: full wallet debit
                     String userId = session.getDriver().getUserId();
-                    double currentBalance = walletService.getBalance(userId);
+                    double currentBalance = walletService.getAvailableBalanceForUpdate(userId);
 
                     if (currentBalance >= cost) {
                         try {
@@ -210,6 +213,10 @@ public class PaymentSettlementService {
 
                 paymentRepository.flush(); // single flush
 
+                if (payment.getStatus() == PaymentStatus.COMPLETED) {
+                    eventPublisher.publishEvent(new PaymentCompletedEvent(this, payment));
+                }
+
                 // Gửi email thông báo
                 try {
                     if (session.getDriver() != null && session.getDriver().getUser() != null) {
@@ -1,5 +1,7 @@
 package com.swp.evchargingstation.service;
 
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
 import com.itextpdf.io.font.PdfEncodings;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.colors.DeviceRgb;
@@ -21,6 +23,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -32,61 +36,93 @@ public class PdfExportService {
 
     private static final DeviceRgb HEADER_COLOR = new DeviceRgb(102, 126, 234);
     private static final DeviceRgb LIGHT_GRAY = new DeviceRgb(240, 240, 240);
-    private static final DecimalFormat CURRENCY_FORMAT = new DecimalFormat("#,###");
+    // DecimalFormat không thread-safe, các export worker render song song
+    private static final ThreadLocal<DecimalFormat> CURRENCY_FORMAT =
+            ThreadLocal.withInitial(() -> new DecimalFormat("#,###"));
 
-    private PdfFont vietnameseFont;
+    // Số dòng bảng chi tiết giữa 2 lần flush ra writer (bảng lớn không giữ hết trong bộ nhớ)
+    private static final int TABLE_FLUSH_ROWS = 50;
+
+    // Font đã parse, dùng chung cho mọi báo cáo. PdfFont gắn với 1 PdfDocument nên mỗi document vẫn tạo PdfFont
+    // riêng từ FontProgram này (rẻ: không đọc / parse lại file TTF)
+    private volatile FontProgram vietnameseFontProgram;
+    private volatile boolean fontResolved;
 
     /**
-     * Load Times New Roman font with Unicode support for Vietnamese
+     * Kết quả render một báo cáo.
      */
-    private PdfFont loadVietnameseFont() throws Exception {
-        try {
-            // Try Windows system font first (Times New Roman)
-            return PdfFontFactory.createFont(
-                "c:/windows/fonts/times.ttf",
-                PdfEncodings.IDENTITY_H,
-                PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED
-            );
-        } catch (Exception e1) {
-            log.warn("Times New Roman not found on Windows, trying alternatives...");
-
-            // Fallback fonts for different OS
-            String[] fallbackFonts = {
-                "c:/windows/fonts/timesbd.ttf",                     // Times New Roman Bold (Windows)
-                "/usr/share/fonts/truetype/liberation/LiberationSerif-Regular.ttf",  // Linux
-                "/System/Library/Fonts/Supplemental/Times New Roman.ttf",           // macOS
-                "c:/windows/fonts/arial.ttf"                        // Final fallback
-            };
-
-            for (String fontPath : fallbackFonts) {
-                try {
-                    return PdfFontFactory.createFont(
-                        fontPath,
-                        PdfEncodings.IDENTITY_H,
-                        PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED
-                    );
-                } catch (Exception e2) {
-                    // Continue to next font
-                }
+    public record RenderStats(int pages, int stationRows) {
+    }
+
+    /**
+     * Load Times New Roman font with Unicode support for Vietnamese (1 lần cho cả ứng dụng).
+     * null → không tìm thấy font nào, dùng Helvetica có sẵn.
+     */
+    private FontProgram vietnameseFontProgram() {
+        if (fontResolved) {
+            return vietnameseFontProgram;
+        }
+        synchronized (this) {
+            if (!fontResolved) {
+                vietnameseFontProgram = loadVietnameseFontProgram();
+                fontResolved = true;
+            }
+        }
+        return vietnameseFontProgram;
+    }
+
+    private FontProgram loadVietnameseFontProgram() {
+        String[] fontPaths = {
+            "c:/windows/fonts/times.ttf",                       // Times New Roman (Windows)
+            "c:/windows/fonts/timesbd.ttf",                     // Times New Roman Bold (Windows)
+            "/usr/share/fonts/truetype/liberation/LiberationSerif-Regular.ttf",  // Linux
+            "/System/Library/Fonts/Supplemental/Times New Roman.ttf",           // macOS
+            "c:/windows/fonts/arial.ttf"                        // Final fallback
+        };
+
+        for (String fontPath : fontPaths) {
+            try {
+                FontProgram program = FontProgramFactory.createFont(fontPath);
+                log.info("Loaded PDF report font: {}", fontPath);
+                return program;
+            } catch (Exception e) {
+                // Continue to next font
             }
+        }
+
+        // Last resort: use built-in Helvetica font
+        log.error("No suitable font found, using default Helvetica");
+        return null;
+    }
 
-            // Last resort: use built-in Helvetica font
-            log.error("No suitable font found, using default Helvetica");
+    private PdfFont createVietnameseFont() throws IOException {
+        FontProgram program = vietnameseFontProgram();
+        if (program == null) {
             return PdfFontFactory.createFont(
                 com.itextpdf.io.font.constants.StandardFonts.HELVETICA,
                 PdfEncodings.IDENTITY_H
             );
         }
+        return PdfFontFactory.createFont(program, PdfEncodings.IDENTITY_H,
+                PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
     }
 
     public byte[] exportRevenuePdf(RevenueReportResponse reportData) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writeRevenuePdf(reportData, baos);
+        return baos.toByteArray();
+    }
 
+    /**
+     * Render báo cáo doanh thu thẳng ra stream (file tạm của export job): trang đã xong được ghi ra ngay,
+     * không giữ cả PDF trong heap. Không đóng out.
+     */
+    public RenderStats writeRevenuePdf(RevenueReportResponse reportData, OutputStream out) {
         try {
-            // Load Vietnamese font (Times New Roman)
-            vietnameseFont = loadVietnameseFont();
+            PdfFont vietnameseFont = createVietnameseFont();
 
-            PdfWriter writer = new PdfWriter(baos);
+            PdfWriter writer = new PdfWriter(out);
+            writer.setCloseStream(false);
             PdfDocument pdf = new PdfDocument(writer);
             Document document = new Document(pdf);
 
@@ -136,11 +172,13 @@ public class PdfExportService {
             document.add(periodDetails);
 
             // Summary section
-            addSummarySection(document, reportData.getSummary());
+            addSummarySection(document, vietnameseFont, reportData.getSummary());
 
             // Station details table
+            int stationRows = 0;
             if (reportData.getStationDetails() != null && !reportData.getStationDetails().isEmpty()) {
-                addStationDetailsTable(document, reportData.getStationDetails());
+                addStationDetailsTable(document, vietnameseFont, reportData.getStationDetails());
+                stationRows = reportData.getStationDetails().size();
             }
 
             // Footer
@@ -162,18 +200,19 @@ public class PdfExportService {
                     .setMarginTop(10);
             document.add(systemFooter);
 
+            int pages = pdf.getNumberOfPages();
             document.close();
-            log.info("PDF report generated successfully with Vietnamese font");
+            log.info("PDF report generated successfully with Vietnamese font ({} pages)", pages);
+            return new RenderStats(pages, stationRows);
 
         } catch (Exception e) {
             log.error("Error generating PDF: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to generate PDF report: " + e.getMessage());
         }
-
-        return baos.toByteArray();
     }
 
-    private void addSummarySection(Document document, RevenueReportResponse.ReportSummary summary) {
+    private void addSummarySection(Document document, PdfFont vietnameseFont,
+                                   RevenueReportResponse.ReportSummary summary) {
         // Summary header
         Paragraph summaryHeader = new Paragraph("TỔNG QUAN")
                 .setFont(vietnameseFont)
@@ -189,25 +228,25 @@ public class PdfExportService {
                 .setMarginBottom(20);
 
         // Left column
-        summaryTable.addCell(createSummaryCell("Tổng doanh thu:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Tổng doanh thu:",
                 formatCurrency(summary.getTotalRevenue()) + " VNĐ", true));
-        summaryTable.addCell(createSummaryCell("Tổng số phiên sạc:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Tổng số phiên sạc:",
                 String.valueOf(summary.getTotalSessions()), false));
-        summaryTable.addCell(createSummaryCell("Số trạm có doanh thu:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Số trạm có doanh thu:",
                 String.valueOf(summary.getTotalStations()), false));
 
         // Right column
-        summaryTable.addCell(createSummaryCell("Doanh thu TB/trạm:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Doanh thu TB/trạm:",
                 formatCurrency(summary.getAverageRevenuePerStation()) + " VNĐ", false));
-        summaryTable.addCell(createSummaryCell("Doanh thu TB/phiên:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Doanh thu TB/phiên:",
                 formatCurrency(summary.getAverageRevenuePerSession()) + " VNĐ", false));
-        summaryTable.addCell(createSummaryCell("Trạm doanh thu cao nhất:",
+        summaryTable.addCell(createSummaryCell(vietnameseFont, "Trạm doanh thu cao nhất:",
                 summary.getTopStation() + " (" + formatCurrency(summary.getTopStationRevenue()) + " VNĐ)", false));
 
         document.add(summaryTable);
     }
 
-    private Cell createSummaryCell(String label, String value, boolean isHighlight) {
+    private Cell createSummaryCell(PdfFont vietnameseFont, String label, String value, boolean isHighlight) {
         Paragraph content = new Paragraph()
                 .add(new Paragraph(label).setFont(vietnameseFont).setBold().setFontSize(10))
                 .add(new Paragraph(value).setFont(vietnameseFont).setFontSize(12));
@@ -224,7 +263,8 @@ public class PdfExportService {
         return cell;
     }
 
-    private void addStationDetailsTable(Document document, List<StationRevenueResponse> stations) {
+    private void addStationDetailsTable(Document document, PdfFont vietnameseFont,
+                                        List<StationRevenueResponse> stations) {
         // Details header
         Paragraph detailsHeader = new Paragraph("CHI TIẾT TỪNG TRẠM SẠC")
                 .setFont(vietnameseFont)
@@ -234,32 +274,37 @@ public class PdfExportService {
                 .setMarginBottom(10);
         document.add(detailsHeader);
 
-        // Table with 5 columns
+        // Table with 5 columns (large table: các dòng đã flush được layout và ghi ra, không giữ lại)
         float[] columnWidths = {1f, 3f, 2.5f, 2f, 1.5f};
-        Table table = new Table(UnitValue.createPercentArray(columnWidths))
+        Table table = new Table(UnitValue.createPercentArray(columnWidths), true)
                 .setWidth(UnitValue.createPercentValue(100));
 
         // Table headers
-        table.addHeaderCell(createHeaderCell("STT"));
-        table.addHeaderCell(createHeaderCell("Tên trạm"));
-        table.addHeaderCell(createHeaderCell("Địa chỉ"));
-        table.addHeaderCell(createHeaderCell("Doanh thu (VNĐ)"));
-        table.addHeaderCell(createHeaderCell("Số phiên"));
+        table.addHeaderCell(createHeaderCell(vietnameseFont, "STT"));
+        table.addHeaderCell(createHeaderCell(vietnameseFont, "Tên trạm"));
+        table.addHeaderCell(createHeaderCell(vietnameseFont, "Địa chỉ"));
+        table.addHeaderCell(createHeaderCell(vietnameseFont, "Doanh thu (VNĐ)"));
+        table.addHeaderCell(createHeaderCell(vietnameseFont, "Số phiên"));
+
+        document.add(table);
 
         // Table data
         int index = 1;
         for (StationRevenueResponse station : stations) {
-            table.addCell(createDataCell(String.valueOf(index++), TextAlignment.CENTER));
-            table.addCell(createDataCell(station.getStationName(), TextAlignment.LEFT));
-            table.addCell(createDataCell(station.getAddress(), TextAlignment.LEFT));
-            table.addCell(createDataCell(formatCurrency(station.getTotalRevenue()), TextAlignment.RIGHT));
-            table.addCell(createDataCell(String.valueOf(station.getTotalSessions()), TextAlignment.CENTER));
+            table.addCell(createDataCell(vietnameseFont, String.valueOf(index++), TextAlignment.CENTER));
+            table.addCell(createDataCell(vietnameseFont, station.getStationName(), TextAlignment.LEFT));
+            table.addCell(createDataCell(vietnameseFont, station.getAddress(), TextAlignment.LEFT));
+            table.addCell(createDataCell(vietnameseFont, formatCurrency(station.getTotalRevenue()), TextAlignment.RIGHT));
+            table.addCell(createDataCell(vietnameseFont, String.valueOf(station.getTotalSessions()), TextAlignment.CENTER));
+            if ((index - 1) % TABLE_FLUSH_ROWS == 0) {
+                table.flush();
+            }
         }
 
-        document.add(table);
+        table.complete();
     }
 
-    private Cell createHeaderCell(String text) {
+    private Cell createHeaderCell(PdfFont vietnameseFont, String text) {
         return new Cell()
                 .add(new Paragraph(text).setFont(vietnameseFont).setBold().setFontSize(11))
                 .setBackgroundColor(HEADER_COLOR)
@@ -268,7 +313,7 @@ public class PdfExportService {
                 .setPadding(8);
     }
 
-    private Cell createDataCell(String text, TextAlignment alignment) {
+    private Cell createDataCell(PdfFont vietnameseFont, String text, TextAlignment alignment) {
         return new Cell()
                 .add(new Paragraph(text).setFont(vietnameseFont).setFontSize(10))
                 .setTextAlignment(alignment)
@@ -276,7 +321,7 @@ public class PdfExportService {
     }
 
     private String formatCurrency(float amount) {
-        return CURRENCY_FORMAT.format(amount);
+        return CURRENCY_FORMAT.get().format(amount);
     }
 }
 
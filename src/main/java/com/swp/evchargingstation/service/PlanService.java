@@ -209,7 +209,7 @@ public class PlanService {
 
         // Kiểm tra số dư và trừ tiền nếu cần
         if (amountToCharge > 0) {
-            double currentBalance = walletService.getBalance(driverId);
+            double currentBalance = walletService.getAvailableBalanceForUpdate(driverId);
             if (currentBalance < amountToCharge) {
                 log.warn("Driver {} has insufficient funds. Balance: {}, Required: {}",
                         driverId, currentBalance, amountToCharge);
@@ -314,7 +314,7 @@ public class PlanService {
 
         try {
             // Kiểm tra số dư ví
-            double currentBalance = walletService.getBalance(driver.getUserId());
+            double currentBalance = walletService.getAvailableBalanceForUpdate(driver.getUserId());
             if (currentBalance < monthlyFee) {
                 log.warn("Driver {} has insufficient funds for auto renew. Balance: {}, Required: {}",
                         driver.getUserId(), currentBalance, monthlyFee);
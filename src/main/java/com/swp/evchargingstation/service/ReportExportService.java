@@ -0,0 +1,236 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.dto.response.ReportExportJobResponse;
+import com.swp.evchargingstation.dto.response.RevenueReportResponse;
+import com.swp.evchargingstation.entity.ReportExportJob;
+import com.swp.evchargingstation.enums.ReportExportStatus;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.repository.ReportExportJobRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Xuất báo cáo PDF bất đồng bộ theo job.
+ *
+ * - submit trả về jobId ngay; worker pool giới hạn (reportExportExecutor) lấy số liệu và render
+ * - PDF được ghi thẳng ra file (không giữ cả file trong heap), tải về bằng sendfile / transferTo
+ * - Mỗi job ghi lại thời gian chờ, thời gian render, kích thước, số trang, throughput (bytes/s, dòng/s)
+ * - Job và file hết hạn sau report.export.retention-ms
+ *
+ * Nhiều node: trạng thái job nằm trong report_export_jobs nên node nào cũng trả lời được; file nằm trong
+ * report.export.dir, thư mục này phải là storage dùng chung (NFS / volume chung) giữa các node. Node không thấy
+ * file của job đã COMPLETED trả REPORT_EXPORT_NOT_READY thay vì 404.
+ */
+@Service
+@Slf4j
+public class ReportExportService {
+
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final PdfExportService pdfExportService;
+    private final ReportExportJobRepository reportExportJobRepository;
+    private final ThreadPoolTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final Path exportDir;
+    private final long retentionMs;
+
+    /**
+     * File PDF đã render xong của một job.
+     */
+    public record ExportFile(Path path, String fileName, long size) {
+    }
+
+    public ReportExportService(PdfExportService pdfExportService,
+                               ReportExportJobRepository reportExportJobRepository,
+                               @Qualifier("reportExportExecutor") ThreadPoolTaskExecutor executor,
+                               MeterRegistry meterRegistry,
+                               @Value("${report.export.dir:${java.io.tmpdir}/ev-reports}") String exportDir,
+                               @Value("${report.export.retention-ms:3600000}") long retentionMs) throws IOException {
+        this.pdfExportService = pdfExportService;
+        this.reportExportJobRepository = reportExportJobRepository;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.exportDir = Files.createDirectories(Path.of(exportDir));
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Xếp job render báo cáo. reportSupplier chạy trên worker (lấy số liệu cũng không chiếm thread request).
+     *
+     * @throws AppException REPORT_EXPORT_QUEUE_FULL nếu hàng đợi worker đã đầy
+     */
+    public ReportExportJobResponse submit(String reportType, String fileName,
+                                          Supplier<RevenueReportResponse> reportSupplier) {
+        ReportExportJob job = reportExportJobRepository.save(ReportExportJob.builder()
+                .reportType(reportType)
+                .fileName(fileName)
+                .status(ReportExportStatus.QUEUED)
+                .createdAt(LocalDateTime.now())
+                .build());
+        try {
+            executor.execute(() -> render(job, reportSupplier));
+        } catch (TaskRejectedException e) {
+            reportExportJobRepository.deleteById(job.getJobId());
+            log.warn("Report export queue full - rejected {} report {}", reportType, fileName);
+            throw new AppException(ErrorCode.REPORT_EXPORT_QUEUE_FULL);
+        }
+        log.info("Queued report export job {} ({}: {})", job.getJobId(), reportType, fileName);
+        return toResponse(job);
+    }
+
+    public ReportExportJobResponse getJob(String jobId) {
+        return toResponse(findJob(jobId));
+    }
+
+    /**
+     * @throws AppException REPORT_EXPORT_NOT_READY nếu job chưa render xong (hoặc lỗi)
+     */
+    public ExportFile getFile(String jobId) {
+        ReportExportJob job = findJob(jobId);
+        Path file = job.getStoredFile() != null ? exportDir.resolve(job.getStoredFile()) : null;
+        if (job.getStatus() != ReportExportStatus.COMPLETED || file == null || !Files.exists(file)) {
+            throw new AppException(ErrorCode.REPORT_EXPORT_NOT_READY);
+        }
+        return new ExportFile(file, job.getFileName(), job.getFileSizeBytes());
+    }
+
+    /**
+     * Xóa job (và file) đã kết thúc quá thời gian giữ. Chạy trên mọi node: xóa file / dòng đều idempotent.
+     */
+    @Scheduled(fixedDelayString = "${report.export.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(retentionMs));
+        List<ReportExportJob> expired = reportExportJobRepository.findExpired(cutoff);
+        for (ReportExportJob job : expired) {
+            deleteQuietly(job.getStoredFile() != null ? exportDir.resolve(job.getStoredFile()) : null);
+        }
+        if (!expired.isEmpty()) {
+            reportExportJobRepository.deleteAllInBatch(expired);
+            log.info("Purged {} expired report export jobs", expired.size());
+        }
+    }
+
+    private void render(ReportExportJob job, Supplier<RevenueReportResponse> reportSupplier) {
+        job.setStartedAt(LocalDateTime.now());
+        job.setStatus(ReportExportStatus.RUNNING);
+        reportExportJobRepository.save(job);
+        long startNanos = System.nanoTime();
+        Path file = null;
+        try {
+            RevenueReportResponse reportData = reportSupplier.get();
+
+            file = Files.createTempFile(exportDir, "report-" + job.getJobId() + "-", ".pdf");
+            PdfExportService.RenderStats stats;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), WRITE_BUFFER_BYTES)) {
+                stats = pdfExportService.writeRevenuePdf(reportData, out);
+            }
+
+            job.setRenderNanos(System.nanoTime() - startNanos);
+            job.setFileSizeBytes(Files.size(file));
+            job.setPages(stats.pages());
+            job.setStationRows(stats.stationRows());
+            job.setStoredFile(file.getFileName().toString());
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(ReportExportStatus.COMPLETED);
+            reportExportJobRepository.save(job);
+
+            Timer.builder("report.export.render")
+                    .tag("type", job.getReportType())
+                    .register(meterRegistry)
+                    .record(job.getRenderNanos(), TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("report.export.bytes")
+                    .tag("type", job.getReportType())
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .record(job.getFileSizeBytes());
+
+            log.info("Report export job {} completed: {} bytes, {} pages, {} rows in {} ms ({} B/s)",
+                    job.getJobId(), job.getFileSizeBytes(), job.getPages(), job.getStationRows(),
+                    TimeUnit.NANOSECONDS.toMillis(job.getRenderNanos()),
+                    Math.round(perSecond(job.getFileSizeBytes(), job.getRenderNanos())));
+        } catch (Exception e) {
+            deleteQuietly(file);
+            job.setRenderNanos(System.nanoTime() - startNanos);
+            job.setStoredFile(null);
+            job.setError(e.getMessage() != null && e.getMessage().length() > MAX_ERROR_LENGTH
+                    ? e.getMessage().substring(0, MAX_ERROR_LENGTH) : e.getMessage());
+            job.setFinishedAt(LocalDateTime.now());
+            job.setStatus(ReportExportStatus.FAILED);
+            log.error("Report export job {} failed: {}", job.getJobId(), e.getMessage(), e);
+            try {
+                reportExportJobRepository.save(job);
+            } catch (Exception saveError) {
+                // Job kẹt ở RUNNING sẽ bị purge sau retention-ms
+                log.error("Failed to record failure of report export job {}: {}", job.getJobId(), saveError.getMessage());
+            }
+        }
+    }
+
+    private ReportExportJob findJob(String jobId) {
+        return reportExportJobRepository.findById(jobId)
+                .orElseThrow(() -> new AppException(ErrorCode.REPORT_EXPORT_JOB_NOT_FOUND));
+    }
+
+    private ReportExportJobResponse toResponse(ReportExportJob job) {
+        ReportExportStatus status = job.getStatus();
+        boolean finished = status == ReportExportStatus.COMPLETED || status == ReportExportStatus.FAILED;
+        ReportExportJobResponse.ReportExportJobResponseBuilder builder = ReportExportJobResponse.builder()
+                .jobId(job.getJobId())
+                .reportType(job.getReportType())
+                .status(status)
+                .fileName(job.getFileName())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(finished ? job.getFinishedAt() : null)
+                .queueWaitMs(job.getStartedAt() != null
+                        ? Duration.between(job.getCreatedAt(), job.getStartedAt()).toMillis() : null)
+                .error(job.getError());
+
+        if (status == ReportExportStatus.COMPLETED) {
+            builder.downloadUrl("/api/revenues/reports/jobs/" + job.getJobId() + "/file")
+                    .renderMs(TimeUnit.NANOSECONDS.toMillis(job.getRenderNanos()))
+                    .fileSizeBytes(job.getFileSizeBytes())
+                    .pages(job.getPages())
+                    .stationRows(job.getStationRows())
+                    .bytesPerSecond(Math.round(perSecond(job.getFileSizeBytes(), job.getRenderNanos()) * 100.0) / 100.0)
+                    .rowsPerSecond(Math.round(perSecond(job.getStationRows(), job.getRenderNanos()) * 100.0) / 100.0);
+        }
+        return builder.build();
+    }
+
+    private static double perSecond(long amount, long nanos) {
+        return nanos > 0 ? amount * 1_000_000_000.0 / nanos : 0.0;
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete report export file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.swp.evchargingstation.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp.evchargingstation.entity.RevenueDaySnapshot;
+import com.swp.evchargingstation.repository.PaymentRepository;
+import com.swp.evchargingstation.repository.RevenueDaySnapshotRepository;
+import com.swp.evchargingstation.repository.StationHourlyRollupRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache doanh thu theo trạm × ngày — đơn vị để ghép mọi báo cáo doanh thu (ngày / tuần / tháng / năm / tùy chỉnh).
+ *
+ * - Ngày đã qua: tính 1 lần, lưu trong bảng revenue_day_snapshots (giữ qua restart, dùng chung giữa các instance);
+ *   bản trong bộ nhớ có TTL (closed-ttl-ms) để instance khác thấy được invalidate qua bảng snapshot
+ * - Hôm nay: giữ trong bộ nhớ với TTL ngắn, bị xóa khi có payment COMPLETED
+ * - Ngày thiếu được nạp bằng 1 query gộp theo trạm × ngày cho cả khoảng (rollup nếu đã phủ, không thì payments)
+ *
+ * Payment commit sau nửa đêm làm đổi doanh thu của ngày đã đóng: invalidate đánh dấu invalidated_at trên snapshot,
+ * bản tính bắt đầu trước thời điểm đó không được ghi vào (so sánh đồng hồ giữa các instance, cần NTP).
+ */
+@Service
+@Slf4j
+public class RevenueReportCache {
+
+    private final PaymentRepository paymentRepository;
+    private final StationHourlyRollupRepository stationHourlyRollupRepository;
+    private final RevenueDaySnapshotRepository revenueDaySnapshotRepository;
+    private final StationRollupService stationRollupService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final long openTtlMs;
+    private final long closedTtlMs;
+
+    private final Map<LocalDate, CachedDay> days = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate: kết quả đọc / tính trước một lần invalidate không được ghi vào cache
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Doanh thu đã thu của một trạm trong một ngày.
+     */
+    public record StationDayRevenue(String stationId, double revenue, int paymentCount) {
+    }
+
+    private record CachedDay(List<StationDayRevenue> stations, boolean closed, long expiresAtMs) {
+    }
+
+    public RevenueReportCache(PaymentRepository paymentRepository,
+                              StationHourlyRollupRepository stationHourlyRollupRepository,
+                              RevenueDaySnapshotRepository revenueDaySnapshotRepository,
+                              StationRollupService stationRollupService,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${analytics.revenue-cache.open-ttl-ms:30000}") long openTtlMs,
+                              @Value("${analytics.revenue-cache.closed-ttl-ms:300000}") long closedTtlMs) {
+        this.paymentRepository = paymentRepository;
+        this.stationHourlyRollupRepository = stationHourlyRollupRepository;
+        this.revenueDaySnapshotRepository = revenueDaySnapshotRepository;
+        this.stationRollupService = stationRollupService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.openTtlMs = openTtlMs;
+        this.closedTtlMs = closedTtlMs;
+    }
+
+    /**
+     * Doanh thu theo trạm của từng ngày trong [from, to). Ngày tương lai không có trong kết quả.
+     */
+    public Map<LocalDate, List<StationDayRevenue>> getDays(LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        LocalDate end = to.isAfter(today.plusDays(1)) ? today.plusDays(1) : to;
+        long nowMs = System.currentTimeMillis();
+
+        Map<LocalDate, List<StationDayRevenue>> result = new TreeMap<>();
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate day = from; day.isBefore(end); day = day.plusDays(1)) {
+            CachedDay cached = days.get(day);
+            if (isFresh(cached, day, today, nowMs)) {
+                result.put(day, cached.stations());
+            } else {
+                missing.add(day);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // Ngày đã qua: thử bảng snapshot trước
+        LocalDate firstMissing = missing.get(0);
+        LocalDate lastMissing = missing.get(missing.size() - 1);
+        if (firstMissing.isBefore(today)) {
+            long generation = invalidations.get();
+            for (RevenueDaySnapshot snapshot : revenueDaySnapshotRepository.findByDayBetweenAndInvalidatedAtIsNull(
+                    firstMissing, lastMissing.isBefore(today) ? lastMissing : today.minusDays(1))) {
+                List<StationDayRevenue> stations = fromPayload(snapshot.getPayload());
+                cacheIfNotInvalidated(snapshot.getDay(), new CachedDay(stations, true, nowMs + closedTtlMs), generation);
+                if (missing.remove(snapshot.getDay())) {
+                    result.put(snapshot.getDay(), stations);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            result.putAll(load(missing, today));
+        }
+        return result;
+    }
+
+    /**
+     * Có payment COMPLETED trong ngày → bỏ bản cache của ngày đó.
+     * Ngày đã đóng chỉ bị ảnh hưởng khi transaction thanh toán commit sau nửa đêm (hiếm): đánh dấu snapshot
+     * (instance khác bỏ bản trong bộ nhớ khi hết closed-ttl-ms và tính lại).
+     */
+    public void invalidate(LocalDate day) {
+        invalidations.incrementAndGet();
+        days.remove(day);
+        if (day.isBefore(LocalDate.now())) {
+            markSnapshotInvalidated(day, LocalDateTime.now());
+            log.info("Revenue of closed day {} changed after the day was closed - snapshot invalidated", day);
+        }
+    }
+
+    private static boolean isFresh(CachedDay cached, LocalDate day, LocalDate today, long nowMs) {
+        if (cached == null || cached.expiresAtMs() <= nowMs) {
+            return false;
+        }
+        // Bản tính lúc ngày còn mở phải tính lại 1 lần khi ngày đã đóng
+        return cached.closed() || day.equals(today);
+    }
+
+    /**
+     * Put rồi kiểm tra lại: invalidate chen vào giữa lúc đọc và lúc put (kể cả trước khi put) đều làm bản vừa put bị bỏ.
+     */
+    private boolean cacheIfNotInvalidated(LocalDate day, CachedDay cached, long generation) {
+        days.put(day, cached);
+        if (invalidations.get() != generation) {
+            days.remove(day, cached);
+            return false;
+        }
+        return true;
+    }
+
+    private Map<LocalDate, List<StationDayRevenue>> load(List<LocalDate> missing, LocalDate today) {
+        long generation = invalidations.get();
+        LocalDateTime loadStartedAt = LocalDateTime.now();
+        LocalDate from = missing.get(0);
+        LocalDate to = missing.get(missing.size() - 1).plusDays(1);
+
+        // Hôm nay luôn đọc payments (rollup của hôm nay trễ tới 1 chu kỳ flush); range 1 ngày dùng index paid_at
+        List<Object[]> rows = !to.isAfter(today) && stationRollupService.covers(from, to.minusDays(1))
+                ? stationHourlyRollupRepository.sumPaidRevenueByStationAndDay(from.atStartOfDay(), to.atStartOfDay())
+                : paymentRepository.findRevenueByStationAndDay(from.atStartOfDay(), to.atStartOfDay());
+
+        // [stationId, year, month, day, revenue, count]
+        Map<LocalDate, List<StationDayRevenue>> loaded = new TreeMap<>();
+        for (LocalDate day : missing) {
+            loaded.put(day, new ArrayList<>());
+        }
+        for (Object[] row : rows) {
+            LocalDate day = LocalDate.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue(),
+                    ((Number) row[3]).intValue());
+            List<StationDayRevenue> stations = loaded.get(day);
+            if (stations != null) {
+                stations.add(new StationDayRevenue((String) row[0], ((Number) row[4]).doubleValue(),
+                        ((Number) row[5]).intValue()));
+            }
+        }
+
+        long nowMs = System.currentTimeMillis();
+        int persisted = 0;
+        for (Map.Entry<LocalDate, List<StationDayRevenue>> entry : loaded.entrySet()) {
+            List<StationDayRevenue> stations = List.copyOf(entry.getValue());
+            entry.setValue(stations);
+            boolean closed = entry.getKey().isBefore(today);
+            CachedDay cached = new CachedDay(stations, closed, nowMs + (closed ? closedTtlMs : openTtlMs));
+            // Payment commit trong lúc query: bản vừa tính có thể thiếu payment đó, chỉ trả cho lần gọi này
+            if (cacheIfNotInvalidated(entry.getKey(), cached, generation) && closed
+                    && persistSnapshot(entry.getKey(), stations, loadStartedAt)) {
+                persisted++;
+            }
+        }
+        log.debug("Loaded revenue of {} days [{} - {}), persisted {} snapshots", missing.size(), from, to, persisted);
+        return loaded;
+    }
+
+    /**
+     * Ghi snapshot của ngày đã đóng; bỏ qua nếu ngày bị invalidate (ở bất kỳ instance nào) sau loadStartedAt.
+     */
+    private boolean persistSnapshot(LocalDate day, List<StationDayRevenue> stations, LocalDateTime loadStartedAt) {
+        String payload = toPayload(stations);
+        try {
+            try {
+                transactionTemplate.execute(status ->
+                        revenueDaySnapshotRepository.insertSnapshot(day, payload, loadStartedAt));
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // Đã có row (snapshot cũ hoặc tombstone): ghi đè có điều kiện
+                Integer replaced = transactionTemplate.execute(status ->
+                        revenueDaySnapshotRepository.replaceIfNotInvalidatedSince(day, payload, loadStartedAt));
+                return replaced != null && replaced > 0;
+            }
+        } catch (Exception e) {
+            // Vẫn còn bản trong bộ nhớ; lần sau sẽ tính lại
+            log.warn("Failed to persist revenue day snapshot {}: {}", day, e.getMessage());
+            return false;
+        }
+    }
+
+    private void markSnapshotInvalidated(LocalDate day, LocalDateTime invalidatedAt) {
+        try {
+            Integer marked = transactionTemplate.execute(status ->
+                    revenueDaySnapshotRepository.markInvalidated(day, invalidatedAt));
+            if (marked == null || marked == 0) {
+                try {
+                    transactionTemplate.execute(status ->
+                            revenueDaySnapshotRepository.insertTombstone(day, invalidatedAt));
+                } catch (DataIntegrityViolationException e) {
+                    // Instance khác vừa ghi snapshot giữa 2 câu lệnh
+                    transactionTemplate.execute(status ->
+                            revenueDaySnapshotRepository.markInvalidated(day, invalidatedAt));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to invalidate revenue day snapshot {}: {}", day, e.getMessage(), e);
+        }
+    }
+
+    private String toPayload(List<StationDayRevenue> stations) {
+        try {
+            return objectMapper.writeValueAsString(stations);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize revenue day snapshot", e);
+        }
+    }
+
+    private List<StationDayRevenue> fromPayload(String payload) {
+        try {
+            return List.copyOf(objectMapper.readValue(payload, new TypeReference<List<StationDayRevenue>>() {
+            }));
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read revenue day snapshot", e);
+        }
+    }
+}
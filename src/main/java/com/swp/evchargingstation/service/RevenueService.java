@@ -2,19 +2,24 @@ package com.swp.evchargingstation.service;
 
 import com.swp.evchargingstation.dto.response.RevenueReportResponse;
 import com.swp.evchargingstation.dto.response.StationRevenueResponse;
-import com.swp.evchargingstation.repository.PaymentRepository;
+import com.swp.evchargingstation.repository.StationRepository;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.WeekFields;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 
 @Service
 @RequiredArgsConstructor
@@ -22,7 +27,8 @@ import java.util.Comparator;
 @Slf4j
 public class RevenueService {
 
-    PaymentRepository paymentRepository;
+    RevenueReportCache revenueReportCache;
+    StationRepository stationRepository;
 
     /**
      * Lấy thống kê doanh thu theo ngày của từng trạm sạc
@@ -42,22 +48,10 @@ public class RevenueService {
 
         log.info("Fetching revenue for date: {}-{}-{}", year, month, day);
 
-        List<Object[]> results = paymentRepository.findDailyRevenueByStation(year, month, day);
-        List<StationRevenueResponse> responses = new ArrayList<>();
-
-        for (Object[] result : results) {
-            StationRevenueResponse response = StationRevenueResponse.builder()
-                    .stationId((String) result[0])
-                    .stationName((String) result[1])
-                    .address((String) result[2])
-                    .day((Integer) result[3])
-                    .month((Integer) result[4])
-                    .year((Integer) result[5])
-                    .totalRevenue(((Number) result[6]).floatValue())
-                    .totalSessions(((Number) result[7]).intValue())
-                    .build();
-            responses.add(response);
-        }
+        LocalDate date = LocalDate.of(year, month, day);
+        int d = day, m = month, y = year;
+        List<StationRevenueResponse> responses = revenueByStation(date, date.plusDays(1),
+                builder -> builder.day(d).month(m).year(y));
 
         log.info("Found {} stations with revenue for date {}-{}-{}", responses.size(), year, month, day);
 
@@ -70,28 +64,22 @@ public class RevenueService {
             LocalDate now = LocalDate.now();
             year = now.getYear();
             // Tính số tuần trong năm (mode 1: Thứ 2 là ngày đầu tuần)
-            week = now.get(java.time.temporal.WeekFields.ISO.weekOfYear());
+            week = now.get(WeekFields.ISO.weekOfYear());
         }
 
         log.info("Fetching revenue for year: {}, week: {}", year, week);
 
-        List<Object[]> results = paymentRepository.findWeeklyRevenueByStation(year, week);
-        List<StationRevenueResponse> responses = new ArrayList<>();
+        // Cùng quy ước với WEEK(paid_at, 1) trước đây: tuần bắt đầu Thứ 2, chỉ tính các ngày thuộc năm
+        LocalDate weekStart = LocalDate.of(year, 1, 1)
+                .with(WeekFields.ISO.weekOfYear(), week)
+                .with(DayOfWeek.MONDAY);
+        LocalDate from = weekStart.getYear() < year ? LocalDate.of(year, 1, 1) : weekStart;
+        LocalDate to = weekStart.plusDays(7).getYear() > year ? LocalDate.of(year + 1, 1, 1) : weekStart.plusDays(7);
 
-        for (Object[] result : results) {
-            // Native query returns: station_id, name, address, week, year, sum, count
-            // Need to handle potential type differences from native query
-            StationRevenueResponse response = StationRevenueResponse.builder()
-                    .stationId((String) result[0])
-                    .stationName((String) result[1])
-                    .address((String) result[2])
-                    .week(((Number) result[3]).intValue())      // ← Cast to Number first
-                    .year(((Number) result[4]).intValue())      // ← Cast to Number first
-                    .totalRevenue(((Number) result[5]).floatValue())
-                    .totalSessions(((Number) result[6]).intValue())
-                    .build();
-            responses.add(response);
-        }
+        int w = week, y = year;
+        List<StationRevenueResponse> responses = from.isBefore(to)
+                ? revenueByStation(from, to, builder -> builder.week(w).year(y))
+                : new ArrayList<>();
 
         log.info("Found {} stations with revenue for week {} of year {}", responses.size(), week, year);
 
@@ -108,23 +96,9 @@ public class RevenueService {
 
         log.info("Fetching revenue for year: {}, month: {}", year, month);
 
-        List<Object[]> results = paymentRepository.findMonthlyRevenueByStation(year, month);
-        List<StationRevenueResponse> responses = new ArrayList<>();
-
-        for (Object[] result : results) {
-            StationRevenueResponse response = StationRevenueResponse.builder()
-                    .stationId((String) result[0])
-                    .stationName((String) result[1])
-                    .address((String) result[2])
-                    .month((Integer) result[3])
-                    .year((Integer) result[4])
-                    .totalRevenue(((Number) result[5]).floatValue())
-                    .totalSessions(((Number) result[6]).intValue())
-                    .build();
-            responses.add(response);
-        }
-
-        return responses;
+        LocalDate monthStart = LocalDate.of(year, month, 1);
+        int m = month, y = year;
+        return revenueByStation(monthStart, monthStart.plusMonths(1), builder -> builder.month(m).year(y));
     }
 
     public List<StationRevenueResponse> getYearlyRevenue(Integer year) {
@@ -135,20 +109,22 @@ public class RevenueService {
 
         log.info("Fetching revenue for year: {}", year);
 
-        List<Object[]> results = paymentRepository.findYearlyRevenueByStation(year);
-        List<StationRevenueResponse> responses = new ArrayList<>();
+        // 1 lần lấy cả năm theo ngày (từ cache), gộp theo tháng
+        LocalDate yearStart = LocalDate.of(year, 1, 1);
+        Map<LocalDate, List<RevenueReportCache.StationDayRevenue>> days =
+                revenueReportCache.getDays(yearStart, yearStart.plusYears(1));
+        List<Object[]> stations = findStationsOrderedByName();
 
-        for (Object[] result : results) {
-            StationRevenueResponse response = StationRevenueResponse.builder()
-                    .stationId((String) result[0])
-                    .stationName((String) result[1])
-                    .address((String) result[2])
-                    .month((Integer) result[3])
-                    .year((Integer) result[4])
-                    .totalRevenue(((Number) result[5]).floatValue())
-                    .totalSessions(((Number) result[6]).intValue())
-                    .build();
-            responses.add(response);
+        List<StationRevenueResponse> responses = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            Map<String, double[]> totals = new HashMap<>();
+            for (Map.Entry<LocalDate, List<RevenueReportCache.StationDayRevenue>> entry : days.entrySet()) {
+                if (entry.getKey().getMonthValue() == month) {
+                    addTo(totals, entry.getValue());
+                }
+            }
+            int m = month, y = year;
+            responses.addAll(toResponses(totals, stations, builder -> builder.month(m).year(y)));
         }
 
         return responses;
@@ -210,30 +186,69 @@ public class RevenueService {
     private List<StationRevenueResponse> getCustomRangeRevenue(LocalDate startDate, LocalDate endDate) {
         log.info("Fetching revenue from {} to {}", startDate, endDate);
 
-        // Tạo query tùy chỉnh để lấy dữ liệu
-        List<Object[]> results = paymentRepository.findCustomRangeRevenueByStation(
-                startDate.atStartOfDay(),
-                endDate.atTime(23, 59, 59)
-        );
+        // Ghép từ các ngày đã cache, không query lại cả khoảng
+        List<StationRevenueResponse> responses = revenueByStation(startDate, endDate.plusDays(1),
+                UnaryOperator.identity());
 
-        List<StationRevenueResponse> responses = new ArrayList<>();
+        log.info("Found {} stations with revenue in custom range", responses.size());
 
-        for (Object[] result : results) {
-            StationRevenueResponse response = StationRevenueResponse.builder()
-                    .stationId((String) result[0])
-                    .stationName((String) result[1])
-                    .address((String) result[2])
-                    .totalRevenue(((Number) result[3]).floatValue())
-                    .totalSessions(((Number) result[4]).intValue())
-                    .build();
-            responses.add(response);
+        return responses;
+    }
+
+    /**
+     * Doanh thu theo trạm của các ngày trong [from, to), ghép từ cache theo ngày.
+     * period gắn ngày / tuần / tháng / năm của báo cáo vào từng dòng.
+     */
+    private List<StationRevenueResponse> revenueByStation(
+            LocalDate from, LocalDate to,
+            UnaryOperator<StationRevenueResponse.StationRevenueResponseBuilder> period) {
+        Map<String, double[]> totals = new HashMap<>();
+        for (List<RevenueReportCache.StationDayRevenue> stations : revenueReportCache.getDays(from, to).values()) {
+            addTo(totals, stations);
         }
+        return toResponses(totals, findStationsOrderedByName(), period);
+    }
 
-        log.info("Found {} stations with revenue in custom range", responses.size());
+    // totals: stationId → [doanh thu, số payment]
+    private static void addTo(Map<String, double[]> totals, List<RevenueReportCache.StationDayRevenue> stations) {
+        for (RevenueReportCache.StationDayRevenue station : stations) {
+            double[] total = totals.computeIfAbsent(station.stationId(), id -> new double[2]);
+            total[0] += station.revenue();
+            total[1] += station.paymentCount();
+        }
+    }
 
+    /**
+     * Tên / địa chỉ lấy theo trạm hiện tại (cache chỉ giữ số liệu), thứ tự theo tên trạm; bỏ trạm không có doanh thu.
+     */
+    private static List<StationRevenueResponse> toResponses(
+            Map<String, double[]> totals, List<Object[]> stations,
+            UnaryOperator<StationRevenueResponse.StationRevenueResponseBuilder> period) {
+        List<StationRevenueResponse> responses = new ArrayList<>();
+        for (Object[] station : stations) {
+            double[] total = totals.get((String) station[0]);
+            if (total == null || total[1] == 0) {
+                continue;
+            }
+            responses.add(period.apply(StationRevenueResponse.builder()
+                            .stationId((String) station[0])
+                            .stationName((String) station[1])
+                            .address((String) station[2])
+                            .totalRevenue((float) total[0])
+                            .totalSessions((int) total[1]))
+                    .build());
+        }
         return responses;
     }
 
+    // [stationId, name, address, latitude, longitude, status]
+    private List<Object[]> findStationsOrderedByName() {
+        List<Object[]> stations = new ArrayList<>(stationRepository.findAllLocations());
+        stations.sort(Comparator.comparing(station -> (String) station[1],
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return stations;
+    }
+
     /**
      * Xây dựng response báo cáo với summary statistics
      */
@@ -0,0 +1,248 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.SimulatorNode;
+import com.swp.evchargingstation.entity.SimulatorShardLease;
+import com.swp.evchargingstation.event.simulator.ShardOwnershipChangedEvent;
+import com.swp.evchargingstation.repository.SimulatorNodeRepository;
+import com.swp.evchargingstation.repository.SimulatorShardLeaseRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Phân chia charging simulator cho nhiều instance (partitioned mode).
+ *
+ * - Trụ sạc được chia vào shardCount shard theo hash(pointId)
+ * - Mỗi node claim shard qua lease trong DB (simulator_shard_leases), gia hạn bằng heartbeat
+ * - Node chết → lease hết hạn → node khác claim lại
+ * - Node mới join → các node cũ thấy số node tăng, trả bớt shard vượt quá phần chia đều
+ *
+ * Khi tắt (simulator.sharding.enabled=false, mặc định) node sở hữu tất cả session như chạy đơn lẻ.
+ */
+@Service
+@Slf4j
+public class SimulatorShardCoordinator {
+
+    private static final int LEADER_SHARD = 0;
+
+    private final SimulatorShardLeaseRepository leaseRepository;
+    private final SimulatorNodeRepository nodeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int shardCount;
+    private final long leaseTtlSeconds;
+    private final String nodeId;
+
+    // Tập shard đang sở hữu (immutable, thay thế nguyên khối mỗi heartbeat)
+    private volatile Set<Integer> ownedShards = Set.of();
+
+    public SimulatorShardCoordinator(SimulatorShardLeaseRepository leaseRepository,
+                                     SimulatorNodeRepository nodeRepository,
+                                     ApplicationEventPublisher eventPublisher,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${simulator.sharding.enabled:false}") boolean enabled,
+                                     @Value("${simulator.sharding.shard-count:64}") int shardCount,
+                                     @Value("${simulator.sharding.lease-ttl-seconds:15}") long leaseTtlSeconds,
+                                     @Value("${simulator.sharding.node-id:}") String nodeId) {
+        this.leaseRepository = leaseRepository;
+        this.nodeRepository = nodeRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.shardCount = shardCount;
+        this.leaseTtlSeconds = leaseTtlSeconds;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? generateNodeId() : nodeId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<Integer> getOwnedShards() {
+        return ownedShards;
+    }
+
+    public int shardOf(String pointId) {
+        return Math.floorMod(pointId.hashCode(), shardCount);
+    }
+
+    /**
+     * Node này có được tick session tại trụ pointId không.
+     */
+    public boolean owns(String pointId) {
+        if (!enabled) {
+            return true;
+        }
+        return pointId != null && ownedShards.contains(shardOf(pointId));
+    }
+
+    /**
+     * Node giữ lease shard LEADER_SHARD làm leader cho các job chỉ được chạy trên 1 node
+     * (vd sweep geocoding, để cả cluster chung 1 giới hạn gọi provider).
+     */
+    public boolean isLeader() {
+        return !enabled || ownedShards.contains(LEADER_SHARD);
+    }
+
+    /**
+     * Tạo đủ shardCount row lease (idempotent) và claim shard lần đầu.
+     * Chạy trước live state store load session (@Order).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<Integer> existing = new HashSet<>(leaseRepository.findAllShardIds());
+            List<SimulatorShardLease> missing = new ArrayList<>();
+            for (int shardId = 0; shardId < shardCount; shardId++) {
+                if (!existing.contains(shardId)) {
+                    missing.add(SimulatorShardLease.builder().shardId(shardId).build());
+                }
+            }
+            if (!missing.isEmpty()) {
+                leaseRepository.saveAll(missing);
+                log.info("Created {} simulator shard lease rows", missing.size());
+            }
+        });
+
+        log.info("Simulator sharding enabled - node: {}, shards: {}, lease TTL: {}s", nodeId, shardCount, leaseTtlSeconds);
+        heartbeat();
+    }
+
+    /**
+     * HEARTBEAT: Gia hạn lease, rebalance về phần chia đều ceil(shardCount / liveNodes).
+     */
+    @Scheduled(fixedDelayString = "${simulator.sharding.heartbeat-interval-ms:5000}",
+               initialDelayString = "${simulator.sharding.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> rebalance());
+        } catch (Exception e) {
+            log.error("Simulator shard heartbeat failed for node {}: {}", nodeId, e.getMessage(), e);
+        }
+    }
+
+    private void rebalance() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusSeconds(leaseTtlSeconds);
+
+        SimulatorNode node = nodeRepository.findById(nodeId)
+                .orElseGet(() -> SimulatorNode.builder().nodeId(nodeId).startedAt(now).build());
+        node.setHeartbeatAt(now);
+        nodeRepository.save(node);
+        nodeRepository.deleteDead(now.minusSeconds(leaseTtlSeconds * 4));
+
+        leaseRepository.renewLeases(nodeId, now, expiresAt);
+        List<Integer> owned = new ArrayList<>(leaseRepository.findOwnedShardIds(nodeId, now));
+
+        // Lease hết hạn mà không kịp gia hạn → có thể đã thuộc node khác
+        Set<Integer> expired = new HashSet<>(ownedShards);
+        owned.forEach(expired::remove);
+        if (!expired.isEmpty()) {
+            log.warn("Node {} lost expired shard leases {}", nodeId, expired);
+            eventPublisher.publishEvent(new ShardOwnershipChangedEvent(this, Set.of(), Set.copyOf(expired), false));
+        }
+
+        long liveNodes = Math.max(1, nodeRepository.countAlive(now.minusSeconds(leaseTtlSeconds)));
+        int fairShare = (int) Math.ceil((double) shardCount / liveNodes);
+
+        Set<Integer> released = new HashSet<>();
+        if (owned.size() > fairShare) {
+            // Trả các shard vượt phần chia đều (flush session trước rồi mới release)
+            List<Integer> excess = owned.subList(fairShare, owned.size());
+            released.addAll(excess);
+            eventPublisher.publishEvent(new ShardOwnershipChangedEvent(this, Set.of(), Set.copyOf(released), true));
+            for (Integer shardId : released) {
+                leaseRepository.release(shardId, nodeId);
+            }
+            owned = new ArrayList<>(owned.subList(0, fairShare));
+        }
+
+        Set<Integer> gained = new HashSet<>();
+        if (owned.size() < fairShare) {
+            for (Integer shardId : leaseRepository.findClaimableShardIds(now)) {
+                if (owned.size() >= fairShare) {
+                    break;
+                }
+                if (leaseRepository.claim(shardId, nodeId, now, expiresAt) == 1) {
+                    owned.add(shardId);
+                    gained.add(shardId);
+                }
+            }
+        }
+
+        // Shard được claim lại sau khi lease của chính node này hết hạn cũng cần load lại session
+        for (Integer shardId : owned) {
+            if (!ownedShards.contains(shardId) || expired.contains(shardId)) {
+                gained.add(shardId);
+            }
+        }
+
+        ownedShards = Set.copyOf(owned);
+
+        if (!gained.isEmpty()) {
+            eventPublisher.publishEvent(new ShardOwnershipChangedEvent(this, Set.copyOf(gained), Set.of(), true));
+        }
+        if (!gained.isEmpty() || !released.isEmpty()) {
+            log.info("Node {} rebalanced shards - live nodes: {}, fair share: {}, owned: {}, gained: {}, released: {}",
+                    nodeId, liveNodes, fairShare, ownedShards.size(), gained.size(), released.size());
+        }
+    }
+
+    /**
+     * Shutdown: flush session và trả toàn bộ shard để node khác nhận ngay, không đợi lease hết hạn.
+     */
+    @PreDestroy
+    public void releaseAll() {
+        if (!enabled || ownedShards.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Integer> released = ownedShards;
+                eventPublisher.publishEvent(new ShardOwnershipChangedEvent(this, Set.of(), released, true));
+                released.forEach(shardId -> leaseRepository.release(shardId, nodeId));
+                nodeRepository.deleteById(nodeId);
+                ownedShards = Set.of();
+            });
+            log.info("Node {} released all simulator shards on shutdown", nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to release simulator shards on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private static String generateNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -9,6 +9,7 @@ import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.mapper.StaffDashboardMapper;
 import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -51,24 +52,18 @@ public class StaffDashboardService {
             throw new AppException(ErrorCode.STATION_NOT_FOUND);
         }
 
-        // Lấy thống kê hôm nay
+        // Lấy thống kê hôm nay: 1 query gộp trên dữ liệu gốc, không đọc station_hourly_rollups vì
+        // bucket của hôm nay chỉ được tính lại sau mỗi lần flush (trễ tới analytics.rollup.flush-interval-ms)
+        // trong khi dashboard của staff cần số liệu tức thời, và rollup không lưu thời lượng phiên để tính trung bình
         LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
         LocalDateTime endOfDay = LocalDate.now().atTime(LocalTime.MAX);
 
-        List<ChargingSession> todaySessions = chargingSessionRepository
-                .findByStationIdAndDateRange(station.getStationId(), startOfDay, endOfDay);
+        Object[] today = chargingSessionRepository
+                .summarizeByStationIdAndDateRange(station.getStationId(), startOfDay, endOfDay).get(0);
 
-        int todaySessionsCount = todaySessions.size();
-        double todayRevenue = todaySessions.stream()
-                .mapToDouble(ChargingSession::getCostTotal)
-                .sum();
-
-        // Tính thời gian trung bình
-        Double avgDuration = todaySessions.stream()
-                .filter(s -> s.getDurationMin() > 0)
-                .mapToDouble(ChargingSession::getDurationMin)
-                .average()
-                .orElse(0.0);
+        int todaySessionsCount = ((Number) today[0]).intValue();
+        double todayRevenue = ((Number) today[1]).doubleValue();
+        double avgDuration = today[2] != null ? ((Number) today[2]).doubleValue() : 0.0;
 
         // Thống kê charging points
         List<ChargingPoint> chargingPoints = chargingPointRepository
@@ -122,9 +117,9 @@ public class StaffDashboardService {
     }
 
     /**
-     * Lấy danh sách giao dịch (sessions) của station
+     * Lấy danh sách giao dịch (sessions) của station theo trang (mới nhất trước)
      */
-    public List<StaffTransactionResponse> getStaffTransactions() {
+    public CursorPageResponse<StaffTransactionResponse> getStaffTransactions(Integer limit, String after) {
         String staffUserId = getCurrentStaffUserId();
         Staff staff = staffRepository.findById(staffUserId)
                 .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND));
@@ -134,15 +129,20 @@ public class StaffDashboardService {
             throw new AppException(ErrorCode.STATION_NOT_FOUND);
         }
 
-        List<ChargingSession> sessions = chargingSessionRepository
-                .findByStationIdOrderByStartTimeDesc(station.getStationId());
-
-        return sessions.stream().map(session -> {
-            StaffTransactionResponse response = staffDashboardMapper.toStaffTransactionResponse(session);
-            // Set isPaid manually
-            response.setPaid(paymentRepository.existsByChargingSession_SessionId(session.getSessionId()));
-            return response;
-        }).collect(Collectors.toList());
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<ChargingSession> sessions = chargingSessionRepository.findPageByStationId(station.getStationId(),
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+
+        return KeysetCursor.page(sessions, pageSize,
+                session -> new KeysetCursor(session.getStartTime(), session.getSessionId()),
+                session -> {
+                    StaffTransactionResponse response = staffDashboardMapper.toStaffTransactionResponse(session);
+                    // Set isPaid manually
+                    response.setPaid(paymentRepository.existsByChargingSession_SessionId(session.getSessionId()));
+                    return response;
+                });
     }
 
     /**
@@ -0,0 +1,384 @@
+package com.swp.evchargingstation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp.evchargingstation.dto.request.StationCreationRequest;
+import com.swp.evchargingstation.dto.response.StationImportResponse;
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.StationStatus;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.repository.StationImportBatchRepository;
+import com.swp.evchargingstation.repository.StationImportBatchRepository.ChargingPointRow;
+import com.swp.evchargingstation.repository.StationImportBatchRepository.StationRow;
+import com.swp.evchargingstation.util.CsvRecordReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Import trạm sạc và trụ sạc hàng loạt từ CSV / NDJSON (mỗi dòng một trạm, cùng field với StationCreationRequest).
+ *
+ * - Đọc stream từng dòng, chỉ giữ trong bộ nhớ chunk hiện tại và danh sách lỗi (có giới hạn)
+ * - Mỗi dòng được validate giống POST /api/stations; dòng lỗi được bỏ qua và ghi vào báo cáo
+ * - Mỗi chunk ghi trong 1 transaction bằng JDBC batch insert (StationImportBatchRepository);
+ *   chunk lỗi không ảnh hưởng các chunk đã commit
+ * - Trạm không có tọa độ được xếp hàng geocoding sau khi chunk commit
+ * - Kết thúc: đồng bộ StationReadModel và StationSpatialIndex một lần thay vì publish event cho từng trạm / trụ
+ */
+@Service
+@Slf4j
+public class StationImportService {
+
+    static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    private static final String NAME = "name";
+    private static final String ADDRESS = "address";
+    private static final String NUMBER_OF_CHARGING_POINTS = "numberofchargingpoints";
+    private static final String POWER_OUTPUT = "poweroutput";
+    private static final String OPERATOR_NAME = "operatorname";
+    private static final String CONTACT_PHONE = "contactphone";
+    private static final String LATITUDE = "latitude";
+    private static final String LONGITUDE = "longitude";
+    private static final List<String> REQUIRED_COLUMNS =
+            List.of(NAME, ADDRESS, NUMBER_OF_CHARGING_POINTS, POWER_OUTPUT);
+
+    private final StationImportBatchRepository stationImportBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final GeocodingService geocodingService;
+    private final StationReadModel stationReadModel;
+    private final StationSpatialIndex stationSpatialIndex;
+    private final ObjectMapper objectMapper;
+
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int maxPointsPerStation;
+
+    public StationImportService(StationImportBatchRepository stationImportBatchRepository,
+                                TransactionTemplate transactionTemplate,
+                                Validator validator,
+                                GeocodingService geocodingService,
+                                StationReadModel stationReadModel,
+                                StationSpatialIndex stationSpatialIndex,
+                                ObjectMapper objectMapper,
+                                @Value("${station.import.chunk-size:500}") int chunkSize,
+                                @Value("${station.import.max-errors:1000}") int maxErrors,
+                                @Value("${station.import.max-points-per-station:100}") int maxPointsPerStation) {
+        this.stationImportBatchRepository = stationImportBatchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.geocodingService = geocodingService;
+        this.stationReadModel = stationReadModel;
+        this.stationSpatialIndex = stationSpatialIndex;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.maxPointsPerStation = maxPointsPerStation;
+    }
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * @throws AppException nếu Content-Type không phải CSV / NDJSON
+         */
+        public static Format fromContentType(String contentType) {
+            String type = contentType != null ? contentType.toLowerCase(Locale.ROOT) : "";
+            if (type.startsWith("text/csv")) {
+                return CSV;
+            }
+            if (type.startsWith(NDJSON_MEDIA_TYPE) || type.startsWith("application/jsonl")) {
+                return NDJSON;
+            }
+            throw new AppException(ErrorCode.STATION_IMPORT_UNSUPPORTED_FORMAT);
+        }
+    }
+
+    /**
+     * Import trạm từ stream.
+     * @param input nội dung file (UTF-8)
+     * @param format CSV (dòng đầu là header, thứ tự cột tùy ý) hoặc NDJSON
+     * @return báo cáo số trạm / trụ đã import và lỗi theo từng dòng
+     * @throws AppException nếu header CSV thiếu cột bắt buộc
+     */
+    public StationImportResponse importStations(InputStream input, Format format) {
+        long startedAt = System.currentTimeMillis();
+        ImportRun run = new ImportRun();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            if (format == Format.CSV) {
+                readCsv(reader, run);
+            } else {
+                readNdjson(reader, run);
+            }
+        } catch (IOException e) {
+            // Stream hỏng giữa chừng: giữ các chunk đã ghi, báo lỗi ở dòng đang đọc
+            log.warn("Station import stopped while reading input: {}", e.getMessage());
+            run.reject(run.lastLine + 1, null, ErrorCode.STATION_IMPORT_ROW_INVALID, e.getMessage());
+        }
+        flush(run);
+
+        if (run.importedStations > 0) {
+            stationReadModel.reconcile();
+            stationSpatialIndex.rebuild();
+        }
+
+        long durationMs = System.currentTimeMillis() - startedAt;
+        log.info("Station import finished: {} rows, {} stations / {} charging points imported, {} failed, " +
+                        "{} queued for geocoding ({} deferred) in {} ms",
+                run.totalRows, run.importedStations, run.importedChargingPoints, run.failedRows,
+                run.geocodingQueued, run.geocodingDeferred, durationMs);
+
+        return StationImportResponse.builder()
+                .totalRows(run.totalRows)
+                .importedStations(run.importedStations)
+                .importedChargingPoints(run.importedChargingPoints)
+                .failedRows(run.failedRows)
+                .geocodingQueued(run.geocodingQueued)
+                .geocodingDeferred(run.geocodingDeferred)
+                .errorsTruncated(run.errorsTruncated)
+                .durationMs(durationMs)
+                .errors(run.errors)
+                .build();
+    }
+
+    private void readCsv(BufferedReader reader, ImportRun run) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader, ',');
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.keySet().containsAll(REQUIRED_COLUMNS)) {
+            throw new AppException(ErrorCode.STATION_IMPORT_HEADER_INVALID);
+        }
+
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            long line = csv.getRecordLineNumber();
+            run.lastLine = line;
+            run.totalRows++;
+
+            String name = column(record, columns, NAME);
+            StationCreationRequest request = new StationCreationRequest();
+            try {
+                request.setName(name);
+                request.setAddress(column(record, columns, ADDRESS));
+                request.setOperatorName(column(record, columns, OPERATOR_NAME));
+                request.setContactPhone(column(record, columns, CONTACT_PHONE));
+                request.setNumberOfChargingPoints(parse(record, columns, NUMBER_OF_CHARGING_POINTS, Integer::valueOf));
+                request.setPowerOutput(parse(record, columns, POWER_OUTPUT,
+                        value -> ChargingPower.valueOf(value.toUpperCase(Locale.ROOT))));
+                request.setLatitude(parse(record, columns, LATITUDE, Double::valueOf));
+                request.setLongitude(parse(record, columns, LONGITUDE, Double::valueOf));
+            } catch (IllegalArgumentException e) {
+                run.reject(line, name, ErrorCode.STATION_IMPORT_ROW_INVALID, e.getMessage());
+                continue;
+            }
+            accept(run, line, request);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        String text;
+        long line = 0;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            run.lastLine = line;
+            run.totalRows++;
+
+            StationCreationRequest request;
+            try {
+                request = objectMapper.readValue(text, StationCreationRequest.class);
+            } catch (JsonProcessingException e) {
+                run.reject(line, null, ErrorCode.STATION_IMPORT_ROW_INVALID, e.getOriginalMessage());
+                continue;
+            }
+            accept(run, line, request);
+        }
+    }
+
+    /**
+     * Validate một dòng, thêm vào chunk hiện tại và ghi chunk khi đủ kích thước.
+     */
+    private void accept(ImportRun run, long line, StationCreationRequest request) {
+        Set<ConstraintViolation<StationCreationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            ConstraintViolation<StationCreationRequest> violation = violations.iterator().next();
+            run.reject(line, request.getName(), errorCodeOf(violation.getMessage()),
+                    violation.getPropertyPath() + ": " + errorCodeOf(violation.getMessage()).getMessage());
+            return;
+        }
+        if (request.getNumberOfChargingPoints() > maxPointsPerStation) {
+            run.reject(line, request.getName(), ErrorCode.STATION_IMPORT_TOO_MANY_POINTS,
+                    ErrorCode.STATION_IMPORT_TOO_MANY_POINTS.getMessage() + " (" + maxPointsPerStation + ")");
+            return;
+        }
+        if (request.getStaffId() != null && !request.getStaffId().isBlank()) {
+            run.reject(line, request.getName(), ErrorCode.STATION_IMPORT_STAFF_NOT_SUPPORTED,
+                    ErrorCode.STATION_IMPORT_STAFF_NOT_SUPPORTED.getMessage());
+            return;
+        }
+
+        run.pending.add(new PendingStation(line, UUID.randomUUID().toString(), request));
+        if (run.pending.size() >= chunkSize) {
+            flush(run);
+        }
+    }
+
+    /**
+     * Ghi chunk hiện tại trong 1 transaction, sau commit xếp hàng geocoding cho trạm chưa có tọa độ.
+     */
+    private void flush(ImportRun run) {
+        if (run.pending.isEmpty()) {
+            return;
+        }
+        List<PendingStation> chunk = new ArrayList<>(run.pending);
+        run.pending.clear();
+
+        List<StationRow> stations = new ArrayList<>(chunk.size());
+        List<ChargingPointRow> points = new ArrayList<>();
+        for (PendingStation pending : chunk) {
+            StationCreationRequest request = pending.request();
+            stations.add(new StationRow(pending.stationId(), request.getName(), request.getAddress(),
+                    request.getOperatorName(), request.getContactPhone(),
+                    pending.hasCoordinates() ? request.getLatitude() : null,
+                    pending.hasCoordinates() ? request.getLongitude() : null,
+                    StationStatus.OUT_OF_SERVICE));
+            // Trạm mới chưa hoạt động, trụ đặt tên TS1..TSn giống createStation
+            for (int i = 1; i <= request.getNumberOfChargingPoints(); i++) {
+                points.add(new ChargingPointRow(UUID.randomUUID().toString(), "TS" + i, pending.stationId(),
+                        request.getPowerOutput(), ChargingPointStatus.AVAILABLE));
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                stationImportBatchRepository.insertStations(stations);
+                stationImportBatchRepository.insertChargingPoints(points);
+            });
+        } catch (Exception e) {
+            log.error("Station import chunk (lines {}-{}) failed: {}",
+                    chunk.get(0).line(), chunk.get(chunk.size() - 1).line(), e.getMessage(), e);
+            for (PendingStation pending : chunk) {
+                run.reject(pending.line(), pending.request().getName(), ErrorCode.STATION_IMPORT_WRITE_FAILED,
+                        ErrorCode.STATION_IMPORT_WRITE_FAILED.getMessage());
+            }
+            return;
+        }
+
+        run.importedStations += stations.size();
+        run.importedChargingPoints += points.size();
+        // Tra cache geocoding 1 lần cho cả chunk
+        Map<String, String> missingCoordinates = new LinkedHashMap<>();
+        for (PendingStation pending : chunk) {
+            if (!pending.hasCoordinates()) {
+                missingCoordinates.put(pending.stationId(), pending.request().getAddress());
+            }
+        }
+        if (!missingCoordinates.isEmpty()) {
+            Set<String> deferred = geocodingService.backfillStationCoordinates(missingCoordinates);
+            run.geocodingQueued += missingCoordinates.size() - deferred.size();
+            for (PendingStation pending : chunk) {
+                if (deferred.contains(pending.stationId())) {
+                    // Trạm đã được ghi, chỉ thiếu tọa độ: báo theo dòng, sweep geocoding sẽ bổ sung sau
+                    run.geocodingDeferred++;
+                    run.addError(pending.line(), pending.request().getName(), ErrorCode.STATION_IMPORT_GEOCODING_DEFERRED,
+                            ErrorCode.STATION_IMPORT_GEOCODING_DEFERRED.getMessage());
+                }
+            }
+        }
+        log.debug("Imported chunk of {} stations / {} charging points", stations.size(), points.size());
+    }
+
+    private static String column(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static <T> T parse(List<String> record, Map<String, Integer> columns, String column,
+                               Function<String, T> parser) {
+        String value = column(record, columns, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + column + ": '" + value + "'");
+        }
+    }
+
+    private static ErrorCode errorCodeOf(String key) {
+        try {
+            return ErrorCode.valueOf(key);
+        } catch (IllegalArgumentException e) {
+            return ErrorCode.VALIDATION_FAILED;
+        }
+    }
+
+    private record PendingStation(long line, String stationId, StationCreationRequest request) {
+
+        boolean hasCoordinates() {
+            return request.getLatitude() != null && request.getLongitude() != null;
+        }
+    }
+
+    /**
+     * Trạng thái của một lần import (chỉ dùng trong thread của request).
+     */
+    private final class ImportRun {
+        final List<PendingStation> pending = new ArrayList<>(chunkSize);
+        final List<StationImportResponse.RowError> errors = new ArrayList<>();
+        long lastLine;
+        int totalRows;
+        int importedStations;
+        int importedChargingPoints;
+        int failedRows;
+        int geocodingQueued;
+        int geocodingDeferred;
+        boolean errorsTruncated;
+
+        void reject(long line, String stationName, ErrorCode code, String message) {
+            failedRows++;
+            addError(line, stationName, code, message);
+        }
+
+        void addError(long line, String stationName, ErrorCode code, String message) {
+            if (errors.size() >= maxErrors) {
+                errorsTruncated = true;
+                return;
+            }
+            errors.add(StationImportResponse.RowError.builder()
+                    .line(line)
+                    .stationName(stationName)
+                    .code(code.name())
+                    .message(message)
+                    .build());
+        }
+    }
+}
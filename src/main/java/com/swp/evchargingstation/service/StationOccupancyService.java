@@ -0,0 +1,164 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.repository.ChargingSessionOccupancyRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Tính mức chiếm dụng trụ theo giờ của từng trạm từ khoảng [start, end) của các phiên sạc.
+ *
+ * Sweep một lượt qua sự kiện bắt đầu / kết thúc đã sắp xếp trên DB (ChargingSessionOccupancyRepository):
+ * giữa hai sự kiện liên tiếp, số trụ đang bận không đổi → cộng (số trụ bận × số phút) vào các giờ tương ứng.
+ * Chỉ giữ mảng theo giờ của trạm đang sweep; trạm xong được đẩy ra consumer nên bộ nhớ không phụ thuộc
+ * số phiên sạc trong khoảng thời gian.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StationOccupancyService {
+
+    static final long SECONDS_PER_HOUR = 3600;
+
+    ChargingSessionOccupancyRepository chargingSessionOccupancyRepository;
+
+    /**
+     * Chiếm dụng của một trạm trong cửa sổ [from, from + số giờ), mỗi phần tử mảng là 1 giờ.
+     * @param pointMinutes tổng số phút-trụ đang sạc trong giờ
+     * @param peakConcurrency số trụ bận đồng thời cao nhất trong giờ
+     * @param peakConcurrentPoints số trụ bận đồng thời cao nhất trong cả cửa sổ
+     */
+    public record StationOccupancy(String stationId, LocalDateTime from, double[] pointMinutes, int[] peakConcurrency,
+                                   int peakConcurrentPoints) {
+
+        public static StationOccupancy empty(String stationId, LocalDateTime from, int hours) {
+            return new StationOccupancy(stationId, from, new double[hours], new int[hours], 0);
+        }
+
+        public int hours() {
+            return pointMinutes.length;
+        }
+
+        public double totalPointMinutes() {
+            double total = 0.0;
+            for (double minutes : pointMinutes) {
+                total += minutes;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Chiếm dụng theo giờ trong ngày của mọi trạm có phiên sạc (trạm không có phiên sạc không có trong map).
+     */
+    public Map<String, StationOccupancy> computeDay(LocalDate date) {
+        Map<String, StationOccupancy> result = new HashMap<>();
+        sweep(null, date.atStartOfDay(), date.plusDays(1).atStartOfDay(), LocalDateTime.now(),
+                occupancy -> result.put(occupancy.stationId(), occupancy));
+        return result;
+    }
+
+    /**
+     * Chiếm dụng theo giờ trong ngày của một trạm.
+     */
+    public StationOccupancy computeDay(String stationId, LocalDate date) {
+        LocalDateTime from = date.atStartOfDay();
+        StationOccupancy[] result = {StationOccupancy.empty(stationId, from, 24)};
+        sweep(stationId, from, date.plusDays(1).atStartOfDay(), LocalDateTime.now(),
+                occupancy -> result[0] = occupancy);
+        return result[0];
+    }
+
+    /**
+     * Sweep sự kiện trong [from, to) và đẩy kết quả từng trạm (theo thứ tự stationId) cho consumer.
+     * @param stationId chỉ tính một trạm (null = mọi trạm có phiên sạc trong khoảng)
+     * @param now phiên IN_PROGRESS được coi như kết thúc tại thời điểm này
+     */
+    public void sweep(String stationId, LocalDateTime from, LocalDateTime to, LocalDateTime now,
+                      Consumer<StationOccupancy> consumer) {
+        long windowSeconds = Duration.between(from, to).getSeconds();
+        if (windowSeconds <= 0) {
+            return;
+        }
+        int hours = (int) ((windowSeconds + SECONDS_PER_HOUR - 1) / SECONDS_PER_HOUR);
+
+        Sweep[] current = {null};
+        chargingSessionOccupancyRepository.streamIntervalEvents(stationId, from, to, now, (station, time, delta) -> {
+            Sweep sweep = current[0];
+            if (sweep == null || !sweep.stationId.equals(station)) {
+                if (sweep != null) {
+                    consumer.accept(sweep.finish());
+                }
+                sweep = new Sweep(station, from, hours);
+                current[0] = sweep;
+            }
+            sweep.onEvent(Duration.between(from, time).getSeconds(), delta);
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0].finish());
+        }
+    }
+
+    /**
+     * Trạng thái sweep của một trạm.
+     */
+    private static final class Sweep {
+        final String stationId;
+        final LocalDateTime from;
+        final double[] pointMinutes;
+        final int[] peakConcurrency;
+        int concurrency;
+        int peakConcurrentPoints;
+        long lastSecond;
+
+        Sweep(String stationId, LocalDateTime from, int hours) {
+            this.stationId = stationId;
+            this.from = from;
+            this.pointMinutes = new double[hours];
+            this.peakConcurrency = new int[hours];
+        }
+
+        void onEvent(long second, int delta) {
+            advanceTo(second);
+            concurrency = Math.max(0, concurrency + delta);
+            if (delta > 0) {
+                int hour = (int) Math.min(second / SECONDS_PER_HOUR, pointMinutes.length - 1);
+                peakConcurrency[hour] = Math.max(peakConcurrency[hour], concurrency);
+                peakConcurrentPoints = Math.max(peakConcurrentPoints, concurrency);
+            }
+        }
+
+        /**
+         * Cộng số trụ bận hiện tại cho khoảng [lastSecond, second), tách theo ranh giới giờ.
+         */
+        void advanceTo(long second) {
+            while (lastSecond < second) {
+                int hour = (int) (lastSecond / SECONDS_PER_HOUR);
+                if (hour >= pointMinutes.length) {
+                    break;
+                }
+                long boundary = Math.min((hour + 1) * SECONDS_PER_HOUR, second);
+                if (concurrency > 0) {
+                    pointMinutes[hour] += concurrency * (boundary - lastSecond) / 60.0;
+                    peakConcurrency[hour] = Math.max(peakConcurrency[hour], concurrency);
+                }
+                lastSecond = boundary;
+            }
+            lastSecond = Math.max(lastSecond, second);
+        }
+
+        StationOccupancy finish() {
+            return new StationOccupancy(stationId, from, pointMinutes, peakConcurrency, peakConcurrentPoints);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Read model số liệu theo trạm: số trụ theo trạng thái vật lý và doanh thu tích lũy.
+ *
+ * - Cập nhật tăng dần (sau commit): trụ đổi trạng thái (phiên sạc start / complete, staff cập nhật,
+ *   thêm / xóa trụ) và doanh thu của phiên COMPLETED
+ * - Đối soát với DB khi khởi động và định kỳ (2 query gộp theo trạm), lệch được log ra
+ * - Danh sách trạm chi tiết đọc counters từ đây thay vì 6 query COUNT / SUM cho mỗi trạm
+ */
+@Service
+@Slf4j
+public class StationReadModel {
+
+    private final ChargingPointRepository chargingPointRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+
+    private volatile ReadModel model = new ReadModel(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+
+    // Khóa giữa cập nhật theo sự kiện và bước swap của reconcile
+    private final Object eventLock = new Object();
+    // Khác null khi đang reconcile: sự kiện cần replay lên map mới
+    private List<Consumer<ReadModel>> pendingEvents;
+    // Mốc của lần reconcile đang chạy: doanh thu phiên kết thúc từ mốc này không có trong query, cần replay
+    private LocalDateTime revenueCutoff;
+
+    public StationReadModel(ChargingPointRepository chargingPointRepository,
+                            ChargingSessionRepository chargingSessionRepository) {
+        this.chargingPointRepository = chargingPointRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+    }
+
+    /**
+     * Snapshot số liệu của một trạm.
+     */
+    public record StationStats(int totalPoints, int availablePoints, int chargingPoints,
+                               int offlinePoints, int maintenancePoints, double revenue) {
+
+        static final StationStats EMPTY = new StationStats(0, 0, 0, 0, 0, 0.0);
+
+        // Doanh thu cộng dồn bằng float nên chỉ coi là lệch khi chênh từ 1 VND
+        boolean differsFrom(StationStats other) {
+            return totalPoints != other.totalPoints
+                    || availablePoints != other.availablePoints
+                    || chargingPoints != other.chargingPoints
+                    || offlinePoints != other.offlinePoints
+                    || maintenancePoints != other.maintenancePoints
+                    || Math.abs(revenue - other.revenue) >= 1.0;
+        }
+    }
+
+    private record PointEntry(String stationId, ChargingPointStatus status) {
+    }
+
+    /**
+     * Trụ và counters luôn được thay cùng nhau.
+     */
+    private record ReadModel(Map<String, PointEntry> points, Map<String, StationCounters> stations) {
+    }
+
+    public StationStats getStats(String stationId) {
+        StationCounters counters = model.stations().get(stationId);
+        return counters != null ? counters.snapshot() : StationStats.EMPTY;
+    }
+
+    /**
+     * Trụ đổi trạng thái vật lý. stationId null = lấy trạm đã biết của trụ; status null = trụ đã bị xóa.
+     * Idempotent: áp lại lên map đã có trạng thái này không đổi counters.
+     */
+    public void onPointStatusChanged(String stationId, String pointId, ChargingPointStatus status) {
+        apply(target -> target.points().compute(pointId, (id, previous) -> {
+            if (previous != null) {
+                target.stations().computeIfAbsent(previous.stationId(), s -> new StationCounters())
+                        .removePoint(previous.status());
+            }
+            if (status == null) {
+                return null;
+            }
+            String targetStationId = stationId != null ? stationId : previous != null ? previous.stationId() : null;
+            if (targetStationId == null) {
+                // Trụ chưa biết thuộc trạm nào → đối soát định kỳ sẽ nạp
+                return null;
+            }
+            target.stations().computeIfAbsent(targetStationId, s -> new StationCounters()).addPoint(status);
+            return new PointEntry(targetStationId, status);
+        }));
+    }
+
+    /**
+     * Trạm đã bị xóa (trụ bị xóa theo cascade) → bỏ counters và các trụ của trạm.
+     */
+    public void onStationDeleted(String stationId) {
+        apply(target -> {
+            target.points().values().removeIf(point -> point.stationId().equals(stationId));
+            target.stations().remove(stationId);
+        });
+    }
+
+    /**
+     * Phiên sạc COMPLETED → cộng doanh thu cho trạm của trụ.
+     *
+     * Cộng dồn không idempotent nên khi replay chỉ cộng phiên kết thúc từ revenueCutoff
+     * (query doanh thu của reconcile chỉ lấy phiên kết thúc trước mốc đó).
+     */
+    public void onSessionCompleted(String pointId, double cost, LocalDateTime endTime) {
+        if (cost <= 0) {
+            return;
+        }
+        Consumer<ReadModel> addRevenue = target -> {
+            PointEntry point = target.points().get(pointId);
+            if (point != null) {
+                target.stations().computeIfAbsent(point.stationId(), s -> new StationCounters()).addRevenue(cost);
+            }
+        };
+        synchronized (eventLock) {
+            addRevenue.accept(model);
+            if (pendingEvents != null && endTime != null && !endTime.isBefore(revenueCutoff)) {
+                pendingEvents.add(addRevenue);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reconcile();
+    }
+
+    /**
+     * Dựng lại toàn bộ counters từ DB rồi thay thế read model hiện tại.
+     *
+     * Sự kiện đến trong lúc query được ghi lại và replay lên map mới trước khi swap (như BookingIntervalIndex).
+     * Doanh thu của phiên do node khác hoàn thành sau revenueCutoff chỉ có ở lần reconcile sau.
+     */
+    @Scheduled(initialDelayString = "${station.read-model.reconcile-interval-ms:600000}",
+            fixedDelayString = "${station.read-model.reconcile-interval-ms:600000}")
+    public synchronized void reconcile() {
+        LocalDateTime cutoff;
+        // Bắt đầu ghi sự kiện trước khi query: sự kiện commit sau snapshot sẽ được replay
+        synchronized (eventLock) {
+            pendingEvents = new ArrayList<>();
+            cutoff = LocalDateTime.now();
+            revenueCutoff = cutoff;
+        }
+        ReadModel rebuilt = new ReadModel(new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        List<Object[]> pointRows;
+        List<Object[]> revenueRows;
+        try {
+            pointRows = chargingPointRepository.findAllPointStationStatuses();
+            revenueRows = chargingSessionRepository.sumRevenueGroupByStation(ChargingSessionStatus.COMPLETED, cutoff);
+        } catch (RuntimeException e) {
+            synchronized (eventLock) {
+                pendingEvents = null;
+            }
+            throw e;
+        }
+
+        for (Object[] row : pointRows) {
+            PointEntry entry = new PointEntry((String) row[1], (ChargingPointStatus) row[2]);
+            rebuilt.points().put((String) row[0], entry);
+            rebuilt.stations().computeIfAbsent(entry.stationId(), s -> new StationCounters()).addPoint(entry.status());
+        }
+        for (Object[] row : revenueRows) {
+            rebuilt.stations().computeIfAbsent((String) row[0], s -> new StationCounters())
+                    .addRevenue(((Number) row[1]).doubleValue());
+        }
+
+        int replayed;
+        int drifted = 0;
+        synchronized (eventLock) {
+            replayed = pendingEvents.size();
+            pendingEvents.forEach(event -> event.accept(rebuilt));
+            pendingEvents = null;
+
+            for (Map.Entry<String, StationCounters> entry : rebuilt.stations().entrySet()) {
+                StationCounters current = model.stations().get(entry.getKey());
+                if (current == null || current.snapshot().differsFrom(entry.getValue().snapshot())) {
+                    drifted++;
+                }
+            }
+            model = rebuilt;
+        }
+        log.info("Station read model reconciled: {} stations, {} charging points ({} stations drifted, {} events replayed)",
+                rebuilt.stations().size(), pointRows.size(), drifted, replayed);
+    }
+
+    /**
+     * Áp dụng sự kiện lên read model hiện tại; nếu đang reconcile thì ghi lại để replay lên map mới.
+     */
+    private void apply(Consumer<ReadModel> event) {
+        synchronized (eventLock) {
+            event.accept(model);
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+        }
+    }
+
+    /**
+     * Counters của một trạm. Thao tác đồng bộ trên từng trạm.
+     */
+    private static final class StationCounters {
+
+        private final Map<ChargingPointStatus, Integer> byStatus = new EnumMap<>(ChargingPointStatus.class);
+        private int total;
+        private double revenue;
+
+        synchronized void addPoint(ChargingPointStatus status) {
+            total++;
+            byStatus.merge(status, 1, Integer::sum);
+        }
+
+        synchronized void removePoint(ChargingPointStatus status) {
+            total--;
+            byStatus.merge(status, -1, Integer::sum);
+        }
+
+        synchronized void addRevenue(double amount) {
+            revenue += amount;
+        }
+
+        synchronized StationStats snapshot() {
+            return new StationStats(total,
+                    byStatus.getOrDefault(ChargingPointStatus.AVAILABLE, 0),
+                    byStatus.getOrDefault(ChargingPointStatus.CHARGING, 0),
+                    byStatus.getOrDefault(ChargingPointStatus.OUT_OF_SERVICE, 0),
+                    byStatus.getOrDefault(ChargingPointStatus.MAINTENANCE, 0),
+                    revenue);
+        }
+    }
+}
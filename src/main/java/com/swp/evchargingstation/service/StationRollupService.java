@@ -0,0 +1,338 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.AnalyticsRollupDay;
+import com.swp.evchargingstation.repository.AnalyticsRollupDayRepository;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.StationRollupBatchRepository;
+import com.swp.evchargingstation.repository.StationRollupBatchRepository.RollupRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Duy trì station_hourly_rollups (trạm × trụ × giờ) cho các báo cáo analytics.
+ *
+ * - Mỗi lần ghi tính lại TOÀN BỘ bucket của một khoảng giờ từ dữ liệu gốc (xóa + insert trong 1 transaction)
+ *   nên chạy lại bao nhiêu lần cũng cho cùng kết quả, không cần ghi nhận sự kiện nào đã được cộng
+ * - Phiên sạc hoàn tất / thanh toán COMPLETED đánh dấu giờ liên quan là "bẩn"; flush định kỳ gộp các giờ bẩn
+ *   theo trạm rồi tính lại một lần (nhiều phiên cùng trạm chỉ tốn 1 lần tính)
+ * - Job định kỳ: làm mới hôm nay, chốt (finalize) các ngày đã qua chưa có rollup — backfill dần từ phiên sạc
+ *   đầu tiên. Ngày đã chốt được báo cáo đọc hoàn toàn từ rollup; sự kiện trễ vẫn sửa lại bucket của ngày đó.
+ * - Nhiều node: writeLock chỉ tuần tự hóa trong 1 JVM; giữa các node dựa vào upsert theo khóa bucket
+ *   (StationRollupBatchRepository) và danh sách ngày đã chốt được nạp lại từ analytics_rollup_days mỗi lần maintain.
+ */
+@Service
+@Slf4j
+public class StationRollupService {
+
+    private static final Set<String> OCCUPYING_STATUSES = Set.of("IN_PROGRESS", "COMPLETED", "CANCELLED", "FAILED");
+
+    private final StationRollupBatchRepository stationRollupBatchRepository;
+    private final AnalyticsRollupDayRepository analyticsRollupDayRepository;
+    private final ChargingPointRepository chargingPointRepository;
+    private final StationOccupancyService stationOccupancyService;
+    private final TransactionTemplate transactionTemplate;
+    private final int backfillDaysPerRun;
+
+    // pointId → [giờ bẩn đầu tiên, giờ bẩn cuối cùng] (epoch hour)
+    private final Map<String, long[]> dirtyHoursByPoint = new ConcurrentHashMap<>();
+    private final Set<LocalDate> finalizedDays = ConcurrentHashMap.newKeySet();
+    // Ngày của phiên sạc đầu tiên: trước ngày này không có dữ liệu nên rollup (rỗng) luôn đúng
+    private volatile LocalDate firstDataDay;
+    // Tính lại từ sự kiện và job định kỳ trong cùng node không chạy song song (cùng xóa / ghi bucket)
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public StationRollupService(StationRollupBatchRepository stationRollupBatchRepository,
+                                AnalyticsRollupDayRepository analyticsRollupDayRepository,
+                                ChargingPointRepository chargingPointRepository,
+                                StationOccupancyService stationOccupancyService,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${analytics.rollup.backfill-days-per-run:31}") int backfillDaysPerRun) {
+        this.stationRollupBatchRepository = stationRollupBatchRepository;
+        this.analyticsRollupDayRepository = analyticsRollupDayRepository;
+        this.chargingPointRepository = chargingPointRepository;
+        this.stationOccupancyService = stationOccupancyService;
+        this.transactionTemplate = transactionTemplate;
+        this.backfillDaysPerRun = backfillDaysPerRun;
+    }
+
+    /**
+     * Ngày đã được rollup đầy đủ: báo cáo của ngày này đọc từ station_hourly_rollups.
+     */
+    public boolean isFinalized(LocalDate day) {
+        return finalizedDays.contains(day);
+    }
+
+    /**
+     * Mọi ngày trong [from, to] đều đọc được từ rollup: đã chốt, là hôm nay (được làm mới liên tục),
+     * ở tương lai hoặc trước phiên sạc đầu tiên (không có dữ liệu).
+     */
+    public boolean covers(LocalDate from, LocalDate to) {
+        LocalDate firstDay = firstDataDay;
+        if (firstDay == null) {
+            return false;
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate day = from.isBefore(firstDay) ? firstDay : from;
+        for (; !day.isAfter(to) && day.isBefore(today); day = day.plusDays(1)) {
+            if (!finalizedDays.contains(day)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Phiên sạc kết thúc: các giờ từ lúc bắt đầu tới lúc kết thúc của trụ cần tính lại.
+     */
+    public void onSessionCompleted(String chargingPointId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (chargingPointId == null || startTime == null) {
+            return;
+        }
+        markDirty(chargingPointId, startTime, endTime != null ? endTime : startTime);
+    }
+
+    /**
+     * Thanh toán COMPLETED: giờ paid_at của trụ cần tính lại.
+     */
+    public void onPaymentCompleted(String chargingPointId, LocalDateTime paidAt) {
+        if (chargingPointId == null || paidAt == null) {
+            return;
+        }
+        markDirty(chargingPointId, paidAt, paidAt);
+    }
+
+    /**
+     * Gộp các giờ bẩn theo trạm và tính lại (1 query tra trạm của các trụ + mỗi trạm 1 lần tính lại).
+     */
+    @Scheduled(initialDelayString = "${analytics.rollup.flush-interval-ms:60000}",
+            fixedDelayString = "${analytics.rollup.flush-interval-ms:60000}")
+    public void flushDirty() {
+        if (dirtyHoursByPoint.isEmpty()) {
+            return;
+        }
+        Map<String, long[]> dirty = new HashMap<>();
+        for (String pointId : new ArrayList<>(dirtyHoursByPoint.keySet())) {
+            long[] range = dirtyHoursByPoint.remove(pointId);
+            if (range != null) {
+                dirty.put(pointId, range);
+            }
+        }
+
+        Map<String, long[]> byStation = new HashMap<>();
+        for (Object[] row : chargingPointRepository.findStationIdsByPointIds(dirty.keySet())) {
+            long[] range = dirty.get((String) row[0]);
+            byStation.merge((String) row[1], range.clone(),
+                    (a, b) -> new long[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+        }
+
+        for (Map.Entry<String, long[]> entry : byStation.entrySet()) {
+            LocalDateTime from = fromEpochHour(entry.getValue()[0]);
+            LocalDateTime to = fromEpochHour(entry.getValue()[1] + 1);
+            try {
+                refresh(entry.getKey(), from, to);
+            } catch (Exception e) {
+                // Job định kỳ / lần chốt ngày sẽ tính lại
+                log.error("Failed to refresh rollups of station {} [{} - {}): {}",
+                        entry.getKey(), from, to, e.getMessage(), e);
+            }
+        }
+        log.debug("Flushed rollups of {} stations ({} dirty charging points)", byStation.size(), dirty.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        maintain();
+        log.info("Loaded {} finalized rollup days", finalizedDays.size());
+    }
+
+    /**
+     * Làm mới rollup của hôm nay (an toàn nếu sự kiện bị lỡ) và chốt tối đa backfillDaysPerRun ngày cũ chưa chốt,
+     * mới nhất trước.
+     */
+    @Scheduled(initialDelayString = "${analytics.rollup.maintenance-interval-ms:600000}",
+            fixedDelayString = "${analytics.rollup.maintenance-interval-ms:600000}")
+    public void maintain() {
+        LocalDate today = LocalDate.now();
+        // Ngày do node khác chốt: không tính lại lần nữa
+        finalizedDays.addAll(analyticsRollupDayRepository.findAllDays());
+        try {
+            refresh(null, today.atStartOfDay(), today.plusDays(1).atStartOfDay());
+        } catch (Exception e) {
+            log.error("Failed to refresh today's rollups: {}", e.getMessage(), e);
+        }
+
+        LocalDateTime earliest = stationRollupBatchRepository.findEarliestSessionStart();
+        if (earliest == null) {
+            firstDataDay = today;
+            return;
+        }
+        LocalDate firstDay = earliest.toLocalDate();
+        firstDataDay = firstDay;
+        int finalized = 0;
+        for (LocalDate day = today.minusDays(1); !day.isBefore(firstDay) && finalized < backfillDaysPerRun;
+             day = day.minusDays(1)) {
+            if (finalizedDays.contains(day)) {
+                continue;
+            }
+            try {
+                finalizeDay(day);
+                finalized++;
+            } catch (Exception e) {
+                log.error("Failed to finalize rollups of {}: {}", day, e.getMessage(), e);
+                break;
+            }
+        }
+        if (finalized > 0) {
+            log.info("Finalized rollups of {} days", finalized);
+        }
+    }
+
+    /**
+     * Tính lại toàn bộ bucket của một ngày rồi đánh dấu đã chốt. Idempotent.
+     */
+    public void finalizeDay(LocalDate day) {
+        refresh(null, day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        analyticsRollupDayRepository.save(AnalyticsRollupDay.builder()
+                .day(day)
+                .finalizedAt(LocalDateTime.now())
+                .build());
+        finalizedDays.add(day);
+    }
+
+    /**
+     * Tính lại mọi bucket trong [from, to) (đầu giờ) của một trạm hoặc mọi trạm (stationId = null).
+     */
+    public void refresh(String stationId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime bucketFrom = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime bucketTo = to.truncatedTo(ChronoUnit.HOURS).equals(to) ? to : to.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+        LocalDateTime now = LocalDateTime.now();
+
+        writeLock.lock();
+        try {
+            Map<BucketKey, Bucket> buckets = new HashMap<>();
+            stationRollupBatchRepository.streamSessions(stationId, bucketFrom, bucketTo,
+                    session -> addSession(buckets, session, bucketFrom, bucketTo, now));
+            stationRollupBatchRepository.streamPayments(stationId, bucketFrom, bucketTo, payment -> {
+                Bucket bucket = buckets.computeIfAbsent(new BucketKey(payment.stationId(), payment.pointId(),
+                        payment.paidAt().truncatedTo(ChronoUnit.HOURS)), key -> new Bucket());
+                bucket.paidRevenue += payment.amount();
+                bucket.paidCount++;
+            });
+
+            // Số trụ đồng thời cao nhất theo giờ của từng trạm (cùng quy tắc với báo cáo sử dụng)
+            Map<String, int[]> peaks = new HashMap<>();
+            stationOccupancyService.sweep(stationId, bucketFrom, bucketTo, now,
+                    occupancy -> peaks.put(occupancy.stationId(), occupancy.peakConcurrency()));
+
+            List<RollupRow> rows = new ArrayList<>(buckets.size());
+            for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+                BucketKey key = entry.getKey();
+                Bucket bucket = entry.getValue();
+                int[] stationPeaks = peaks.get(key.stationId());
+                int hourIndex = (int) Duration.between(bucketFrom, key.bucketStart()).toHours();
+                int peak = stationPeaks != null && hourIndex < stationPeaks.length ? stationPeaks[hourIndex] : 0;
+                rows.add(new RollupRow(key.stationId(), key.pointId(), key.bucketStart(), bucket.sessionCount,
+                        bucket.completedSessionCount, bucket.activeSessionCount, bucket.energyKwh,
+                        bucket.sessionRevenue, bucket.minutesInUse,
+                        bucket.drivers != null ? bucket.drivers.size() : 0,
+                        bucket.paidRevenue, bucket.paidCount, peak));
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                stationRollupBatchRepository.deleteRange(stationId, bucketFrom, bucketTo);
+                stationRollupBatchRepository.upsertRollups(rows, now);
+            });
+            log.debug("Refreshed {} rollup buckets of {} [{} - {})",
+                    rows.size(), stationId != null ? "station " + stationId : "all stations", bucketFrom, bucketTo);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void addSession(Map<BucketKey, Bucket> buckets, StationRollupBatchRepository.SessionRow session,
+                                   LocalDateTime from, LocalDateTime to, LocalDateTime now) {
+        LocalDateTime start = session.startTime();
+
+        // Số phiên / năng lượng / doanh thu tính vào giờ bắt đầu
+        if (!start.isBefore(from) && start.isBefore(to)) {
+            Bucket bucket = buckets.computeIfAbsent(
+                    new BucketKey(session.stationId(), session.pointId(), start.truncatedTo(ChronoUnit.HOURS)),
+                    key -> new Bucket());
+            bucket.sessionCount++;
+            if ("COMPLETED".equals(session.status())) {
+                bucket.completedSessionCount++;
+            } else if ("IN_PROGRESS".equals(session.status())) {
+                bucket.activeSessionCount++;
+            }
+            bucket.energyKwh += session.energyKwh();
+            bucket.sessionRevenue += session.costTotal();
+            if (session.driverId() != null) {
+                if (bucket.drivers == null) {
+                    bucket.drivers = new HashSet<>();
+                }
+                bucket.drivers.add(session.driverId());
+            }
+        }
+
+        // Phút chiếm trụ: [start, end) cắt theo khoảng và ranh giới giờ; phiên IN_PROGRESS kết thúc tại now
+        if (!OCCUPYING_STATUSES.contains(session.status())) {
+            return;
+        }
+        LocalDateTime end = "IN_PROGRESS".equals(session.status()) ? now : session.endTime();
+        if (end == null) {
+            return;
+        }
+        LocalDateTime cursor = start.isBefore(from) ? from : start;
+        LocalDateTime until = end.isAfter(to) ? to : end;
+        while (cursor.isBefore(until)) {
+            LocalDateTime hour = cursor.truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime boundary = hour.plusHours(1).isBefore(until) ? hour.plusHours(1) : until;
+            buckets.computeIfAbsent(new BucketKey(session.stationId(), session.pointId(), hour), key -> new Bucket())
+                    .minutesInUse += Duration.between(cursor, boundary).getSeconds() / 60.0;
+            cursor = boundary;
+        }
+    }
+
+    private void markDirty(String chargingPointId, LocalDateTime from, LocalDateTime to) {
+        long fromHour = toEpochHour(from);
+        long toHour = Math.max(fromHour, toEpochHour(to));
+        dirtyHoursByPoint.merge(chargingPointId, new long[]{fromHour, toHour},
+                (a, b) -> new long[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+    }
+
+    private static long toEpochHour(LocalDateTime time) {
+        return Duration.between(LocalDateTime.of(1970, 1, 1, 0, 0), time.truncatedTo(ChronoUnit.HOURS)).toHours();
+    }
+
+    private static LocalDateTime fromEpochHour(long epochHour) {
+        return LocalDateTime.of(1970, 1, 1, 0, 0).plusHours(epochHour);
+    }
+
+    private record BucketKey(String stationId, String pointId, LocalDateTime bucketStart) {
+    }
+
+    private static final class Bucket {
+        int sessionCount;
+        int completedSessionCount;
+        int activeSessionCount;
+        double energyKwh;
+        double sessionRevenue;
+        double minutesInUse;
+        Set<String> drivers;
+        double paidRevenue;
+        int paidCount;
+    }
+}
@@ -3,30 +3,37 @@ package com.swp.evchargingstation.service;
 import com.swp.evchargingstation.dto.request.StationCreationRequest;
 import com.swp.evchargingstation.dto.request.StationUpdateRequest;
 import com.swp.evchargingstation.dto.request.ChargingPointCreationRequest;
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.StationDetailResponse;
 import com.swp.evchargingstation.dto.response.StationResponse;
 import com.swp.evchargingstation.dto.response.StaffSummaryResponse;
 import com.swp.evchargingstation.dto.response.ChargingPointResponse;
+import com.swp.evchargingstation.dto.response.NearbyStationResponse;
 import com.swp.evchargingstation.entity.ChargingPoint;
 import com.swp.evchargingstation.entity.ChargingSession;
 import com.swp.evchargingstation.entity.Station;
 import com.swp.evchargingstation.entity.Staff;
 import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingPower;
 import com.swp.evchargingstation.enums.StationStatus;
+import com.swp.evchargingstation.event.chargingpoint.ChargingPointStatusChangedEvent;
+import com.swp.evchargingstation.event.station.StationAddressChangedEvent;
+import com.swp.evchargingstation.event.station.StationChangedEvent;
 import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.mapper.StationMapper;
 import com.swp.evchargingstation.mapper.StaffMapper;
 import com.swp.evchargingstation.mapper.ChargingPointMapper;
 import com.swp.evchargingstation.repository.ChargingPointRepository;
-import com.swp.evchargingstation.repository.ChargingSessionRepository;
 import com.swp.evchargingstation.repository.PaymentRepository;
 import com.swp.evchargingstation.repository.StationRepository;
 import com.swp.evchargingstation.repository.StaffRepository;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -45,14 +52,21 @@ public class StationService {
     StaffMapper staffMapper;
     ChargingPointRepository chargingPointRepository;
     ChargingPointMapper chargingPointMapper;
-    ChargingSessionRepository chargingSessionRepository;
     PaymentRepository paymentRepository;
     GeocodingService geocodingService;
     ChargingPointStatusService chargingPointStatusService;
+    ChargingSimulatorService chargingSimulatorService;
+    ApplicationEventPublisher eventPublisher;
+    StationReadModel stationReadModel;
+    StationSpatialIndex stationSpatialIndex;
+
+    // Giới hạn tìm trạm gần nhất
+    static final double MAX_NEARBY_RADIUS_KM = 100.0;
+    static final int MAX_NEARBY_LIMIT = 100;
 
     /**
      * Tạo trạm sạc mới với số lượng điểm sạc và công suất chỉ định.
-     * Tự động chuyển đổi địa chỉ thành tọa độ nếu không có sẵn.
+     * Nếu không có tọa độ, trạm được tạo ngay và tọa độ được geocode bất đồng bộ từ địa chỉ.
      * @param request thông tin trạm cần tạo
      * @return StationResponse của trạm vừa tạo
      */
@@ -63,18 +77,14 @@ public class StationService {
         Double latitude = request.getLatitude();
         Double longitude = request.getLongitude();
 
-        // Nếu không có tọa độ, tự động geocode từ địa chỉ
-        if (latitude == null || longitude == null) {
-            log.info("No coordinates provided, geocoding address: {}", request.getAddress());
-            var coordinates = geocodingService.geocodeAddress(request.getAddress());
-            latitude = coordinates.get("latitude");
-            longitude = coordinates.get("longitude");
-            log.info("Geocoded coordinates: lat={}, lon={}", latitude, longitude);
-        } else {
+        // Nếu không có tọa độ: lưu trạm ngay, tọa độ được geocode bất đồng bộ sau commit
+        boolean needsGeocoding = latitude == null || longitude == null;
+        if (needsGeocoding) {
+            latitude = null;
+            longitude = null;
+        } else if (!geocodingService.isValidCoordinates(latitude, longitude)) {
             // Validate tọa độ nếu có
-            if (!geocodingService.isValidCoordinates(latitude, longitude)) {
-                throw new AppException(ErrorCode.INVALID_COORDINATES);
-            }
+            throw new AppException(ErrorCode.INVALID_COORDINATES);
         }
 
         // Tạo station mới với trạng thái OUT_OF_SERVICE (chưa hoạt động)
@@ -118,6 +128,13 @@ public class StationService {
         // Lưu tất cả charging points
         chargingPointRepository.saveAll(chargingPoints);
         savedStation.setChargingPoints(chargingPoints);
+        chargingPoints.forEach(point -> eventPublisher.publishEvent(new ChargingPointStatusChangedEvent(
+                this, savedStation.getStationId(), point.getPointId(), point.getStatus())));
+        eventPublisher.publishEvent(new StationChangedEvent(this, savedStation.getStationId(), false));
+        if (needsGeocoding) {
+            log.info("No coordinates provided, queued geocoding for address: {}", request.getAddress());
+            eventPublisher.publishEvent(new StationAddressChangedEvent(this, savedStation.getStationId(), request.getAddress()));
+        }
 
         log.info("Created station {} with {} charging points", savedStation.getStationId(), chargingPoints.size());
         return stationMapper.toStationResponse(savedStation);
@@ -125,7 +142,7 @@ public class StationService {
 
     /**
      * Cập nhật thông tin cơ bản của một trạm (name, address, operatorName, contactPhone, status, staff).
-     * Tự động chuyển đổi địa chỉ thành tọa độ nếu địa chỉ thay đổi và không có tọa độ mới.
+     * Nếu địa chỉ thay đổi mà không có tọa độ mới, tọa độ được geocode bất đồng bộ từ địa chỉ mới.
      * @param stationId id của trạm cần cập nhật
      * @param request thông tin cập nhật
      * @return StationResponse sau khi cập nhật
@@ -140,14 +157,15 @@ public class StationService {
         Double latitude = request.getLatitude();
         Double longitude = request.getLongitude();
 
-        // Nếu địa chỉ thay đổi nhưng không có tọa độ mới, tự động geocode
-        if (!request.getAddress().equals(station.getAddress()) &&
-            (latitude == null || longitude == null)) {
-            log.info("Address changed without coordinates, geocoding new address: {}", request.getAddress());
-            var coordinates = geocodingService.geocodeAddress(request.getAddress());
-            latitude = coordinates.get("latitude");
-            longitude = coordinates.get("longitude");
-            log.info("Geocoded new coordinates: lat={}, lon={}", latitude, longitude);
+        // Nếu địa chỉ thay đổi nhưng không có tọa độ mới: bỏ tọa độ cũ, geocode bất đồng bộ sau commit
+        boolean needsGeocoding = !request.getAddress().equals(station.getAddress()) &&
+            (latitude == null || longitude == null);
+        if (needsGeocoding) {
+            latitude = null;
+            longitude = null;
+            // Địa chỉ mới: bỏ backoff của địa chỉ cũ
+            station.setGeocodingFailures(null);
+            station.setGeocodingRetryAt(null);
         } else if (latitude != null && longitude != null) {
             // Validate tọa độ nếu có
             if (!geocodingService.isValidCoordinates(latitude, longitude)) {
@@ -196,6 +214,11 @@ public class StationService {
         }
 
         Station saved = stationRepository.save(station);
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
+        if (needsGeocoding) {
+            log.info("Address changed without coordinates, queued geocoding for new address: {}", request.getAddress());
+            eventPublisher.publishEvent(new StationAddressChangedEvent(this, stationId, request.getAddress()));
+        }
         log.info("Updated station {} successfully", stationId);
         return stationMapper.toStationResponse(saved);
     }
@@ -214,6 +237,7 @@ public class StationService {
 
         // Xóa station (charging points sẽ tự động xóa do cascade = CascadeType.ALL)
         stationRepository.delete(station);
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, true));
         log.info("Deleted station '{}' successfully", stationId);
     }
 
@@ -265,6 +289,7 @@ public class StationService {
                 .orElseThrow(() -> new AppException(ErrorCode.STATION_NOT_FOUND));
         station.setStatus(status);
         Station saved = stationRepository.save(station);
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
         return stationMapper.toStationResponse(saved);
     }
 
@@ -303,7 +328,9 @@ public class StationService {
         StationStatus newStatus = station.getStatus() == StationStatus.OPERATIONAL ? StationStatus.OUT_OF_SERVICE : StationStatus.OPERATIONAL;
         log.info("Toggling station {} from {} to {}", stationId, station.getStatus(), newStatus);
         station.setStatus(newStatus);
-        return stationMapper.toStationResponse(stationRepository.save(station));
+        Station saved = stationRepository.save(station);
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
+        return stationMapper.toStationResponse(saved);
     }
 
     /**
@@ -340,15 +367,57 @@ public class StationService {
     @Transactional(readOnly = true)
     public List<StationDetailResponse> getStationsWithDetail(StationStatus status) {
         log.info("Fetching stations with detail - status: {}", status);
+        // 1 query (kèm staff) + counters in-memory từ StationReadModel
         List<Station> stations = (status == null)
-                ? stationRepository.findAll()
-                : stationRepository.findByStatus(status);
+                ? stationRepository.findAllWithStaff()
+                : stationRepository.findByStatusWithStaff(status);
 
         return stations.stream()
                 .map(this::mapToStationDetailResponse)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Tìm các trạm gần vị trí (lat, lon) nhất trong bán kính radiusKm, sắp theo khoảng cách.
+     * Dùng StationSpatialIndex + counters của StationReadModel, không query DB.
+     * @param power chỉ lấy trạm có trụ công suất này (có thể null)
+     * @param availableOnly chỉ lấy trạm OPERATIONAL còn trụ AVAILABLE
+     * @param limit số trạm tối đa (k)
+     * @return danh sách NearbyStationResponse
+     * @throws AppException nếu tọa độ không hợp lệ
+     */
+    public List<NearbyStationResponse> findNearbyStations(Double latitude, Double longitude, double radiusKm,
+                                                          ChargingPower power, boolean availableOnly, int limit) {
+        if (!geocodingService.isValidCoordinates(latitude, longitude)) {
+            throw new AppException(ErrorCode.INVALID_COORDINATES);
+        }
+        double radius = Math.min(Math.max(radiusKm, 0.0), MAX_NEARBY_RADIUS_KM);
+        int k = Math.min(Math.max(limit, 1), MAX_NEARBY_LIMIT);
+
+        return stationSpatialIndex.findNearest(latitude, longitude, radius, k, station ->
+                        (power == null || station.chargingPowers().contains(power))
+                        && (!availableOnly || (station.status() == StationStatus.OPERATIONAL
+                                && stationReadModel.getStats(station.stationId()).availablePoints() > 0)))
+                .stream()
+                .map(nearby -> {
+                    StationSpatialIndex.StationLocation station = nearby.station();
+                    StationReadModel.StationStats stats = stationReadModel.getStats(station.stationId());
+                    return NearbyStationResponse.builder()
+                            .stationId(station.stationId())
+                            .name(station.name())
+                            .address(station.address())
+                            .latitude(station.latitude())
+                            .longitude(station.longitude())
+                            .status(station.status())
+                            .distanceKm(Math.round(nearby.distanceKm() * 100) / 100.0)
+                            .totalChargingPoints(stats.totalPoints())
+                            .availableChargingPoints(stats.availablePoints())
+                            .chargingPowers(station.chargingPowers())
+                            .build();
+                })
+                .toList();
+    }
+
     /**
      * Helper method: map Station sang StationDetailResponse với thông tin đầy đủ.
      * Nguyên tắc: Field nào không có dữ liệu thật → NULL, không tự chế!
@@ -356,12 +425,13 @@ public class StationService {
     private StationDetailResponse mapToStationDetailResponse(Station station) {
         String stationId = station.getStationId();
 
-        // Đếm số lượng charging points theo trạng thái - GIỮ NGUYÊN NULL nếu không có
-        Integer totalPoints = chargingPointRepository.countByStationId(stationId);
-        Integer availablePoints = chargingPointRepository.countByStationIdAndStatus(stationId, ChargingPointStatus.AVAILABLE);
-        Integer inUsePoints = chargingPointRepository.countByStationIdAndStatus(stationId, ChargingPointStatus.CHARGING);
-        Integer offlinePoints = chargingPointRepository.countByStationIdAndStatus(stationId, ChargingPointStatus.OUT_OF_SERVICE);
-        Integer maintenancePoints = chargingPointRepository.countByStationIdAndStatus(stationId, ChargingPointStatus.MAINTENANCE);
+        // Đếm số lượng charging points theo trạng thái (counters của StationReadModel, không query)
+        StationReadModel.StationStats stats = stationReadModel.getStats(stationId);
+        Integer totalPoints = stats.totalPoints();
+        Integer availablePoints = stats.availablePoints();
+        Integer inUsePoints = stats.chargingPoints();
+        Integer offlinePoints = stats.offlinePoints();
+        Integer maintenancePoints = stats.maintenancePoints();
 
         // Tính activePoints - CHỈ tính nếu CÓ dữ liệu, không tự chế
         Integer activePoints = null;
@@ -373,8 +443,8 @@ public class StationService {
             activePoints = inUsePoints;
         }
 
-        // Tính doanh thu từ charging sessions - GIỮ NULL nếu không có
-        Double revenue = chargingSessionRepository.sumRevenueByStationId(stationId);
+        // Doanh thu tích lũy từ các phiên sạc COMPLETED
+        Double revenue = stats.revenue();
 
         // Tính phần trăm sử dụng - CHỈ tính nếu có dữ liệu đầy đủ
         Double usagePercent = null;
@@ -471,6 +541,8 @@ public class StationService {
         ChargingPoint savedPoint = chargingPointRepository.save(newPoint);
 
         log.info("Created charging point {} ({}) for station {}", savedPoint.getPointId(), nextName, stationId);
+        eventPublisher.publishEvent(new ChargingPointStatusChangedEvent(this, stationId, savedPoint.getPointId(), status));
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
 
         // Trả về response
         return chargingPointMapper.toChargingPointResponse(savedPoint);
@@ -522,7 +594,9 @@ public class StationService {
         }
 
         // Cập nhật chargingPower nếu có
+        boolean powerChanged = false;
         if (request.getChargingPower() != null) {
+            powerChanged = request.getChargingPower() != chargingPoint.getChargingPower();
             chargingPoint.setChargingPower(request.getChargingPower());
             log.info("Updated power for charging point {} to {}", pointId, request.getChargingPower());
         }
@@ -531,11 +605,20 @@ public class StationService {
         if (request.getStatus() != null) {
             chargingPoint.setStatus(request.getStatus());
             log.info("Updated status for charging point {} to {}", pointId, request.getStatus());
+            // Cache trạng thái hiển thị cập nhật sau commit
+            eventPublisher.publishEvent(new ChargingPointStatusChangedEvent(this, stationId, pointId, request.getStatus()));
         }
 
         // Lưu charging point
         ChargingPoint savedPoint = chargingPointRepository.save(chargingPoint);
 
+        // Session đang sạc tại trụ → dự đoán lại thời điểm complete với công suất mới
+        if (powerChanged) {
+            chargingSimulatorService.onChargingPowerChanged(pointId, savedPoint.getChargingPower());
+            // Công suất của trạm thay đổi → lọc theo công suất khi tìm trạm gần nhất
+            eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
+        }
+
         log.info("Updated charging point {} successfully", pointId);
 
         return chargingPointMapper.toChargingPointResponse(savedPoint);
@@ -569,6 +652,8 @@ public class StationService {
 
         // Xóa charging point
         chargingPointRepository.delete(chargingPoint);
+        eventPublisher.publishEvent(new ChargingPointStatusChangedEvent(this, stationId, pointId, null));
+        eventPublisher.publishEvent(new StationChangedEvent(this, stationId, false));
         log.info("Deleted charging point {} successfully", pointId);
     }
 
@@ -603,14 +688,18 @@ public class StationService {
      * @param startDate Ngày bắt đầu filter (nullable)
      * @param endDate Ngày kết thúc filter (nullable)
      * @param paymentMethod Phương thức thanh toán filter (nullable)
-     * @return Danh sách lịch sử thanh toán
+     * @param limit Số giao dịch mỗi trang (nullable = mặc định)
+     * @param after nextCursor của trang trước (nullable = trang đầu)
+     * @return Một trang lịch sử thanh toán (mới nhất trước)
      */
     @Transactional(readOnly = true)
-    public List<com.swp.evchargingstation.dto.response.PaymentHistoryResponse> getPaymentHistory(
+    public CursorPageResponse<com.swp.evchargingstation.dto.response.PaymentHistoryResponse> getPaymentHistory(
             String stationId,
             java.time.LocalDate startDate,
             java.time.LocalDate endDate,
-            com.swp.evchargingstation.entity.Payment.PaymentMethod paymentMethod) {
+            com.swp.evchargingstation.entity.Payment.PaymentMethod paymentMethod,
+            Integer limit,
+            String after) {
 
         log.info("Fetching payment history for station {} - startDate: {}, endDate: {}, paymentMethod: {}",
                 stationId, startDate, endDate, paymentMethod);
@@ -624,14 +713,18 @@ public class StationService {
         java.time.LocalDateTime startDateTime = startDate != null ? startDate.atStartOfDay() : null;
         java.time.LocalDateTime endDateTime = endDate != null ? endDate.atTime(23, 59, 59) : null;
 
-        // Lấy danh sách payments
+        // Lấy một trang payments
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
         List<com.swp.evchargingstation.entity.Payment> payments =
-                paymentRepository.findPaymentHistoryByStationId(stationId, startDateTime, endDateTime, paymentMethod);
+                paymentRepository.findPaymentHistoryByStationId(stationId, startDateTime, endDateTime, paymentMethod,
+                        cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.id() : null,
+                        KeysetCursor.fetchOneMore(pageSize));
 
         // Map sang response DTO
-        return payments.stream()
-                .map(this::mapToPaymentHistoryResponse)
-                .collect(Collectors.toList());
+        return KeysetCursor.page(payments, pageSize,
+                payment -> new KeysetCursor(payment.getPaidAt(), payment.getPaymentId()),
+                this::mapToPaymentHistoryResponse);
     }
 
     /**
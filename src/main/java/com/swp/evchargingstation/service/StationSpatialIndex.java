@@ -0,0 +1,289 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.entity.Station;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.StationStatus;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.StationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Spatial index in-memory các trạm theo tọa độ (grid lat/lon cố định, kiểu geohash).
+ *
+ * - Mỗi ô cellSizeDeg × cellSizeDeg giữ các trạm nằm trong ô
+ * - Tìm k trạm gần nhất: quét các vòng ô đồng tâm quanh vị trí tìm kiếm, dừng khi đủ k trạm và
+ *   vòng kế tiếp chắc chắn xa hơn trạm thứ k, hoặc vượt bán kính → chỉ phụ thuộc mật độ trạm
+ *   quanh điểm tìm, không phụ thuộc tổng số trạm
+ * - Cập nhật khi tạo / sửa / xóa trạm hoặc trụ (StationEventListener), rebuild khi khởi động và định kỳ;
+ *   cập nhật đến trong lúc rebuild được replay lên grid mới trước khi swap
+ * - Kinh độ quấn vòng: ô ở -180° và 180° là hàng xóm, nên tìm quanh kinh tuyến 180 vẫn thấy trạm bên kia
+ *   (chính xác khi 360 chia hết cho cellSizeDeg)
+ */
+@Service
+@Slf4j
+public class StationSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180.0;
+
+    private final StationRepository stationRepository;
+    private final ChargingPointRepository chargingPointRepository;
+    private final double cellSizeDeg;
+    // Số ô theo kinh độ trên một vòng trái đất
+    private final int lonCells;
+
+    private volatile Grid grid = new Grid();
+
+    // Tách khỏi monitor của refresh / remove: cập nhật không phải chờ rebuild query xong
+    private final Object rebuildLock = new Object();
+    // Khóa giữa cập nhật theo sự kiện và bước swap của rebuild
+    private final Object eventLock = new Object();
+    // Khác null khi đang rebuild: cập nhật cần replay lên grid mới (put / remove theo trạm đều idempotent)
+    private List<Consumer<Grid>> pendingEvents;
+
+    public StationSpatialIndex(StationRepository stationRepository,
+                               ChargingPointRepository chargingPointRepository,
+                               @Value("${station.spatial-index.cell-size-deg:0.05}") double cellSizeDeg) {
+        this.stationRepository = stationRepository;
+        this.chargingPointRepository = chargingPointRepository;
+        this.cellSizeDeg = cellSizeDeg;
+        this.lonCells = Math.max(1, (int) Math.round(360.0 / cellSizeDeg));
+    }
+
+    /**
+     * Vị trí và thông tin lọc của một trạm.
+     */
+    public record StationLocation(String stationId, String name, String address, double latitude, double longitude,
+                                  StationStatus status, Set<ChargingPower> chargingPowers) {
+    }
+
+    public record NearbyStation(StationLocation station, double distanceKm) {
+    }
+
+    /**
+     * Tối đa limit trạm trong bán kính radiusKm thỏa filter, sắp theo khoảng cách tăng dần.
+     */
+    public List<NearbyStation> findNearest(double latitude, double longitude, double radiusKm, int limit,
+                                           Predicate<StationLocation> filter) {
+        Grid current = grid;
+        // Cạnh nhỏ nhất của một ô (km): cạnh kinh độ co lại theo cos(vĩ độ)
+        double cellKm = cellSizeDeg * KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        int maxRing = (int) Math.ceil(radiusKm / cellKm) + 1;
+        // Không quét quá nửa vòng kinh độ về mỗi phía (ô bên kia đã được quét từ phía còn lại)
+        int maxLonReach = (lonCells - 1) / 2;
+        int centerLat = cellIndex(latitude);
+        int centerLon = cellIndex(longitude);
+
+        // Max-heap theo khoảng cách: phần tử đầu là trạm xa nhất trong top k
+        PriorityQueue<NearbyStation> nearest = new PriorityQueue<>(
+                Comparator.comparingDouble(NearbyStation::distanceKm).reversed());
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            int lonReach = Math.min(ring, maxLonReach);
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                for (int dLon = -lonReach; dLon <= lonReach; dLon++) {
+                    if (Math.abs(dLat) != ring && Math.abs(dLon) != ring) {
+                        continue; // chỉ xét viền của vòng
+                    }
+                    for (StationLocation station : current.cell(centerLat + dLat, centerLon + dLon)) {
+                        double distance = distanceKm(latitude, longitude, station.latitude(), station.longitude());
+                        if (distance > radiusKm || !filter.test(station)) {
+                            continue;
+                        }
+                        nearest.add(new NearbyStation(station, distance));
+                        if (nearest.size() > limit) {
+                            nearest.poll();
+                        }
+                    }
+                }
+            }
+            // Mọi trạm ở vòng sau cách điểm tìm ít nhất ring × cellKm
+            if (nearest.size() == limit && nearest.peek().distanceKm() <= ring * cellKm) {
+                break;
+            }
+        }
+
+        List<NearbyStation> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(NearbyStation::distanceKm));
+        return result;
+    }
+
+    /**
+     * Nạp lại một trạm từ DB (sau commit thay đổi trạm / trụ).
+     */
+    public synchronized void refresh(String stationId) {
+        Station station = stationRepository.findById(stationId).orElse(null);
+        if (station == null) {
+            remove(stationId);
+            return;
+        }
+        Set<ChargingPower> powers = EnumSet.noneOf(ChargingPower.class);
+        for (ChargingPoint point : chargingPointRepository.findByStation_StationId(stationId)) {
+            if (point.getChargingPower() != null) {
+                powers.add(point.getChargingPower());
+            }
+        }
+        StationLocation location = toLocation(station.getStationId(), station.getName(), station.getAddress(),
+                station.getLatitude(), station.getLongitude(), station.getStatus(), powers);
+        apply(target -> target.put(location));
+    }
+
+    public synchronized void remove(String stationId) {
+        apply(target -> target.remove(stationId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Dựng lại toàn bộ index (2 query projection).
+     */
+    @Scheduled(initialDelayString = "${station.spatial-index.rebuild-interval-ms:600000}",
+            fixedDelayString = "${station.spatial-index.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            // Bắt đầu ghi cập nhật trước khi query: trạm commit sau snapshot sẽ được replay
+            synchronized (eventLock) {
+                pendingEvents = new ArrayList<>();
+            }
+            List<Object[]> powerRows;
+            List<Object[]> locationRows;
+            try {
+                powerRows = chargingPointRepository.findAllStationPowers();
+                locationRows = stationRepository.findAllLocations();
+            } catch (RuntimeException e) {
+                synchronized (eventLock) {
+                    pendingEvents = null;
+                }
+                throw e;
+            }
+
+            Map<String, Set<ChargingPower>> powersByStation = new HashMap<>();
+            for (Object[] row : powerRows) {
+                if (row[1] != null) {
+                    powersByStation.computeIfAbsent((String) row[0], id -> EnumSet.noneOf(ChargingPower.class))
+                            .add((ChargingPower) row[1]);
+                }
+            }
+
+            Grid rebuilt = new Grid();
+            for (Object[] row : locationRows) {
+                String stationId = (String) row[0];
+                rebuilt.put(toLocation(stationId, (String) row[1], (String) row[2], (Double) row[3], (Double) row[4],
+                        (StationStatus) row[5], powersByStation.getOrDefault(stationId, EnumSet.noneOf(ChargingPower.class))));
+            }
+            int replayed;
+            synchronized (eventLock) {
+                replayed = pendingEvents.size();
+                pendingEvents.forEach(event -> event.accept(rebuilt));
+                pendingEvents = null;
+                grid = rebuilt;
+            }
+            log.info("Station spatial index rebuilt: {} stations in {} cells ({} updates replayed)",
+                    rebuilt.size(), rebuilt.cellCount(), replayed);
+        }
+    }
+
+    /**
+     * Áp dụng cập nhật lên grid hiện tại; nếu đang rebuild thì ghi lại để replay lên grid mới.
+     */
+    private void apply(Consumer<Grid> event) {
+        synchronized (eventLock) {
+            event.accept(grid);
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+        }
+    }
+
+    private StationLocation toLocation(String stationId, String name, String address, Double latitude,
+                                       Double longitude, StationStatus status, Set<ChargingPower> powers) {
+        // Trạm chưa có tọa độ (NaN) không được đưa vào ô nào
+        return new StationLocation(stationId, name, address,
+                latitude != null ? latitude : Double.NaN, longitude != null ? longitude : Double.NaN,
+                status, Set.copyOf(powers));
+    }
+
+    private int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDeg);
+    }
+
+    /**
+     * Khóa ô; chỉ số kinh độ được quấn về [-lonCells/2, lonCells/2) để 180° và -180° là cùng một ô.
+     */
+    private long cellKey(int latIndex, int lonIndex) {
+        int wrappedLon = Math.floorMod(lonIndex + lonCells / 2, lonCells) - lonCells / 2;
+        return ((long) latIndex << 32) | (wrappedLon & 0xffffffffL);
+    }
+
+    /**
+     * Khoảng cách haversine (km).
+     */
+    static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Các ô của index. Ghi đồng bộ (ít, theo thao tác admin), đọc không khóa.
+     */
+    private final class Grid {
+
+        private final Map<Long, Map<String, StationLocation>> cells = new ConcurrentHashMap<>();
+        private final Map<String, Long> cellByStation = new ConcurrentHashMap<>();
+
+        Collection<StationLocation> cell(int latIndex, int lonIndex) {
+            Map<String, StationLocation> cell = cells.get(cellKey(latIndex, lonIndex));
+            return cell != null ? cell.values() : List.of();
+        }
+
+        synchronized void put(StationLocation station) {
+            remove(station.stationId());
+            if (Double.isNaN(station.latitude())) {
+                return;
+            }
+            long key = cellKey(cellIndex(station.latitude()), cellIndex(station.longitude()));
+            cells.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(station.stationId(), station);
+            cellByStation.put(station.stationId(), key);
+        }
+
+        synchronized void remove(String stationId) {
+            Long key = cellByStation.remove(stationId);
+            if (key == null) {
+                return;
+            }
+            Map<String, StationLocation> cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(stationId);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        int size() {
+            return cellByStation.size();
+        }
+
+        int cellCount() {
+            return cells.size();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.repository.ChargingPointRepository;
 import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.StationHourlyRollupRepository;
 import com.swp.evchargingstation.repository.StationRepository;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -35,6 +37,9 @@ public class StationUsageService {
     StationRepository stationRepository;
     ChargingPointRepository chargingPointRepository;
     ChargingSessionRepository chargingSessionRepository;
+    StationOccupancyService stationOccupancyService;
+    StationHourlyRollupRepository stationHourlyRollupRepository;
+    StationRollupService stationRollupService;
 
     /**
      * Lấy mức độ sử dụng của một trạm trong ngày (mặc định: hôm nay)
@@ -67,6 +72,18 @@ public class StationUsageService {
 
         double currentUsagePercent = totalPoints > 0 ? (currentInUse * 100.0 / totalPoints) : 0.0;
 
+        // Ngày đã chốt: mọi số liệu trong ngày đọc từ rollup theo giờ (1 query)
+        if (stationRollupService.isFinalized(date)) {
+            StationUsageAccumulator usage = new StationUsageAccumulator();
+            allPoints.forEach(cp -> usage.addPoints(cp.getStatus(), 1));
+            for (Object[] row : stationHourlyRollupRepository.findHourlyUsageByStation(
+                    stationId, date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+                usage.addRollupHour(row);
+            }
+            return usage.toResponse(stationId, station.getName(), station.getAddress(), date,
+                    usage.rollupOccupancy(stationId, date));
+        }
+
         // 3. Tính toán thống kê trong ngày
         LocalDateTime startOfDay = date.atStartOfDay();
         LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
@@ -96,8 +113,9 @@ public class StationUsageService {
         );
         totalRevenueToday = totalRevenueToday != null ? totalRevenueToday : 0.0;
 
-        // 4. Phân tích theo giờ
-        List<HourlyUsageData> hourlyUsage = calculateHourlyUsage(stationId, date, totalPoints);
+        // 4. Phân tích theo giờ (chiếm dụng tính từ khoảng [start, end) của từng phiên sạc)
+        StationOccupancyService.StationOccupancy occupancy = stationOccupancyService.computeDay(stationId, date);
+        List<HourlyUsageData> hourlyUsage = calculateHourlyUsage(stationId, date, totalPoints, occupancy);
 
         // 5. Tìm giờ cao điểm
         Integer peakHour = findPeakHour(hourlyUsage);
@@ -121,6 +139,8 @@ public class StationUsageService {
                 .hourlyUsage(hourlyUsage)
                 .peakHour(peakHour)
                 .peakUsagePercent(peakUsagePercent)
+                .peakConcurrentPoints(occupancy.peakConcurrentPoints())
+                .utilizationPercent(utilizationPercent(occupancy.totalPointMinutes(), totalPoints, date))
                 .build();
     }
 
@@ -133,24 +153,73 @@ public class StationUsageService {
     }
 
     /**
-     * Lấy mức độ sử dụng của TẤT CẢ trạm theo ngày cụ thể
+     * Lấy mức độ sử dụng của TẤT CẢ trạm theo ngày cụ thể.
+     * Số round trip cố định (trạm, trụ theo trạm × trạng thái, phiên sạc theo trạm × giờ, sweep chiếm dụng)
+     * thay vì gọi getStationUsageByDate cho từng trạm; ghép kết quả trong bộ nhớ.
      */
     @Transactional(readOnly = true)
     public List<StationUsageResponse> getAllStationsUsageByDate(LocalDate date) {
         log.info("Fetching all stations usage for date={}", date);
 
-        List<Station> allStations = stationRepository.findAll();
-        List<StationUsageResponse> responses = new ArrayList<>();
+        // 1. Danh sách trạm: [stationId, name, address, latitude, longitude, status]
+        List<Object[]> stations = stationRepository.findAllLocations();
+        Map<String, StationUsageAccumulator> byStation = new HashMap<>(stations.size() * 2);
+        for (Object[] row : stations) {
+            byStation.put((String) row[0], new StationUsageAccumulator());
+        }
+
+        // 2. Số trụ theo trạng thái: [stationId, status, count]
+        for (Object[] row : chargingPointRepository.countGroupByStationAndStatus()) {
+            StationUsageAccumulator usage = byStation.get((String) row[0]);
+            if (usage != null) {
+                usage.addPoints((ChargingPointStatus) row[1], ((Number) row[2]).intValue());
+            }
+        }
+
+        // Ngày đã chốt: phiên sạc + chiếm dụng theo trạm × giờ đọc từ rollup, không quét phiên sạc
+        if (stationRollupService.isFinalized(date)) {
+            for (Object[] row : stationHourlyRollupRepository.findHourlyUsageGroupByStation(
+                    date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+                StationUsageAccumulator usage = byStation.get((String) row[0]);
+                if (usage != null) {
+                    usage.addRollupHour(row);
+                }
+            }
+            List<StationUsageResponse> responses = new ArrayList<>(stations.size());
+            for (Object[] row : stations) {
+                String stationId = (String) row[0];
+                StationUsageAccumulator usage = byStation.get(stationId);
+                responses.add(usage.toResponse(stationId, (String) row[1], (String) row[2], date,
+                        usage.rollupOccupancy(stationId, date)));
+            }
+            return responses;
+        }
 
-        for (Station station : allStations) {
-            try {
-                StationUsageResponse usage = getStationUsageByDate(station.getStationId(), date);
-                responses.add(usage);
-            } catch (Exception e) {
-                log.error("Error fetching usage for station {}: {}", station.getStationId(), e.getMessage());
+        // 3. Phiên sạc trong ngày theo trạm × giờ
+        LocalDateTime startOfDay = date.atStartOfDay();
+        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
+        for (Object[] row : chargingSessionRepository.findHourlyUsageGroupByStation(
+                ChargingSessionStatus.COMPLETED, ChargingSessionStatus.IN_PROGRESS, startOfDay, endOfDay)) {
+            StationUsageAccumulator usage = byStation.get((String) row[0]);
+            if (usage != null && row[1] != null) {
+                usage.addHour(((Number) row[1]).intValue(), toInt(row[2]), toInt(row[3]), toInt(row[4]),
+                        toDouble(row[5]), toDouble(row[6]));
             }
         }
 
+        // 4. Chiếm dụng theo giờ của mọi trạm (1 lượt sweep)
+        Map<String, StationOccupancyService.StationOccupancy> occupancyByStation =
+                stationOccupancyService.computeDay(date);
+
+        // 5. Ghép response theo thứ tự trạm
+        List<StationUsageResponse> responses = new ArrayList<>(stations.size());
+        for (Object[] row : stations) {
+            String stationId = (String) row[0];
+            StationOccupancyService.StationOccupancy occupancy = occupancyByStation.getOrDefault(stationId,
+                    StationOccupancyService.StationOccupancy.empty(stationId, date.atStartOfDay(), 24));
+            responses.add(byStation.get(stationId)
+                    .toResponse(stationId, (String) row[1], (String) row[2], date, occupancy));
+        }
         return responses;
     }
 
@@ -159,7 +228,8 @@ public class StationUsageService {
     /**
      * Tính toán mức độ sử dụng theo từng giờ (0-23)
      */
-    private List<HourlyUsageData> calculateHourlyUsage(String stationId, LocalDate date, int totalPoints) {
+    private List<HourlyUsageData> calculateHourlyUsage(String stationId, LocalDate date, int totalPoints,
+                                                       StationOccupancyService.StationOccupancy occupancy) {
         LocalDateTime startOfDay = date.atStartOfDay();
         LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
 
@@ -179,19 +249,8 @@ public class StationUsageService {
                 Double energy = row[2] != null ? ((Number) row[2]).doubleValue() : 0.0;
                 Double revenue = row[3] != null ? ((Number) row[3]).doubleValue() : 0.0;
 
-                // Tạm tính usage percent (có thể cần logic phức tạp hơn)
-                // Giả sử: nếu có session trong giờ đó => coi như có điểm đang sạc
-                // Cần logic chính xác hơn dựa trên thời gian bắt đầu/kết thúc session
-                double usagePercent = totalPoints > 0 ? (sessionCount * 100.0 / totalPoints) : 0.0;
-
-                HourlyUsageData hourlyData = HourlyUsageData.builder()
-                        .hour(hour)
-                        .sessionCount(sessionCount.intValue())
-                        .activePoints(sessionCount.intValue()) // Simplified - cần logic chính xác hơn
-                        .usagePercent(Math.round(usagePercent * 100.0) / 100.0)
-                        .energyConsumed(Math.round(energy * 100.0) / 100.0)
-                        .revenue(Math.round(revenue * 100.0) / 100.0)
-                        .build();
+                HourlyUsageData hourlyData = toHourlyUsage(hour, sessionCount.intValue(), energy, revenue,
+                        occupancy.pointMinutes()[hour], occupancy.peakConcurrency()[hour], totalPoints);
 
                 hourlyMap.put(hour, hourlyData);
             }
@@ -200,23 +259,49 @@ public class StationUsageService {
         // Tạo list đầy đủ 24 giờ (fill 0 cho giờ không có data)
         List<HourlyUsageData> result = new ArrayList<>();
         for (int hour = 0; hour < 24; hour++) {
-            if (hourlyMap.containsKey(hour)) {
-                result.add(hourlyMap.get(hour));
-            } else {
-                result.add(HourlyUsageData.builder()
-                        .hour(hour)
-                        .sessionCount(0)
-                        .activePoints(0)
-                        .usagePercent(0.0)
-                        .energyConsumed(0.0)
-                        .revenue(0.0)
-                        .build());
-            }
+            result.add(hourlyMap.containsKey(hour)
+                    ? hourlyMap.get(hour)
+                    : toHourlyUsage(hour, 0, 0.0, 0.0,
+                            occupancy.pointMinutes()[hour], occupancy.peakConcurrency()[hour], totalPoints));
         }
 
         return result;
     }
 
+    /**
+     * Một dòng thống kê theo giờ.
+     * sessionCount: số phiên bắt đầu trong giờ; activePoints / usagePercent: chiếm dụng thực
+     * (phút-trụ đang sạc trong giờ / (số trụ × 60 phút))
+     */
+    private static HourlyUsageData toHourlyUsage(int hour, int sessionCount, double energy, double revenue,
+                                                 double pointMinutes, int peakConcurrency, int totalPoints) {
+        double usagePercent = totalPoints > 0 ? Math.min(100.0, pointMinutes * 100.0 / (totalPoints * 60.0)) : 0.0;
+        return HourlyUsageData.builder()
+                .hour(hour)
+                .sessionCount(sessionCount)
+                .activePoints(peakConcurrency)
+                .usagePercent(Math.round(usagePercent * 100.0) / 100.0)
+                .pointMinutesInUse(Math.round(pointMinutes * 100.0) / 100.0)
+                .energyConsumed(Math.round(energy * 100.0) / 100.0)
+                .revenue(Math.round(revenue * 100.0) / 100.0)
+                .build();
+    }
+
+    /**
+     * % thời gian-trụ được sử dụng trong ngày, tính trên phần ngày đã trôi qua (ngày hôm nay tính tới hiện tại).
+     */
+    private static double utilizationPercent(double pointMinutes, int totalPoints, LocalDate date) {
+        LocalDateTime startOfDay = date.atStartOfDay();
+        LocalDateTime now = LocalDateTime.now();
+        long elapsedMinutes = now.isBefore(startOfDay) ? 0
+                : Math.min(24 * 60, Duration.between(startOfDay, now).toMinutes());
+        if (totalPoints == 0 || elapsedMinutes == 0) {
+            return 0.0;
+        }
+        double utilization = Math.min(100.0, pointMinutes * 100.0 / (totalPoints * (double) elapsedMinutes));
+        return Math.round(utilization * 100.0) / 100.0;
+    }
+
     /**
      * Tìm giờ cao điểm (giờ có nhiều session nhất)
      */
@@ -244,4 +329,108 @@ public class StationUsageService {
                 .max(Double::compare)
                 .orElse(0.0);
     }
-}
\ No newline at end of file
+
+    private static int toInt(Object value) {
+        return value != null ? ((Number) value).intValue() : 0;
+    }
+
+    private static double toDouble(Object value) {
+        return value != null ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    /**
+     * Số liệu sử dụng của một trạm trong ngày, gom theo giờ vào mảng 24 phần tử.
+     */
+    private final class StationUsageAccumulator {
+        int totalPoints;
+        int inUsePoints;
+        int availablePoints;
+        final int[] sessions = new int[24];
+        final int[] completedSessions = new int[24];
+        final int[] activeSessions = new int[24];
+        final double[] energy = new double[24];
+        final double[] revenue = new double[24];
+        // Chỉ dùng khi đọc từ rollup (ngày đã chốt)
+        final double[] pointMinutes = new double[24];
+        final int[] peakConcurrency = new int[24];
+
+        void addPoints(ChargingPointStatus status, int count) {
+            totalPoints += count;
+            if (status == ChargingPointStatus.CHARGING) {
+                inUsePoints += count;
+            } else if (status == ChargingPointStatus.AVAILABLE) {
+                availablePoints += count;
+            }
+        }
+
+        void addHour(int hour, int sessionCount, int completedCount, int activeCount,
+                     double energyKwh, double revenueTotal) {
+            sessions[hour] += sessionCount;
+            completedSessions[hour] += completedCount;
+            activeSessions[hour] += activeCount;
+            energy[hour] += energyKwh;
+            revenue[hour] += revenueTotal;
+        }
+
+        /**
+         * Dòng [stationId, giờ, số phiên, COMPLETED, IN_PROGRESS, năng lượng, doanh thu, phút-trụ, đồng thời cao nhất]
+         * của station_hourly_rollups.
+         */
+        void addRollupHour(Object[] row) {
+            int hour = toInt(row[1]);
+            addHour(hour, toInt(row[2]), toInt(row[3]), toInt(row[4]), toDouble(row[5]), toDouble(row[6]));
+            pointMinutes[hour] += toDouble(row[7]);
+            peakConcurrency[hour] = Math.max(peakConcurrency[hour], toInt(row[8]));
+        }
+
+        StationOccupancyService.StationOccupancy rollupOccupancy(String stationId, LocalDate date) {
+            int peak = 0;
+            for (int concurrency : peakConcurrency) {
+                peak = Math.max(peak, concurrency);
+            }
+            return new StationOccupancyService.StationOccupancy(stationId, date.atStartOfDay(),
+                    pointMinutes, peakConcurrency, peak);
+        }
+
+        StationUsageResponse toResponse(String stationId, String stationName, String address, LocalDate date,
+                                        StationOccupancyService.StationOccupancy occupancy) {
+            int totalSessions = 0;
+            int completed = 0;
+            int active = 0;
+            double totalEnergy = 0.0;
+            double totalRevenue = 0.0;
+            List<HourlyUsageData> hourlyUsage = new ArrayList<>(24);
+            for (int hour = 0; hour < 24; hour++) {
+                totalSessions += sessions[hour];
+                completed += completedSessions[hour];
+                active += activeSessions[hour];
+                totalEnergy += energy[hour];
+                totalRevenue += revenue[hour];
+                hourlyUsage.add(toHourlyUsage(hour, sessions[hour], energy[hour], revenue[hour],
+                        occupancy.pointMinutes()[hour], occupancy.peakConcurrency()[hour], totalPoints));
+            }
+            double currentUsagePercent = totalPoints > 0 ? (inUsePoints * 100.0 / totalPoints) : 0.0;
+
+            return StationUsageResponse.builder()
+                    .stationId(stationId)
+                    .stationName(stationName)
+                    .address(address)
+                    .date(date)
+                    .totalChargingPoints(totalPoints)
+                    .currentInUsePoints(inUsePoints)
+                    .currentAvailablePoints(availablePoints)
+                    .currentUsagePercent(Math.round(currentUsagePercent * 100.0) / 100.0)
+                    .totalSessionsToday(totalSessions)
+                    .completedSessionsToday(completed)
+                    .activeSessionsToday(active)
+                    .totalEnergyToday(Math.round(totalEnergy * 100.0) / 100.0)
+                    .totalRevenueToday(Math.round(totalRevenue * 100.0) / 100.0)
+                    .hourlyUsage(hourlyUsage)
+                    .peakHour(findPeakHour(hourlyUsage))
+                    .peakUsagePercent(findPeakUsagePercent(hourlyUsage))
+                    .peakConcurrentPoints(occupancy.peakConcurrentPoints())
+                    .utilizationPercent(utilizationPercent(occupancy.totalPointMinutes(), totalPoints, date))
+                    .build();
+        }
+    }
+}
@@ -213,8 +213,9 @@ public class TopUpService {
                         return new AppException(ErrorCode.WALLET_TRANSACTION_NOT_FOUND);
                     });
 
-            // Update wallet balance
-            Wallet wallet = transaction.getWallet();
+            // Update wallet balance (khóa row ví như credit / debit / hold)
+            Wallet wallet = walletRepository.findByWalletIdForUpdate(transaction.getWallet().getWalletId())
+                    .orElseThrow(() -> new AppException(ErrorCode.WALLET_NOT_FOUND));
             String userId = wallet.getUser().getUserId();
 
             wallet.setBalance(wallet.getBalance() + amount);
@@ -266,9 +267,9 @@ public class TopUpService {
             throw new AppException(ErrorCode.INVALID_TOPUP_AMOUNT);
         }
 
-        // Ensure wallet exists
+        // Ensure wallet exists (khóa ví ngay từ lần đọc đầu tiên, credit bên dưới dùng lại row đã khóa)
         try {
-            walletService.getWallet(targetUser.getUserId());
+            walletService.getWalletForUpdate(targetUser.getUserId());
         } catch (AppException e) {
             if (e.getErrorCode() == ErrorCode.WALLET_NOT_FOUND) {
                 walletService.createWalletByUserId(targetUser.getUserId());
@@ -14,6 +14,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import com.swp.evchargingstation.mapper.UserMapper;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -23,7 +24,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -423,14 +423,17 @@ public class UserService {
 
 //=====================================================ADMIN============================================================
 
-    //lay tat ca driver cho ADMIN voi day du thong tin (ten, lien he, ngay tham gia, goi dich vu, so phien, tong chi tieu, trang thai)
+    //lay driver cho ADMIN theo trang (thu tu userId) voi day du thong tin (ten, lien he, ngay tham gia, goi dich vu, so phien, tong chi tieu, trang thai)
     @PreAuthorize("hasRole('ADMIN')")
-    public List<AdminUserResponse> getDriversForAdmin() {
+    public CursorPageResponse<AdminUserResponse> getDriversForAdmin(Integer limit, String after) {
         log.info("In method get Drivers For Admin");
-        return driverRepository.findAllWithUser() // Lay truc tiep tu DriverRepository
-                .stream()
-                .map(driver -> mapToAdminUserResponse(driver))
-                .collect(Collectors.toList());
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<Driver> drivers = driverRepository.findPageWithUser( // Lay truc tiep tu DriverRepository
+                cursor != null ? cursor.id() : null, KeysetCursor.fetchOneMore(pageSize));
+        return KeysetCursor.page(drivers, pageSize,
+                driver -> new KeysetCursor(null, driver.getUserId()),
+                this::mapToAdminUserResponse);
     }
 
     // NOTE: ADMIN update thông tin driver theo userId. Không được phép sửa email, password, joinDate.
@@ -588,10 +591,17 @@ public class UserService {
 
     //lay tat ca user (legacy method, giu nguyen de khong break existing code)
     //moi cap nhat (User -> UserResponse, map tung User thanh UserResponse)
+    //lay user theo trang (thu tu userId), after = nextCursor cua trang truoc
     @PreAuthorize("hasRole('ADMIN')") //chi co ADMIN moi truy cap duoc
-    public List<UserResponse> getUsers() {
+    public CursorPageResponse<UserResponse> getUsers(Integer limit, String after) {
         log.info("In method get Users");
-        return userRepository.findAll().stream().map(userMapper::toUserResponse).toList();
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<User> users = userRepository.findPage(cursor != null ? cursor.id() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+        return KeysetCursor.page(users, pageSize,
+                user -> new KeysetCursor(null, user.getUserId()),
+                userMapper::toUserResponse);
     }
 
     //lay user theo id
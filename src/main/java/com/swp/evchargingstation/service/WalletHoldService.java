@@ -0,0 +1,177 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Booking;
+import com.swp.evchargingstation.entity.ChargingSession;
+import com.swp.evchargingstation.entity.Wallet;
+import com.swp.evchargingstation.entity.WalletHold;
+import com.swp.evchargingstation.enums.WalletHoldStatus;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.WalletHoldRepository;
+import com.swp.evchargingstation.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ tiền (prepaid hold) trong ví cho phiên sạc đang chạy.
+ *
+ * - Start session: giữ một chunk từ số dư khả dụng (balance - các hold khác - safety buffer)
+ * - Simulator so sánh chi phí với trần (deposit + tiền giữ) trong bộ nhớ,
+ *   chỉ gọi extendHold khi chi phí vượt trần → không còn query ví/booking mỗi tick
+ * - Complete session: release hold, settlement trừ tiền thật như cũ
+ *
+ * Đặt/gia hạn hold đều khóa row ví (PESSIMISTIC_WRITE) nên hai phiên sạc đồng thời
+ * của cùng một user không giữ trùng một khoản số dư.
+ */
+@Service
+@Slf4j
+public class WalletHoldService {
+
+    // Trần cho session của driver chưa có ví: không ngắt sạc vì tiền
+    public static final double UNLIMITED_CEILING = Double.MAX_VALUE;
+
+    private final WalletHoldRepository walletHoldRepository;
+    private final WalletRepository walletRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+
+    private final double chunkAmount;
+    private final double safetyBuffer;
+
+    public WalletHoldService(WalletHoldRepository walletHoldRepository,
+                             WalletRepository walletRepository,
+                             ChargingSessionRepository chargingSessionRepository,
+                             @Value("${wallet.hold.chunk-amount:50000}") double chunkAmount,
+                             @Value("${wallet.hold.safety-buffer:1000}") double safetyBuffer) {
+        this.walletHoldRepository = walletHoldRepository;
+        this.walletRepository = walletRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.chunkAmount = chunkAmount;
+        this.safetyBuffer = safetyBuffer;
+    }
+
+    /**
+     * Số dư khả dụng = balance - tổng hold ACTIVE
+     */
+    public double getAvailableBalance(Wallet wallet) {
+        return wallet.getBalance() - getHeldAmount(wallet);
+    }
+
+    public double getHeldAmount(Wallet wallet) {
+        Double held = walletHoldRepository.sumAmountByWalletIdAndStatus(wallet.getWalletId(), WalletHoldStatus.ACTIVE);
+        return held != null ? held : 0.0;
+    }
+
+    /**
+     * Đặt hold khi bắt đầu phiên sạc (chạy trong transaction start session).
+     * Số dư không đủ một chunk thì giữ phần còn lại; phiên sạc sẽ tự dừng khi chi phí vượt trần.
+     *
+     * @param depositAmount deposit của booking đã trả trước (có thể null)
+     * @return trần chi phí của phiên sạc (deposit + tiền giữ)
+     */
+    @Transactional
+    public double placeHold(String userId, String sessionId, Double depositAmount) {
+        Wallet wallet = walletRepository.findByUserIdForUpdate(userId).orElse(null);
+        if (wallet == null) {
+            // Driver chưa có ví (ví được tạo lúc top-up đầu tiên) → không giới hạn, settlement ghi nợ như cũ
+            log.warn("No wallet for user {} - session {} runs without a wallet hold", userId, sessionId);
+            return UNLIMITED_CEILING;
+        }
+
+        double deposit = depositAmount != null ? depositAmount : 0.0;
+        double amount = Math.max(0.0, Math.min(chunkAmount, getAvailableBalance(wallet) - safetyBuffer));
+
+        WalletHold hold = walletHoldRepository.save(WalletHold.builder()
+                .wallet(wallet)
+                .sessionId(sessionId)
+                .amount(amount)
+                .depositAmount(deposit)
+                .status(WalletHoldStatus.ACTIVE)
+                .build());
+
+        log.info("Placed wallet hold {} VND for session {} (user {}, deposit {}). Ceiling: {}",
+                amount, sessionId, userId, deposit, hold.getCeiling());
+        return hold.getCeiling();
+    }
+
+    /**
+     * Gia hạn hold khi chi phí phiên sạc chạm trần: giữ thêm ít nhất một chunk
+     * (hoặc đủ phần thiếu nếu lớn hơn), giới hạn bởi số dư khả dụng.
+     * Session chưa có hold (bắt đầu trước khi có cơ chế hold) sẽ được tạo hold ở đây.
+     *
+     * @param requiredCost chi phí hiện tại của phiên sạc
+     * @return trần mới; nhỏ hơn requiredCost nghĩa là không đủ tiền
+     */
+    @Transactional
+    public double extendHold(String userId, String sessionId, double requiredCost) {
+        Wallet wallet = walletRepository.findByUserIdForUpdate(userId).orElse(null);
+        if (wallet == null) {
+            return UNLIMITED_CEILING;
+        }
+
+        WalletHold hold = walletHoldRepository.findBySessionId(sessionId)
+                .orElseGet(() -> WalletHold.builder()
+                        .wallet(wallet)
+                        .sessionId(sessionId)
+                        .depositAmount(findBookingDeposit(sessionId))
+                        .status(WalletHoldStatus.ACTIVE)
+                        .build());
+
+        if (hold.getStatus() != WalletHoldStatus.ACTIVE) {
+            return hold.getCeiling();
+        }
+
+        double shortfall = requiredCost - hold.getCeiling();
+        if (shortfall <= 0) {
+            return hold.getCeiling();
+        }
+
+        double available = getAvailableBalance(wallet) - safetyBuffer;
+        double extension = Math.max(0.0, Math.min(Math.max(chunkAmount, shortfall), available));
+
+        hold.setAmount(hold.getAmount() + extension);
+        walletHoldRepository.save(hold);
+
+        log.info("Extended wallet hold for session {} by {} VND. Ceiling: {}, required: {}",
+                sessionId, extension, hold.getCeiling(), requiredCost);
+        return hold.getCeiling();
+    }
+
+    /**
+     * Giải phóng hold khi phiên sạc kết thúc (idempotent).
+     */
+    @Transactional
+    public void releaseHold(String sessionId) {
+        walletHoldRepository.findBySessionId(sessionId)
+                .filter(hold -> hold.getStatus() == WalletHoldStatus.ACTIVE)
+                .ifPresent(hold -> {
+                    hold.setStatus(WalletHoldStatus.RELEASED);
+                    walletHoldRepository.save(hold);
+                    log.info("Released wallet hold {} VND for session {}", hold.getAmount(), sessionId);
+                });
+    }
+
+    /**
+     * Trần chi phí của nhiều session trong 1 query (load live state store).
+     * Session không có hold ACTIVE không có trong map.
+     */
+    public Map<String, Double> findCeilings(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return Map.of();
+        }
+        List<WalletHold> holds = walletHoldRepository.findBySessionIdsAndStatus(sessionIds, WalletHoldStatus.ACTIVE);
+        return holds.stream().collect(Collectors.toMap(WalletHold::getSessionId, WalletHold::getCeiling));
+    }
+
+    private double findBookingDeposit(String sessionId) {
+        return chargingSessionRepository.findById(sessionId)
+                .map(ChargingSession::getBooking)
+                .map(Booking::getDepositAmount)
+                .orElse(0.0);
+    }
+}
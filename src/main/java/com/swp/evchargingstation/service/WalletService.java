@@ -1,5 +1,6 @@
 package com.swp.evchargingstation.service;
 
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
 import com.swp.evchargingstation.dto.response.WalletBalanceResponse;
 import com.swp.evchargingstation.dto.response.WalletDashboardResponse;
 import com.swp.evchargingstation.dto.response.WalletTransactionResponse;
@@ -13,6 +14,7 @@ import com.swp.evchargingstation.exception.ErrorCode;
 import com.swp.evchargingstation.repository.UserRepository;
 import com.swp.evchargingstation.repository.WalletRepository;
 import com.swp.evchargingstation.repository.WalletTransactionRepository;
+import com.swp.evchargingstation.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
@@ -22,7 +24,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -32,6 +33,7 @@ public class WalletService {
     private final WalletRepository walletRepository;
     private final WalletTransactionRepository transactionRepository;
     private final UserRepository userRepository;
+    private final WalletHoldService walletHoldService;
 
     // ⚠️ EmailService: Keep for backward compatibility but prefer events
     // Email notifications should be sent via WalletEventListener (async)
@@ -48,6 +50,27 @@ public class WalletService {
                 .orElseThrow(() -> new AppException(ErrorCode.WALLET_NOT_FOUND));
     }
 
+    /**
+     * Get wallet with row lock (PESSIMISTIC_WRITE) until the transaction ends.
+     * Mọi thao tác đổi số dư (credit, debit, settlement) khóa ví giống placeHold / extendHold,
+     * để kiểm tra số dư khả dụng và ghi số dư không chồng lên nhau.
+     * Phải khóa TRƯỚC lần đọc ví đầu tiên trong transaction: entity đã nằm trong persistence context
+     * sẽ không được đọc lại từ DB.
+     */
+    public Wallet getWalletForUpdate(String userId) {
+        return walletRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.WALLET_NOT_FOUND));
+    }
+
+    /**
+     * Số dư khả dụng (balance - hold ACTIVE), khóa row ví tới hết transaction.
+     * Dùng để kiểm tra trước khi debit trong cùng transaction.
+     */
+    @Transactional
+    public double getAvailableBalanceForUpdate(String userId) {
+        return walletHoldService.getAvailableBalance(getWalletForUpdate(userId));
+    }
+
     /**
      * Get balance by userId (String)
      */
@@ -71,26 +94,24 @@ public class WalletService {
      */
     public WalletBalanceResponse getWalletBalance(String userId) {
         Wallet wallet = getWallet(userId);
+        double heldAmount = walletHoldService.getHeldAmount(wallet);
         return WalletBalanceResponse.builder()
                 .walletId(wallet.getWalletId())
                 .userId(wallet.getUser().getUserId())
                 .balance(wallet.getBalance())
+                .heldAmount(heldAmount)
+                .availableBalance(wallet.getBalance() - heldAmount)
                 .updatedAt(wallet.getUpdatedAt() != null ?
                     wallet.getUpdatedAt().format(DateTimeFormatter.ISO_DATE_TIME) : null)
                 .build();
     }
 
     /**
-     * Get transaction history
+     * Get transaction history, one page at a time (newest first)
      */
-    public List<WalletTransactionResponse> getTransactionHistory(String userId) {
-        Wallet wallet = getWallet(userId);
-        List<WalletTransaction> transactions = transactionRepository
-                .findByWalletOrderByTimestampDesc(wallet);
-
-        return transactions.stream()
-                .map(this::mapToTransactionResponse)
-                .collect(Collectors.toList());
+    public CursorPageResponse<WalletTransactionResponse> getTransactionHistory(String userId, Integer limit,
+                                                                               String after) {
+        return getTransactionHistoryByType(userId, null, limit, after);
     }
 
     public WalletTransaction credit(Long userId, Double amount, TransactionType type, String description) {
@@ -110,7 +131,7 @@ public class WalletService {
             throw new AppException(ErrorCode.INVALID_TOPUP_AMOUNT);
         }
 
-        Wallet wallet = getWallet(userId);
+        Wallet wallet = getWalletForUpdate(userId);
 
         // ===== CORE BUSINESS LOGIC =====
         // Update balance
@@ -182,12 +203,13 @@ public class WalletService {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        Wallet wallet = getWallet(userId);
+        Wallet wallet = getWalletForUpdate(userId);
 
-        // Check sufficient funds
-        if (wallet.getBalance() < amount) {
-            log.warn("❌ Insufficient funds for user {}. Balance: {}, Required: {}",
-                    userId, wallet.getBalance(), amount);
+        // Check sufficient funds (tiền đang giữ cho phiên sạc khác không được dùng)
+        double availableBalance = walletHoldService.getAvailableBalance(wallet);
+        if (availableBalance < amount) {
+            log.warn("❌ Insufficient funds for user {}. Balance: {}, Available: {}, Required: {}",
+                    userId, wallet.getBalance(), availableBalance, amount);
             throw new AppException(ErrorCode.INSUFFICIENT_FUNDS);
         }
 
@@ -323,45 +345,55 @@ public class WalletService {
     }
 
     /**
-     * Get transaction history filtered by type
+     * Get transaction history filtered by type, one page at a time (newest first).
+     * The filter runs in the query so every page is full and the cursor stays valid.
      */
-    public List<WalletTransactionResponse> getTransactionHistoryByType(String userId, String typeFilter) {
+    public CursorPageResponse<WalletTransactionResponse> getTransactionHistoryByType(String userId, String typeFilter,
+                                                                                     Integer limit, String after) {
         Wallet wallet = getWallet(userId);
-        List<WalletTransaction> transactions = transactionRepository
-                .findByWalletOrderByTimestampDesc(wallet);
-
-        // Filter based on type
-        return transactions.stream()
-                .filter(t -> matchesTypeFilter(t, typeFilter))
-                .map(this::mapToTransactionResponse)
-                .collect(Collectors.toList());
+        TypeFilter filter = resolveTypeFilter(typeFilter);
+
+        int pageSize = KeysetCursor.resolveLimit(limit);
+        KeysetCursor cursor = KeysetCursor.decode(after);
+        List<WalletTransaction> transactions = transactionRepository.findPageByWalletId(wallet.getWalletId(),
+                filter.filterTypes(), filter.types(), filter.matchRefundDescription(),
+                cursor != null ? cursor.timestamp() : null, cursor != null ? cursor.numericId() : null,
+                KeysetCursor.fetchOneMore(pageSize));
+
+        return KeysetCursor.page(transactions, pageSize,
+                t -> new KeysetCursor(t.getTimestamp(), String.valueOf(t.getId())),
+                this::mapToTransactionResponse);
     }
 
     /**
-     * Check if transaction matches the filter
+     * filterTypes = false: every transaction; otherwise only the listed types,
+     * plus transactions whose description mentions "refund" when matchRefundDescription is set
      */
-    private boolean matchesTypeFilter(WalletTransaction transaction, String typeFilter) {
+    private record TypeFilter(boolean filterTypes, List<TransactionType> types, boolean matchRefundDescription) {
+    }
+
+    private static TypeFilter resolveTypeFilter(String typeFilter) {
+        // IN :types cần collection không rỗng kể cả khi không lọc
+        TypeFilter all = new TypeFilter(false, List.of(TransactionType.values()), false);
         if (typeFilter == null || typeFilter.equalsIgnoreCase("ALL")) {
-            return true;
+            return all;
         }
 
         switch (typeFilter.toUpperCase()) {
             case "TOPUP":
             case "NAP_TIEN":
-                return transaction.getTransactionType() == TransactionType.TOPUP_CASH ||
-                       transaction.getTransactionType() == TransactionType.TOPUP_ZALOPAY;
+                return new TypeFilter(true, List.of(TransactionType.TOPUP_CASH, TransactionType.TOPUP_ZALOPAY), false);
 
             case "CHARGING":
             case "SAC_XE":
-                return transaction.getTransactionType() == TransactionType.CHARGING_PAYMENT;
+                return new TypeFilter(true, List.of(TransactionType.CHARGING_PAYMENT), false);
 
             case "REFUND":
             case "HOAN_TIEN":
-                return transaction.getTransactionType() == TransactionType.BOOKING_DEPOSIT_REFUND ||
-                       transaction.getDescription() != null && transaction.getDescription().toLowerCase().contains("refund");
+                return new TypeFilter(true, List.of(TransactionType.BOOKING_DEPOSIT_REFUND), true);
 
             default:
-                return true;
+                return all;
         }
     }
 
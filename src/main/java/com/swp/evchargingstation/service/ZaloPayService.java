@@ -7,6 +7,7 @@ import com.swp.evchargingstation.dto.zalopay.ZaloPayCreateRequest;
 import com.swp.evchargingstation.dto.zalopay.ZaloPayCreateResponse;
 import com.swp.evchargingstation.entity.ChargingSession;
 import com.swp.evchargingstation.entity.Payment;
+import com.swp.evchargingstation.event.payment.PaymentCompletedEvent;
 import com.swp.evchargingstation.enums.PaymentStatus;
 import com.swp.evchargingstation.exception.AppException;
 import com.swp.evchargingstation.exception.ErrorCode;
@@ -15,6 +16,7 @@ import com.swp.evchargingstation.repository.PaymentRepository;
 import com.swp.evchargingstation.util.ZaloPayUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +34,7 @@ public class ZaloPayService {
     private final ZaloPayConfig zaloPayConfig;
     private final ChargingSessionRepository sessionRepository;
     private final PaymentRepository paymentRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
@@ -84,6 +87,7 @@ public class ZaloPayService {
             payment.setPaidAt(LocalDateTime.now());
             payment.setUpdatedAt(LocalDateTime.now());
             paymentRepository.save(payment);
+            eventPublisher.publishEvent(new PaymentCompletedEvent(this, payment));
 
             log.info("Payment completed successfully: {}", appTransId);
 
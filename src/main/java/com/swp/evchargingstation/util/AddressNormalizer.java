@@ -0,0 +1,27 @@
+package com.swp.evchargingstation.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Chuẩn hóa địa chỉ làm khóa cache geocoding: cùng một địa chỉ gõ khác nhau
+ * (hoa/thường, khoảng trắng, dấu câu, dạng Unicode tổ hợp) cho ra cùng một khóa.
+ * Giữ nguyên dấu tiếng Việt vì dấu phân biệt địa danh.
+ */
+public final class AddressNormalizer {
+
+    private AddressNormalizer() {
+    }
+
+    public static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        return Normalizer.normalize(address, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[.;]+", "")
+                .replaceAll("\\s+", " ")
+                .replaceAll("\\s*,\\s*", ", ")
+                .replaceAll("^[,\\s]+|[,\\s]+$", ""); // Bỏ dấu phẩy / khoảng trắng thừa ở đầu, cuối
+    }
+}
@@ -0,0 +1,116 @@
+package com.swp.evchargingstation.util;
+
+import java.util.Arrays;
+
+/**
+ * Đường cong sạc CC/CV đã tính sẵn cho một cặp (dung lượng pin, công suất đỉnh).
+ *
+ * - CC: sạc ở công suất đỉnh = MIN(trụ, xe) tới CV_START_SOC (80%)
+ * - CV: công suất giảm tuyến tính từ đỉnh xuống TAPER_END_RATIO × đỉnh khi đạt 100%
+ *
+ * Bảng lưu số phút tích lũy để sạc từ 0% tới mỗi mốc SOC (bước 0.1%):
+ * - minutesBetween(from, to): O(1), nội suy tuyến tính
+ * - socAfter(from, minutes): tìm nhị phân trên bảng (≈10 bước cho 1001 mốc)
+ *
+ * Immutable, dùng chung giữa các thread.
+ */
+public final class ChargingCurve {
+
+    public static final double CV_START_SOC = 80.0;
+    public static final double TAPER_END_RATIO = 0.2;
+
+    static final int STEPS_PER_PERCENT = 10;
+    static final int STEPS = 100 * STEPS_PER_PERCENT;
+
+    private final float capacityKwh;
+    private final float peakPowerKw;
+    private final double[] minutesAt;
+
+    public ChargingCurve(float capacityKwh, float peakPowerKw) {
+        if (capacityKwh <= 0 || peakPowerKw <= 0) {
+            throw new IllegalArgumentException("capacityKwh and peakPowerKw must be positive");
+        }
+        this.capacityKwh = capacityKwh;
+        this.peakPowerKw = peakPowerKw;
+        this.minutesAt = new double[STEPS + 1];
+
+        double stepEnergyKwh = capacityKwh / (double) STEPS;
+        for (int i = 1; i <= STEPS; i++) {
+            double midSoc = (i - 0.5) / STEPS_PER_PERCENT;
+            minutesAt[i] = minutesAt[i - 1] + stepEnergyKwh / powerAt(midSoc) * 60.0;
+        }
+    }
+
+    public float getCapacityKwh() {
+        return capacityKwh;
+    }
+
+    public float getPeakPowerKw() {
+        return peakPowerKw;
+    }
+
+    /**
+     * Công suất sạc (kW) tại mức SOC
+     */
+    public double powerAt(double socPercent) {
+        if (socPercent <= CV_START_SOC) {
+            return peakPowerKw;
+        }
+        double taper = (Math.min(100.0, socPercent) - CV_START_SOC) / (100.0 - CV_START_SOC);
+        return peakPowerKw * (1.0 - (1.0 - TAPER_END_RATIO) * taper);
+    }
+
+    /**
+     * Số phút giả lập để sạc từ fromSoc tới toSoc (0 nếu toSoc <= fromSoc)
+     */
+    public double minutesBetween(double fromSocPercent, double toSocPercent) {
+        if (toSocPercent <= fromSocPercent) {
+            return 0.0;
+        }
+        return minutesAt(toSocPercent) - minutesAt(fromSocPercent);
+    }
+
+    /**
+     * SOC đạt được sau khi sạc thêm minutes phút kể từ fromSoc (tối đa 100%)
+     */
+    public double socAfter(double fromSocPercent, double minutes) {
+        if (minutes <= 0) {
+            return clamp(fromSocPercent);
+        }
+        double targetMinutes = minutesAt(fromSocPercent) + minutes;
+        if (targetMinutes >= minutesAt[STEPS]) {
+            return 100.0;
+        }
+
+        // Mốc đầu tiên có minutesAt >= targetMinutes
+        int index = Arrays.binarySearch(minutesAt, targetMinutes);
+        if (index >= 0) {
+            return (double) index / STEPS_PER_PERCENT;
+        }
+        int upper = -index - 1;
+        int lower = upper - 1;
+        double fraction = (targetMinutes - minutesAt[lower]) / (minutesAt[upper] - minutesAt[lower]);
+        return (lower + fraction) / STEPS_PER_PERCENT;
+    }
+
+    /**
+     * Năng lượng (kWh) nạp vào khi SOC tăng từ fromSoc tới toSoc
+     */
+    public double energyBetween(double fromSocPercent, double toSocPercent) {
+        return Math.max(0.0, toSocPercent - fromSocPercent) / 100.0 * capacityKwh;
+    }
+
+    private double minutesAt(double socPercent) {
+        double position = clamp(socPercent) * STEPS_PER_PERCENT;
+        int lower = (int) Math.floor(position);
+        if (lower >= STEPS) {
+            return minutesAt[STEPS];
+        }
+        double fraction = position - lower;
+        return minutesAt[lower] + fraction * (minutesAt[lower + 1] - minutesAt[lower]);
+    }
+
+    private static double clamp(double socPercent) {
+        return Math.max(0.0, Math.min(100.0, socPercent));
+    }
+}
@@ -0,0 +1,96 @@
+package com.swp.evchargingstation.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc CSV (RFC 4180) từng record một từ stream, không buffer toàn bộ file.
+ *
+ * - Field có thể đặt trong dấu nháy kép, "" là dấu nháy trong field, field trong nháy được chứa xuống dòng
+ * - Bỏ qua dòng trống và BOM UTF-8 ở đầu file
+ */
+public class CsvRecordReader {
+
+    private final BufferedReader reader;
+    private final char delimiter;
+
+    private long lineNumber;
+    private long recordLineNumber;
+
+    public CsvRecordReader(BufferedReader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return các field của record kế tiếp, null khi hết dữ liệu
+     * @throws IOException nếu lỗi đọc hoặc file kết thúc giữa một field trong nháy
+     */
+    public List<String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+        } while (line.isBlank());
+        recordLineNumber = lineNumber;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i >= line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Field trong nháy chứa xuống dòng: đọc tiếp dòng sau
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLineNumber);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Số dòng (bắt đầu từ 1) nơi record vừa đọc bắt đầu.
+     */
+    public long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+}
@@ -0,0 +1,65 @@
+package com.swp.evchargingstation.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Ghi CSV (RFC 4180) từng field một thẳng ra Writer, không dựng record trong bộ nhớ.
+ *
+ * - Field chứa dấu phân cách, dấu nháy hoặc xuống dòng được đặt trong nháy kép, dấu nháy được nhân đôi
+ * - null được ghi thành field rỗng
+ */
+public class CsvRecordWriter {
+
+    private final Writer writer;
+    private final char delimiter;
+
+    private boolean firstField = true;
+
+    public CsvRecordWriter(Writer writer, char delimiter) {
+        this.writer = writer;
+        this.delimiter = delimiter;
+    }
+
+    public void field(String value) throws IOException {
+        if (!firstField) {
+            writer.write(delimiter);
+        }
+        firstField = false;
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (!needsQuoting(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Kết thúc record hiện tại (CRLF theo RFC 4180).
+     */
+    public void endRecord() throws IOException {
+        writer.write("\r\n");
+        firstField = true;
+    }
+
+    private boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        // Giữ nguyên khoảng trắng đầu / cuối field khi đọc lại
+        return Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1));
+    }
+}
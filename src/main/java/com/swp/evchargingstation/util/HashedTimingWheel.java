@@ -0,0 +1,185 @@
+package com.swp.evchargingstation.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: lập lịch hàng chục nghìn timeout với chi phí O(1) cho schedule/cancel.
+ *
+ * - Một worker thread riêng quay bánh xe mỗi tickMillis
+ * - Task đến hạn được chuyển sang executor, worker không bao giờ chạy task trực tiếp
+ * - Mỗi key chỉ có tối đa một timeout; schedule lại cùng key sẽ thay thế timeout cũ
+ * - Deadline đã qua sẽ được fire ở tick kế tiếp
+ *
+ * @param <K> kiểu key (vd: sessionId)
+ */
+@Slf4j
+public class HashedTimingWheel<K> {
+
+    private final String name;
+    private final long tickMillis;
+    private final int mask;
+    private final List<Timeout<K>>[] buckets;
+    private final Executor executor;
+
+    private final Map<K, Timeout<K>> timeoutsByKey = new ConcurrentHashMap<>();
+    private final Queue<Timeout<K>> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+    private Thread worker;
+    private long startMillis;
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize, Executor executor) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        // Làm tròn wheelSize lên lũy thừa của 2 để dùng mask thay cho phép chia
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startMillis = System.currentTimeMillis();
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Timing wheel '{}' started - tick: {} ms, buckets: {}", name, tickMillis, buckets.length);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        log.info("Timing wheel '{}' stopped with {} pending timeouts", name, timeoutsByKey.size());
+    }
+
+    /**
+     * Lập lịch (hoặc lập lịch lại) task cho key tại thời điểm deadlineMillis (epoch millis).
+     */
+    public void schedule(K key, long deadlineMillis, Runnable task) {
+        Timeout<K> timeout = new Timeout<>(key, deadlineMillis, task);
+        Timeout<K> previous = timeoutsByKey.put(key, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        pendingTimeouts.add(timeout);
+    }
+
+    /**
+     * Hủy timeout của key (nếu có).
+     */
+    public boolean cancel(K key) {
+        Timeout<K> timeout = timeoutsByKey.remove(key);
+        if (timeout == null) {
+            return false;
+        }
+        timeout.cancelled = true;
+        return true;
+    }
+
+    public boolean isScheduled(K key) {
+        return timeoutsByKey.containsKey(key);
+    }
+
+    public int size() {
+        return timeoutsByKey.size();
+    }
+
+    private void run() {
+        while (running) {
+            long nextTickAt = startMillis + (tick + 1) * tickMillis;
+            long sleepMillis = nextTickAt - System.currentTimeMillis();
+            if (sleepMillis > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleepMillis));
+                if (Thread.interrupted() && !running) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                transferPendingTimeouts();
+                expireBucket(buckets[(int) (tick & mask)], System.currentTimeMillis());
+            } catch (Exception e) {
+                log.error("Timing wheel '{}' tick failed: {}", name, e.getMessage(), e);
+            }
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout<K> timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max(tick, (timeout.deadlineMillis - startMillis) / tickMillis);
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(List<Timeout<K>> bucket, long nowMillis) {
+        Iterator<Timeout<K>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout<K> timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadlineMillis <= nowMillis + tickMillis) {
+                iterator.remove();
+                // Chỉ fire nếu timeout vẫn là timeout hiện hành của key
+                if (timeoutsByKey.remove(timeout.key, timeout)) {
+                    fire(timeout);
+                }
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private void fire(Timeout<K> timeout) {
+        try {
+            executor.execute(timeout.task);
+        } catch (Exception e) {
+            log.error("Timing wheel '{}' failed to dispatch timeout for {}: {}", name, timeout.key, e.getMessage(), e);
+        }
+    }
+
+    private static final class Timeout<K> {
+        final K key;
+        final long deadlineMillis;
+        final Runnable task;
+        volatile boolean cancelled;
+        long remainingRounds;
+
+        Timeout(K key, long deadlineMillis, Runnable task) {
+            this.key = key;
+            this.deadlineMillis = deadlineMillis;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.swp.evchargingstation.util;
+
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Cursor phân trang keyset: vị trí (timestamp, id) của row cuối trang trước.
+ *
+ * Query trang kế tiếp seek thẳng tới sau vị trí này bằng index (timestamp, id) thay vì OFFSET,
+ * nên thời gian mỗi trang không tăng theo độ sâu. id phá hòa khi trùng timestamp để thứ tự ổn định.
+ * Danh sách không có cột thời gian (users, drivers) chỉ seek theo id, timestamp = null.
+ * Cột thời gian dùng để seek phải luôn có giá trị (được set khi tạo row): row có timestamp null làm cursor
+ * quay về trang đầu.
+ *
+ * Cursor gửi cho client là chuỗi base64url mờ ("timestamp|id"), client chỉ truyền lại nguyên văn.
+ */
+public record KeysetCursor(LocalDateTime timestamp, String id) {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private static final char SEPARATOR = '|';
+
+    /**
+     * @param limit số row mỗi trang do client truyền (null = DEFAULT_LIMIT, lớn hơn MAX_LIMIT bị giới hạn lại)
+     * @throws AppException PAGINATION_LIMIT_INVALID nếu limit < 1
+     */
+    public static int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1) {
+            throw new AppException(ErrorCode.PAGINATION_LIMIT_INVALID);
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Lấy dư 1 row để biết còn trang sau hay không.
+     */
+    public static Pageable fetchOneMore(int limit) {
+        return PageRequest.of(0, limit + 1);
+    }
+
+    /**
+     * @return null nếu after rỗng (trang đầu)
+     * @throws AppException PAGINATION_CURSOR_INVALID nếu cursor không đọc được
+     */
+    public static KeysetCursor decode(String after) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new AppException(ErrorCode.PAGINATION_CURSOR_INVALID);
+            }
+            LocalDateTime timestamp = separator == 0 ? null : LocalDateTime.parse(raw.substring(0, separator));
+            return new KeysetCursor(timestamp, raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new AppException(ErrorCode.PAGINATION_CURSOR_INVALID);
+        }
+    }
+
+    public String encode() {
+        String raw = (timestamp != null ? timestamp.toString() : "") + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Id dạng số (bảng dùng IDENTITY).
+     * @throws AppException PAGINATION_CURSOR_INVALID nếu id không phải số
+     */
+    public Long numericId() {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            throw new AppException(ErrorCode.PAGINATION_CURSOR_INVALID);
+        }
+    }
+
+    /**
+     * Cắt kết quả query (đã lấy limit + 1 row) thành một trang.
+     *
+     * @param keyOf vị trí keyset của một row (cùng cột với ORDER BY của query)
+     */
+    public static <E, R> CursorPageResponse<R> page(List<E> rows, int limit, Function<E, KeysetCursor> keyOf,
+                                                    Function<E, R> mapper) {
+        boolean hasMore = rows.size() > limit;
+        List<E> pageRows = hasMore ? rows.subList(0, limit) : rows;
+        return CursorPageResponse.<R>builder()
+                .items(pageRows.stream().map(mapper).toList())
+                .nextCursor(hasMore ? keyOf.apply(pageRows.get(pageRows.size() - 1)).encode() : null)
+                .hasMore(hasMore)
+                .limit(limit)
+                .build();
+    }
+}
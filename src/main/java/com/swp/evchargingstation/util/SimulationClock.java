@@ -0,0 +1,59 @@
+package com.swp.evchargingstation.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Đồng hồ của charging simulator.
+ *
+ * - millis(): thời gian thực (mặc định system clock), dùng làm mốc progress và deadline trên timing wheel
+ * - speedFactor: hệ số tua nhanh thời gian giả lập (load simulation: 60 = 1 giây thực ~ 1 phút sạc x 60)
+ *
+ * Production chạy speedFactor = 1, hành vi giống hệt trước khi có clock.
+ */
+@Component
+public class SimulationClock {
+
+    private final Clock clock;
+    private final double speedFactor;
+
+    @Autowired
+    public SimulationClock(@Value("${simulator.clock.speed-factor:1}") double speedFactor) {
+        this(Clock.systemUTC(), speedFactor);
+    }
+
+    public SimulationClock(Clock clock, double speedFactor) {
+        if (speedFactor <= 0) {
+            throw new IllegalArgumentException("speedFactor must be positive");
+        }
+        this.clock = clock;
+        this.speedFactor = speedFactor;
+    }
+
+    public long millis() {
+        return clock.millis();
+    }
+
+    /**
+     * Thời điểm hiện tại theo cùng đồng hồ, ở múi giờ hệ thống (như LocalDateTime.now()).
+     */
+    public LocalDateTime now() {
+        return LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault());
+    }
+
+    public double getSpeedFactor() {
+        return speedFactor;
+    }
+
+    /**
+     * Số phút giả lập ứng với 1 giây thực sau khi áp hệ số tua nhanh.
+     */
+    public float simMinutesPerSecond(float baseSimMinutesPerSecond) {
+        return (float) (baseSimMinutesPerSecond * speedFactor);
+    }
+}
@@ -0,0 +1,47 @@
+package com.swp.evchargingstation.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket đơn giản: tối đa capacity token, nạp lại permitsPerSecond token mỗi giây.
+ * acquire() chặn thread gọi tới khi có token (dùng cho worker gọi API bên ngoài bị giới hạn tốc độ).
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double permitsPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be > 0 and capacity >= 1");
+        }
+        this.capacity = capacity;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryAcquireOrWaitNanos()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Lấy 1 token nếu có (trả về 0), nếu không trả về thời gian cần chờ tới khi đủ 1 token.
+     */
+    private synchronized long tryAcquireOrWaitNanos() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / permitsPerNano));
+    }
+}
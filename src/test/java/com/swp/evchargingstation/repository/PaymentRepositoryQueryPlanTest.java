@@ -0,0 +1,209 @@
+package com.swp.evchargingstation.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Regression test cho query plan của các query doanh thu (PaymentRepository) trên MySQL thật.
+ *
+ * SQL do Hibernate sinh ra được bắt qua StatementInspector (SQL JDBC viết tay thì dùng trực tiếp)
+ * rồi chạy EXPLAIN với cùng tham số:
+ * - payments phải đi qua idx_payments_status_paid_at (range trên paid_at, không full scan)
+ * - các bảng join phải tra theo index (type != ALL)
+ *
+ * Cần Docker (Testcontainers), tự bỏ qua nếu không có.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.swp.evchargingstation.repository.PaymentRepositoryQueryPlanTest$SqlCapture"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentRepositoryQueryPlanTest {
+
+    @Container
+    @ServiceConnection
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0");
+
+    private static final Pattern TABLE_ALIAS = Pattern.compile("(?i)\\b(?:from|join)\\s+(\\w+)\\s+(\\w+)");
+
+    private static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+    private static final int DAYS = 365;
+    private static final int STATIONS = 10;
+    private static final int POINTS_PER_STATION = 5;
+    private static final int PAYMENTS_PER_DAY = 20;
+
+    // Một tuần giữa năm: ~1/50 số payment, optimizer phải chọn range scan
+    private static final LocalDateTime FROM = FIRST_DAY.plusDays(180).atStartOfDay();
+    private static final LocalDateTime TO = FROM.plusDays(7);
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        Integer payments = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payments", Integer.class);
+        if (payments != null && payments > 0) {
+            return;
+        }
+
+        List<Object[]> stations = new ArrayList<>();
+        List<Object[]> points = new ArrayList<>();
+        for (int s = 0; s < STATIONS; s++) {
+            stations.add(new Object[]{"station-" + s, "Station " + s, "OPERATIONAL"});
+            for (int p = 0; p < POINTS_PER_STATION; p++) {
+                points.add(new Object[]{"point-" + s + "-" + p, "TS" + (p + 1), "station-" + s, "AVAILABLE"});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO stations (station_id, name, status) VALUES (?, ?, ?)", stations);
+        jdbcTemplate.batchUpdate("INSERT INTO charging_points (point_id, name, station_id, status) VALUES (?, ?, ?, ?)",
+                points);
+
+        List<Object[]> sessions = new ArrayList<>();
+        List<Object[]> paymentRows = new ArrayList<>();
+        int seq = 0;
+        for (int day = 0; day < DAYS; day++) {
+            for (int i = 0; i < PAYMENTS_PER_DAY; i++, seq++) {
+                String sessionId = "session-" + seq;
+                Object[] point = points.get(seq % points.size());
+                Timestamp at = Timestamp.valueOf(FIRST_DAY.plusDays(day).atTime(i % 24, 0));
+                sessions.add(new Object[]{sessionId, point[0], at, "COMPLETED"});
+                // ~1/5 chưa thanh toán xong, không được tính doanh thu
+                String status = seq % 5 == 0 ? "PENDING" : "COMPLETED";
+                paymentRows.add(new Object[]{"payment-" + seq, sessionId, 10000f + seq, status, "WALLET",
+                        "COMPLETED".equals(status) ? at : null});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO charging_sessions (session_id, point_id, start_time, status, " +
+                "start_soc_percent, end_soc_percent, energy_kwh, duration_min, cost_total) " +
+                "VALUES (?, ?, ?, ?, 20, 80, 30, 60, 100000)", sessions);
+        jdbcTemplate.batchUpdate("INSERT INTO payments (payment_id, session_id, amount, status, payment_method, paid_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", paymentRows);
+
+        jdbcTemplate.execute("ANALYZE TABLE stations, charging_points, charging_sessions, payments");
+    }
+
+    @Test
+    void findRevenueByStationAndDay_usesPaidAtIndexAndIndexedJoins() {
+        String sql = captureSql(() -> paymentRepository.findRevenueByStationAndDay(FROM, TO));
+
+        Map<String, Map<String, Object>> plan = explain(sql);
+
+        assertRangeOnPaidAtIndex(plan.get("payments"));
+        assertThat(plan).containsKeys("charging_sessions", "charging_points");
+        assertIndexedLookup(plan.get("charging_sessions"), "idx_charging_sessions_session_point");
+        assertIndexedLookup(plan.get("charging_points"), "idx_charging_points_point_station");
+    }
+
+    @Test
+    void sumRevenue_usesPaidAtIndex() {
+        String sql = captureSql(() -> paymentRepository.sumRevenue(FROM, TO));
+
+        Map<String, Map<String, Object>> plan = explain(sql);
+
+        assertRangeOnPaidAtIndex(plan.get("payments"));
+        assertThat(plan).hasSize(1);
+    }
+
+    /**
+     * findRevenueByStation / findRevenueByStationAndMonth đã được thay bằng findRevenueByStationAndDay (ở trên)
+     * và station_hourly_rollups; job tính lại rollup đọc payments bằng SQL JDBC này.
+     */
+    @Test
+    void rollupPaymentStream_usesPaidAtIndexAndIndexedJoins() {
+        Map<String, Map<String, Object>> plan = explain(StationRollupBatchRepository.SELECT_PAYMENTS_SQL);
+
+        assertRangeOnPaidAtIndex(plan.get("payments"));
+        assertIndexedLookup(plan.get("charging_sessions"), "idx_charging_sessions_session_point");
+        assertIndexedLookup(plan.get("charging_points"), "idx_charging_points_point_station");
+    }
+
+    private void assertRangeOnPaidAtIndex(Map<String, Object> row) {
+        assertThat(row).as("EXPLAIN row of payments").isNotNull();
+        assertThat(row.get("key")).as("payments key").isEqualTo("idx_payments_status_paid_at");
+        assertThat(row.get("type")).as("payments access type").isNotEqualTo("ALL");
+    }
+
+    /**
+     * Join tra theo khóa: covering index đã khai báo hoặc PRIMARY (eq_ref), không bao giờ full scan.
+     */
+    private void assertIndexedLookup(Map<String, Object> row, String coveringIndex) {
+        assertThat(row.get("type")).as("access type of " + row.get("table")).isNotEqualTo("ALL");
+        assertThat(row.get("key")).as("key of " + row.get("table")).isIn(coveringIndex, "PRIMARY");
+    }
+
+    private String captureSql(Runnable query) {
+        SqlCapture.STATEMENTS.clear();
+        query.run();
+        assertThat(SqlCapture.STATEMENTS).as("captured SQL").hasSize(1);
+        return SqlCapture.STATEMENTS.get(0);
+    }
+
+    /**
+     * EXPLAIN với tham số [FROM, TO). Trả về dòng plan theo tên bảng.
+     */
+    private Map<String, Map<String, Object>> explain(String sql) {
+        return explain(sql, FROM, TO);
+    }
+
+    private Map<String, Map<String, Object>> explain(String sql, LocalDateTime from, LocalDateTime to) {
+        assertThat(sql.chars().filter(c -> c == '?').count()).as("bind parameters of %s", sql).isEqualTo(2);
+
+        Map<String, String> tableByAlias = new HashMap<>();
+        Matcher matcher = TABLE_ALIAS.matcher(sql);
+        while (matcher.find()) {
+            tableByAlias.put(matcher.group(2), matcher.group(1));
+        }
+
+        Map<String, Map<String, Object>> plan = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList("EXPLAIN " + sql,
+                Timestamp.valueOf(from), Timestamp.valueOf(to))) {
+            String alias = String.valueOf(row.get("table"));
+            plan.put(tableByAlias.getOrDefault(alias, alias), row);
+        }
+        return plan;
+    }
+
+    /**
+     * Ghi lại SQL Hibernate gửi xuống JDBC (đăng ký qua hibernate.session_factory.statement_inspector).
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.enums.BookingStatus;
+import com.swp.evchargingstation.enums.TransactionType;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository.OverdueBooking;
+import com.swp.evchargingstation.repository.BookingExpiryBatchRepository.Refund;
+import com.swp.evchargingstation.repository.BookingRepository;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bảng bookings / wallets giả lập trong bộ nhớ phía sau BookingExpiryBatchRepository,
+ * cùng điều kiện trạng thái + hạn như các câu SQL.
+ */
+class BookingExpiryServiceTest {
+
+    private static final int CHUNK_SIZE = 2;
+    private static final double DEPOSIT = 50_000;
+
+    record Row(String pointId, String userId, double deposit, BookingStatus status, LocalDateTime expiresAt) {
+    }
+
+    private final Map<Long, Row> bookings = new TreeMap<>();
+    private final Map<String, Double> wallets = new HashMap<>();
+    private final List<Refund> refundTransactions = new ArrayList<>();
+
+    private BookingExpiryBatchRepository expiryBatchRepository;
+    private WalletService walletService;
+    private BookingExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        expiryBatchRepository = mock(BookingExpiryBatchRepository.class);
+        when(expiryBatchRepository.findOverdueIds(any(), any(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            BookingStatus status = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(1);
+            long afterId = invocation.getArgument(2);
+            return bookings.entrySet().stream()
+                    .filter(e -> e.getKey() > afterId && overdue(e.getValue(), status, now))
+                    .limit(invocation.<Integer>getArgument(3))
+                    .map(Map.Entry::getKey)
+                    .toList();
+        });
+        when(expiryBatchRepository.lockOverdue(any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(id -> overdue(bookings.get(id), invocation.getArgument(1), invocation.getArgument(2)))
+                    .map(id -> {
+                        Row row = bookings.get(id);
+                        return new OverdueBooking(id, row.pointId(), row.userId(), row.deposit());
+                    })
+                    .toList();
+        });
+        when(expiryBatchRepository.markExpired(any(), any(), any())).thenAnswer(invocation -> {
+            int updated = 0;
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                Row row = bookings.get(id);
+                if (overdue(row, invocation.getArgument(1), invocation.getArgument(2))) {
+                    bookings.put(id, new Row(row.pointId(), row.userId(), row.deposit(), BookingStatus.EXPIRED, null));
+                    updated++;
+                }
+            }
+            return updated;
+        });
+        when(expiryBatchRepository.insertRefundTransactions(any(), any())).thenAnswer(invocation -> {
+            List<Refund> refunds = invocation.getArgument(0);
+            int[] inserted = new int[refunds.size()];
+            for (int i = 0; i < refunds.size(); i++) {
+                // INSERT ... SELECT FROM wallets: không có ví thì không có row
+                if (wallets.containsKey(refunds.get(i).userId())) {
+                    refundTransactions.add(refunds.get(i));
+                    inserted[i] = 1;
+                }
+            }
+            return inserted;
+        });
+        when(expiryBatchRepository.creditWallets(any(), any())).thenAnswer(invocation -> {
+            Map<String, Double> credits = invocation.getArgument(0);
+            credits.forEach((userId, amount) -> wallets.merge(userId, amount, Double::sum));
+            int[] updated = new int[credits.size()];
+            Arrays.fill(updated, 1);
+            return updated;
+        });
+
+        walletService = mock(WalletService.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        @SuppressWarnings("unchecked")
+        HashedTimingWheel<Long> timingWheel = mock(HashedTimingWheel.class);
+        service = new BookingExpiryService(mock(BookingRepository.class), expiryBatchRepository,
+                mock(ChargingPointRepository.class), walletService, mock(ApplicationEventPublisher.class),
+                transactionTemplate, timingWheel, 300_000, CHUNK_SIZE);
+    }
+
+    @Test
+    void drainOverdue_noShowForfeitsDepositAndCheckInTimeoutRefundsHalf() {
+        wallets.put("user-a", 0.0);
+        booking(1L, "user-a", DEPOSIT, BookingStatus.CONFIRMED);
+        booking(2L, "user-a", DEPOSIT, BookingStatus.IN_PROGRESS);
+
+        assertThat(service.drainOverdue()).isEqualTo(2);
+
+        assertThat(bookings.values()).allMatch(row -> row.status() == BookingStatus.EXPIRED);
+        assertThat(refundTransactions).extracting(Refund::bookingId, Refund::amount)
+                .containsExactly(tuple(2L, DEPOSIT / 2));
+        assertThat(wallets).containsEntry("user-a", DEPOSIT / 2);
+    }
+
+    @Test
+    void drainOverdue_creditsEachWalletOnceWithSumOfItsRefundsAcrossChunks() {
+        wallets.put("user-a", 0.0);
+        wallets.put("user-b", 0.0);
+        booking(1L, "user-a", DEPOSIT, BookingStatus.IN_PROGRESS);
+        booking(2L, "user-a", DEPOSIT, BookingStatus.IN_PROGRESS);
+        booking(3L, "user-b", DEPOSIT, BookingStatus.IN_PROGRESS);
+        booking(4L, "user-b", 0, BookingStatus.IN_PROGRESS);
+        booking(5L, "user-a", DEPOSIT, BookingStatus.IN_PROGRESS);
+
+        assertThat(service.drainOverdue()).isEqualTo(5);
+
+        // Booking #4 không có cọc → không có giao dịch hoàn
+        assertThat(refundTransactions).extracting(Refund::bookingId).containsExactly(1L, 2L, 3L, 5L);
+        assertThat(wallets).containsEntry("user-a", 1.5 * DEPOSIT).containsEntry("user-b", DEPOSIT / 2);
+        // Chunk #1-#2: user-a gộp 1 dòng
+        verify(expiryBatchRepository).creditWallets(eq(Map.of("user-a", DEPOSIT)), any());
+    }
+
+    @Test
+    void drainOverdue_walletlessUserGetsWalletCreatedOnceAndRefundThroughWalletService() {
+        booking(1L, "no-wallet", DEPOSIT, BookingStatus.IN_PROGRESS);
+        booking(2L, "no-wallet", DEPOSIT, BookingStatus.IN_PROGRESS);
+
+        service.drainOverdue();
+
+        verify(walletService, times(1)).createWalletByUserId("no-wallet");
+        verify(walletService, times(2)).credit(eq("no-wallet"), eq(DEPOSIT / 2), eq(TransactionType.BOOKING_REFUND),
+                any(), any(), any(), any(), any());
+        assertThat(refundTransactions).isEmpty();
+    }
+
+    @Test
+    void drainOverdue_failedChunkKeepsDeadlineAndLaterChunksStillRun() {
+        wallets.put("user-a", 0.0);
+        for (long id = 1; id <= 5; id++) {
+            booking(id, "user-a", DEPOSIT, BookingStatus.CONFIRMED);
+        }
+        doThrow(new IllegalStateException("lock wait timeout"))
+                .when(expiryBatchRepository).lockOverdue(eq(List.of(3L, 4L)), any(), any());
+
+        assertThat(service.drainOverdue()).isEqualTo(3);
+
+        assertThat(bookings.get(3L).status()).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(bookings.get(3L).expiresAt()).isNotNull();
+        assertThat(bookings.get(5L).status()).isEqualTo(BookingStatus.EXPIRED);
+    }
+
+    @Test
+    void drainOverdue_skipsBookingsNotYetDue() {
+        bookings.put(1L, new Row("point-1", "user-a", DEPOSIT, BookingStatus.CONFIRMED,
+                LocalDateTime.now().plusMinutes(5)));
+
+        assertThat(service.drainOverdue()).isZero();
+        verify(expiryBatchRepository, never()).markExpired(any(), any(), any());
+    }
+
+    private void booking(long id, String userId, double deposit, BookingStatus status) {
+        bookings.put(id, new Row("point-" + id, userId, deposit, status, LocalDateTime.now().minusMinutes(1)));
+    }
+
+    private static boolean overdue(Row row, BookingStatus status, LocalDateTime now) {
+        return row.status() == status && row.expiresAt() != null && row.expiresAt().isBefore(now);
+    }
+}
@@ -0,0 +1,203 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Booking;
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.enums.BookingStatus;
+import com.swp.evchargingstation.repository.BookingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookingIntervalIndexTest {
+
+    private static final String POINT = "point-1";
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 6, 1, 8, 0);
+
+    private BookingRepository bookingRepository;
+    private BookingIntervalIndex index;
+
+    @BeforeEach
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        index = new BookingIntervalIndex(bookingRepository);
+    }
+
+    @Test
+    void findConflict_detectsPartialAndContainedOverlap() {
+        index.add(booking(1L, T0, T0.plusHours(2)));
+
+        assertThat(index.findConflict(POINT, T0.minusMinutes(30), T0.plusMinutes(30))).isPresent();
+        assertThat(index.findConflict(POINT, T0.plusMinutes(90), T0.plusHours(3))).isPresent();
+        assertThat(index.findConflict(POINT, T0.plusMinutes(30), T0.plusMinutes(60))).isPresent();
+        assertThat(index.findConflict(POINT, T0.minusHours(1), T0.plusHours(3))).isPresent();
+    }
+
+    @Test
+    void findConflict_treatsIntervalsAsHalfOpen() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+
+        // Kết thúc đúng lúc booking bắt đầu / bắt đầu đúng lúc booking kết thúc: không trùng
+        assertThat(index.findConflict(POINT, T0.minusHours(1), T0)).isEmpty();
+        assertThat(index.findConflict(POINT, T0.plusHours(1), T0.plusHours(2))).isEmpty();
+    }
+
+    @Test
+    void findConflict_findsLongBookingStartedWellBeforeShorterOnes() {
+        // Booking dài bắt đầu sớm: kiểm tra trùng phải quét ngược đủ xa (theo thời lượng dài nhất của trụ)
+        index.add(booking(1L, T0, T0.plusHours(10)));
+        index.add(booking(2L, T0.plusHours(12), T0.plusHours(13)));
+
+        assertThat(index.findConflict(POINT, T0.plusHours(9), T0.plusMinutes(570)))
+                .map(BookingIntervalIndex.BookingInterval::bookingId)
+                .contains(1L);
+        assertThat(index.findConflict(POINT, T0.plusHours(10), T0.plusHours(12))).isEmpty();
+    }
+
+    @Test
+    void findConflict_ignoresOtherPointsAndRemovedBookings() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+
+        assertThat(index.findConflict("point-2", T0, T0.plusHours(1))).isEmpty();
+
+        index.remove(POINT, 1L);
+        index.remove(POINT, 1L);
+
+        assertThat(index.findConflict(POINT, T0, T0.plusHours(1))).isEmpty();
+    }
+
+    @Test
+    void findConflict_bookingWithoutEstimatedEndTakesNoTime() {
+        index.add(booking(1L, T0, null));
+
+        assertThat(index.findConflict(POINT, T0.minusMinutes(30), T0.plusMinutes(30))).isEmpty();
+    }
+
+    @Test
+    void findFirstAfter_returnsEarliestBookingStartingStrictlyAfter() {
+        index.add(booking(3L, T0.plusHours(5), T0.plusHours(6)));
+        index.add(booking(1L, T0, T0.plusHours(1)));
+        index.add(booking(2L, T0.plusHours(2), T0.plusHours(3)));
+
+        assertThat(index.findFirstAfter(POINT, T0.plusMinutes(30)))
+                .map(BookingIntervalIndex.BookingInterval::bookingId)
+                .contains(2L);
+        // Booking bắt đầu đúng tại time không được tính là "sau"
+        assertThat(index.findFirstAfter(POINT, T0.plusHours(2)))
+                .map(BookingIntervalIndex.BookingInterval::bookingId)
+                .contains(3L);
+        assertThat(index.findFirstAfter(POINT, T0.plusHours(5))).isEmpty();
+        assertThat(index.findFirstAfter("point-2", T0)).isEmpty();
+    }
+
+    @Test
+    void findLastBefore_returnsLatestBookingStartingStrictlyBefore() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+        index.add(booking(2L, T0.plusHours(2), T0.plusHours(3)));
+
+        assertThat(index.findLastBefore(POINT, T0.plusHours(2)))
+                .map(BookingIntervalIndex.BookingInterval::bookingId)
+                .contains(1L);
+        assertThat(index.findLastBefore(POINT, T0)).isEmpty();
+    }
+
+    @Test
+    void findEndingAfter_returnsBookingsStillHoldingPointInStartOrder() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+        index.add(booking(2L, T0.plusHours(2), T0.plusHours(3)));
+        index.add(booking(3L, T0.plusHours(4), T0.plusHours(5)));
+
+        assertThat(index.findEndingAfter(POINT, T0.plusMinutes(150)))
+                .extracting(BookingIntervalIndex.BookingInterval::bookingId)
+                .containsExactly(2L, 3L);
+    }
+
+    @Test
+    void markCheckedIn_updatesStatusInPlace() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+
+        index.markCheckedIn(POINT, 1L);
+
+        assertThat(index.findConflict(POINT, T0, T0.plusMinutes(10)))
+                .map(BookingIntervalIndex.BookingInterval::status)
+                .contains(BookingStatus.IN_PROGRESS);
+    }
+
+    @Test
+    void add_sameBookingAgainReplacesPreviousInterval() {
+        index.add(booking(1L, T0, T0.plusHours(1)));
+
+        index.add(booking(1L, T0.plusHours(3), T0.plusHours(4)));
+
+        assertThat(index.findConflict(POINT, T0, T0.plusHours(1))).isEmpty();
+        assertThat(index.findFirstAfter(POINT, T0))
+                .map(BookingIntervalIndex.BookingInterval::start)
+                .contains(T0.plusHours(3));
+    }
+
+    @Test
+    void rebuild_loadsIntervalsFromProjection() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(1L, T0, T0.plusHours(1), BookingStatus.CONFIRMED));
+        rows.add(row(2L, T0.plusHours(2), T0.plusHours(3), BookingStatus.IN_PROGRESS));
+        when(bookingRepository.findActiveBookingIntervals()).thenReturn(rows);
+
+        index.rebuild();
+
+        assertThat(index.findFirstAfter(POINT, T0))
+                .map(BookingIntervalIndex.BookingInterval::status)
+                .contains(BookingStatus.IN_PROGRESS);
+    }
+
+    @Test
+    void rebuild_keepsBookingAddedWhileProjectionQueryRuns() {
+        when(bookingRepository.findActiveBookingIntervals()).thenReturn(List.of()).thenAnswer(invocation -> {
+            // Booking commit sau snapshot của query: không có trong kết quả
+            index.add(booking(42L, T0, T0.plusHours(1)));
+            return new ArrayList<Object[]>();
+        });
+        index.rebuild();
+
+        index.rebuild();
+
+        assertThat(index.findConflict(POINT, T0, T0.plusMinutes(30)))
+                .map(BookingIntervalIndex.BookingInterval::bookingId)
+                .contains(42L);
+    }
+
+    @Test
+    void rebuild_keepsRemovalReceivedWhileProjectionQueryRuns() {
+        List<Object[]> snapshot = new ArrayList<>();
+        snapshot.add(row(7L, T0, T0.plusHours(1), BookingStatus.CONFIRMED));
+        when(bookingRepository.findActiveBookingIntervals()).thenReturn(List.of()).thenAnswer(invocation -> {
+            // Snapshot vẫn thấy booking #7, sự kiện hủy đến trước khi swap
+            index.remove(POINT, 7L);
+            return snapshot;
+        });
+        index.rebuild();
+
+        index.rebuild();
+
+        assertThat(index.findConflict(POINT, T0, T0.plusMinutes(30))).isEmpty();
+    }
+
+    static Booking booking(Long id, LocalDateTime start, LocalDateTime end) {
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setChargingPoint(ChargingPoint.builder().pointId(POINT).build());
+        booking.setBookingTime(start);
+        booking.setEstimatedEndTime(end);
+        booking.setBookingStatus(BookingStatus.CONFIRMED);
+        return booking;
+    }
+
+    static Object[] row(Long id, LocalDateTime start, LocalDateTime end, BookingStatus status) {
+        return new Object[]{id, POINT, start, end, status};
+    }
+}
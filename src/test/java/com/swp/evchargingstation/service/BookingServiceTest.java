@@ -0,0 +1,93 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.dto.response.BookingSlotSearchResponse;
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.entity.Station;
+import com.swp.evchargingstation.entity.Vehicle;
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.repository.BookingRepository;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.UserRepository;
+import com.swp.evchargingstation.repository.VehicleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.*;
+
+class BookingServiceTest {
+
+    // Cùng trụ với BookingIntervalIndexTest.booking()
+    private static final String POINT = "point-1";
+
+    private BookingIntervalIndex bookingIntervalIndex;
+    private BookingService service;
+
+    // Khoảng tìm [from, to] trong 24 giờ tới nên không bị giới hạn lại
+    private LocalDateTime from;
+    private LocalDateTime to;
+
+    @BeforeEach
+    void setUp() {
+        from = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(2);
+        to = from.plusHours(5);
+
+        VehicleRepository vehicleRepository = mock(VehicleRepository.class);
+        when(vehicleRepository.findById("vehicle-1"))
+                .thenReturn(Optional.of(Vehicle.builder().vehicleId("vehicle-1").currentSocPercent(20).build()));
+        ChargingPointRepository chargingPointRepository = mock(ChargingPointRepository.class);
+        when(chargingPointRepository.findByStationIdsWithStation(List.of("station-1"))).thenReturn(List.of(
+                ChargingPoint.builder().pointId(POINT).name("TS1").status(ChargingPointStatus.AVAILABLE)
+                        .station(Station.builder().stationId("station-1").name("Station 1").build())
+                        .build()));
+        ChargingCurveService chargingCurveService = mock(ChargingCurveService.class);
+        when(chargingCurveService.minutesToTarget(any(), any(), anyDouble(), anyDouble())).thenReturn(60.0);
+        when(chargingCurveService.socReachableWithin(any(), any(), anyDouble(), anyDouble())).thenReturn(80.0);
+        bookingIntervalIndex = new BookingIntervalIndex(mock(BookingRepository.class));
+
+        service = new BookingService(mock(BookingRepository.class), chargingPointRepository,
+                mock(ChargingSessionRepository.class), vehicleRepository, mock(UserRepository.class),
+                mock(WalletService.class), mock(ApplicationEventPublisher.class), chargingCurveService,
+                bookingIntervalIndex, mock(ChargingSessionLiveStateStore.class));
+    }
+
+    @Test
+    void findAvailableSlots_lastWindowEndsAtRangeEnd() {
+        List<BookingSlotSearchResponse.FreeWindow> windows = freeWindows();
+
+        assertThat(windows).extracting(BookingSlotSearchResponse.FreeWindow::getStart,
+                        BookingSlotSearchResponse.FreeWindow::getEnd)
+                .containsExactly(tuple(from, to));
+    }
+
+    @Test
+    void findAvailableSlots_clampsWindowBeforeBookingStartingAfterRange() {
+        bookingIntervalIndex.add(BookingIntervalIndexTest.booking(1L, from.plusHours(1), from.plusHours(2)));
+        bookingIntervalIndex.add(BookingIntervalIndexTest.booking(2L, to.plusHours(3), to.plusHours(4)));
+
+        List<BookingSlotSearchResponse.FreeWindow> windows = freeWindows();
+
+        assertThat(windows).extracting(BookingSlotSearchResponse.FreeWindow::getStart,
+                        BookingSlotSearchResponse.FreeWindow::getEnd)
+                .containsExactly(
+                        tuple(from, from.plusMinutes(45)),
+                        tuple(from.plusMinutes(135), to));
+        assertThat(windows).allSatisfy(window -> assertThat(window.getEnd()).isNotNull().isBeforeOrEqualTo(to));
+    }
+
+    private List<BookingSlotSearchResponse.FreeWindow> freeWindows() {
+        BookingSlotSearchResponse response = service.findAvailableSlots(List.of("station-1"), "vehicle-1", from, to, 80);
+        assertThat(response.getPoints()).hasSize(1);
+        return response.getPoints().get(0).getFreeWindows();
+    }
+}
@@ -0,0 +1,44 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.ChargingPoint;
+import com.swp.evchargingstation.entity.Vehicle;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.VehicleModel;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChargingCurveServiceTest {
+
+    private final ChargingCurveService service = new ChargingCurveService(240);
+
+    @Test
+    void minutesToTarget_usesConservativeFallbackWithoutCurve() {
+        // Trụ chưa khai báo công suất: không dựng được curve
+        ChargingPoint noPower = ChargingPoint.builder().pointId("p1").build();
+
+        assertThat(service.minutesToTarget(vehicle(), noPower, 20, 80)).isEqualTo(240.0);
+        assertThat(service.minutesToTarget(null, point(), 20, 80)).isEqualTo(240.0);
+    }
+
+    @Test
+    void minutesToTarget_neverReturnsZero() {
+        assertThat(service.minutesToTarget(vehicle(), point(), 80, 80)).isEqualTo(ChargingCurveService.MIN_MINUTES);
+        assertThat(service.minutesToTarget(vehicle(), point(), 90, 40)).isEqualTo(ChargingCurveService.MIN_MINUTES);
+    }
+
+    @Test
+    void minutesToTarget_followsCurveWhenAvailable() {
+        double minutes = service.minutesToTarget(vehicle(), point(), 20, 80);
+
+        assertThat(minutes).isGreaterThan(ChargingCurveService.MIN_MINUTES).isLessThan(240.0);
+    }
+
+    private static Vehicle vehicle() {
+        return Vehicle.builder().vehicleId("v1").model(VehicleModel.VINFAST_VF6).build();
+    }
+
+    private static ChargingPoint point() {
+        return ChargingPoint.builder().pointId("p1").chargingPower(ChargingPower.POWER_50KW).build();
+    }
+}
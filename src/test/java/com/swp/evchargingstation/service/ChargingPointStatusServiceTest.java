@@ -0,0 +1,106 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Booking;
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.repository.BookingRepository;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChargingPointStatusServiceTest {
+
+    private static final String POINT = "point-1";
+
+    private BookingRepository bookingRepository;
+    private ChargingPointRepository chargingPointRepository;
+    private BookingIntervalIndex bookingIntervalIndex;
+    private HashedTimingWheel<String> timingWheel;
+    private ChargingPointStatusService service;
+
+    private final List<Object[]> pointRows = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bookingRepository = mock(BookingRepository.class);
+        chargingPointRepository = mock(ChargingPointRepository.class);
+        timingWheel = mock(HashedTimingWheel.class);
+        when(bookingRepository.findActiveBookingIntervals()).thenReturn(List.of());
+        when(bookingRepository.findActiveBookingUserNames()).thenReturn(List.of());
+        when(chargingPointRepository.findAllPointStatuses()).thenReturn(pointRows);
+        bookingIntervalIndex = new BookingIntervalIndex(bookingRepository);
+        service = new ChargingPointStatusService(bookingRepository, chargingPointRepository,
+                bookingIntervalIndex, timingWheel);
+
+        pointRows.add(new Object[]{POINT, ChargingPointStatus.AVAILABLE});
+        service.rebuild();
+        clearInvocations(timingWheel);
+    }
+
+    @Test
+    void onBookingIndexed_bookingInsideWindowReservesAndSchedulesRelease() {
+        LocalDateTime start = LocalDateTime.now().plusMinutes(10);
+        index(1L, start);
+
+        assertThat(service.calculateDisplayStatus(POINT)).isEqualTo(ChargingPointStatus.RESERVED);
+        verify(timingWheel).schedule(eq(POINT), eq(epochMillis(start.plusMinutes(10))), any());
+    }
+
+    @Test
+    void onBookingIndexed_laterBookingStaysAvailableAndSchedulesEntryIntoWindow() {
+        LocalDateTime start = LocalDateTime.now().plusHours(2);
+        index(1L, start);
+
+        assertThat(service.calculateDisplayStatus(POINT)).isEqualTo(ChargingPointStatus.AVAILABLE);
+        verify(timingWheel).schedule(eq(POINT), eq(epochMillis(start.minusMinutes(30))), any());
+    }
+
+    @Test
+    void refresh_schedulesOnlyAfterNewStateIsVisible() {
+        // Task đặt lên timing wheel phải thấy đúng trạng thái vừa ghi (không đặt mốc bên trong compute)
+        List<ChargingPointStatus> seenAtSchedule = new ArrayList<>();
+        doAnswer(invocation -> {
+            seenAtSchedule.add(service.calculateDisplayStatus(POINT));
+            return null;
+        }).when(timingWheel).schedule(eq(POINT), anyLong(), any());
+
+        index(1L, LocalDateTime.now().plusMinutes(5));
+
+        assertThat(seenAtSchedule).containsExactly(ChargingPointStatus.RESERVED);
+    }
+
+    @Test
+    void onPhysicalStatusChanged_deletedPointDropsEntryAndCancelsTransition() {
+        service.onPhysicalStatusChanged(POINT, null);
+
+        verify(timingWheel).cancel(POINT);
+        verify(timingWheel, never()).schedule(eq(POINT), anyLong(), any());
+    }
+
+    private void index(Long bookingId, LocalDateTime start) {
+        Booking booking = BookingIntervalIndexTest.booking(bookingId, start, start.plusHours(1));
+        bookingIntervalIndex.add(booking);
+        service.onBookingIndexed(booking);
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
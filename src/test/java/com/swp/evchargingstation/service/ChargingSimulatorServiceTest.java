@@ -0,0 +1,169 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.*;
+import com.swp.evchargingstation.enums.BookingStatus;
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.event.session.ChargingSessionCompletedEvent;
+import com.swp.evchargingstation.repository.*;
+import com.swp.evchargingstation.util.HashedTimingWheel;
+import com.swp.evchargingstation.util.SimulationClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ChargingSimulatorServiceTest {
+
+    private static final String SESSION_ID = "session-1";
+
+    private ChargingSessionRepository chargingSessionRepository;
+    private PlanRepository planRepository;
+    private WalletHoldService walletHoldService;
+    private ChargingSessionLiveStateStore liveStateStore;
+    private ApplicationEventPublisher eventPublisher;
+    private HashedTimingWheel<String> completionTimingWheel;
+    private ChargingSimulatorService service;
+
+    private ChargingSession session;
+    private Booking booking;
+    private ChargingPoint point;
+    private Vehicle vehicle;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        chargingSessionRepository = mock(ChargingSessionRepository.class);
+        planRepository = mock(PlanRepository.class);
+        walletHoldService = mock(WalletHoldService.class);
+        liveStateStore = mock(ChargingSessionLiveStateStore.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        completionTimingWheel = mock(HashedTimingWheel.class);
+        SimulationClock simulationClock = mock(SimulationClock.class);
+        when(simulationClock.millis()).thenReturn(1_000_000L);
+
+        service = new ChargingSimulatorService(chargingSessionRepository, mock(VehicleRepository.class),
+                mock(ChargingPointRepository.class), planRepository, mock(BookingRepository.class), walletHoldService,
+                liveStateStore, mock(ChargingProgressStreamService.class), eventPublisher, new SimpleMeterRegistry(),
+                completionTimingWheel, mock(TransactionTemplate.class), simulationClock, mock(ChargingCurveService.class));
+
+        vehicle = Vehicle.builder().vehicleId("vehicle-1").currentSocPercent(20).build();
+        point = ChargingPoint.builder().pointId("point-1").status(ChargingPointStatus.CHARGING).build();
+        booking = new Booking();
+        booking.setId(7L);
+        booking.setBookingStatus(BookingStatus.IN_PROGRESS);
+        session = ChargingSession.builder()
+                .sessionId(SESSION_ID)
+                .status(ChargingSessionStatus.IN_PROGRESS)
+                .driver(Driver.builder().userId("driver-1").build())
+                .vehicle(vehicle)
+                .chargingPoint(point)
+                .booking(booking)
+                .startSocPercent(20)
+                .build();
+        point.setCurrentSession(session);
+
+        when(chargingSessionRepository.findByIdForUpdate(SESSION_ID)).thenReturn(Optional.of(session));
+        when(chargingSessionRepository.findByIdWithRelationships(SESSION_ID)).thenReturn(Optional.of(session));
+        when(planRepository.findByNameIgnoreCase(anyString())).thenReturn(Optional.of(
+                Plan.builder().pricePerKwh(4000f).pricePerMinute(0f).build()));
+        when(liveStateStore.get(SESSION_ID)).thenReturn(Optional.of(liveState(12.5f, 30f, 45)));
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void completeSession_appliesLiveProgressAndReleasesPointAndBooking() {
+        service.completeSession(SESSION_ID);
+
+        assertThat(session.getStatus()).isEqualTo(ChargingSessionStatus.COMPLETED);
+        assertThat(session.getEndTime()).isNotNull();
+        assertThat(session.getEnergyKwh()).isEqualTo(12.5f);
+        assertThat(session.getEndSocPercent()).isEqualTo(45);
+        assertThat(session.getCostTotal()).isEqualTo(12.5f * 4000f);
+        assertThat(booking.getBookingStatus()).isEqualTo(BookingStatus.COMPLETED);
+        assertThat(point.getStatus()).isEqualTo(ChargingPointStatus.AVAILABLE);
+        assertThat(point.getCurrentSession()).isNull();
+        assertThat(vehicle.getCurrentSocPercent()).isEqualTo(45);
+        verify(walletHoldService).releaseHold(SESSION_ID);
+        verify(chargingSessionRepository).save(session);
+        verify(eventPublisher).publishEvent(any(ChargingSessionCompletedEvent.class));
+    }
+
+    @Test
+    void completeSession_dropsLiveStateOnlyAfterCommit() {
+        service.completeSession(SESSION_ID);
+
+        verify(liveStateStore, never()).remove(SESSION_ID);
+        verify(completionTimingWheel, never()).cancel(SESSION_ID);
+
+        commit();
+
+        verify(liveStateStore).remove(SESSION_ID);
+        verify(completionTimingWheel).cancel(SESSION_ID);
+    }
+
+    @Test
+    void completeSession_rollbackKeepsLiveStateForRetry() {
+        when(chargingSessionRepository.save(any(ChargingSession.class)))
+                .thenThrow(new CannotAcquireLockException("lock wait timeout"));
+
+        assertThatThrownBy(() -> service.completeSession(SESSION_ID)).isInstanceOf(CannotAcquireLockException.class);
+        rollback();
+
+        // Session vẫn trong store: tick tiếp tục tính progress và re-arm completion
+        verify(liveStateStore, never()).remove(anyString());
+        verify(completionTimingWheel, never()).cancel(anyString());
+    }
+
+    @Test
+    void completeSession_alreadyCompletedOnlyForgetsLiveState() {
+        session.setStatus(ChargingSessionStatus.COMPLETED);
+
+        service.completeSession(SESSION_ID);
+        commit();
+
+        verify(chargingSessionRepository, never()).save(any());
+        verify(walletHoldService, never()).releaseHold(anyString());
+        verify(eventPublisher, never()).publishEvent(any());
+        verify(liveStateStore).remove(SESSION_ID);
+    }
+
+    private static void commit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private static void rollback() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+    }
+
+    private static ChargingSessionLiveState liveState(float energyKwh, float durationMin, int socPercent) {
+        // Không có curve: advanceTo giữ nguyên progress đã chụp
+        return new ChargingSessionLiveState(SESSION_ID, "driver-1", "vehicle-1", "point-1", "station-1",
+                20, 80, 60f, null, true, 4000f, 0f, energyKwh, durationMin, socPercent, energyKwh * 4000f,
+                0L, 100_000);
+    }
+}
@@ -0,0 +1,69 @@
+package com.swp.evchargingstation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp.evchargingstation.enums.ExportDataset;
+import com.swp.evchargingstation.enums.ExportFormat;
+import com.swp.evchargingstation.repository.DataExportRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class DataExportServiceTest {
+
+    private final DataExportRepository dataExportRepository = mock(DataExportRepository.class);
+    private final DataExportService service = new DataExportService(dataExportRepository, new ObjectMapper());
+
+    @Test
+    void csv_prefixesTextCellsThatSpreadsheetsWouldEvaluate() throws Exception {
+        String csv = exportCsv(List.of("description", "amount"),
+                new Object[]{"=HYPERLINK(\"http://evil\")", new BigDecimal("-50000")},
+                new Object[]{"+1", -2L},
+                new Object[]{"-cmd", 0},
+                new Object[]{"@SUM(A1)", null},
+                new Object[]{"\tTab", null},
+                new Object[]{"Refund", 1});
+
+        assertThat(csv.split("\r\n")).containsExactly(
+                "description,amount",
+                "\"'=HYPERLINK(\"\"http://evil\"\")\",-50000",
+                "'+1,-2",
+                "'-cmd,0",
+                "'@SUM(A1),",
+                "'\tTab,",
+                "Refund,1");
+    }
+
+    @Test
+    void neutralizeFormula_leavesPlainAndEmptyTextUnchanged() {
+        assertThat(DataExportService.neutralizeFormula(null)).isNull();
+        assertThat(DataExportService.neutralizeFormula("")).isEmpty();
+        assertThat(DataExportService.neutralizeFormula("Trạm Q1 = 50kW")).isEqualTo("Trạm Q1 = 50kW");
+    }
+
+    private String exportCsv(List<String> columns, Object[]... rows) throws Exception {
+        when(dataExportRepository.stream(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            DataExportRepository.ExportSink sink = invocation.getArgument(4);
+            sink.start(columns);
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getObject(anyInt())).thenAnswer(call -> row[call.<Integer>getArgument(0) - 1]);
+                sink.row(rs);
+            }
+            return (long) rows.length;
+        });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(ExportDataset.WALLET_TRANSACTIONS, ExportFormat.CSV, null, null, null, false)
+                .writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
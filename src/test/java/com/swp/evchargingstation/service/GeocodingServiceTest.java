@@ -0,0 +1,170 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.GeocodedAddress;
+import com.swp.evchargingstation.repository.GeocodedAddressRepository;
+import com.swp.evchargingstation.repository.StationRepository;
+import com.swp.evchargingstation.service.GeocodingProvider.Coordinates;
+import com.swp.evchargingstation.util.AddressNormalizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class GeocodingServiceTest {
+
+    private static final long RETRY_BASE_MS = 3_600_000;
+    private static final long RETRY_MAX_MS = 4 * RETRY_BASE_MS;
+
+    private GeocodingProvider provider;
+    private GeocodedAddressRepository geocodedAddressRepository;
+    private StationRepository stationRepository;
+    private StationSpatialIndex stationSpatialIndex;
+    private SimulatorShardCoordinator shardCoordinator;
+    private final List<Runnable> pendingResults = new ArrayList<>();
+    private GeocodingService service;
+
+    @BeforeEach
+    void setUp() {
+        provider = mock(GeocodingProvider.class);
+        when(provider.name()).thenReturn("test");
+        geocodedAddressRepository = mock(GeocodedAddressRepository.class);
+        when(geocodedAddressRepository.findById(anyString())).thenReturn(Optional.empty());
+        stationRepository = mock(StationRepository.class);
+        stationSpatialIndex = mock(StationSpatialIndex.class);
+        shardCoordinator = mock(SimulatorShardCoordinator.class);
+        when(shardCoordinator.isLeader()).thenReturn(true);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Worker chạy ngay trên thread gọi; kết quả được giữ lại tới khi test chạy pool ghi kết quả
+        ThreadPoolTaskExecutor worker = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(worker).execute(any(Runnable.class));
+        ThreadPoolTaskExecutor resultExecutor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(invocation -> pendingResults.add(invocation.getArgument(0))).when(resultExecutor).execute(any(Runnable.class));
+
+        service = new GeocodingService(provider, geocodedAddressRepository, stationRepository, stationSpatialIndex,
+                shardCoordinator, transactionTemplate, worker, resultExecutor, 1000, 100, 2, RETRY_BASE_MS, RETRY_MAX_MS);
+    }
+
+    @Test
+    void backfill_writesCoordinatesOnResultExecutorNotOnWorker() {
+        when(provider.geocode("1 Main St")).thenReturn(Optional.of(new Coordinates(10.0, 106.0)));
+        when(stationRepository.updateCoordinatesIfAddressMatches("s1", "1 Main St", 10.0, 106.0)).thenReturn(1);
+
+        assertThat(service.backfillStationCoordinates("s1", "1 Main St")).isTrue();
+
+        verify(stationRepository, never()).updateCoordinatesIfAddressMatches(any(), any(), any(), any());
+        runPendingResults();
+        verify(stationRepository).updateCoordinatesIfAddressMatches("s1", "1 Main St", 10.0, 106.0);
+        verify(stationSpatialIndex).refresh("s1");
+    }
+
+    @Test
+    void backfill_unresolvableAddressBacksOffExponentially() {
+        when(stationRepository.findMissingCoordinates(eq(""), any(), any()))
+                .thenReturn(rows(new Object[]{"s1", "nowhere", 2}));
+        when(provider.geocode("nowhere")).thenReturn(Optional.empty());
+
+        service.backfillMissingCoordinates();
+        runPendingResults();
+
+        ArgumentCaptor<LocalDateTime> retryAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(stationRepository).recordGeocodingFailure(eq("s1"), eq("nowhere"), eq(3), retryAt.capture());
+        assertThat(ChronoUnit.MILLIS.between(LocalDateTime.now(), retryAt.getValue()))
+                .isCloseTo(4 * RETRY_BASE_MS, within(60_000L));
+    }
+
+    @Test
+    void backfillBatch_looksUpPersistentCacheOnceForWholeBatch() throws Exception {
+        when(geocodedAddressRepository.findAllById(any())).thenReturn(List.of(GeocodedAddress.builder()
+                .addressHash(hash("1 Main St")).latitude(10.0).longitude(106.0).build()));
+        when(provider.geocode("2 Side St")).thenReturn(Optional.of(new Coordinates(11.0, 107.0)));
+        when(stationRepository.updateCoordinatesIfAddressMatches(any(), any(), any(), any())).thenReturn(1);
+        Map<String, String> addresses = new LinkedHashMap<>();
+        addresses.put("s1", "1 Main St");
+        addresses.put("s2", "2 Side St");
+
+        assertThat(service.backfillStationCoordinates(addresses)).isEmpty();
+        runPendingResults();
+
+        verify(geocodedAddressRepository, times(1)).findAllById(any());
+        verify(provider, never()).geocode("1 Main St");
+        verify(stationRepository).updateCoordinatesIfAddressMatches("s1", "1 Main St", 10.0, 106.0);
+        verify(stationRepository).updateCoordinatesIfAddressMatches("s2", "2 Side St", 11.0, 107.0);
+    }
+
+    @Test
+    void retryDelay_doublesAndIsCapped() {
+        assertThat(service.retryDelayMs(1)).isEqualTo(RETRY_BASE_MS);
+        assertThat(service.retryDelayMs(2)).isEqualTo(2 * RETRY_BASE_MS);
+        assertThat(service.retryDelayMs(10)).isEqualTo(RETRY_MAX_MS);
+        assertThat(service.retryDelayMs(100)).isEqualTo(RETRY_MAX_MS);
+    }
+
+    @Test
+    void sweep_continuesAfterLastQueuedStationAndWrapsAround() {
+        when(provider.geocode(anyString())).thenReturn(Optional.empty());
+        when(stationRepository.findMissingCoordinates(eq(""), any(), any()))
+                .thenReturn(rows(new Object[]{"a", "addr a", null}, new Object[]{"b", "addr b", null}));
+        when(stationRepository.findMissingCoordinates(eq("b"), any(), any()))
+                .thenReturn(rows(new Object[]{"c", "addr c", null}));
+
+        service.backfillMissingCoordinates();
+        service.backfillMissingCoordinates();
+        service.backfillMissingCoordinates();
+
+        ArgumentCaptor<String> cursors = ArgumentCaptor.forClass(String.class);
+        verify(stationRepository, times(3)).findMissingCoordinates(cursors.capture(), any(), any(Pageable.class));
+        assertThat(cursors.getAllValues()).containsExactly("", "b", "");
+    }
+
+    @Test
+    void sweep_runsOnlyOnLeader() {
+        when(shardCoordinator.isLeader()).thenReturn(false);
+
+        service.backfillMissingCoordinates();
+
+        verify(stationRepository, never()).findMissingCoordinates(any(), any(), any());
+    }
+
+    private void runPendingResults() {
+        List<Runnable> tasks = List.copyOf(pendingResults);
+        pendingResults.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private static String hash(String address) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(AddressNormalizer.normalize(address).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
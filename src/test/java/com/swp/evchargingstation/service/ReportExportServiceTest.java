@@ -0,0 +1,157 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.dto.response.ReportExportJobResponse;
+import com.swp.evchargingstation.dto.response.RevenueReportResponse;
+import com.swp.evchargingstation.entity.ReportExportJob;
+import com.swp.evchargingstation.enums.ReportExportStatus;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import com.swp.evchargingstation.repository.ReportExportJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReportExportServiceTest {
+
+    @TempDir
+    Path sharedDir;
+
+    // Bảng report_export_jobs dùng chung giữa 2 "node"
+    private final Map<String, ReportExportJob> table = new ConcurrentHashMap<>();
+
+    private ReportExportJobRepository repository;
+    private PdfExportService pdfExportService;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ReportExportJobRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> {
+            ReportExportJob job = invocation.getArgument(0);
+            if (job.getJobId() == null) {
+                job.setJobId(UUID.randomUUID().toString());
+            }
+            table.put(job.getJobId(), copy(job));
+            return job;
+        });
+        when(repository.findById(any())).thenAnswer(invocation ->
+                Optional.ofNullable(table.get(invocation.<String>getArgument(0))).map(ReportExportServiceTest::copy));
+        when(repository.findExpired(any())).thenAnswer(invocation -> {
+            LocalDateTime cutoff = invocation.getArgument(0);
+            return table.values().stream()
+                    .filter(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff))
+                    .toList();
+        });
+        doAnswer(invocation -> {
+            invocation.<List<ReportExportJob>>getArgument(0).forEach(job -> table.remove(job.getJobId()));
+            return null;
+        }).when(repository).deleteAllInBatch(any());
+
+        pdfExportService = mock(PdfExportService.class);
+        when(pdfExportService.writeRevenuePdf(any(), any())).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("%PDF-test".getBytes());
+            return new PdfExportService.RenderStats(1, 3);
+        });
+    }
+
+    @Test
+    void jobSubmittedOnOneNodeIsServedByAnother() throws Exception {
+        ReportExportService nodeA = node(3_600_000);
+        ReportExportService nodeB = node(3_600_000);
+
+        ReportExportJobResponse submitted = nodeA.submit("daily", "report.pdf", RevenueReportResponse::new);
+
+        ReportExportJobResponse status = nodeB.getJob(submitted.getJobId());
+        assertThat(status.getStatus()).isEqualTo(ReportExportStatus.COMPLETED);
+        assertThat(status.getStationRows()).isEqualTo(3);
+
+        ReportExportService.ExportFile file = nodeB.getFile(submitted.getJobId());
+        assertThat(file.fileName()).isEqualTo("report.pdf");
+        assertThat(Files.readString(file.path())).isEqualTo("%PDF-test");
+    }
+
+    @Test
+    void failedRenderIsRecordedAndHasNoFile() throws Exception {
+        doThrow(new IllegalStateException("font missing")).when(pdfExportService).writeRevenuePdf(any(), any());
+        ReportExportService service = node(3_600_000);
+
+        String jobId = service.submit("daily", "report.pdf", RevenueReportResponse::new).getJobId();
+
+        assertThat(service.getJob(jobId).getStatus()).isEqualTo(ReportExportStatus.FAILED);
+        assertThat(service.getJob(jobId).getError()).isEqualTo("font missing");
+        assertThatThrownBy(() -> service.getFile(jobId))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.REPORT_EXPORT_NOT_READY);
+        try (var files = Files.list(sharedDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void purgeExpired_removesJobRowAndSharedFile() {
+        ReportExportService service = node(-1);
+        String jobId = service.submit("daily", "report.pdf", RevenueReportResponse::new).getJobId();
+        Path file = service.getFile(jobId).path();
+
+        service.purgeExpired();
+
+        assertThat(file).doesNotExist();
+        assertThatThrownBy(() -> service.getJob(jobId))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.REPORT_EXPORT_JOB_NOT_FOUND);
+    }
+
+    private ReportExportService node(long retentionMs) {
+        // Worker chạy ngay trên thread gọi submit
+        ThreadPoolTaskExecutor executor = mock(ThreadPoolTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+        try {
+            return new ReportExportService(pdfExportService, repository, executor, new SimpleMeterRegistry(),
+                    sharedDir.toString(), retentionMs);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static ReportExportJob copy(ReportExportJob job) {
+        return ReportExportJob.builder()
+                .jobId(job.getJobId())
+                .reportType(job.getReportType())
+                .fileName(job.getFileName())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .renderNanos(job.getRenderNanos())
+                .fileSizeBytes(job.getFileSizeBytes())
+                .pages(job.getPages())
+                .stationRows(job.getStationRows())
+                .storedFile(job.getStoredFile())
+                .error(job.getError())
+                .build();
+    }
+}
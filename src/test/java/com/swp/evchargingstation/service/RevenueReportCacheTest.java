@@ -0,0 +1,164 @@
+package com.swp.evchargingstation.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp.evchargingstation.entity.RevenueDaySnapshot;
+import com.swp.evchargingstation.repository.PaymentRepository;
+import com.swp.evchargingstation.repository.RevenueDaySnapshotRepository;
+import com.swp.evchargingstation.repository.StationHourlyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RevenueReportCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate YESTERDAY = TODAY.minusDays(1);
+
+    private PaymentRepository paymentRepository;
+    private RevenueDaySnapshotRepository snapshotRepository;
+    private StationRollupService stationRollupService;
+    private RevenueReportCache cache;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        snapshotRepository = mock(RevenueDaySnapshotRepository.class);
+        stationRollupService = mock(StationRollupService.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(snapshotRepository.findByDayBetweenAndInvalidatedAtIsNull(any(), any())).thenReturn(List.of());
+        cache = new RevenueReportCache(paymentRepository, mock(StationHourlyRollupRepository.class),
+                snapshotRepository, stationRollupService, transactionTemplate, new ObjectMapper(), 30_000, 300_000);
+    }
+
+    @Test
+    void getDays_closedDayIsComputedOncePersistedAndServedFromMemory() {
+        when(paymentRepository.findRevenueByStationAndDay(any(), any())).thenReturn(rows(YESTERDAY, 100.0, 1));
+
+        assertThat(revenueOf(YESTERDAY)).isEqualTo(100.0);
+        assertThat(revenueOf(YESTERDAY)).isEqualTo(100.0);
+
+        verify(paymentRepository, times(1)).findRevenueByStationAndDay(any(), any());
+        verify(snapshotRepository).insertSnapshot(eq(YESTERDAY), anyString(), any());
+    }
+
+    @Test
+    void getDays_paymentCommittedDuringLoadIsNotCachedOrPersisted() {
+        // Payment của hôm qua commit sau nửa đêm, đúng lúc query đang chạy: kết quả query thiếu payment đó
+        when(paymentRepository.findRevenueByStationAndDay(any(), any()))
+                .thenAnswer(invocation -> {
+                    cache.invalidate(YESTERDAY);
+                    return rows(YESTERDAY, 100.0, 1);
+                })
+                .thenReturn(rows(YESTERDAY, 150.0, 2));
+
+        assertThat(revenueOf(YESTERDAY)).isEqualTo(100.0);
+
+        verify(snapshotRepository, never()).insertSnapshot(any(), anyString(), any());
+        verify(snapshotRepository).markInvalidated(eq(YESTERDAY), any());
+        // Lần đọc sau tính lại, thấy payment mới
+        assertThat(revenueOf(YESTERDAY)).isEqualTo(150.0);
+        verify(snapshotRepository).insertSnapshot(eq(YESTERDAY), anyString(), any());
+    }
+
+    @Test
+    void getDays_snapshotReadRacingInvalidateIsNotCached() {
+        RevenueDaySnapshot snapshot = RevenueDaySnapshot.builder()
+                .day(YESTERDAY)
+                .payload("[{\"stationId\":\"station-1\",\"revenue\":100.0,\"paymentCount\":1}]")
+                .build();
+        when(snapshotRepository.findByDayBetweenAndInvalidatedAtIsNull(any(), any()))
+                .thenAnswer(invocation -> {
+                    cache.invalidate(YESTERDAY);
+                    return List.of(snapshot);
+                })
+                .thenReturn(List.of());
+        when(paymentRepository.findRevenueByStationAndDay(any(), any())).thenReturn(rows(YESTERDAY, 150.0, 2));
+
+        revenueOf(YESTERDAY);
+
+        assertThat(revenueOf(YESTERDAY)).isEqualTo(150.0);
+    }
+
+    @Test
+    void invalidate_closedDayWithoutSnapshotWritesTombstone() {
+        when(snapshotRepository.markInvalidated(eq(YESTERDAY), any())).thenReturn(0);
+
+        cache.invalidate(YESTERDAY);
+
+        verify(snapshotRepository).insertTombstone(eq(YESTERDAY), any());
+    }
+
+    @Test
+    void invalidate_tombstoneRacingSnapshotInsertFallsBackToMark() {
+        when(snapshotRepository.markInvalidated(eq(YESTERDAY), any())).thenReturn(0, 1);
+        when(snapshotRepository.insertTombstone(eq(YESTERDAY), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        cache.invalidate(YESTERDAY);
+
+        verify(snapshotRepository, times(2)).markInvalidated(eq(YESTERDAY), any());
+    }
+
+    @Test
+    void invalidate_todayOnlyDropsMemoryCopy() {
+        when(paymentRepository.findRevenueByStationAndDay(any(), any()))
+                .thenReturn(rows(TODAY, 10.0, 1), rows(TODAY, 20.0, 2));
+        assertThat(revenueOf(TODAY)).isEqualTo(10.0);
+
+        cache.invalidate(TODAY);
+
+        assertThat(revenueOf(TODAY)).isEqualTo(20.0);
+        verify(snapshotRepository, never()).markInvalidated(any(), any());
+        verify(snapshotRepository, never()).insertSnapshot(any(), anyString(), any());
+    }
+
+    @Test
+    void persist_existingRowIsReplacedOnlyWhenNotInvalidatedSinceLoadStart() {
+        when(paymentRepository.findRevenueByStationAndDay(any(), any())).thenReturn(rows(YESTERDAY, 100.0, 1));
+        when(snapshotRepository.insertSnapshot(any(), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        revenueOf(YESTERDAY);
+
+        verify(snapshotRepository).replaceIfNotInvalidatedSince(eq(YESTERDAY), anyString(), any());
+    }
+
+    @Test
+    void getDays_closedDayExpiresFromMemoryAfterClosedTtl() {
+        cache = new RevenueReportCache(paymentRepository, mock(StationHourlyRollupRepository.class),
+                snapshotRepository, stationRollupService, mock(TransactionTemplate.class), new ObjectMapper(), 30_000, 0);
+        when(paymentRepository.findRevenueByStationAndDay(any(), any())).thenReturn(rows(YESTERDAY, 100.0, 1));
+
+        revenueOf(YESTERDAY);
+        revenueOf(YESTERDAY);
+
+        // Instance khác invalidate qua bảng snapshot: bản trong bộ nhớ không được giữ mãi
+        verify(snapshotRepository, times(2)).findByDayBetweenAndInvalidatedAtIsNull(any(), any());
+    }
+
+    private double revenueOf(LocalDate day) {
+        return cache.getDays(day, day.plusDays(1)).get(day).stream()
+                .mapToDouble(RevenueReportCache.StationDayRevenue::revenue)
+                .sum();
+    }
+
+    private static List<Object[]> rows(LocalDate day, double revenue, int count) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"station-1", day.getYear(), day.getMonthValue(), day.getDayOfMonth(), revenue, count});
+        return rows;
+    }
+}
@@ -0,0 +1,237 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.SimulatorNode;
+import com.swp.evchargingstation.entity.SimulatorShardLease;
+import com.swp.evchargingstation.event.simulator.ShardOwnershipChangedEvent;
+import com.swp.evchargingstation.repository.SimulatorNodeRepository;
+import com.swp.evchargingstation.repository.SimulatorShardLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Nhiều coordinator dùng chung một bảng lease / node giả lập trong bộ nhớ,
+ * với cùng điều kiện WHERE như các UPDATE trong SimulatorShardLeaseRepository.
+ */
+class SimulatorShardCoordinatorTest {
+
+    private static final int SHARD_COUNT = 8;
+    private static final long LEASE_TTL_SECONDS = 15;
+
+    private final Map<Integer, SimulatorShardLease> leases = new TreeMap<>();
+    private final Map<String, SimulatorNode> nodes = new HashMap<>();
+    private final Map<String, List<ShardOwnershipChangedEvent>> events = new HashMap<>();
+
+    private SimulatorShardLeaseRepository leaseRepository;
+    private SimulatorNodeRepository nodeRepository;
+
+    @BeforeEach
+    void setUp() {
+        leaseRepository = mock(SimulatorShardLeaseRepository.class);
+        when(leaseRepository.findAllShardIds()).thenAnswer(invocation -> new ArrayList<>(leases.keySet()));
+        when(leaseRepository.saveAll(any())).thenAnswer(invocation -> {
+            for (SimulatorShardLease lease : invocation.<Iterable<SimulatorShardLease>>getArgument(0)) {
+                leases.put(lease.getShardId(), lease);
+            }
+            return null;
+        });
+        when(leaseRepository.findOwnedShardIds(anyString(), any())).thenAnswer(invocation -> {
+            String nodeId = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(1);
+            return leases.values().stream()
+                    .filter(l -> nodeId.equals(l.getOwnerNodeId()) && !l.getLeaseExpiresAt().isBefore(now))
+                    .map(SimulatorShardLease::getShardId)
+                    .toList();
+        });
+        when(leaseRepository.findClaimableShardIds(any())).thenAnswer(invocation -> leases.values().stream()
+                .filter(l -> claimable(l, invocation.getArgument(0)))
+                .map(SimulatorShardLease::getShardId)
+                .toList());
+        when(leaseRepository.renewLeases(anyString(), any(), any())).thenAnswer(invocation -> {
+            String nodeId = invocation.getArgument(0);
+            LocalDateTime now = invocation.getArgument(1);
+            int renewed = 0;
+            for (SimulatorShardLease lease : leases.values()) {
+                if (nodeId.equals(lease.getOwnerNodeId()) && !lease.getLeaseExpiresAt().isBefore(now)) {
+                    lease.setLeaseExpiresAt(invocation.getArgument(2));
+                    renewed++;
+                }
+            }
+            return renewed;
+        });
+        when(leaseRepository.claim(anyInt(), anyString(), any(), any())).thenAnswer(invocation -> {
+            SimulatorShardLease lease = leases.get(invocation.<Integer>getArgument(0));
+            if (!claimable(lease, invocation.getArgument(2))) {
+                return 0;
+            }
+            lease.setOwnerNodeId(invocation.getArgument(1));
+            lease.setLeaseExpiresAt(invocation.getArgument(3));
+            return 1;
+        });
+        when(leaseRepository.release(anyInt(), anyString())).thenAnswer(invocation -> {
+            SimulatorShardLease lease = leases.get(invocation.<Integer>getArgument(0));
+            if (!invocation.getArgument(1).equals(lease.getOwnerNodeId())) {
+                return 0;
+            }
+            lease.setOwnerNodeId(null);
+            lease.setLeaseExpiresAt(null);
+            return 1;
+        });
+
+        nodeRepository = mock(SimulatorNodeRepository.class);
+        when(nodeRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(nodes.get(invocation.<String>getArgument(0))));
+        when(nodeRepository.save(any())).thenAnswer(invocation -> {
+            SimulatorNode node = invocation.getArgument(0);
+            nodes.put(node.getNodeId(), node);
+            return node;
+        });
+        when(nodeRepository.countAlive(any())).thenAnswer(invocation -> nodes.values().stream()
+                .filter(n -> !n.getHeartbeatAt().isBefore(invocation.getArgument(0)))
+                .count());
+        doAnswer(invocation -> nodes.remove(invocation.<String>getArgument(0)))
+                .when(nodeRepository).deleteById(anyString());
+    }
+
+    @Test
+    void joiningNodeTakesFairShareWithoutOverlap() {
+        SimulatorShardCoordinator a = coordinator("node-a");
+        a.init();
+        assertThat(a.getOwnedShards()).hasSize(SHARD_COUNT);
+        assertThat(a.isLeader()).isTrue();
+
+        SimulatorShardCoordinator b = coordinator("node-b");
+        b.init();
+        // a chưa trả shard: b chưa claim được gì
+        assertThat(b.getOwnedShards()).isEmpty();
+
+        a.heartbeat();
+        b.heartbeat();
+
+        assertThat(a.getOwnedShards()).hasSize(SHARD_COUNT / 2);
+        assertThat(b.getOwnedShards()).hasSize(SHARD_COUNT / 2);
+        assertThat(a.getOwnedShards()).doesNotContainAnyElementsOf(b.getOwnedShards());
+        assertThat(a.isLeader() ^ b.isLeader()).isTrue();
+
+        // a trả shard có flush (graceful) trước khi release lease
+        ShardOwnershipChangedEvent released = lastEvent("node-a");
+        assertThat(released.getLostShards()).hasSize(SHARD_COUNT / 2).doesNotContainAnyElementsOf(a.getOwnedShards());
+        assertThat(released.isGraceful()).isTrue();
+        assertThat(lastEvent("node-b").getGainedShards()).isEqualTo(b.getOwnedShards());
+    }
+
+    @Test
+    void survivorClaimsShardsOfDeadNodeAfterLeaseExpires() {
+        SimulatorShardCoordinator a = coordinator("node-a");
+        SimulatorShardCoordinator b = coordinator("node-b");
+        a.init();
+        b.init();
+        a.heartbeat();
+        b.heartbeat();
+        Set<Integer> ofB = b.getOwnedShards();
+
+        // b chết: không heartbeat nữa, lease và heartbeat quá TTL
+        expire("node-b");
+        a.heartbeat();
+
+        assertThat(a.getOwnedShards()).hasSize(SHARD_COUNT);
+        assertThat(lastEvent("node-a").getGainedShards()).isEqualTo(ofB);
+    }
+
+    @Test
+    void nodeWhoseLeaseLapsedEvictsWithoutFlush() {
+        SimulatorShardCoordinator a = coordinator("node-a");
+        a.init();
+        Set<Integer> before = a.getOwnedShards();
+
+        // a bị treo quá TTL, b nhận toàn bộ shard trước khi a kịp gia hạn
+        expire("node-a");
+        SimulatorShardCoordinator b = coordinator("node-b");
+        b.init();
+        assertThat(b.getOwnedShards()).isEqualTo(before);
+
+        a.heartbeat();
+
+        ShardOwnershipChangedEvent lost = events.get("node-a").stream()
+                .filter(e -> !e.getLostShards().isEmpty())
+                .reduce((first, second) -> second)
+                .orElseThrow();
+        assertThat(lost.getLostShards()).isEqualTo(before);
+        assertThat(lost.isGraceful()).isFalse();
+        assertThat(a.getOwnedShards()).doesNotContainAnyElementsOf(b.getOwnedShards());
+    }
+
+    @Test
+    void releaseAllHandsShardsToOtherNodeImmediately() {
+        SimulatorShardCoordinator a = coordinator("node-a");
+        SimulatorShardCoordinator b = coordinator("node-b");
+        a.init();
+        b.init();
+        a.heartbeat();
+        b.heartbeat();
+
+        a.releaseAll();
+        b.heartbeat();
+
+        assertThat(a.getOwnedShards()).isEmpty();
+        assertThat(b.getOwnedShards()).hasSize(SHARD_COUNT);
+        assertThat(nodes).doesNotContainKey("node-a");
+    }
+
+    @Test
+    void disabledNodeOwnsEveryPoint() {
+        SimulatorShardCoordinator coordinator = new SimulatorShardCoordinator(leaseRepository, nodeRepository,
+                mock(ApplicationEventPublisher.class), mock(TransactionTemplate.class), false, SHARD_COUNT,
+                LEASE_TTL_SECONDS, "solo");
+
+        coordinator.init();
+
+        assertThat(coordinator.owns("any-point")).isTrue();
+        assertThat(coordinator.isLeader()).isTrue();
+        verifyNoInteractions(leaseRepository);
+    }
+
+    private SimulatorShardCoordinator coordinator(String nodeId) {
+        List<ShardOwnershipChangedEvent> published = events.computeIfAbsent(nodeId, id -> new ArrayList<>());
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        doAnswer(invocation -> published.add(invocation.getArgument(0)))
+                .when(eventPublisher).publishEvent(any(ApplicationEvent.class));
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        return new SimulatorShardCoordinator(leaseRepository, nodeRepository, eventPublisher, transactionTemplate,
+                true, SHARD_COUNT, LEASE_TTL_SECONDS, nodeId);
+    }
+
+    private void expire(String nodeId) {
+        LocalDateTime past = LocalDateTime.now().minusSeconds(LEASE_TTL_SECONDS * 2);
+        leases.values().stream()
+                .filter(lease -> nodeId.equals(lease.getOwnerNodeId()))
+                .forEach(lease -> lease.setLeaseExpiresAt(past));
+        nodes.get(nodeId).setHeartbeatAt(past);
+    }
+
+    private ShardOwnershipChangedEvent lastEvent(String nodeId) {
+        List<ShardOwnershipChangedEvent> published = events.get(nodeId);
+        return published.get(published.size() - 1);
+    }
+
+    private static boolean claimable(SimulatorShardLease lease, LocalDateTime now) {
+        return lease.getOwnerNodeId() == null || lease.getLeaseExpiresAt().isBefore(now);
+    }
+}
@@ -0,0 +1,120 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.enums.ChargingPointStatus;
+import com.swp.evchargingstation.enums.ChargingSessionStatus;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StationReadModelTest {
+
+    private static final String STATION = "station-1";
+
+    private ChargingPointRepository chargingPointRepository;
+    private ChargingSessionRepository chargingSessionRepository;
+    private StationReadModel readModel;
+
+    private final List<Object[]> pointRows = new ArrayList<>();
+    private final List<Object[]> revenueRows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        chargingPointRepository = mock(ChargingPointRepository.class);
+        chargingSessionRepository = mock(ChargingSessionRepository.class);
+        when(chargingPointRepository.findAllPointStationStatuses()).thenReturn(pointRows);
+        when(chargingSessionRepository.sumRevenueGroupByStation(eq(ChargingSessionStatus.COMPLETED), any()))
+                .thenReturn(revenueRows);
+        readModel = new StationReadModel(chargingPointRepository, chargingSessionRepository);
+    }
+
+    @Test
+    void reconcile_loadsCountersAndRevenueFromProjection() {
+        pointRows.add(point("p1", ChargingPointStatus.AVAILABLE));
+        pointRows.add(point("p2", ChargingPointStatus.CHARGING));
+        revenueRows.add(new Object[]{STATION, 50_000.0});
+
+        readModel.reconcile();
+
+        assertThat(readModel.getStats(STATION))
+                .isEqualTo(new StationReadModel.StationStats(2, 1, 1, 0, 0, 50_000.0));
+    }
+
+    @Test
+    void onPointStatusChanged_movesPointBetweenStatuses() {
+        pointRows.add(point("p1", ChargingPointStatus.AVAILABLE));
+        readModel.reconcile();
+
+        readModel.onPointStatusChanged(null, "p1", ChargingPointStatus.CHARGING);
+        readModel.onPointStatusChanged(null, "p1", ChargingPointStatus.CHARGING);
+
+        assertThat(readModel.getStats(STATION).availablePoints()).isZero();
+        assertThat(readModel.getStats(STATION).chargingPoints()).isEqualTo(1);
+        assertThat(readModel.getStats(STATION).totalPoints()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcile_keepsStatusChangeReceivedWhileQueryRuns() {
+        pointRows.add(point("p1", ChargingPointStatus.AVAILABLE));
+        readModel.reconcile();
+        when(chargingPointRepository.findAllPointStationStatuses()).thenAnswer(invocation -> {
+            // Snapshot vẫn thấy p1 AVAILABLE, phiên sạc start commit sau snapshot
+            readModel.onPointStatusChanged(null, "p1", ChargingPointStatus.CHARGING);
+            return pointRows;
+        });
+
+        readModel.reconcile();
+
+        assertThat(readModel.getStats(STATION).chargingPoints()).isEqualTo(1);
+        assertThat(readModel.getStats(STATION).availablePoints()).isZero();
+    }
+
+    @Test
+    void reconcile_keepsStationDeletionReceivedWhileQueryRuns() {
+        pointRows.add(point("p1", ChargingPointStatus.AVAILABLE));
+        readModel.reconcile();
+        when(chargingPointRepository.findAllPointStationStatuses()).thenAnswer(invocation -> {
+            readModel.onStationDeleted(STATION);
+            return pointRows;
+        });
+
+        readModel.reconcile();
+
+        assertThat(readModel.getStats(STATION)).isEqualTo(StationReadModel.StationStats.EMPTY);
+    }
+
+    @Test
+    void reconcile_replaysRevenueOnlyForSessionsEndingAfterCutoff() {
+        pointRows.add(point("p1", ChargingPointStatus.CHARGING));
+        readModel.reconcile();
+        when(chargingSessionRepository.sumRevenueGroupByStation(eq(ChargingSessionStatus.COMPLETED), any()))
+                .thenAnswer(invocation -> {
+                    LocalDateTime cutoff = invocation.getArgument(1);
+                    // Phiên kết thúc trước mốc: đã có trong tổng của query, sự kiện đến muộn không được cộng lại
+                    readModel.onSessionCompleted("p1", 10_000.0, cutoff.minusSeconds(1));
+                    // Phiên kết thúc sau mốc: query không lấy, phải replay
+                    readModel.onSessionCompleted("p1", 20_000.0, cutoff.plusSeconds(1));
+                    List<Object[]> rows = new ArrayList<>();
+                    rows.add(new Object[]{STATION, 10_000.0});
+                    return rows;
+                });
+
+        readModel.reconcile();
+
+        assertThat(readModel.getStats(STATION).revenue()).isEqualTo(30_000.0);
+    }
+
+    private static Object[] point(String pointId, ChargingPointStatus status) {
+        return new Object[]{pointId, STATION, status};
+    }
+}
@@ -0,0 +1,217 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Station;
+import com.swp.evchargingstation.enums.ChargingPower;
+import com.swp.evchargingstation.enums.StationStatus;
+import com.swp.evchargingstation.repository.ChargingPointRepository;
+import com.swp.evchargingstation.repository.StationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StationSpatialIndexTest {
+
+    // Ô 0.05° ≈ 5.56 km theo vĩ độ
+    private static final double CELL_SIZE_DEG = 0.05;
+    private static final double LAT = 10.75;
+    private static final double LON = 106.65;
+
+    private StationRepository stationRepository;
+    private ChargingPointRepository chargingPointRepository;
+    private StationSpatialIndex index;
+
+    private final List<Object[]> locations = new ArrayList<>();
+    private final List<Object[]> powers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        stationRepository = mock(StationRepository.class);
+        chargingPointRepository = mock(ChargingPointRepository.class);
+        when(stationRepository.findAllLocations()).thenReturn(locations);
+        when(chargingPointRepository.findAllStationPowers()).thenReturn(powers);
+        index = new StationSpatialIndex(stationRepository, chargingPointRepository, CELL_SIZE_DEG);
+    }
+
+    @Test
+    void findNearest_findsStationJustAcrossCellBoundary() {
+        // Điểm tìm sát cạnh trên của ô, trạm gần nhất nằm ngay bên kia cạnh
+        double boundary = 10.80;
+        station("same-cell", boundary - 0.02, LON);
+        station("next-cell", boundary + 0.0001, LON);
+        index.rebuild();
+
+        List<StationSpatialIndex.NearbyStation> result = index.findNearest(boundary - 0.0001, LON, 5, 1, s -> true);
+
+        assertThat(ids(result)).containsExactly("next-cell");
+        assertThat(result.get(0).distanceKm()).isLessThan(0.05);
+    }
+
+    @Test
+    void findNearest_findsStationAcrossEquatorAndPrimeMeridian() {
+        // floor() của tọa độ âm: (-0.0001, -0.0001) thuộc ô (-1, -1), điểm tìm thuộc ô (0, 0)
+        station("south-west", -0.0001, -0.0001);
+        station("far", 0.04, 0.04);
+        index.rebuild();
+
+        assertThat(ids(index.findNearest(0.0001, 0.0001, 10, 1, s -> true))).containsExactly("south-west");
+    }
+
+    @Test
+    void findNearest_radiusIsInclusiveOfStationsInOuterRings() {
+        // Trạm cách ~4 ô: vẫn tìm thấy khi nằm trong bán kính, bị loại khi ngoài bán kính
+        station("far", LAT + 0.2, LON);
+        index.rebuild();
+        double distance = StationSpatialIndex.distanceKm(LAT, LON, LAT + 0.2, LON);
+
+        assertThat(ids(index.findNearest(LAT, LON, distance + 0.01, 5, s -> true))).containsExactly("far");
+        assertThat(index.findNearest(LAT, LON, distance - 0.01, 5, s -> true)).isEmpty();
+    }
+
+    @Test
+    void findNearest_keepsScanningPastFirstRingWhenNeighbourCellIsCloser() {
+        // Trạm cùng ô nhưng ở góc xa, trạm ô bên cạnh sát cạnh chung
+        double cellStart = Math.floor(LAT / CELL_SIZE_DEG) * CELL_SIZE_DEG;
+        double lonInCell = Math.floor(LON / CELL_SIZE_DEG) * CELL_SIZE_DEG + 0.025;
+        station("same-cell-far", cellStart + 0.049, lonInCell);
+        station("neighbour-close", cellStart - 0.001, lonInCell);
+        index.rebuild();
+
+        List<StationSpatialIndex.NearbyStation> result = index.findNearest(cellStart + 0.001, lonInCell, 20, 1, s -> true);
+
+        assertThat(ids(result)).containsExactly("neighbour-close");
+    }
+
+    @Test
+    void findNearest_sortsByDistanceAndAppliesLimitAndFilter() {
+        station("a", LAT + 0.01, LON, StationStatus.OPERATIONAL);
+        station("b", LAT + 0.02, LON, StationStatus.MAINTENANCE);
+        station("c", LAT + 0.03, LON, StationStatus.OPERATIONAL);
+        station("d", LAT + 0.04, LON, StationStatus.OPERATIONAL);
+        index.rebuild();
+
+        assertThat(ids(index.findNearest(LAT, LON, 50, 2, s -> true))).containsExactly("a", "b");
+        assertThat(ids(index.findNearest(LAT, LON, 50, 2, s -> s.status() == StationStatus.OPERATIONAL)))
+                .containsExactly("a", "c");
+    }
+
+    @Test
+    void findNearest_matchesBruteForceAroundCellBoundaries() {
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            station("s" + i, LAT + (random.nextDouble() - 0.5) * 0.6, LON + (random.nextDouble() - 0.5) * 0.6);
+        }
+        index.rebuild();
+
+        for (int q = 0; q < 50; q++) {
+            // Điểm tìm dồn về gần cạnh ô để kiểm tra các vòng quét
+            double lat = Math.round((LAT + (random.nextDouble() - 0.5) * 0.4) / CELL_SIZE_DEG) * CELL_SIZE_DEG
+                    + (random.nextDouble() - 0.5) * 0.002;
+            double lon = LON + (random.nextDouble() - 0.5) * 0.4;
+            double radiusKm = 1 + random.nextDouble() * 15;
+            int limit = 1 + random.nextInt(10);
+
+            List<String> expected = locations.stream()
+                    .map(row -> new Object[]{row[0],
+                            StationSpatialIndex.distanceKm(lat, lon, (Double) row[3], (Double) row[4])})
+                    .filter(pair -> (Double) pair[1] <= radiusKm)
+                    .sorted(Comparator.comparingDouble(pair -> (Double) pair[1]))
+                    .limit(limit)
+                    .map(pair -> (String) pair[0])
+                    .toList();
+
+            assertThat(ids(index.findNearest(lat, lon, radiusKm, limit, s -> true)))
+                    .as("query (%s, %s) radius %s limit %s", lat, lon, radiusKm, limit)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void rebuild_skipsStationsWithoutCoordinatesAndAttachesPowers() {
+        station("located", LAT, LON);
+        locations.add(new Object[]{"not-geocoded", "not-geocoded", "addr", null, null, StationStatus.OPERATIONAL});
+        powers.add(new Object[]{"located", ChargingPower.POWER_50KW});
+        powers.add(new Object[]{"located", null});
+        index.rebuild();
+
+        List<StationSpatialIndex.NearbyStation> result = index.findNearest(LAT, LON, 1_000, 10, s -> true);
+
+        assertThat(ids(result)).containsExactly("located");
+        assertThat(result.get(0).station().chargingPowers()).containsExactly(ChargingPower.POWER_50KW);
+    }
+
+    @Test
+    void remove_dropsStationFromItsCell() {
+        station("a", LAT, LON);
+        index.rebuild();
+
+        index.remove("a");
+        index.remove("a");
+
+        assertThat(index.findNearest(LAT, LON, 10, 5, s -> true)).isEmpty();
+    }
+
+    @Test
+    void findNearest_findsStationAcrossAntimeridian() {
+        // 179.99° và -179.99° cách nhau ~2.2 km, nằm ở hai đầu dải chỉ số ô kinh độ
+        station("west-of-180", 0.5, 179.99);
+        station("east-of-180", 0.5, -179.99);
+        index.rebuild();
+
+        assertThat(ids(index.findNearest(0.5, 179.995, 5, 10, s -> true)))
+                .containsExactlyInAnyOrder("west-of-180", "east-of-180");
+        assertThat(ids(index.findNearest(0.5, -179.995, 1, 1, s -> true))).containsExactly("east-of-180");
+    }
+
+    @Test
+    void rebuild_keepsRefreshReceivedWhileProjectionQueryRuns() {
+        Station moved = Station.builder().stationId("moved").name("moved").address("addr")
+                .latitude(LAT).longitude(LON).status(StationStatus.OPERATIONAL).build();
+        when(stationRepository.findById("moved")).thenReturn(Optional.of(moved));
+        when(chargingPointRepository.findByStation_StationId("moved")).thenReturn(List.of());
+        station("moved", LAT + 1, LON + 1);
+        when(stationRepository.findAllLocations()).thenAnswer(invocation -> {
+            // Snapshot còn tọa độ cũ, cập nhật tọa độ commit trước khi swap
+            index.refresh("moved");
+            return locations;
+        });
+
+        index.rebuild();
+
+        assertThat(ids(index.findNearest(LAT, LON, 1, 5, s -> true))).containsExactly("moved");
+        assertThat(index.findNearest(LAT + 1, LON + 1, 1, 5, s -> true)).isEmpty();
+    }
+
+    @Test
+    void rebuild_keepsRemovalReceivedWhileProjectionQueryRuns() {
+        station("deleted", LAT, LON);
+        when(stationRepository.findAllLocations()).thenAnswer(invocation -> {
+            index.remove("deleted");
+            return locations;
+        });
+
+        index.rebuild();
+
+        assertThat(index.findNearest(LAT, LON, 10, 5, s -> true)).isEmpty();
+    }
+
+    private void station(String id, double latitude, double longitude) {
+        station(id, latitude, longitude, StationStatus.OPERATIONAL);
+    }
+
+    private void station(String id, double latitude, double longitude, StationStatus status) {
+        locations.add(new Object[]{id, id, "addr " + id, latitude, longitude, status});
+    }
+
+    private static List<String> ids(List<StationSpatialIndex.NearbyStation> result) {
+        return result.stream().map(nearby -> nearby.station().stationId()).toList();
+    }
+}
@@ -0,0 +1,191 @@
+package com.swp.evchargingstation.service;
+
+import com.swp.evchargingstation.entity.Wallet;
+import com.swp.evchargingstation.entity.WalletHold;
+import com.swp.evchargingstation.enums.WalletHoldStatus;
+import com.swp.evchargingstation.repository.ChargingSessionRepository;
+import com.swp.evchargingstation.repository.WalletHoldRepository;
+import com.swp.evchargingstation.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Bảng wallet_holds giả lập trong bộ nhớ; findByUserIdForUpdate giữ khóa row ví tới hết "transaction"
+ * (inTransaction) giống PESSIMISTIC_WRITE.
+ */
+class WalletHoldServiceTest {
+
+    private static final String USER = "user-1";
+    private static final double CHUNK = 50_000;
+    private static final double BUFFER = 1_000;
+
+    private final List<WalletHold> holds = new CopyOnWriteArrayList<>();
+    private final ReentrantLock walletRowLock = new ReentrantLock();
+
+    private Wallet wallet;
+    private WalletRepository walletRepository;
+    private WalletHoldService service;
+
+    @BeforeEach
+    void setUp() {
+        wallet = Wallet.builder().walletId("wallet-1").balance(120_000.0).build();
+
+        walletRepository = mock(WalletRepository.class);
+        when(walletRepository.findByUserIdForUpdate(USER)).thenAnswer(invocation -> {
+            walletRowLock.lock();
+            return Optional.of(wallet);
+        });
+        when(walletRepository.findByUserIdForUpdate("no-wallet")).thenReturn(Optional.empty());
+
+        WalletHoldRepository walletHoldRepository = mock(WalletHoldRepository.class);
+        when(walletHoldRepository.sumAmountByWalletIdAndStatus(anyString(), any())).thenAnswer(invocation ->
+                holds.stream()
+                        .filter(h -> h.getStatus() == invocation.getArgument(1))
+                        .mapToDouble(WalletHold::getAmount)
+                        .sum());
+        when(walletHoldRepository.findBySessionId(anyString())).thenAnswer(invocation -> holds.stream()
+                .filter(h -> h.getSessionId().equals(invocation.getArgument(0)))
+                .findFirst());
+        when(walletHoldRepository.save(any())).thenAnswer(invocation -> {
+            WalletHold hold = invocation.getArgument(0);
+            if (!holds.contains(hold)) {
+                holds.add(hold);
+            }
+            return hold;
+        });
+
+        service = new WalletHoldService(walletHoldRepository, walletRepository, mock(ChargingSessionRepository.class),
+                CHUNK, BUFFER);
+    }
+
+    @Test
+    void placeHold_reservesOneChunkAndNetsBookingDepositIntoCeiling() {
+        double ceiling = inTransaction(() -> service.placeHold(USER, "s1", 50_000.0));
+
+        assertThat(hold("s1").getAmount()).isEqualTo(CHUNK);
+        assertThat(ceiling).isEqualTo(50_000 + CHUNK);
+        assertThat(service.getAvailableBalance(wallet)).isEqualTo(120_000 - CHUNK);
+    }
+
+    @Test
+    void placeHold_secondSessionOnlyGetsWhatIsLeftAboveSafetyBuffer() {
+        inTransaction(() -> service.placeHold(USER, "s1", null));
+        inTransaction(() -> service.placeHold(USER, "s2", null));
+        inTransaction(() -> service.placeHold(USER, "s3", null));
+
+        assertThat(hold("s2").getAmount()).isEqualTo(CHUNK);
+        assertThat(hold("s3").getAmount()).isEqualTo(120_000 - 2 * CHUNK - BUFFER);
+        assertThat(service.getAvailableBalance(wallet)).isEqualTo(BUFFER);
+    }
+
+    @Test
+    void extendHold_coversShortfallLargerThanOneChunk() {
+        wallet.setBalance(500_000.0);
+        inTransaction(() -> service.placeHold(USER, "s1", null));
+
+        double ceiling = inTransaction(() -> service.extendHold(USER, "s1", 180_000));
+
+        assertThat(ceiling).isEqualTo(180_000);
+        assertThat(hold("s1").getAmount()).isEqualTo(180_000);
+    }
+
+    @Test
+    void extendHold_returnsCeilingBelowCostWhenBalanceRunsOut() {
+        inTransaction(() -> service.placeHold(USER, "s1", null));
+        inTransaction(() -> service.placeHold(USER, "s2", null));
+
+        double ceiling = inTransaction(() -> service.extendHold(USER, "s1", 90_000));
+
+        // Chỉ còn 120k - 100k - buffer khả dụng
+        assertThat(ceiling).isEqualTo(CHUNK + 19_000).isLessThan(90_000);
+        assertThat(service.getAvailableBalance(wallet)).isEqualTo(BUFFER);
+    }
+
+    @Test
+    void extendHold_belowCeilingDoesNotReserveMore() {
+        inTransaction(() -> service.placeHold(USER, "s1", null));
+
+        assertThat(inTransaction(() -> service.extendHold(USER, "s1", 10_000))).isEqualTo(CHUNK);
+        assertThat(hold("s1").getAmount()).isEqualTo(CHUNK);
+    }
+
+    @Test
+    void releaseHold_returnsAmountToAvailableBalanceOnce() {
+        inTransaction(() -> service.placeHold(USER, "s1", null));
+
+        service.releaseHold("s1");
+        service.releaseHold("s1");
+
+        assertThat(hold("s1").getStatus()).isEqualTo(WalletHoldStatus.RELEASED);
+        assertThat(service.getAvailableBalance(wallet)).isEqualTo(120_000);
+        // Hold đã release không được gia hạn nữa
+        assertThat(inTransaction(() -> service.extendHold(USER, "s1", 200_000))).isEqualTo(CHUNK);
+    }
+
+    @Test
+    void placeHold_driverWithoutWalletIsNotLimited() {
+        assertThat(service.placeHold("no-wallet", "s1", null)).isEqualTo(WalletHoldService.UNLIMITED_CEILING);
+        assertThat(holds).isEmpty();
+    }
+
+    @Test
+    void concurrentSessionsNeverReserveMoreThanBalance() throws Exception {
+        wallet.setBalance(200_000.0);
+        int sessions = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(sessions);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Double>> ceilings = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = "s" + i;
+                ceilings.add(pool.submit(() -> {
+                    start.await();
+                    return inTransaction(() -> service.placeHold(USER, sessionId, null));
+                }));
+            }
+            start.countDown();
+            double total = 0;
+            for (Future<Double> ceiling : ceilings) {
+                total += ceiling.get(5, TimeUnit.SECONDS);
+            }
+
+            assertThat(total).isCloseTo(200_000 - BUFFER, within(1e-6));
+            assertThat(holds).allSatisfy(h -> assertThat(h.getAmount()).isBetween(0.0, CHUNK));
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(walletRepository, never()).findByUserId(any());
+    }
+
+    private WalletHold hold(String sessionId) {
+        return holds.stream().filter(h -> h.getSessionId().equals(sessionId)).findFirst().orElseThrow();
+    }
+
+    // Khóa row ví được nhả khi transaction kết thúc
+    private <T> T inTransaction(Supplier<T> body) {
+        try {
+            return body.get();
+        } finally {
+            while (walletRowLock.isHeldByCurrentThread()) {
+                walletRowLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.swp.evchargingstation.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class ChargingCurveTest {
+
+    // 60 kWh ở 60 kW: mỗi 1% SOC = 0.6 kWh = 0.6 phút trong pha CC
+    private static final float CAPACITY_KWH = 60f;
+    private static final float PEAK_KW = 60f;
+
+    private final ChargingCurve curve = new ChargingCurve(CAPACITY_KWH, PEAK_KW);
+
+    @Test
+    void powerAt_isPeakThroughCvStart() {
+        assertThat(curve.powerAt(0)).isEqualTo(PEAK_KW);
+        assertThat(curve.powerAt(50)).isEqualTo(PEAK_KW);
+        assertThat(curve.powerAt(ChargingCurve.CV_START_SOC)).isEqualTo(PEAK_KW);
+    }
+
+    @Test
+    void powerAt_tapersLinearlyToEndRatioAtFull() {
+        assertThat(curve.powerAt(80.1)).isLessThan(PEAK_KW);
+        // Giữa pha CV: giảm một nửa khoảng (1 - TAPER_END_RATIO)
+        assertThat(curve.powerAt(90)).isCloseTo(PEAK_KW * (1 - (1 - ChargingCurve.TAPER_END_RATIO) / 2), within(1e-9));
+        assertThat(curve.powerAt(100)).isCloseTo(PEAK_KW * ChargingCurve.TAPER_END_RATIO, within(1e-9));
+        assertThat(curve.powerAt(120)).isCloseTo(PEAK_KW * ChargingCurve.TAPER_END_RATIO, within(1e-9));
+    }
+
+    @Test
+    void minutesBetween_ccPhaseIsEnergyOverPeakPower() {
+        // 60% × 60 kWh = 36 kWh ở 60 kW = 36 phút
+        assertThat(curve.minutesBetween(20, 80)).isCloseTo(36.0, within(1e-9));
+        assertThat(curve.minutesBetween(20.05, 20.15)).isCloseTo(0.06, within(1e-9));
+    }
+
+    @Test
+    void minutesBetween_cvPhaseMatchesTaperIntegral() {
+        // ∫ 0.6 kWh / P(s) × 60 ds trên [80, 100], P giảm tuyến tính 60 → 12 kW: 15 × ln(5)
+        assertThat(curve.minutesBetween(80, 100)).isCloseTo(15 * Math.log(5), within(1e-3));
+    }
+
+    @Test
+    void minutesBetween_slowsDownAcrossCvStart() {
+        double lastCcPercent = curve.minutesBetween(79, 80);
+        double firstCvPercent = curve.minutesBetween(80, 81);
+
+        assertThat(lastCcPercent).isCloseTo(0.6, within(1e-9));
+        assertThat(firstCvPercent).isGreaterThan(lastCcPercent);
+        assertThat(curve.minutesBetween(99, 100)).isGreaterThan(firstCvPercent);
+    }
+
+    @Test
+    void minutesBetween_isZeroWhenTargetNotAboveStart() {
+        assertThat(curve.minutesBetween(50, 50)).isZero();
+        assertThat(curve.minutesBetween(60, 40)).isZero();
+    }
+
+    @Test
+    void socAfter_reachesCvStartExactlyAfterCcMinutes() {
+        assertThat(curve.socAfter(20, 36.0)).isCloseTo(80.0, within(1e-6));
+    }
+
+    @Test
+    void socAfter_invertsMinutesBetweenAcrossBoundary() {
+        double minutes = curve.minutesBetween(30, 92.35);
+
+        assertThat(curve.socAfter(30, minutes)).isCloseTo(92.35, within(1e-6));
+    }
+
+    @Test
+    void socAfter_capsAtFullAndIgnoresNonPositiveMinutes() {
+        assertThat(curve.socAfter(95, 1_000)).isEqualTo(100.0);
+        assertThat(curve.socAfter(40, 0)).isEqualTo(40.0);
+        assertThat(curve.socAfter(140, -5)).isEqualTo(100.0);
+    }
+
+    @Test
+    void energyBetween_isProportionalToCapacity() {
+        assertThat(curve.energyBetween(20, 80)).isCloseTo(36.0, within(1e-9));
+        assertThat(curve.energyBetween(80, 20)).isZero();
+    }
+
+    @Test
+    void constructor_rejectsNonPositiveInputs() {
+        assertThatThrownBy(() -> new ChargingCurve(0f, 60f)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChargingCurve(60f, -1f)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,142 @@
+package com.swp.evchargingstation.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private HashedTimingWheel<String> wheel;
+
+    @AfterEach
+    void tearDown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void schedule_firesTaskAtDeadline() throws InterruptedException {
+        wheel = startedWheel(64);
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long deadline = System.currentTimeMillis() + 50;
+
+        wheel.schedule("session-1", deadline, () -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        });
+
+        assertThat(wheel.isScheduled("session-1")).isTrue();
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        // Fire trong tick chứa deadline: sớm nhất một tick trước deadline
+        assertThat(firedAt.get()).isGreaterThanOrEqualTo(deadline - TICK_MILLIS);
+        assertThat(wheel.isScheduled("session-1")).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void schedule_pastDeadlineFiresOnNextTick() throws InterruptedException {
+        wheel = startedWheel(64);
+        CountDownLatch fired = new CountDownLatch(1);
+
+        wheel.schedule("late", System.currentTimeMillis() - 1_000, fired::countDown);
+
+        assertThat(fired.await(500, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    void cancel_preventsTaskFromFiring() throws InterruptedException {
+        wheel = startedWheel(64);
+        CountDownLatch cancelledFired = new CountDownLatch(1);
+        CountDownLatch witnessFired = new CountDownLatch(1);
+        long deadline = System.currentTimeMillis() + 50;
+
+        wheel.schedule("cancelled", deadline, cancelledFired::countDown);
+        // Key khác cùng deadline: khi nó đã fire thì bucket của key bị hủy chắc chắn đã được quét
+        wheel.schedule("witness", deadline, witnessFired::countDown);
+
+        assertThat(wheel.cancel("cancelled")).isTrue();
+        assertThat(wheel.isScheduled("cancelled")).isFalse();
+        assertThat(witnessFired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(cancelledFired.await(3 * TICK_MILLIS, TimeUnit.MILLISECONDS)).isFalse();
+    }
+
+    @Test
+    void cancel_unknownKeyReturnsFalse() {
+        wheel = startedWheel(64);
+
+        assertThat(wheel.cancel("missing")).isFalse();
+    }
+
+    @Test
+    void schedule_sameKeyReplacesPreviousTimeout() throws InterruptedException {
+        wheel = startedWheel(64);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        long now = System.currentTimeMillis();
+
+        wheel.schedule("session-1", now + 30, () -> fired.add("first"));
+        wheel.schedule("session-1", now + 80, () -> {
+            fired.add("second");
+            done.countDown();
+        });
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("second");
+    }
+
+    @Test
+    void schedule_deadlineBeyondOneRotationWaitsRemainingRounds() throws InterruptedException {
+        // 4 bucket x 10 ms: một vòng 40 ms, deadline 150 ms cần thêm 3 vòng quay
+        wheel = startedWheel(4);
+        CountDownLatch fired = new CountDownLatch(1);
+        AtomicLong firedAt = new AtomicLong();
+        long deadline = System.currentTimeMillis() + 150;
+
+        wheel.schedule("multi-round", deadline, () -> {
+            firedAt.set(System.currentTimeMillis());
+            fired.countDown();
+        });
+
+        assertThat(fired.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(firedAt.get()).isGreaterThanOrEqualTo(deadline - TICK_MILLIS);
+    }
+
+    @Test
+    void schedule_multipleRoundsInSameBucketFireInDeadlineOrder() throws InterruptedException {
+        // Cùng bucket (cách nhau đúng một vòng 40 ms), khác số vòng còn lại
+        wheel = startedWheel(4);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        long deadline = System.currentTimeMillis() + 60;
+
+        wheel.schedule("later", deadline + 80, () -> {
+            fired.add("later");
+            done.countDown();
+        });
+        wheel.schedule("sooner", deadline, () -> {
+            fired.add("sooner");
+            done.countDown();
+        });
+
+        assertThat(done.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(fired).containsExactly("sooner", "later");
+    }
+
+    private static HashedTimingWheel<String> startedWheel(int wheelSize) {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>("test-wheel", TICK_MILLIS, wheelSize, Runnable::run);
+        wheel.start();
+        return wheel;
+    }
+}
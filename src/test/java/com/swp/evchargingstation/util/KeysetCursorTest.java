@@ -0,0 +1,140 @@
+package com.swp.evchargingstation.util;
+
+import com.swp.evchargingstation.dto.response.CursorPageResponse;
+import com.swp.evchargingstation.exception.AppException;
+import com.swp.evchargingstation.exception.ErrorCode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetCursorTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 6, 1, 8, 30, 15, 123_000_000);
+
+    record Row(LocalDateTime createdAt, long id) {
+    }
+
+    @Test
+    void encodeDecode_roundTripsTimestampAndId() {
+        KeysetCursor cursor = new KeysetCursor(T0, "42");
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void encodeDecode_roundTripsIdOnlyCursorAndIdContainingSeparator() {
+        KeysetCursor idOnly = new KeysetCursor(null, "user-uuid-1");
+        KeysetCursor pipeInId = new KeysetCursor(T0, "a|b");
+
+        assertThat(KeysetCursor.decode(idOnly.encode())).isEqualTo(idOnly);
+        assertThat(KeysetCursor.decode(pipeInId.encode())).isEqualTo(pipeInId);
+    }
+
+    @Test
+    void encode_isUrlSafeWithoutPadding() {
+        String encoded = new KeysetCursor(T0, "??>>").encode();
+
+        assertThat(encoded).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void decode_blankMeansFirstPage() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("")).isNull();
+        assertThat(KeysetCursor.decode("  ")).isNull();
+    }
+
+    @Test
+    void decode_rejectsMalformedCursor() {
+        assertInvalidCursor("not base64!");
+        assertInvalidCursor(encodeRaw("no-separator"));
+        assertInvalidCursor(encodeRaw("2025-06-01T08:30|"));
+        assertInvalidCursor(encodeRaw("yesterday|42"));
+    }
+
+    @Test
+    void numericId_rejectsNonNumericId() {
+        assertThat(new KeysetCursor(T0, "42").numericId()).isEqualTo(42L);
+        assertThatThrownBy(() -> new KeysetCursor(T0, "abc").numericId())
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.PAGINATION_CURSOR_INVALID);
+    }
+
+    @Test
+    void resolveLimit_defaultsCapsAndRejectsNonPositive() {
+        assertThat(KeysetCursor.resolveLimit(null)).isEqualTo(KeysetCursor.DEFAULT_LIMIT);
+        assertThat(KeysetCursor.resolveLimit(1)).isEqualTo(1);
+        assertThat(KeysetCursor.resolveLimit(KeysetCursor.MAX_LIMIT + 1)).isEqualTo(KeysetCursor.MAX_LIMIT);
+        assertThatThrownBy(() -> KeysetCursor.resolveLimit(0))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.PAGINATION_LIMIT_INVALID);
+    }
+
+    @Test
+    void fetchOneMore_requestsLimitPlusOneRowsFromStart() {
+        assertThat(KeysetCursor.fetchOneMore(20).getPageSize()).isEqualTo(21);
+        assertThat(KeysetCursor.fetchOneMore(20).getOffset()).isZero();
+    }
+
+    @Test
+    void page_exactlyLimitRowsIsLastPage() {
+        CursorPageResponse<Long> page = page(rows(3), 3);
+
+        assertThat(page.getItems()).containsExactly(0L, 1L, 2L);
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(page.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void page_limitPlusOneRowsDropsExtraRowAndPointsCursorAtLastItem() {
+        List<Row> rows = rows(4);
+
+        CursorPageResponse<Long> page = page(rows, 3);
+
+        assertThat(page.getItems()).containsExactly(0L, 1L, 2L);
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(KeysetCursor.decode(page.getNextCursor()))
+                .isEqualTo(new KeysetCursor(rows.get(2).createdAt(), "2"));
+    }
+
+    @Test
+    void page_emptyResult() {
+        CursorPageResponse<Long> page = page(List.of(), 3);
+
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    private static CursorPageResponse<Long> page(List<Row> rows, int limit) {
+        return KeysetCursor.page(rows, limit, row -> new KeysetCursor(row.createdAt(), String.valueOf(row.id())),
+                Row::id);
+    }
+
+    private static List<Row> rows(int count) {
+        // Mới nhất trước, như ORDER BY created_at DESC, id DESC
+        return IntStream.range(0, count).mapToObj(i -> new Row(T0.minusMinutes(i), i)).toList();
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertInvalidCursor(String after) {
+        assertThatThrownBy(() -> KeysetCursor.decode(after))
+                .as("cursor %s", after)
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.PAGINATION_CURSOR_INVALID);
+    }
+}